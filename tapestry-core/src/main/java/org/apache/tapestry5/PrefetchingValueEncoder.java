@@ -0,0 +1,40 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5;
+
+import java.util.Collection;
+
+/**
+ * An extension of {@link ValueEncoder} for encoders that can convert many client-side values more efficiently at
+ * once than one at a time; typically, an encoder for database entities that can load many entities with a single
+ * query. Before a form submission is processed, components that decode many values (such as
+ * {@link org.apache.tapestry5.corelib.components.Loop} and {@link org.apache.tapestry5.corelib.components.AjaxFormLoop})
+ * pass all the client-side values they rendered to {@link #prefetch(java.util.Collection)}; each value is then
+ * converted, as usual, via {@link #toValue(String)}, which should make use of the prefetched values.
+ *
+ * @since 5.4
+ */
+public interface PrefetchingValueEncoder<V> extends ValueEncoder<V>
+{
+    /**
+     * Invoked with client-side values that are about to be converted by {@link #toValue(String)}, within the same
+     * request. Values may be blank or no longer valid; such values should be ignored (and reported, if appropriate, by
+     * {@link #toValue(String)}).
+     *
+     * @param clientValues
+     *         values previously provided by {@link #toClient(Object)}
+     */
+    void prefetch(Collection<String> clientValues);
+}
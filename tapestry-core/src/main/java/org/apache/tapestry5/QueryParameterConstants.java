@@ -1,4 +1,4 @@
-// Copyright 2010 The Apache Software Foundation
+// Copyright 2010, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -30,4 +30,23 @@ public class QueryParameterConstants
      * client-side id during initial render.
      */
     public static final String ZONE_ID = "t:zoneid";
+
+    /**
+     * A JSON array describing the component events sent to the {@linkplain org.apache.tapestry5.SymbolConstants#BATCH_EVENT_PATH batch
+     * event path}. Each element is an object with a "url" key (the component event URL) and an optional "parameters"
+     * key (additional query parameters for that event, typically including {@link #ZONE_ID}).
+     *
+     * @since 5.4
+     */
+    public static final String BATCH_EVENTS = "t:events";
+
+    /**
+     * Comma-separated list of subscriptions to the {@linkplain org.apache.tapestry5.SymbolConstants#PUSH_PATH push channel},
+     * as rendered into the page by the {@link org.apache.tapestry5.corelib.mixins.ZonePush} mixin. The subscriptions
+     * are signed, and identify the client (usually, a single browser window), allowing updates to be queued between
+     * long poll requests or while an event stream reconnects, as well as the topics the client subscribes to.
+     *
+     * @since 5.4
+     */
+    public static final String PUSH_SUBSCRIPTIONS = "t:subscriptions";
 }
@@ -82,6 +82,16 @@ public class SymbolConstants
      */
     public static final String FILE_CHECK_UPDATE_TIMEOUT = "tapestry.file-check-update-timeout";
 
+    /**
+     * If true (the default), then the folders containing component classes, templates, message catalogs and assets are
+     * watched for changes (using the JDK 1.7 <code>WatchService</code>), and only files in folders that report
+     * changes are checked for updates, rather than every file; only the templates and message catalogs that have
+     * actually changed are then discarded. When false, or when running on an earlier JDK, every file is checked.
+     *
+     * @since 5.4
+     */
+    public static final String FILE_WATCHING_ENABLED = "tapestry.file-watching-enabled";
+
     /**
      * The version number of the core Tapestry framework, or UNKNOWN if the version number is not available (which
      * should only occur when developing Tapestry).
@@ -131,6 +141,16 @@ public class SymbolConstants
      */
     public static final String MIN_GZIP_SIZE = "tapestry.min-gzip-size";
 
+    /**
+     * Size, in bytes, beyond which the content of an asset (as read, transformed, or compressed by the
+     * {@link org.apache.tapestry5.services.assets.StreamableResourceSource} pipeline) is kept in a temporary file,
+     * rather than in memory. This bounds the memory used by very large assets. The default is 1048576 (1 MB); zero
+     * keeps all content in memory.
+     *
+     * @since 5.4
+     */
+    public static final String ASSET_SPOOL_THRESHOLD = "tapestry.asset-spool-threshold";
+
     /**
      * Version number of the application. Prior to 5.4, this version number was integrated into asset URLs. Starting
      * with 5.4, a checksum of the individual asset's content is used instead, and this version number is only used
@@ -354,6 +374,113 @@ public class SymbolConstants
      */
     public static final String MODULE_PATH_PREFIX = "tapestry.module-path-prefix";
 
+    /**
+     * Path used by the client to send several component events in a single Ajax request; the events are
+     * all triggered against the same page instance, and the resulting zone updates are combined into a single
+     * partial page render response. This may contain slashes, but should not begin or end with one.
+     * <p/>
+     * The default is "t5batch".
+     *
+     * @see org.apache.tapestry5.QueryParameterConstants#BATCH_EVENTS
+     * @since 5.4
+     */
+    public static final String BATCH_EVENT_PATH = "tapestry.batch-event-path";
+
+    /**
+     * Path used by the client to connect to the push channel, through which zone updates published with the
+     * {@link org.apache.tapestry5.services.ajax.ZoneUpdatePublisher} are delivered (using Server-Sent Events, or long
+     * polling). This may contain slashes, but should not begin or end with one. The push channel requires a
+     * Servlet 3.0 container, with asynchronous processing enabled for the Tapestry filter; in older containers, requests
+     * to this path are not handled.
+     * <p/>
+     * The default is "t5push".
+     *
+     * @since 5.4
+     */
+    public static final String PUSH_PATH = "tapestry.push-path";
+
+    /**
+     * The maximum number of zone updates queued for a single push channel client that is not currently connected
+     * (or can not keep up). When the queue is full, the oldest update is discarded. Updates for a zone replace any
+     * update already queued for the same zone.
+     * <p/>
+     * The default is 50.
+     *
+     * @since 5.4
+     */
+    public static final String PUSH_QUEUE_SIZE = "tapestry.push-queue-size";
+
+    /**
+     * Time interval a push channel connection is kept open (without any updates) before being closed; the client
+     * will then reconnect. Clients that do not reconnect within twice this interval are discarded.
+     * <p/>
+     * The default is "30 s".
+     *
+     * @since 5.4
+     */
+    public static final String PUSH_TIMEOUT = "tapestry.push-timeout";
+
+    /**
+     * Maximum time to wait for the {@link java.util.concurrent.Future} returned from a component event to complete.
+     * Once the time interval has passed, the future is cancelled and the request fails with an exception. This is also
+     * the timeout of a request suspended while waiting for a {@link org.apache.tapestry5.util.ListenableFuture}.
+     * <p/>
+     * The default is "60 s".
+     *
+     * @since 5.4
+     */
+    public static final String ASYNC_TIMEOUT = "tapestry.async-timeout";
+
+    /**
+     * If true, then the stylesheets and JavaScript libraries linked into each page are remembered, and sent as
+     * {@code Link: <url>; rel=preload} response headers on later requests for the same page, before the page
+     * is rendered.
+     * <p/>
+     * The default is the same as {@link #PRODUCTION_MODE}.
+     *
+     * @since 5.4
+     */
+    public static final String PRELOAD_HEADERS_ENABLED = "tapestry.preload-headers-enabled";
+
+    /**
+     * If true, then assets, modules and JavaScript stacks that were precompiled ahead of deployment (by the
+     * {@link org.apache.tapestry5.util.PrecompileAssets} tool) are served as-is, bypassing transformation,
+     * minification and compression. Only assets present in the precompiled manifest are affected; everything
+     * else is processed normally.
+     * <p/>
+     * The default is the same as {@link #PRODUCTION_MODE}; the tool itself turns this off while precompiling.
+     *
+     * @see org.apache.tapestry5.services.assets.AssetPrecompiler
+     * @since 5.4
+     */
+    public static final String PRECOMPILED_ASSETS_ENABLED = "tapestry.precompiled-assets-enabled";
+
+    /**
+     * The algorithm used to compute the checksum of each asset's content, which is incorporated into the asset's URL.
+     * The default, "Adler32", is very fast, but is only 32 bits; any {@link java.security.MessageDigest} algorithm
+     * (such as "SHA-256") may be used instead, for checksums that remain distinct across a very large number of
+     * assets and versions (for example, when assets are shared by many servers, or by a CDN).
+     * <p/>
+     * Precompiled assets (see {@link #PRECOMPILED_ASSETS_ENABLED}) keep the checksums computed when they were
+     * precompiled.
+     *
+     * @since 5.4
+     */
+    public static final String ASSET_CHECKSUM_ALGORITHM = "tapestry.asset-checksum-algorithm";
+
+    /**
+     * If true, then the JavaScript module bundles contributed to the
+     * {@link org.apache.tapestry5.internal.services.assets.ModuleBundler} service are built (in the background, at
+     * startup and whenever a module changes) and identified in the RequireJS configuration, so that the modules in each
+     * bundle are loaded with a single request. The URL of each bundle incorporates a checksum of its content.
+     * <p/>
+     * The default is the value of {@link #PRODUCTION_MODE}.
+     *
+     * @see org.apache.tapestry5.internal.services.assets.ModuleBundler
+     * @since 5.4
+     */
+    public static final String MODULE_BUNDLING_ENABLED = "tapestry.module-bundling-enabled";
+
     /**
      * Identifies the context path of the application, as determined from {@link javax.servlet.ServletContext#getContextPath()}.
      * This is either a blank string or a string that starts with a slash but does not end with one.
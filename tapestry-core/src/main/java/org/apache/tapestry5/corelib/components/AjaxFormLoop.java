@@ -1,4 +1,4 @@
-// Copyright 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
+// Copyright 2008, 2009, 2010, 2011, 2012, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -19,14 +19,17 @@ import org.apache.tapestry5.annotations.*;
 import org.apache.tapestry5.corelib.internal.AjaxFormLoopContext;
 import org.apache.tapestry5.internal.services.RequestConstants;
 import org.apache.tapestry5.ioc.annotations.Inject;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.ioc.services.TypeCoercer;
 import org.apache.tapestry5.json.JSONObject;
 import org.apache.tapestry5.services.*;
 import org.apache.tapestry5.services.ajax.AjaxResponseRenderer;
 import org.apache.tapestry5.services.javascript.JavaScriptSupport;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * A special form of the {@link org.apache.tapestry5.corelib.components.Loop}
@@ -45,6 +48,9 @@ import java.util.Iterator;
  * The addRow event will receive the context specified by the context parameter.
  * <p/>
  * The removeRow event will receive the client-side value for the row being iterated.
+ * <p/>
+ * When the encoder is a {@link PrefetchingValueEncoder} (and the source is a {@link Collection}), the values of
+ * the rendered rows are prefetched in a single batch when the form is submitted.
  *
  * @tapestrydoc
  * @see EventConstants#ADD_ROW
@@ -146,6 +152,17 @@ public class AjaxFormLoop
 
     private Iterator iterator;
 
+    /**
+     * When rendering, the client values of all the source values, if stored for a {@link PrefetchingValueEncoder}
+     * (rows added later, via Ajax, store their own client value). When the form is submitted, the stored client values.
+     */
+    private List<String> clientValues;
+
+    /**
+     * The index of the current value within the client values.
+     */
+    private int clientValueIndex;
+
     @Inject
     private TypeCoercer typeCoercer;
 
@@ -164,7 +181,7 @@ public class AjaxFormLoop
     {
         public String encodedRowValue()
         {
-            return encoder.toClient(value);
+            return toClientValue();
         }
     };
 
@@ -197,6 +214,60 @@ public class AjaxFormLoop
         }
     }
 
+    /**
+     * Action for synchronizing the current element of the loop from the client values stored by
+     * {@link PrefetchValues}, so that each client value is only stored once.
+     *
+     * @since 5.4
+     */
+    static class SyncPrefetchedValue implements ComponentAction<AjaxFormLoop>
+    {
+        private final int index;
+
+        public SyncPrefetchedValue(int index)
+        {
+            this.index = index;
+        }
+
+        public void execute(AjaxFormLoop component)
+        {
+            component.syncPrefetchedValue(index);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("AjaxFormLoop.SyncPrefetchedValue[%d]", index);
+        }
+    }
+
+    /**
+     * Action for passing the client values of all the rendered rows to a {@link PrefetchingValueEncoder}. The rows are
+     * then synchronized by their index into the values ({@link SyncPrefetchedValue}).
+     *
+     * @since 5.4
+     */
+    static class PrefetchValues implements ComponentAction<AjaxFormLoop>
+    {
+        private final List<String> clientValues;
+
+        public PrefetchValues(List<String> clientValues)
+        {
+            this.clientValues = clientValues;
+        }
+
+        public void execute(AjaxFormLoop component)
+        {
+            component.prefetchValues(clientValues);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("AjaxFormLoop.PrefetchValues%s", clientValues);
+        }
+    }
+
     private static final ComponentAction<AjaxFormLoop> BEGIN_HEARTBEAT = new ComponentAction<AjaxFormLoop>()
     {
         public void execute(AjaxFormLoop component)
@@ -262,6 +333,16 @@ public class AjaxFormLoop
         }
     };
 
+    private void prefetchValues(List<String> clientValues)
+    {
+        this.clientValues = clientValues;
+
+        if (encoder instanceof PrefetchingValueEncoder)
+        {
+            ((PrefetchingValueEncoder<Object>) encoder).prefetch(clientValues);
+        }
+    }
+
     @SuppressWarnings(
             {"unchecked"})
     private void syncValue(String clientValue)
@@ -275,6 +356,11 @@ public class AjaxFormLoop
         this.value = value;
     }
 
+    private void syncPrefetchedValue(int index)
+    {
+        syncValue(clientValues.get(index));
+    }
+
     @Property(write = false)
     private final Renderable syncValue = new Renderable()
     {
@@ -286,11 +372,18 @@ public class AjaxFormLoop
 
     private void syncCurrentValue()
     {
-        String id = toClientValue();
-
         // Add the command that restores value from the value clientValue,
         // when the form is submitted.
 
+        if (clientValues != null)
+        {
+            formSupport.store(this, new SyncPrefetchedValue(clientValueIndex));
+
+            return;
+        }
+
+        String id = toClientValue();
+
         formSupport.store(this, new SyncValue(id));
     }
 
@@ -302,7 +395,7 @@ public class AjaxFormLoop
             {"unchecked"})
     private String toClientValue()
     {
-        return encoder.toClient(value);
+        return clientValues == null ? encoder.toClient(value) : clientValues.get(clientValueIndex);
     }
 
     void setupRender(MarkupWriter writer)
@@ -311,6 +404,21 @@ public class AjaxFormLoop
 
         iterator = source == null ? Collections.EMPTY_LIST.iterator() : source.iterator();
 
+        clientValues = null;
+        clientValueIndex = -1;
+
+        if (encoder instanceof PrefetchingValueEncoder && source instanceof Collection && iterator.hasNext())
+        {
+            clientValues = CollectionFactory.newList();
+
+            for (Object value : source)
+            {
+                clientValues.add(encoder.toClient(value));
+            }
+
+            formSupport.store(this, new PrefetchValues(clientValues));
+        }
+
         Link removeRowLink = resources.createEventLink("triggerRemoveRow", context);
         Link injectRowLink = resources.createEventLink("injectRow", context);
 
@@ -336,6 +444,7 @@ public class AjaxFormLoop
         }
 
         value = iterator.next();
+        clientValueIndex++;
 
         // Return true: render the body for this value; that ends up being a form-fragment.
 
@@ -370,6 +479,9 @@ public class AjaxFormLoop
     {
         writer.end();
 
+        // Rows rendered from here on (in this request) aren't among the prefetched values.
+        clientValues = null;
+
         popContext();
     }
 
@@ -32,6 +32,7 @@ import org.apache.tapestry5.services.FormSupport;
 import org.apache.tapestry5.services.javascript.JavaScriptSupport;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
 
@@ -65,7 +66,8 @@ public class Grid implements GridModel, ClientElement
     /**
      * The source of data for the Grid to display. This will usually be a List or array but can also be an explicit
      * {@link GridDataSource}. For Lists and object arrays, a GridDataSource is created automatically as a wrapper
-     * around the underlying List.
+     * around the underlying List. A source that does not count its rows can implement
+     * {@link UncountedGridDataSource}, and one that pages by key can implement {@link KeysetGridDataSource}.
      */
     @Parameter(required = true, autoconnect = true)
     private GridDataSource source;
@@ -74,7 +76,7 @@ public class Grid implements GridModel, ClientElement
      * A wrapper around the provided GridDataSource that caches access to the availableRows property. This is the source
      * provided to sub-components.
      */
-    private GridDataSource cachingSource;
+    private CachingDataSource cachingSource;
 
     /**
      * The number of rows of data displayed on each page. If there are more rows than will fit, the Grid will divide up
@@ -201,6 +203,24 @@ public class Grid implements GridModel, ClientElement
      */
     @Parameter
     private boolean renderTableIfEmpty = false;
+
+    /**
+     * If true, then the Grid scrolls through all of its rows, rather than displaying a pager: the table is rendered
+     * inside a scrolling container, with just one window of rows (the rowsPerPage parameter is the size of the window).
+     * Further windows are rendered, via Ajax, as they scroll into view, and windows that scroll far out of view are
+     * discarded; this keeps both render time and the size of the DOM under control for very large data sets. The
+     * height of the container is set with CSS (class {@code virtual-grid}). Rows rendered via Ajax are not part of any
+     * enclosing Form, so this is meant for read-only grids.
+     *
+     * @since 5.4
+     */
+    @Parameter
+    private boolean virtualScroll;
+
+    /**
+     * In virtual scroll mode, the page (window of rows) requested by the client, or null to use the current page.
+     */
+    private Integer virtualPage;
     
 
     /**
@@ -217,6 +237,13 @@ public class Grid implements GridModel, ClientElement
     @Persist
     private Integer currentPage;
 
+    /**
+     * The {@linkplain KeysetGridDataSource bookmark} for the start of the current page, carried by the link to the page.
+     */
+    @Persist(PersistenceConstants.FLASH)
+    @Property
+    private Serializable currentPageBookmark;
+
     @Persist
     private String sortColumnId;
 
@@ -242,7 +269,8 @@ public class Grid implements GridModel, ClientElement
     private GridRows rows;
 
     @Component(parameters =
-            {"source=dataSource", "rowsPerPage=rowsPerPage", "currentPage=currentPage", "zone=zone"})
+            {"source=dataSource", "rowsPerPage=rowsPerPage", "currentPage=currentPage", "zone=zone",
+                    "bookmark=currentPageBookmark"})
     private GridPager pager;
 
     @Component(parameters = "to=pagerTop")
@@ -282,7 +310,7 @@ public class Grid implements GridModel, ClientElement
     /**
      * A version of GridDataSource that caches the availableRows property. This addresses TAPESTRY-2245.
      */
-    static class CachingDataSource implements GridDataSource
+    static class CachingDataSource implements UncountedGridDataSource, KeysetGridDataSource
     {
         private final GridDataSource delegate;
 
@@ -306,6 +334,31 @@ public class Grid implements GridModel, ClientElement
             return availableRows;
         }
 
+        void setAvailableRows(int availableRows)
+        {
+            this.availableRows = availableRows;
+            availableRowsCached = true;
+        }
+
+        public boolean isRowCountKnown()
+        {
+            return !(delegate instanceof UncountedGridDataSource)
+                    || ((UncountedGridDataSource) delegate).isRowCountKnown();
+        }
+
+        public Serializable getBookmark(int index)
+        {
+            return delegate instanceof KeysetGridDataSource ? ((KeysetGridDataSource) delegate).getBookmark(index) : null;
+        }
+
+        public void addBookmark(int index, Serializable bookmark)
+        {
+            if (delegate instanceof KeysetGridDataSource)
+            {
+                ((KeysetGridDataSource) delegate).addBookmark(index, bookmark);
+            }
+        }
+
         public void prepare(int startIndex, int endIndex, List<SortConstraint> sortConstraints)
         {
             delegate.prepare(startIndex, endIndex, sortConstraints);
@@ -459,6 +512,19 @@ public class Grid implements GridModel, ClientElement
 
         cachingSource = new CachingDataSource(source);
 
+        // The data source is typically new for this request; let it know where the current page starts.
+
+        if (currentPageBookmark != null && virtualPage == null)
+        {
+            cachingSource.addBookmark((getCurrentPage() - 1) * rowsPerPage, currentPageBookmark);
+        }
+
+        if (!cachingSource.isRowCountKnown())
+        {
+            setupUncountedDataSource();
+            return;
+        }
+
         int availableRows = cachingSource.getAvailableRows();
 
         if (availableRows == 0)
@@ -482,6 +548,47 @@ public class Grid implements GridModel, ClientElement
         cachingSource.prepare(startIndex, endIndex, sortModel.getSortConstraints());
     }
 
+    /**
+     * The source does not count its rows, so one row beyond the current page is prepared as well; if that row exists,
+     * the pager offers the next page. The number of rows found becomes the (lower bound) row count.
+     */
+    private void setupUncountedDataSource()
+    {
+        int startIndex = (getCurrentPage() - 1) * rowsPerPage;
+
+        dataModel = null;
+
+        int count = prepareUncounted(startIndex);
+
+        // The current page is past the end of the data, typically due to deletions; there's no telling where the
+        // end now is, so start over (unless the client is scrolling, in which case it has found the end).
+
+        if (count == 0 && startIndex > 0 && virtualPage == null)
+        {
+            setCurrentPage(1);
+
+            startIndex = 0;
+
+            count = prepareUncounted(startIndex);
+        }
+
+        cachingSource.setAvailableRows(startIndex + count);
+    }
+
+    private int prepareUncounted(int startIndex)
+    {
+        cachingSource.prepare(startIndex, startIndex + rowsPerPage, sortModel.getSortConstraints());
+
+        int count = 0;
+
+        while (count <= rowsPerPage && cachingSource.getRowValue(startIndex + count) != null)
+        {
+            count++;
+        }
+
+        return count;
+    }
+
     Object beginRender(MarkupWriter writer)
     {
         // Skip rendering of component (template, body, etc.) when there's nothing to display.
@@ -504,11 +611,39 @@ public class Grid implements GridModel, ClientElement
             zone = "^";
         }
 
+        if (virtualScroll)
+        {
+            writer.element("div",
+                    "class", "virtual-grid",
+                    "data-virtual-grid-url", resources.createEventLink("virtualRows"),
+                    "data-rows-per-page", rowsPerPage,
+                    "data-current-page", getCurrentPage(),
+                    "data-available-rows", cachingSource.getAvailableRows(),
+                    "data-row-count-known", cachingSource.isRowCountKnown());
+
+            // When rendering a window of rows for the client, the rows are extracted from the markup, and there's
+            // nothing to initialize.
+
+            if (virtualPage == null)
+            {
+                String clientId = javaScriptSupport.allocateClientId(resources);
+
+                writer.attributes("id", clientId);
+
+                javaScriptSupport.require("t5/core/virtual-grid").with(clientId);
+            }
+        }
+
         return null;
     }
 
     void afterRender(MarkupWriter writer)
     {
+        if (virtualScroll)
+        {
+            writer.end(); // div
+        }
+
         if (didRenderZoneDiv)
         {
             writer.end(); // div
@@ -545,22 +680,30 @@ public class Grid implements GridModel, ClientElement
 
     public Object getPagerTop()
     {
-        return pagerPosition.isMatchTop() ? pager : null;
+        return pagerPosition.isMatchTop() && !virtualScroll ? pager : null;
     }
 
     public Object getPagerBottom()
     {
-        return pagerPosition.isMatchBottom() ? pager : null;
+        return pagerPosition.isMatchBottom() && !virtualScroll ? pager : null;
     }
 
     public int getCurrentPage()
     {
+        if (virtualPage != null)
+        {
+            return virtualPage;
+        }
+
         return currentPage == null ? 1 : currentPage;
     }
 
     public void setCurrentPage(int currentPage)
     {
         this.currentPage = currentPage;
+
+        // Any bookmark was for the start of the prior page.
+        currentPageBookmark = null;
     }
 
     private boolean getSortAscending()
@@ -612,6 +755,21 @@ public class Grid implements GridModel, ClientElement
         componentEventResultProcessor.processResultValue(this);
     }
 
+    /**
+     * Event handler for the Ajax request, in virtual scroll mode, for another window of rows. The Grid is rendered with
+     * just that window (and no pager); the client extracts the rows from the table. The current page is not changed.
+     *
+     * @since 5.4
+     */
+    boolean onVirtualRows(@RequestParameter("t:page") int page) throws IOException
+    {
+        virtualPage = Math.max(1, page);
+
+        componentEventResultProcessor.processResultValue(this);
+
+        return true;
+    }
+
     public String getClientId()
     {
         return table.getClientId();
@@ -1,4 +1,4 @@
-// Copyright 2007, 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
+// Copyright 2007, 2008, 2009, 2010, 2011, 2012, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -19,13 +19,26 @@ import org.apache.tapestry5.annotations.Events;
 import org.apache.tapestry5.annotations.Parameter;
 import org.apache.tapestry5.dom.Element;
 import org.apache.tapestry5.grid.GridDataSource;
+import org.apache.tapestry5.grid.KeysetGridDataSource;
+import org.apache.tapestry5.grid.UncountedGridDataSource;
 import org.apache.tapestry5.internal.InternalConstants;
 import org.apache.tapestry5.ioc.Messages;
 import org.apache.tapestry5.ioc.annotations.Inject;
+import org.apache.tapestry5.services.ClientDataEncoder;
+import org.apache.tapestry5.services.ClientDataSink;
 import org.apache.tapestry5.services.Request;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
 /**
- * Generates a series of links used to jump to a particular page index within the overall data set.
+ * Generates a series of links used to jump to a particular page index within the overall data set. When the source
+ * {@linkplain UncountedGridDataSource does not count its rows}, the last page is not known, so the links end with the
+ * next page (if there is one), followed by an ellipsis. When the source {@linkplain KeysetGridDataSource pages by key},
+ * each link also carries the bookmark of the page (if known), which is provided back through the bookmark parameter
+ * when the link is followed.
  *
  * @tapestrydoc
  */
@@ -64,6 +77,15 @@ public class GridPager
     @Parameter
     private String zone;
 
+    /**
+     * Set to the bookmark of the new current page, if the link followed carried one (see
+     * {@link KeysetGridDataSource}). Set after the current page.
+     *
+     * @since 5.4
+     */
+    @Parameter
+    private Serializable bookmark;
+
     private int lastIndex;
 
     private int maxPages;
@@ -77,6 +99,9 @@ public class GridPager
     @Inject
     private Request request;
 
+    @Inject
+    private ClientDataEncoder clientDataEncoder;
+
     void beginRender(MarkupWriter writer)
     {
         int availableRows = source.getAvailableRows();
@@ -119,6 +144,11 @@ public class GridPager
         for (int i = maxPages - 1; i <= maxPages; i++)
             writePageLink(writer, i);
 
+        if (!isRowCountKnown() && maxPages > currentPage)
+        {
+            writeEllipsis(writer);
+        }
+
         writer.end();    // ul
     }
 
@@ -130,11 +160,7 @@ public class GridPager
 
         if (pageIndex != lastIndex + 1)
         {
-            writer.element("li", "class", "disabled");
-            writer.element("a", "href", "#");
-            writer.write(" ... ");
-            writer.end();
-            writer.end();
+            writeEllipsis(writer);
         }
 
         lastIndex = pageIndex;
@@ -151,7 +177,7 @@ public class GridPager
 
         writer.element("li");
 
-        Link link = resources.createEventLink(EventConstants.ACTION, pageIndex);
+        Link link = createPageLink(pageIndex);
 
         if (zone != null)
         {
@@ -171,14 +197,61 @@ public class GridPager
         writer.end();   // li
     }
 
+    private Link createPageLink(int pageIndex)
+    {
+        Serializable pageBookmark = source instanceof KeysetGridDataSource
+                ? ((KeysetGridDataSource) source).getBookmark((pageIndex - 1) * rowsPerPage)
+                : null;
+
+        if (pageBookmark == null)
+        {
+            return resources.createEventLink(EventConstants.ACTION, pageIndex);
+        }
+
+        ClientDataSink sink = clientDataEncoder.createSink();
+
+        try
+        {
+            ObjectOutputStream stream = sink.getObjectOutputStream();
+
+            stream.writeObject(pageBookmark);
+
+            stream.close();
+        } catch (IOException ex)
+        {
+            throw new RuntimeException(String.format("Unable to encode bookmark for page %d: %s", pageIndex, ex), ex);
+        }
+
+        return resources.createEventLink(EventConstants.ACTION, pageIndex, sink.getClientData());
+    }
+
+    private void writeEllipsis(MarkupWriter writer)
+    {
+        writer.element("li", "class", "disabled");
+        writer.element("a", "href", "#");
+        writer.write(" ... ");
+        writer.end();
+        writer.end();
+    }
+
+    private boolean isRowCountKnown()
+    {
+        return !(source instanceof UncountedGridDataSource) || ((UncountedGridDataSource) source).isRowCountKnown();
+    }
+
     /**
      * Repaging event handler.
      */
-    boolean onAction(int newPage)
+    boolean onAction(EventContext context)
     {
         // TODO: Validate newPage in range
 
-        currentPage = newPage;
+        currentPage = context.get(Integer.class, 0);
+
+        if (context.getCount() > 1)
+        {
+            bookmark = decodeBookmark(context.get(String.class, 1));
+        }
 
         if (request.isXHR())
         {
@@ -187,4 +260,26 @@ public class GridPager
 
         return true;     // abort event
     }
+
+    /**
+     * Returns the decoded bookmark, or null if it has been tampered with (in which case, the page is found without it).
+     */
+    private Serializable decodeBookmark(String clientData)
+    {
+        try
+        {
+            ObjectInputStream stream = clientDataEncoder.decodeClientData(clientData);
+
+            try
+            {
+                return (Serializable) stream.readObject();
+            } finally
+            {
+                stream.close();
+            }
+        } catch (Exception ex)
+        {
+            return null;
+        }
+    }
 }
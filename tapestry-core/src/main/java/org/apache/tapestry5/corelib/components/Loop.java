@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2009, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2009, 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,6 +14,7 @@
 
 package org.apache.tapestry5.corelib.components;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
@@ -23,6 +24,7 @@ import org.apache.tapestry5.ComponentAction;
 import org.apache.tapestry5.ComponentResources;
 import org.apache.tapestry5.EventConstants;
 import org.apache.tapestry5.MarkupWriter;
+import org.apache.tapestry5.PrefetchingValueEncoder;
 import org.apache.tapestry5.ValueEncoder;
 import org.apache.tapestry5.annotations.AfterRender;
 import org.apache.tapestry5.annotations.BeginRender;
@@ -55,7 +57,9 @@ import org.apache.tapestry5.services.Heartbeat;
  * When the Loop is used inside a Form, it will generate an
  * {@link org.apache.tapestry5.EventConstants#SYNCHRONIZE_VALUES} event to inform its container what values were
  * submitted and in what order; this can allow the container to pre-load the values in a single batch form external
- * storage, if that is appropriate.
+ * storage, if that is appropriate. When the encoder is a {@link PrefetchingValueEncoder} (and the source is a
+ * {@link Collection}), all the values are passed to the encoder before they are individually restored, so that they
+ * may be loaded in a single batch automatically.
  * 
  * @tapestrydoc
  */
@@ -192,6 +196,57 @@ public class Loop<T>
         }
     }
 
+    /**
+     * Restores the value using the client value, at the current index, from those stored by
+     * {@link PrefetchClientValues} (so that each client value is only stored once).
+     *
+     * @since 5.4
+     */
+    private static final ComponentAction<Loop> RESTORE_PREFETCHED_VALUE = new ComponentAction<Loop>()
+    {
+        private static final long serialVersionUID = -2103512346325346612L;
+
+        public void execute(Loop component)
+        {
+            component.restorePrefetchedValue();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Loop.RestorePrefetchedValue";
+        }
+    };
+
+    /**
+     * Passes all the stored client values to a {@link PrefetchingValueEncoder}, before any of them are restored. The
+     * values are then restored, in order, by {@link #RESTORE_PREFETCHED_VALUE}.
+     *
+     * @since 5.4
+     */
+    static class PrefetchClientValues implements ComponentAction<Loop>
+    {
+        private static final long serialVersionUID = 3514245470328374386L;
+
+        private final List<String> clientValues;
+
+        public PrefetchClientValues(final List<String> clientValues)
+        {
+            this.clientValues = clientValues;
+        }
+
+        public void execute(Loop component)
+        {
+            component.prefetchClientValues(clientValues);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("Loop.PrefetchClientValues%s", clientValues);
+        }
+    }
+
     /**
      * Start of processing event that allows the Loop to set up internal bookeeping, to track which values have come up
      * in the form submission.
@@ -301,6 +356,12 @@ public class Loop<T>
      */
     private List<T> synchonizedValues;
 
+    /**
+     * When rendering, the client values of all the source values, if stored for a {@link PrefetchingValueEncoder}.
+     * When the form is submitted, the stored client values.
+     */
+    private List<String> clientValues;
+
     LoopFormState defaultFormState()
     {
         return LoopFormState.VALUES;
@@ -337,8 +398,16 @@ public class Loop<T>
 
         boolean hasContent = iterator != null && iterator.hasNext();
 
+        clientValues = null;
+
         if (insideForm && hasContent)
         {
+            if (storeValuesInForm && encoder instanceof PrefetchingValueEncoder && source instanceof Collection)
+            {
+                clientValues = toClientValues();
+
+                formSupport.store(this, new PrefetchClientValues(clientValues));
+            }
             if (storeValuesInForm)
                 formSupport.store(this, RESET_INDEX);
             if (storeIncrementsInForm)
@@ -352,6 +421,18 @@ public class Loop<T>
         return hasContent;
     }
 
+    private List<String> toClientValues()
+    {
+        List<String> result = CollectionFactory.newList();
+
+        for (T value : source)
+        {
+            result.add(encoder.toClient(value));
+        }
+
+        return result;
+    }
+
     /**
      * Returns the empty block, or null, after the render has finished. It will only be the empty block (which itself
      * may be null) if the source was null or empty.
@@ -391,6 +472,10 @@ public class Loop<T>
             {
                 formSupport.store(this, new RestoreState(value));
             }
+            else if (clientValues != null)
+            {
+                formSupport.store(this, RESTORE_PREFETCHED_VALUE);
+            }
             else
             {
                 String clientValue = encoder.toClient(value);
@@ -474,6 +559,23 @@ public class Loop<T>
         synchonizedValues.add(restoredValue);
     }
 
+    private void restorePrefetchedValue()
+    {
+        restoreStateFromStoredClientValue(clientValues.get(index));
+    }
+
+    private void prefetchClientValues(List<String> clientValues)
+    {
+        this.clientValues = clientValues;
+
+        // The encoder may be different than when rendered.
+
+        if (encoder instanceof PrefetchingValueEncoder)
+        {
+            ((PrefetchingValueEncoder<T>) encoder).prefetch(clientValues);
+        }
+    }
+
     private void prepareForSubmission()
     {
         synchonizedValues = CollectionFactory.newList();
@@ -507,4 +609,14 @@ public class Loop<T>
     {
         this.heartbeat = heartbeat;
     }
+
+    void setFormSupport(FormSupport formSupport)
+    {
+        this.formSupport = formSupport;
+    }
+
+    void setEncoder(ValueEncoder<T> encoder)
+    {
+        this.encoder = encoder;
+    }
 }
@@ -1,4 +1,4 @@
-// Copyright 2011-2013 The Apache Software Foundation
+// Copyright 2011-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -21,10 +21,13 @@ import org.apache.tapestry5.func.F;
 import org.apache.tapestry5.func.Flow;
 import org.apache.tapestry5.func.Worker;
 import org.apache.tapestry5.internal.util.CaptureResultCallback;
+import org.apache.tapestry5.ioc.Messages;
 import org.apache.tapestry5.ioc.annotations.Inject;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
 import org.apache.tapestry5.json.JSONObject;
 import org.apache.tapestry5.runtime.RenderCommand;
 import org.apache.tapestry5.runtime.RenderQueue;
+import org.apache.tapestry5.services.Request;
 import org.apache.tapestry5.services.javascript.JavaScriptSupport;
 import org.apache.tapestry5.tree.*;
 
@@ -39,7 +42,9 @@ import java.util.List;
  * Tree is <em>not</em> a form control component; all changes made to the tree on the client
  * (expansions, collapsing, and selections) are propogated immediately back to the server.
  * <p/>
- * The Tree component uses special tricks to support recursive rendering of the Tree as necessary.
+ * The Tree component uses special tricks to support recursive rendering of the Tree as necessary. The children of a
+ * node are only rendered once the node is expanded; for very large trees, the batchSize parameter limits how many
+ * children are rendered at once.
  *
  * @tapestrydoc
  * @since 5.3
@@ -77,7 +82,7 @@ public class Tree
      * Used to control the Tree's expansion model. By default, a persistent field inside the Tree
      * component stores a {@link DefaultTreeExpansionModel}. This parameter may be bound when more
      * control over the implementation of the expansion model, or how it is stored, is
-     * required.
+     * required; for instance, a {@link CompactTreeExpansionModel} when a great many nodes may be expanded.
      */
     @Parameter(allowNull = false, value = "defaultTreeExpansionModel")
     private TreeExpansionModel expansionModel;
@@ -108,12 +113,28 @@ public class Tree
     @Parameter(value = "block:defaultRenderTreeNodeLabel")
     private RenderCommand label;
 
+    /**
+     * If positive, the maximum number of nodes rendered at once within a list of nodes (the root nodes, or the
+     * children of an expanded node). The list then ends with an item that, when clicked, renders the next batch of
+     * nodes. The default, zero, renders all the nodes of the list.
+     *
+     * @since 5.4
+     */
+    @Parameter
+    private int batchSize;
+
     @Environmental
     private JavaScriptSupport jss;
 
     @Inject
     private ComponentResources resources;
 
+    @Inject
+    private Request request;
+
+    @Inject
+    private Messages messages;
+
     @Persist
     private TreeExpansionModel defaultTreeExpansionModel;
 
@@ -205,7 +226,7 @@ public class Tree
 
                 if (expanded)
                 {
-                    queue.push(new RenderNodes(node.getChildren()));
+                    queue.push(new RenderNodes(node, node.getChildren(), 0, true));
                 }
 
                 queue.push(RENDER_CLOSE_TAG);
@@ -223,25 +244,58 @@ public class Tree
     }
 
     /**
-     * Renders an &lt;ul&gt; element and renders each node recursively inside the element.
+     * Renders an &lt;ul&gt; element and renders each node recursively inside the element. When rendering in batches,
+     * just a batch of the nodes is rendered, possibly followed by an item used to render the next batch.
      */
     private class RenderNodes implements RenderCommand
     {
+        private final TreeNode parent;
+
         private final Flow<TreeNode> nodes;
 
-        public RenderNodes(List<TreeNode> nodes)
+        private final int nextOffset;
+
+        private final int remaining;
+
+        private final boolean wrap;
+
+        /**
+         * @param parent
+         *         node containing the nodes, or null for the root nodes
+         * @param nodes
+         *         all the nodes within the parent
+         * @param offset
+         *         index of the first node to render
+         * @param wrap
+         *         if true, the nodes are rendered inside a new &lt;ul&gt; element
+         */
+        public RenderNodes(TreeNode parent, List<TreeNode> nodes, int offset, boolean wrap)
         {
             assert !nodes.isEmpty();
 
-            this.nodes = F.flow(nodes).reverse();
+            int end = batchSize > 0 ? Math.min(nodes.size(), offset + batchSize) : nodes.size();
+
+            this.parent = parent;
+            this.nodes = F.flow(nodes.subList(offset, end)).reverse();
+            this.nextOffset = end;
+            this.remaining = nodes.size() - end;
+            this.wrap = wrap;
         }
 
         public void render(MarkupWriter writer, final RenderQueue queue)
         {
-            writer.element("ul");
-            queue.push(RENDER_CLOSE_TAG);
+            if (wrap)
+            {
+                writer.element("ul");
+                queue.push(RENDER_CLOSE_TAG);
+            }
+
+            if (remaining > 0)
+            {
+                queue.push(new RenderMore(parent, nextOffset, remaining));
+            }
 
-            queue.push(toRenderCommand(nodes.first(), true));
+            queue.push(toRenderCommand(nodes.first(), remaining == 0));
 
             nodes.rest().each(new Worker<TreeNode>()
             {
@@ -254,6 +308,41 @@ public class Tree
 
     }
 
+    /**
+     * Renders the item at the end of a batch of nodes, used to render the next batch.
+     */
+    private class RenderMore implements RenderCommand
+    {
+        private final TreeNode parent;
+
+        private final int offset;
+
+        private final int remaining;
+
+        RenderMore(TreeNode parent, int offset, int remaining)
+        {
+            this.parent = parent;
+            this.offset = offset;
+            this.remaining = remaining;
+        }
+
+        public void render(MarkupWriter writer, RenderQueue queue)
+        {
+            writer.element("li", "class", "last tree-more");
+
+            writer.element("span",
+                    "class", "tree-more-label",
+                    "data-tree-more-offset", offset,
+                    "data-tree-more-parent", parent == null ? "" : parent.getId());
+
+            writer.write(messages.format("core-tree-more", remaining));
+
+            writer.end(); // span
+
+            writer.end(); // li
+        }
+    }
+
     public String getContainerClass()
     {
         return className == null ? "tree-container" : "tree-container " + className;
@@ -264,7 +353,7 @@ public class Tree
         return resources.createEventLink("treeAction");
     }
 
-    Object onTreeAction(@RequestParameter("t:nodeid") String nodeId,
+    Object onTreeAction(@RequestParameter(value = "t:nodeid", allowBlank = true) String nodeId,
                         @RequestParameter("t:action") String action)
     {
         if (action.equalsIgnoreCase("expand"))
@@ -272,6 +361,11 @@ public class Tree
             return doExpandChildren(nodeId);
         }
 
+        if (action.equalsIgnoreCase("more"))
+        {
+            return doRenderMore(nodeId, Integer.parseInt(request.getParameter("t:offset")));
+        }
+
         if (action.equalsIgnoreCase("markExpanded"))
         {
             return doMarkExpanded(nodeId);
@@ -301,7 +395,18 @@ public class Tree
 
         expansionModel.markExpanded(container);
 
-        return new RenderNodes(container.getChildren());
+        return new RenderNodes(container, container.getChildren(), 0, true);
+    }
+
+    Object doRenderMore(String nodeId, int offset)
+    {
+        // The root nodes have no parent, and no id.
+
+        TreeNode container = InternalUtils.isBlank(nodeId) ? null : model.getById(nodeId);
+
+        List<TreeNode> nodes = container == null ? model.getRootNodes() : container.getChildren();
+
+        return new RenderNodes(container, nodes, offset, false);
     }
 
     Object doMarkExpanded(String nodeId)
@@ -382,7 +487,7 @@ public class Tree
 
     public Object getRenderRootNodes()
     {
-        return new RenderNodes(model.getRootNodes());
+        return new RenderNodes(null, model.getRootNodes(), 0, true);
     }
 
     /**
@@ -0,0 +1,72 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.corelib.mixins;
+
+import org.apache.tapestry5.BindingConstants;
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.annotations.AfterRender;
+import org.apache.tapestry5.annotations.Parameter;
+import org.apache.tapestry5.internal.services.ajax.PushChannelManager;
+import org.apache.tapestry5.ioc.annotations.Inject;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.services.PathConstructor;
+import org.apache.tapestry5.services.javascript.JavaScriptSupport;
+
+/**
+ * <p>
+ * This mixin connects the page to the push channel, so that the server can update a
+ * {@link org.apache.tapestry5.corelib.components.Zone zone} (using the
+ * {@link org.apache.tapestry5.services.ajax.ZoneUpdatePublisher}) without the client polling for changes, as
+ * with the {@link ZoneRefresh} mixin.
+ * </p>
+ * <p/>
+ * Updates are received using Server-Sent Events, or long polling if the browser does not support them. All zones in
+ * the page share a single connection. The push channel is only available in a Servlet 3.0 container (see
+ * {@link SymbolConstants#PUSH_PATH}).
+ * <p/>
+ * <b>Note: </b> This mixin is only meant for a @{link org.apache.tapestry5.corelib.components.Zone zone}
+ *
+ * @tapestrydoc
+ * @since 5.4
+ */
+public class ZonePush
+{
+    /**
+     * Comma-separated list of topics to subscribe to. Updates published to the current session are always
+     * received. The subscription is signed when the page is rendered, so a client can not subscribe to other topics.
+     */
+    @Parameter(defaultPrefix = BindingConstants.LITERAL)
+    private String topics;
+
+    @Inject
+    private JavaScriptSupport javaScriptSupport;
+
+    @Inject
+    private PathConstructor pathConstructor;
+
+    @Inject
+    private PushChannelManager pushChannelManager;
+
+    @Inject
+    @Symbol(SymbolConstants.PUSH_PATH)
+    private String pushPath;
+
+    @AfterRender
+    void addJavaScript()
+    {
+        javaScriptSupport.require("t5/core/zone-push").with(pathConstructor.constructClientPath(pushPath),
+                pushChannelManager.createSubscription(topics));
+    }
+}
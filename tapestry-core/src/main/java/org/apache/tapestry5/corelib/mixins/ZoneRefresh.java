@@ -1,4 +1,4 @@
-// Copyright 2011, 2012 The Apache Software Foundation
+// Copyright 2011, 2012, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -18,12 +18,15 @@ import org.apache.tapestry5.BindingConstants;
 import org.apache.tapestry5.ComponentResources;
 import org.apache.tapestry5.EventConstants;
 import org.apache.tapestry5.Link;
+import org.apache.tapestry5.SymbolConstants;
 import org.apache.tapestry5.annotations.AfterRender;
 import org.apache.tapestry5.annotations.InjectContainer;
 import org.apache.tapestry5.annotations.Parameter;
 import org.apache.tapestry5.corelib.components.Zone;
 import org.apache.tapestry5.internal.util.CaptureResultCallback;
 import org.apache.tapestry5.ioc.annotations.Inject;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.services.PathConstructor;
 import org.apache.tapestry5.services.javascript.JavaScriptSupport;
 
 /**
@@ -33,6 +36,9 @@ import org.apache.tapestry5.services.javascript.JavaScriptSupport;
  * </p>
  * <p/>
  * <b>Note: </b> This mixin is only meant for a @{link org.apache.tapestry5.corelib.components.Zone zone}
+ * <p/>
+ * Refreshes of several zones that fall due at the same time are combined into a single request
+ * (see {@link SymbolConstants#BATCH_EVENT_PATH}).
  *
  * @tapestrydoc
  */
@@ -60,6 +66,13 @@ public class ZoneRefresh
     @Inject
     private ComponentResources resources;
 
+    @Inject
+    private PathConstructor pathConstructor;
+
+    @Inject
+    @Symbol(SymbolConstants.BATCH_EVENT_PATH)
+    private String batchEventPath;
+
     //For testing purpose
     ZoneRefresh(Object[] context, ComponentResources resources, JavaScriptSupport javaScriptSupport, Zone zone)
     {
@@ -74,7 +87,9 @@ public class ZoneRefresh
     {
         Link link = resources.createEventLink("zoneRefresh", context);
 
-        javaScriptSupport.require("t5/core/zone-refresh").with(zone.getClientId(), period, link.toString());
+        String batchURL = pathConstructor.constructClientPath(batchEventPath);
+
+        javaScriptSupport.require("t5/core/zone-refresh").with(zone.getClientId(), period, link.toString(), batchURL);
     }
 
     Object onZoneRefresh()
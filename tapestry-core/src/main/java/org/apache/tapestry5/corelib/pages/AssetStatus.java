@@ -0,0 +1,62 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.corelib.pages;
+
+import org.apache.tapestry5.annotations.*;
+import org.apache.tapestry5.corelib.components.Zone;
+import org.apache.tapestry5.ioc.annotations.Inject;
+import org.apache.tapestry5.services.assets.AssetMetrics;
+import org.apache.tapestry5.services.assets.AssetStatistics;
+
+import java.util.List;
+
+/**
+ * Displays the {@link AssetMetrics} collected for each asset and JavaScript stack served by the application, with an
+ * option to reset them.
+ *
+ * @since 5.4
+ */
+@UnknownActivationContextCheck(false)
+@WhitelistAccessOnly
+public class AssetStatus
+{
+    @Inject
+    private AssetMetrics metrics;
+
+    @Property
+    private AssetStatistics row;
+
+    @InjectComponent
+    private Zone assetsZone;
+
+    @Cached
+    public List<AssetStatistics> getStatistics()
+    {
+        return metrics.getStatistics();
+    }
+
+    @Cached
+    public AssetStatistics getTotals()
+    {
+        return metrics.getTotals();
+    }
+
+    Object onActionFromReset()
+    {
+        metrics.reset();
+
+        return assetsZone.getBody();
+    }
+}
@@ -0,0 +1,448 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.grid;
+
+import org.apache.tapestry5.PropertyConduit;
+import org.apache.tapestry5.ioc.Invokable;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.services.ParallelExecutor;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link GridDataSource} for large, in-memory collections, that sorts once per distinct list of sort constraints
+ * rather than on every request. The collection is copied when the data source is created; the value of each sorted
+ * property is extracted from every row just once, and sorting then rearranges an array of row indexes, rather than the
+ * rows themselves. The most recently used sort orders are retained.
+ * <p/>
+ * When only the first few pages of an order are needed, just those rows are selected (rather than sorting the entire
+ * collection); the full sort happens when a later page is requested. Given a {@link ParallelExecutor}, very large
+ * collections are sorted in parallel.
+ * <p/>
+ * The first sort constraint is the primary sort; ties are broken by later constraints, and then by the original order
+ * of the collection. Null values sort before non-null values.
+ * <p/>
+ * This class is <em>not</em> thread-safe. To benefit from the retained sort orders, an instance is stored between
+ * requests (for example, in a persistent field).
+ *
+ * @since 5.4
+ */
+@SuppressWarnings("unchecked")
+public class IndexedCollectionGridDataSource implements GridDataSource
+{
+    /**
+     * Collections of at least this size are sorted in parallel (when a {@link ParallelExecutor} is provided).
+     */
+    public static final int PARALLEL_SORT_THRESHOLD = 100000;
+
+    private static final int MAX_RETAINED_ORDERS = 8;
+
+    /**
+     * Only rows up to this fraction of the collection are selected, rather than sorting the entire collection.
+     */
+    private static final int PARTIAL_SORT_RATIO = 8;
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private final Object[] rows;
+
+    private final ParallelExecutor parallelExecutor;
+
+    private final Map<String, Comparable[]> columns = CollectionFactory.newMap();
+
+    /**
+     * Row indexes in sorted order, keyed on the sort constraints. When the rows were selected rather than sorted, just
+     * the first rows of the order.
+     */
+    private final Map<String, int[]> orderings = new LinkedHashMap<String, int[]>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest)
+        {
+            return size() > MAX_RETAINED_ORDERS;
+        }
+    };
+
+    /**
+     * Indexes of the rows in the current order, or null for the original order.
+     */
+    private int[] current;
+
+    /**
+     * Compares rows by index, using the extracted property values.
+     */
+    private static class IndexComparator
+    {
+        private final Comparable[][] columns;
+
+        private final int[] modifiers;
+
+        IndexComparator(Comparable[][] columns, int[] modifiers)
+        {
+            this.columns = columns;
+            this.modifiers = modifiers;
+        }
+
+        int compare(int left, int right)
+        {
+            for (int i = 0; i < columns.length; i++)
+            {
+                Comparable value1 = columns[i][left];
+                Comparable value2 = columns[i][right];
+
+                if (value1 == value2)
+                    continue;
+
+                if (value1 == null)
+                    return -modifiers[i];
+
+                if (value2 == null)
+                    return modifiers[i];
+
+                int result = value1.compareTo(value2);
+
+                if (result != 0)
+                    return modifiers[i] * result;
+            }
+
+            // Keep the original order of otherwise equal rows.
+
+            return left - right;
+        }
+    }
+
+    public IndexedCollectionGridDataSource(Collection collection)
+    {
+        this(collection, null);
+    }
+
+    /**
+     * @param collection
+     *         the rows, which are copied
+     * @param parallelExecutor
+     *         used to sort large collections in parallel, or null to always sort in the current thread
+     */
+    public IndexedCollectionGridDataSource(Collection collection, ParallelExecutor parallelExecutor)
+    {
+        assert collection != null;
+
+        rows = collection.toArray();
+        this.parallelExecutor = parallelExecutor;
+    }
+
+    public int getAvailableRows()
+    {
+        return rows.length;
+    }
+
+    public void prepare(int startIndex, int endIndex, List<SortConstraint> sortConstraints)
+    {
+        List<SortConstraint> active = CollectionFactory.newList();
+        StringBuilder description = new StringBuilder();
+
+        for (SortConstraint constraint : sortConstraints)
+        {
+            if (constraint.getColumnSort() == ColumnSort.UNSORTED)
+                continue;
+
+            active.add(constraint);
+            description.append(constraint.getPropertyModel().getPropertyName())
+                    .append(' ').append(constraint.getColumnSort()).append(',');
+        }
+
+        if (active.isEmpty())
+        {
+            current = null;
+            return;
+        }
+
+        int needed = Math.min(endIndex + 1, rows.length);
+
+        int[] ordering = orderings.get(description.toString());
+
+        if (ordering == null || ordering.length < needed)
+        {
+            IndexComparator comparator = createComparator(active);
+
+            ordering = needed <= rows.length / PARTIAL_SORT_RATIO
+                    ? select(needed, comparator)
+                    : sortAll(comparator);
+
+            orderings.put(description.toString(), ordering);
+        }
+
+        current = ordering;
+    }
+
+    private IndexComparator createComparator(List<SortConstraint> constraints)
+    {
+        Comparable[][] sortColumns = new Comparable[constraints.size()][];
+        int[] modifiers = new int[constraints.size()];
+
+        for (int i = 0; i < constraints.size(); i++)
+        {
+            SortConstraint constraint = constraints.get(i);
+
+            sortColumns[i] = getColumn(constraint.getPropertyModel().getPropertyName(),
+                    constraint.getPropertyModel().getConduit());
+            modifiers[i] = constraint.getColumnSort() == ColumnSort.ASCENDING ? 1 : -1;
+        }
+
+        return new IndexComparator(sortColumns, modifiers);
+    }
+
+    private Comparable[] getColumn(String propertyName, PropertyConduit conduit)
+    {
+        Comparable[] column = columns.get(propertyName);
+
+        if (column == null)
+        {
+            column = new Comparable[rows.length];
+
+            for (int i = 0; i < rows.length; i++)
+            {
+                column[i] = (Comparable) conduit.get(rows[i]);
+            }
+
+            columns.put(propertyName, column);
+        }
+
+        return column;
+    }
+
+    /**
+     * Selects the first count rows in order, using a heap whose root is the greatest row selected so far.
+     */
+    private int[] select(int count, IndexComparator comparator)
+    {
+        int[] heap = new int[count];
+
+        for (int i = 0; i < rows.length; i++)
+        {
+            if (i < count)
+            {
+                heap[i] = i;
+                siftUp(heap, i, comparator);
+                continue;
+            }
+
+            if (comparator.compare(i, heap[0]) < 0)
+            {
+                heap[0] = i;
+                siftDown(heap, 0, count, comparator);
+            }
+        }
+
+        // Repeatedly move the greatest remaining row to the end.
+
+        for (int size = count - 1; size > 0; size--)
+        {
+            int greatest = heap[0];
+            heap[0] = heap[size];
+            heap[size] = greatest;
+
+            siftDown(heap, 0, size, comparator);
+        }
+
+        return heap;
+    }
+
+    private static void siftUp(int[] heap, int index, IndexComparator comparator)
+    {
+        while (index > 0)
+        {
+            int parent = (index - 1) / 2;
+
+            if (comparator.compare(heap[index], heap[parent]) <= 0)
+                return;
+
+            swap(heap, index, parent);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int index, int size, IndexComparator comparator)
+    {
+        while (true)
+        {
+            int child = 2 * index + 1;
+
+            if (child >= size)
+                return;
+
+            if (child + 1 < size && comparator.compare(heap[child + 1], heap[child]) > 0)
+                child++;
+
+            if (comparator.compare(heap[index], heap[child]) >= 0)
+                return;
+
+            swap(heap, index, child);
+            index = child;
+        }
+    }
+
+    private static void swap(int[] array, int i, int j)
+    {
+        int temp = array[i];
+        array[i] = array[j];
+        array[j] = temp;
+    }
+
+    private int[] sortAll(final IndexComparator comparator)
+    {
+        final int[] indexes = new int[rows.length];
+        final int[] buffer = new int[rows.length];
+
+        for (int i = 0; i < indexes.length; i++)
+        {
+            indexes[i] = i;
+        }
+
+        int chunks = Runtime.getRuntime().availableProcessors();
+
+        if (parallelExecutor == null || rows.length < PARALLEL_SORT_THRESHOLD || chunks < 2)
+        {
+            mergeSort(indexes, buffer, 0, indexes.length, comparator);
+
+            return indexes;
+        }
+
+        // Sort a chunk per processor in parallel (each using its own region of the buffer), then merge.
+
+        int chunkSize = (indexes.length + chunks - 1) / chunks;
+
+        List<Future<Void>> futures = CollectionFactory.newList();
+
+        for (int start = 0; start < indexes.length; start += chunkSize)
+        {
+            final int from = start;
+            final int to = Math.min(start + chunkSize, indexes.length);
+
+            futures.add(parallelExecutor.invoke(new Invokable<Void>()
+            {
+                public Void invoke()
+                {
+                    mergeSort(indexes, buffer, from, to, comparator);
+
+                    return null;
+                }
+            }));
+        }
+
+        for (Future<Void> future : futures)
+        {
+            try
+            {
+                future.get();
+            } catch (InterruptedException ex)
+            {
+                throw new RuntimeException(ex);
+            } catch (ExecutionException ex)
+            {
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+
+        for (int width = chunkSize; width < indexes.length; width *= 2)
+        {
+            for (int from = 0; from + width < indexes.length; from += 2 * width)
+            {
+                merge(indexes, buffer, from, from + width, Math.min(from + 2 * width, indexes.length), comparator);
+            }
+        }
+
+        return indexes;
+    }
+
+    private static void mergeSort(int[] indexes, int[] buffer, int from, int to, IndexComparator comparator)
+    {
+        if (to - from <= INSERTION_SORT_THRESHOLD)
+        {
+            for (int i = from + 1; i < to; i++)
+            {
+                int value = indexes[i];
+                int j = i - 1;
+
+                while (j >= from && comparator.compare(indexes[j], value) > 0)
+                {
+                    indexes[j + 1] = indexes[j];
+                    j--;
+                }
+
+                indexes[j + 1] = value;
+            }
+
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+
+        mergeSort(indexes, buffer, from, middle, comparator);
+        mergeSort(indexes, buffer, middle, to, comparator);
+
+        merge(indexes, buffer, from, middle, to, comparator);
+    }
+
+    private static void merge(int[] indexes, int[] buffer, int from, int middle, int to, IndexComparator comparator)
+    {
+        // Already in order?
+
+        if (comparator.compare(indexes[middle - 1], indexes[middle]) <= 0)
+            return;
+
+        System.arraycopy(indexes, from, buffer, from, to - from);
+
+        int left = from;
+        int right = middle;
+
+        for (int i = from; i < to; i++)
+        {
+            if (right >= to || (left < middle && comparator.compare(buffer[left], buffer[right]) <= 0))
+            {
+                indexes[i] = buffer[left++];
+            } else
+            {
+                indexes[i] = buffer[right++];
+            }
+        }
+    }
+
+    /**
+     * Returns the type of the first row, or null if there are no rows.
+     */
+    public Class getRowType()
+    {
+        return rows.length == 0 ? null : rows[0].getClass();
+    }
+
+    /**
+     * Returns the row at the index (in the current sort order), or null if the index is out of range.
+     */
+    public Object getRowValue(int index)
+    {
+        if (index < 0 || index >= rows.length)
+            return null;
+
+        if (current == null)
+            return rows[index];
+
+        return index < current.length ? rows[current[index]] : null;
+    }
+}
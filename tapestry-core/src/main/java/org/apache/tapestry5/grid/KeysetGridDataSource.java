@@ -0,0 +1,47 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.grid;
+
+import java.io.Serializable;
+
+/**
+ * An optional extension of {@link GridDataSource} for data sources that page by seeking past the key of the last row
+ * of the prior page (keyset pagination), rather than skipping over all the prior rows.
+ * <p/>
+ * Data sources are usually created fresh for each request, so the keys can't simply be kept by the data source. Instead,
+ * the {@link org.apache.tapestry5.corelib.components.GridPager} asks for the bookmark of each page it links to, and
+ * includes it (encoded) in the link; when the link is followed, the {@link org.apache.tapestry5.corelib.components.Grid}
+ * provides the bookmark to the data source before {@linkplain #prepare(int, int, java.util.List) preparing} the page.
+ * <p/>
+ * A bookmark is only valid for the sort order and query it was obtained with; the data source must ignore bookmarks
+ * for any other.
+ *
+ * @since 5.4
+ */
+public interface KeysetGridDataSource extends GridDataSource
+{
+    /**
+     * Returns the bookmark for the row at the index (that is, what is needed to seek directly to that row), or null
+     * if not known. Invoked after {@link #prepare(int, int, java.util.List)}; a bookmark is normally known for the
+     * row just after the prepared rows, which starts the next page.
+     */
+    Serializable getBookmark(int index);
+
+    /**
+     * Provides a bookmark, previously obtained from {@link #getBookmark(int)} (usually in an earlier request, from a
+     * different instance), for use by the next {@link #prepare(int, int, java.util.List)}.
+     */
+    void addBookmark(int index, Serializable bookmark);
+}
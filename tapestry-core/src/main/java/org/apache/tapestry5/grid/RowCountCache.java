@@ -0,0 +1,135 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.grid;
+
+import org.apache.tapestry5.ioc.Invokable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of row counts, so that a {@link GridDataSource} backed by a database does not have to count the
+ * matching rows on every request. Each count is keyed on whatever identifies the query (typically, the entity type and
+ * the restrictions applied to it) and expires after a fixed time to live; when the cache is full, the least recently
+ * used count is discarded.
+ * <p/>
+ * Counts may be stale by up to the time to live, so the Grid may occasionally show a page that is short, or miss a few
+ * rows from the last page. A single instance is meant to be shared (typically, stored in a service or a static field),
+ * and is thread safe.
+ *
+ * @since 5.4
+ */
+public class RowCountCache
+{
+    private static class CachedCount
+    {
+        final int count;
+
+        final long expiration;
+
+        CachedCount(int count, long expiration)
+        {
+            this.count = count;
+            this.expiration = expiration;
+        }
+    }
+
+    private final long timeToLive;
+
+    private final Map<Object, CachedCount> entries;
+
+    /**
+     * @param maxEntries
+     *         maximum number of counts to store
+     * @param timeToLive
+     *         time, in milliseconds, after which a count is discarded
+     */
+    public RowCountCache(final int maxEntries, long timeToLive)
+    {
+        assert maxEntries > 0;
+        assert timeToLive >= 0;
+
+        this.timeToLive = timeToLive;
+
+        entries = new LinkedHashMap<Object, CachedCount>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, CachedCount> eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached count for the key, or invokes the counter (and caches the result) if there is no cached count,
+     * or it has expired. The counter is invoked outside of any lock, so two threads may occasionally count the same
+     * rows.
+     *
+     * @param key
+     *         identifies the query whose rows are counted; must implement equals() and hashCode()
+     * @param counter
+     *         performs the actual count
+     * @return the row count
+     */
+    public int getRowCount(Object key, Invokable<Integer> counter)
+    {
+        assert key != null;
+        assert counter != null;
+
+        long now = System.currentTimeMillis();
+
+        synchronized (entries)
+        {
+            CachedCount entry = entries.get(key);
+
+            if (entry != null && entry.expiration > now)
+            {
+                return entry.count;
+            }
+        }
+
+        int count = counter.invoke();
+
+        synchronized (entries)
+        {
+            entries.put(key, new CachedCount(count, now + timeToLive));
+        }
+
+        return count;
+    }
+
+    /**
+     * Discards the count for the key, typically after rows have been added or removed.
+     */
+    public void invalidate(Object key)
+    {
+        synchronized (entries)
+        {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Discards all counts.
+     */
+    public void clear()
+    {
+        synchronized (entries)
+        {
+            entries.clear();
+        }
+    }
+}
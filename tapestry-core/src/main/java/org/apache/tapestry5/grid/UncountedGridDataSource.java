@@ -0,0 +1,35 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.grid;
+
+/**
+ * An optional extension of {@link GridDataSource} for data sets where counting the rows is expensive (for example, a
+ * large database table). When the row count is not known, the {@link org.apache.tapestry5.corelib.components.Grid}
+ * never asks for it: instead it prepares one row beyond the current page, and the
+ * {@link org.apache.tapestry5.corelib.components.GridPager} only offers the pages up to the next one.
+ * <p/>
+ * When the row count is not known, {@link #getRowValue(int)} must return null for any index beyond the end of the
+ * data, and {@link #getAvailableRows()} returns only the number of rows known to exist (a lower bound).
+ *
+ * @since 5.4
+ */
+public interface UncountedGridDataSource extends GridDataSource
+{
+    /**
+     * Returns true if {@link #getAvailableRows()} returns the actual number of rows, or false if the rows are not
+     * counted.
+     */
+    boolean isRowCountKnown();
+}
@@ -1,4 +1,4 @@
-// Copyright 2006-2013 The Apache Software Foundation
+// Copyright 2006-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -180,4 +180,14 @@ public final class InternalConstants
      * @since 5.4
      */
     public static final String ACTIVE_PAGE_LOADED = "tapestry.active-page-loaded";
+
+    /**
+     * Request attribute, set to true while the component events of a batch request are being triggered. The
+     * {@link org.apache.tapestry5.internal.services.AjaxComponentEventRequestHandler} collects the zone updates
+     * for each event, rather than sending a response for each.
+     *
+     * @see org.apache.tapestry5.internal.services.ajax.BatchEventDispatcher
+     * @since 5.4
+     */
+    public static final String BATCHED_EVENT = "tapestry.batched-event";
 }
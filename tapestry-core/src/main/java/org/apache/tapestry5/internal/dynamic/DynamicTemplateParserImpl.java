@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,10 +14,13 @@
 
 package org.apache.tapestry5.internal.dynamic;
 
+import org.apache.tapestry5.SymbolConstants;
 import org.apache.tapestry5.internal.services.PageSource;
 import org.apache.tapestry5.internal.services.TemplateParser;
 import org.apache.tapestry5.ioc.Resource;
 import org.apache.tapestry5.ioc.annotations.PostInjection;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.services.FileWatcherSource;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.ioc.internal.util.URLChangeTracker;
 import org.apache.tapestry5.ioc.services.ClasspathURLConverter;
@@ -41,13 +44,16 @@ public class DynamicTemplateParserImpl implements DynamicTemplateParser, UpdateL
 
     private final TemplateParser componentTemplateParser;
 
-    public DynamicTemplateParserImpl(ClasspathURLConverter converter, BindingSource bindingSource, PageSource pageSource, TemplateParser componentTemplateParser)
+    public DynamicTemplateParserImpl(ClasspathURLConverter converter, BindingSource bindingSource, PageSource pageSource, TemplateParser componentTemplateParser,
+                                     @Symbol(SymbolConstants.FILE_WATCHING_ENABLED)
+                                     boolean fileWatchingEnabled, FileWatcherSource fileWatcherSource)
     {
         this.bindingSource = bindingSource;
         this.pageSource = pageSource;
         this.componentTemplateParser = componentTemplateParser;
 
-        tracker = new URLChangeTracker(converter);
+        tracker = new URLChangeTracker(converter, false, true,
+                fileWatchingEnabled ? fileWatcherSource.getFileWatcher() : null);
     }
 
     @PostInjection
@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2011, 2012 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2011, 2012, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -17,34 +17,56 @@ package org.apache.tapestry5.internal.event;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.services.InvalidationEventHub;
 import org.apache.tapestry5.services.InvalidationListener;
+import org.apache.tapestry5.services.ResourceInvalidationCallback;
+import org.apache.tapestry5.services.ResourceInvalidationEventHub;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Base implementation class for classes (especially services) that need to manage a list of
  * {@link org.apache.tapestry5.services.InvalidationListener}s.
  */
-public class InvalidationEventHubImpl implements InvalidationEventHub
+public class InvalidationEventHubImpl implements ResourceInvalidationEventHub
 {
     private final List<Runnable> callbacks;
 
+    private final List<ResourceInvalidationCallback> resourceCallbacks;
+
     protected InvalidationEventHubImpl(boolean productionMode)
     {
         if (productionMode)
         {
             callbacks = null;
+            resourceCallbacks = null;
         } else
         {
             callbacks = CollectionFactory.newThreadSafeList();
+            resourceCallbacks = CollectionFactory.newThreadSafeList();
         }
     }
 
     /**
-     * Notifies all listeners/callbacks.
+     * Notifies all listeners/callbacks that everything has been invalidated.
      */
     protected final void fireInvalidationEvent()
     {
+        fireInvalidationEvent(Collections.<String>emptySet());
+    }
+
+    /**
+     * Notifies all listeners/callbacks that the identified resources have been invalidated.
+     *
+     * @param resources
+     *         identifies the invalidated resources, or is empty if everything has been invalidated
+     * @since 5.4
+     */
+    protected final void fireInvalidationEvent(Set<String> resources)
+    {
+        assert resources != null;
+
         if (callbacks == null)
         {
             return;
@@ -54,6 +76,11 @@ public class InvalidationEventHubImpl implements InvalidationEventHub
         {
             callback.run();
         }
+
+        for (ResourceInvalidationCallback callback : resourceCallbacks)
+        {
+            callback.resourcesInvalidated(resources);
+        }
     }
 
     public final void addInvalidationCallback(Runnable callback)
@@ -68,6 +95,42 @@ public class InvalidationEventHubImpl implements InvalidationEventHub
         }
     }
 
+    public final void addResourceInvalidationCallback(ResourceInvalidationCallback callback)
+    {
+        assert callback != null;
+
+        if (resourceCallbacks != null)
+        {
+            resourceCallbacks.add(callback);
+        }
+    }
+
+    /**
+     * Adds the callback to the hub, if it is a {@link ResourceInvalidationEventHub}. Otherwise, the callback is
+     * informed that everything has been invalidated whenever the hub fires.
+     *
+     * @since 5.4
+     */
+    public static void addResourceInvalidationCallback(InvalidationEventHub hub, final ResourceInvalidationCallback callback)
+    {
+        assert hub != null;
+        assert callback != null;
+
+        if (hub instanceof ResourceInvalidationEventHub)
+        {
+            ((ResourceInvalidationEventHub) hub).addResourceInvalidationCallback(callback);
+            return;
+        }
+
+        hub.addInvalidationCallback(new Runnable()
+        {
+            public void run()
+            {
+                callback.resourcesInvalidated(Collections.<String>emptySet());
+            }
+        });
+    }
+
     public final void clearOnInvalidation(final Map<?, ?> map)
     {
         assert map != null;
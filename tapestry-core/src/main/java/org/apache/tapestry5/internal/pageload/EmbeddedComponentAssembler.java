@@ -1,4 +1,4 @@
-// Copyright 2009, 2011 The Apache Software Foundation
+// Copyright 2009, 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@ package org.apache.tapestry5.internal.pageload;
 import org.apache.tapestry5.internal.structure.ComponentPageElement;
 import org.apache.tapestry5.ioc.Locatable;
 
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -74,4 +75,11 @@ interface EmbeddedComponentAssembler extends Locatable
      * @since 5.3
      */
     Set<String> getFormalParameterNames();
+
+    /**
+     * Returns the class names of all the mixins (implementation and instance) of the embedded component.
+     *
+     * @since 5.4
+     */
+    List<String> getMixinClassNames();
 }
@@ -1,4 +1,4 @@
-// Copyright 2009, 2011 The Apache Software Foundation
+// Copyright 2009, 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -29,6 +29,7 @@ import org.apache.tapestry5.services.ComponentClassResolver;
 import org.apache.tapestry5.services.pageload.ComponentResourceSelector;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -160,6 +161,18 @@ public class EmbeddedComponentAssemblerImpl implements EmbeddedComponentAssemble
         }
     }
 
+    public List<String> getMixinClassNames()
+    {
+        List<String> result = CollectionFactory.newList();
+
+        for (Instantiator instantiator : mixinIdToInstantiator.values())
+        {
+            result.add(instantiator.getModel().getComponentClassName());
+        }
+
+        return result;
+    }
+
     private void addMixin(String className, String... order)
     {
         Instantiator mixinInstantiator = instantiatorSource.getInstantiator(className);
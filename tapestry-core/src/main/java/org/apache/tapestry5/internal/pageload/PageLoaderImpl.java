@@ -1,4 +1,4 @@
-// Copyright 2009, 2010, 2011, 2012 The Apache Software Foundation
+// Copyright 2009, 2010, 2011, 2012, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import org.apache.tapestry5.MarkupWriter;
 import org.apache.tapestry5.internal.InternalComponentResources;
 import org.apache.tapestry5.internal.InternalConstants;
 import org.apache.tapestry5.internal.bindings.LiteralBinding;
+import org.apache.tapestry5.internal.event.InvalidationEventHubImpl;
 import org.apache.tapestry5.internal.parser.*;
 import org.apache.tapestry5.internal.services.*;
 import org.apache.tapestry5.internal.structure.*;
@@ -41,12 +42,14 @@ import org.apache.tapestry5.model.EmbeddedComponentModel;
 import org.apache.tapestry5.runtime.RenderCommand;
 import org.apache.tapestry5.runtime.RenderQueue;
 import org.apache.tapestry5.services.*;
+import org.apache.tapestry5.services.messages.ComponentMessagesSource;
 import org.apache.tapestry5.services.pageload.ComponentResourceSelector;
 import org.slf4j.Logger;
 
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * There's still a lot of room to beef up {@link org.apache.tapestry5.internal.pageload.ComponentAssembler} and
@@ -150,11 +153,14 @@ public class PageLoaderImpl implements PageLoader, ComponentAssemblerSource
 
     private final MetaDataLocator metaDataLocator;
 
+    private final ComponentDependencyRegistry dependencyRegistry;
+
     public PageLoaderImpl(ComponentInstantiatorSource instantiatorSource, ComponentTemplateSource templateSource,
                           PageElementFactory elementFactory, ComponentPageElementResourcesSource resourcesSource,
                           ComponentClassResolver componentClassResolver, PersistentFieldManager persistentFieldManager,
                           StringInterner interner, OperationTracker tracker, PerthreadManager perThreadManager, Request request,
-                          SymbolSource symbolSource, Logger logger, MetaDataLocator metaDataLocator)
+                          SymbolSource symbolSource, Logger logger, MetaDataLocator metaDataLocator,
+                          ComponentDependencyRegistry dependencyRegistry)
     {
         this.instantiatorSource = instantiatorSource;
         this.templateSource = templateSource;
@@ -169,16 +175,48 @@ public class PageLoaderImpl implements PageLoader, ComponentAssemblerSource
         this.symbolSource = symbolSource;
         this.logger = logger;
         this.metaDataLocator = metaDataLocator;
+        this.dependencyRegistry = dependencyRegistry;
     }
 
     @PostInjection
     public void setupInvalidation(@ComponentClasses InvalidationEventHub classesHub,
-                                  @ComponentTemplates InvalidationEventHub templatesHub,
-                                  @ComponentMessages InvalidationEventHub messagesHub)
+                                  ComponentMessagesSource messagesSource)
     {
         classesHub.clearOnInvalidation(cache);
-        templatesHub.clearOnInvalidation(cache);
-        messagesHub.clearOnInvalidation(cache);
+
+        // A change to a template or message catalog only affects the assemblers for the components that include
+        // the changed component. The hubs are obtained from the sources, as the @ComponentTemplates and
+        // @ComponentMessages services are proxies that only implement InvalidationEventHub.
+
+        ResourceInvalidationCallback callback = new ResourceInvalidationCallback()
+        {
+            public void resourcesInvalidated(Set<String> resources)
+            {
+                discardAssemblers(resources);
+            }
+        };
+
+        InvalidationEventHubImpl.addResourceInvalidationCallback(templateSource.getInvalidationEventHub(), callback);
+        InvalidationEventHubImpl.addResourceInvalidationCallback(messagesSource.getInvalidationEventHub(), callback);
+    }
+
+    private void discardAssemblers(Set<String> classNames)
+    {
+        if (classNames.isEmpty())
+        {
+            cache.clear();
+            return;
+        }
+
+        Set<String> affected = dependencyRegistry.getDependents(classNames);
+
+        for (Key key : cache.keySet())
+        {
+            if (affected.contains(key.className))
+            {
+                cache.remove(key);
+            }
+        }
     }
 
     public void clearCache()
@@ -261,6 +299,20 @@ public class PageLoaderImpl implements PageLoader, ComponentAssemblerSource
 
                 ComponentModel componentModel = instantiator.getModel();
 
+                // The component depends on its base classes (whose templates it may extend, and whose message
+                // catalogs it inherits), and on its implementation mixins.
+
+                for (ComponentModel parentModel = componentModel.getParentModel(); parentModel != null;
+                     parentModel = parentModel.getParentModel())
+                {
+                    dependencyRegistry.register(className, parentModel.getComponentClassName());
+                }
+
+                for (String mixinClassName : componentModel.getMixinClassNames())
+                {
+                    dependencyRegistry.register(className, mixinClassName);
+                }
+
                 ComponentTemplate template = templateSource.getTemplate(componentModel, selector);
 
                 ComponentPageElementResources resources = resourcesSource.get(selector);
@@ -767,6 +819,15 @@ public class PageLoaderImpl implements PageLoader, ComponentAssemblerSource
         EmbeddedComponentAssembler embeddedAssembler = assembler.createEmbeddedAssembler(embeddedId,
                 componentClassName, embeddedModel, token.getMixins(), token.getLocation());
 
+        String containerClassName = assembler.getModel().getComponentClassName();
+
+        dependencyRegistry.register(containerClassName, componentClassName);
+
+        for (String mixinClassName : embeddedAssembler.getMixinClassNames())
+        {
+            dependencyRegistry.register(containerClassName, mixinClassName);
+        }
+
         addActionForEmbeddedComponent(context, embeddedAssembler, embeddedId, elementName, componentClassName);
 
         addParameterBindingActions(context, embeddedAssembler, embeddedModel);
@@ -1,4 +1,4 @@
-// Copyright 2007-2013 The Apache Software Foundation
+// Copyright 2007-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ import java.io.IOException;
 
 import org.apache.tapestry5.TrackableComponentEventCallback;
 import org.apache.tapestry5.internal.InternalConstants;
+import org.apache.tapestry5.internal.services.ajax.BatchedEventResultProcessor;
 import org.apache.tapestry5.internal.structure.ComponentPageElement;
 import org.apache.tapestry5.internal.structure.Page;
 import org.apache.tapestry5.internal.util.Holder;
@@ -29,10 +30,15 @@ import org.apache.tapestry5.services.ComponentEventRequestParameters;
 import org.apache.tapestry5.services.ComponentEventResultProcessor;
 import org.apache.tapestry5.services.Environment;
 import org.apache.tapestry5.services.Request;
+import org.apache.tapestry5.services.ajax.AjaxResponseRenderer;
 
 /**
  * Similar to {@link ComponentEventRequestHandlerImpl}, but built around the Ajax request cycle, where the action
  * request sends back an immediate JSON response containing the new content.
+ * <p/>
+ * When the event is part of a batch request (see {@link InternalConstants#BATCHED_EVENT}), the event handler's
+ * result is collected as a zone update by a {@link BatchedEventResultProcessor}, and no response is sent; the
+ * {@link org.apache.tapestry5.internal.services.ajax.BatchEventDispatcher} renders all the zone updates together.
  */
 @SuppressWarnings({"unchecked", "rawtypes"})
 public class AjaxComponentEventRequestHandler implements ComponentEventRequestHandler
@@ -51,10 +57,13 @@ public class AjaxComponentEventRequestHandler implements ComponentEventRequestHa
 
     private final PageActivator pageActivator;
 
+    private final ComponentEventResultProcessor batchedResultProcessor;
+
     public AjaxComponentEventRequestHandler(RequestPageCache cache, Request request, PageRenderQueue queue, @Ajax
     ComponentEventResultProcessor resultProcessor, PageActivator pageActivator,
                                             Environment environment,
-                                            AjaxPartialResponseRenderer partialRenderer)
+                                            AjaxPartialResponseRenderer partialRenderer,
+                                            AjaxResponseRenderer ajaxResponseRenderer)
     {
         this.cache = cache;
         this.queue = queue;
@@ -63,12 +72,18 @@ public class AjaxComponentEventRequestHandler implements ComponentEventRequestHa
         this.request = request;
         this.environment = environment;
         this.partialRenderer = partialRenderer;
+
+        batchedResultProcessor = new BatchedEventResultProcessor(request, cache, ajaxResponseRenderer);
     }
 
     public void handle(ComponentEventRequestParameters parameters) throws IOException
     {
         Page activePage = cache.get(parameters.getActivePageName());
 
+        final boolean batched = request.getAttribute(InternalConstants.BATCHED_EVENT) != null;
+
+        final ComponentEventResultProcessor targetProcessor = batched ? batchedResultProcessor : resultProcessor;
+
         final Holder<Boolean> resultProcessorInvoked = Holder.create();
         resultProcessorInvoked.put(false);
 
@@ -78,7 +93,7 @@ public class AjaxComponentEventRequestHandler implements ComponentEventRequestHa
             {
                 resultProcessorInvoked.put(true);
 
-                resultProcessor.processResultValue(value);
+                targetProcessor.processResultValue(value);
             }
         };
 
@@ -116,6 +131,10 @@ public class AjaxComponentEventRequestHandler implements ComponentEventRequestHa
         environment.pop(TrackableComponentEventCallback.class);
         environment.pop(ComponentEventResultProcessor.class);
 
+        // Inside a batch, any zone updates (from the result processor, or added directly by the event handler)
+        // stay queued until every event in the batch has been triggered.
+
+        if (batched) { return; }
 
         // If the result processor was passed a value, then it will already have rendered. Otherwise it was not passed a value,
         // but it's still possible that we still want to do a partial page render ... if filters were added to the render queue.
@@ -0,0 +1,56 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.services.ComponentEventResultProcessor;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+
+/**
+ * Handles a {@link Future} returned from a component event handler method (or a page activation event). The future's
+ * value, once available, is passed to a {@link ComponentEventResultProcessor} as if it had been returned directly.
+ * <p/>
+ * When the future is a {@link org.apache.tapestry5.util.ListenableFuture} that has not yet completed, and the
+ * container supports it, the request is suspended (using Servlet 3.0 asynchronous processing): the request thread
+ * finishes, but the request's per-thread state is {@linkplain org.apache.tapestry5.ioc.services.PerthreadManager#detach()
+ * detached} rather than cleaned up. Once the future completes, the state is attached to the completing thread, which
+ * processes the value and then finishes the request (including the end of request event, which stores changes to
+ * session objects) before completing the asynchronous context. Any other future is waited for in the request thread,
+ * as are all futures when the container does not support asynchronous processing (see {@link ServletAsyncSupport}).
+ *
+ * @see org.apache.tapestry5.SymbolConstants#ASYNC_TIMEOUT
+ * @since 5.4
+ */
+public interface AsyncResultHandler
+{
+    /**
+     * Processes the value of the future, now or once it completes.
+     *
+     * @param result
+     *         returned from an event handler method
+     * @param processor
+     *         used to process the value of the future
+     */
+    void handle(Future<?> result, ComponentEventResultProcessor processor) throws IOException;
+
+    /**
+     * Invoked as the request thread finishes with the request. If the request was suspended by
+     * {@link #handle(Future, ComponentEventResultProcessor)}, detaches the per-thread state, to be resumed when the
+     * future completes, and returns true; in that case, the end of request event must not be fired. Otherwise, returns
+     * false.
+     */
+    boolean detachSuspendedRequest();
+}
@@ -0,0 +1,97 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.ioc.annotations.IntermediateType;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.util.TimeInterval;
+import org.apache.tapestry5.services.ComponentEventResultProcessor;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Implementation of {@link AsyncResultHandler} used when the container does not support Servlet 3.0 asynchronous
+ * processing: the request thread waits for the result, and requests are never suspended.
+ *
+ * @since 5.4
+ */
+public class BlockingAsyncResultHandler implements AsyncResultHandler
+{
+    protected final long timeout;
+
+    public BlockingAsyncResultHandler(@Symbol(SymbolConstants.ASYNC_TIMEOUT)
+                                      @IntermediateType(TimeInterval.class)
+                                      long timeout)
+    {
+        this.timeout = timeout;
+    }
+
+    public void handle(Future<?> result, ComponentEventResultProcessor processor) throws IOException
+    {
+        processor.processResultValue(await(result));
+    }
+
+    public boolean detachSuspendedRequest()
+    {
+        return false;
+    }
+
+    /**
+     * Waits for the result, up to the timeout, cancelling the future if it does not complete in time.
+     */
+    protected Object await(Future<?> result) throws IOException
+    {
+        try
+        {
+            return result.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+
+            throw new RuntimeException(cause);
+        } catch (TimeoutException ex)
+        {
+            result.cancel(true);
+
+            throw timedOut();
+        } catch (InterruptedException ex)
+        {
+            result.cancel(true);
+
+            throw new RuntimeException(ex);
+        }
+    }
+
+    protected RuntimeException timedOut()
+    {
+        return new RuntimeException(String.format("The asynchronous result of the request did not complete within %,d ms.",
+                timeout));
+    }
+}
@@ -0,0 +1,42 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Records which component classes depend on which others, as pages are assembled: a component depends on the
+ * components embedded in its template, on its mixins (and the mixins of its embedded components) and on its base
+ * classes. This allows a change to a single component's template or message catalog to invalidate just the pages
+ * (and component assemblers) that include the component, rather than every page.
+ * <p/>
+ * The registry is cleared whenever component classes are invalidated (as all pages are discarded in that case).
+ *
+ * @since 5.4
+ */
+public interface ComponentDependencyRegistry
+{
+    /**
+     * Records that a component class depends on another component class.
+     */
+    void register(String className, String dependencyClassName);
+
+    /**
+     * Returns the component classes that depend, directly or indirectly, on any of the given classes, including the
+     * given classes themselves.
+     */
+    Set<String> getDependents(Collection<String> classNames);
+}
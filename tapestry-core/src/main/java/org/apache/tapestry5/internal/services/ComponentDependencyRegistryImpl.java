@@ -0,0 +1,102 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.ioc.annotations.PostInjection;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.services.ComponentClasses;
+import org.apache.tapestry5.services.InvalidationEventHub;
+
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+public class ComponentDependencyRegistryImpl implements ComponentDependencyRegistry
+{
+    /**
+     * Keyed on class name, the names of the classes that directly depend on it. Values are only accessed while
+     * synchronized on the map.
+     */
+    private final Map<String, Set<String>> dependents = CollectionFactory.newMap();
+
+    @PostInjection
+    public void setupInvalidation(@ComponentClasses InvalidationEventHub classesHub)
+    {
+        classesHub.addInvalidationCallback(new Runnable()
+        {
+            public void run()
+            {
+                synchronized (dependents)
+                {
+                    dependents.clear();
+                }
+            }
+        });
+    }
+
+    public void register(String className, String dependencyClassName)
+    {
+        assert className != null;
+        assert dependencyClassName != null;
+
+        if (className.equals(dependencyClassName))
+        {
+            return;
+        }
+
+        synchronized (dependents)
+        {
+            Set<String> classNames = dependents.get(dependencyClassName);
+
+            if (classNames == null)
+            {
+                classNames = CollectionFactory.newSet();
+                dependents.put(dependencyClassName, classNames);
+            }
+
+            classNames.add(className);
+        }
+    }
+
+    public Set<String> getDependents(Collection<String> classNames)
+    {
+        Set<String> result = CollectionFactory.newSet();
+
+        LinkedList<String> queue = new LinkedList<String>(classNames);
+
+        synchronized (dependents)
+        {
+            while (!queue.isEmpty())
+            {
+                String className = queue.removeFirst();
+
+                if (!result.add(className))
+                {
+                    continue;
+                }
+
+                Set<String> direct = dependents.get(className);
+
+                if (direct != null)
+                {
+                    queue.addAll(direct);
+                }
+            }
+        }
+
+        return result;
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright 2006-2013 The Apache Software Foundation
+// Copyright 2006-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -27,6 +27,7 @@ import org.apache.tapestry5.ioc.Resource;
 import org.apache.tapestry5.ioc.annotations.PostInjection;
 import org.apache.tapestry5.ioc.annotations.Primary;
 import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.services.FileWatcherSource;
 import org.apache.tapestry5.ioc.internal.services.PlasticProxyFactoryImpl;
 import org.apache.tapestry5.ioc.internal.util.ClasspathResource;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
@@ -122,6 +123,11 @@ public final class ComponentInstantiatorSourceImpl implements ComponentInstantia
                                            @Symbol(SymbolConstants.PRODUCTION_MODE)
                                            boolean productionMode,
 
+                                           @Symbol(SymbolConstants.FILE_WATCHING_ENABLED)
+                                           boolean fileWatchingEnabled,
+
+                                           FileWatcherSource fileWatcherSource,
+
                                            ComponentClassResolver resolver,
 
                                            InternalComponentInvalidationEventHub invalidationHub)
@@ -130,7 +136,8 @@ public final class ComponentInstantiatorSourceImpl implements ComponentInstantia
         this.transformerChain = transformerChain;
         this.logger = logger;
         this.loggerSource = loggerSource;
-        this.changeTracker = new URLChangeTracker(classpathURLConverter);
+        this.changeTracker = new URLChangeTracker(classpathURLConverter, false, true,
+                fileWatchingEnabled ? fileWatcherSource.getFileWatcher() : null);
         this.tracker = tracker;
         this.invalidationHub = invalidationHub;
         this.productionMode = productionMode;
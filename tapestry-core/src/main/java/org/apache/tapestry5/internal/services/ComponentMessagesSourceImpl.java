@@ -1,4 +1,4 @@
-// Copyright 2006-2013 The Apache Software Foundation
+// Copyright 2006-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ import org.apache.tapestry5.ioc.Messages;
 import org.apache.tapestry5.ioc.Resource;
 import org.apache.tapestry5.ioc.annotations.PostInjection;
 import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.services.FileWatcherSource;
 import org.apache.tapestry5.ioc.internal.util.URLChangeTracker;
 import org.apache.tapestry5.ioc.services.ClasspathURLConverter;
 import org.apache.tapestry5.model.ComponentModel;
@@ -71,9 +72,13 @@ public class ComponentMessagesSourceImpl implements ComponentMessagesSource, Upd
 
     public ComponentMessagesSourceImpl(@Symbol(SymbolConstants.PRODUCTION_MODE)
                                        boolean productionMode, List<Resource> appCatalogResources, PropertiesFileParser parser,
-                                       ComponentResourceLocator resourceLocator, ClasspathURLConverter classpathURLConverter)
+                                       ComponentResourceLocator resourceLocator, ClasspathURLConverter classpathURLConverter,
+                                       @Symbol(SymbolConstants.FILE_WATCHING_ENABLED)
+                                       boolean fileWatchingEnabled, FileWatcherSource fileWatcherSource)
     {
-        this(productionMode, appCatalogResources, resourceLocator, parser, new URLChangeTracker(classpathURLConverter));
+        this(productionMode, appCatalogResources, resourceLocator, parser,
+                new URLChangeTracker(classpathURLConverter, false, true,
+                        fileWatchingEnabled ? fileWatcherSource.getFileWatcher() : null));
     }
 
     ComponentMessagesSourceImpl(boolean productionMode, Resource appCatalogResource,
@@ -1,4 +1,4 @@
-// Copyright 2006-2013 The Apache Software Foundation
+// Copyright 2006-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -19,12 +19,12 @@ import org.apache.tapestry5.TapestryConstants;
 import org.apache.tapestry5.internal.event.InvalidationEventHubImpl;
 import org.apache.tapestry5.internal.parser.ComponentTemplate;
 import org.apache.tapestry5.internal.parser.TemplateToken;
-import org.apache.tapestry5.internal.util.MultiKey;
 import org.apache.tapestry5.ioc.Location;
 import org.apache.tapestry5.ioc.Resource;
 import org.apache.tapestry5.ioc.annotations.Inject;
 import org.apache.tapestry5.ioc.annotations.PostInjection;
 import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.services.FileWatcherSource;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.ioc.internal.util.URLChangeTracker;
 import org.apache.tapestry5.ioc.services.ClasspathURLConverter;
@@ -36,10 +36,12 @@ import org.apache.tapestry5.services.pageload.ComponentResourceLocator;
 import org.apache.tapestry5.services.pageload.ComponentResourceSelector;
 import org.apache.tapestry5.services.templates.ComponentTemplateLocator;
 
+import java.net.URL;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Service implementation that manages a cache of parsed component templates.
@@ -53,12 +55,45 @@ public final class ComponentTemplateSourceImpl extends InvalidationEventHubImpl
 
     private final ComponentResourceLocator locator;
 
+    private static final class TemplateKey
+    {
+        final String componentName;
+
+        final ComponentResourceSelector selector;
+
+        TemplateKey(String componentName, ComponentResourceSelector selector)
+        {
+            this.componentName = componentName;
+            this.selector = selector;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 37 * componentName.hashCode() + selector.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+                return true;
+
+            if (!(obj instanceof TemplateKey))
+                return false;
+
+            TemplateKey other = (TemplateKey) obj;
+
+            return componentName.equals(other.componentName) && selector.equals(other.selector);
+        }
+    }
+
     /**
      * Caches from a key (combining component name and locale) to a resource. Often, many different keys will point to
      * the same resource (i.e., "foo:en_US", "foo:en_UK", and "foo:en" may all be parsed from the same "foo.tml"
      * resource). The resource may end up being null, meaning the template does not exist in any locale.
      */
-    private final Map<MultiKey, Resource> templateResources = CollectionFactory.newConcurrentMap();
+    private final Map<TemplateKey, Resource> templateResources = CollectionFactory.newConcurrentMap();
 
     /**
      * Cache of parsed templates, keyed on resource.
@@ -101,9 +136,14 @@ public final class ComponentTemplateSourceImpl extends InvalidationEventHubImpl
     public ComponentTemplateSourceImpl(@Inject
                                        @Symbol(SymbolConstants.PRODUCTION_MODE)
                                        boolean productionMode, TemplateParser parser, ComponentResourceLocator locator,
-                                       ClasspathURLConverter classpathURLConverter)
+                                       ClasspathURLConverter classpathURLConverter,
+                                       @Symbol(SymbolConstants.FILE_WATCHING_ENABLED)
+                                       boolean fileWatchingEnabled, FileWatcherSource fileWatcherSource)
     {
-        this(productionMode, parser, locator, new URLChangeTracker(classpathURLConverter));
+        // Templates do not change in production mode, so there's no need to track (or watch) them.
+        this(productionMode, parser, locator,
+                productionMode ? null : new URLChangeTracker(classpathURLConverter, false, true,
+                        fileWatchingEnabled ? fileWatcherSource.getFileWatcher() : null));
     }
 
     ComponentTemplateSourceImpl(boolean productionMode, TemplateParser parser, ComponentResourceLocator locator,
@@ -138,7 +178,7 @@ public final class ComponentTemplateSourceImpl extends InvalidationEventHubImpl
     {
         String componentName = componentModel.getComponentClassName();
 
-        MultiKey key = new MultiKey(componentName, selector);
+        TemplateKey key = new TemplateKey(componentName, selector);
 
         // First cache is key to resource.
 
@@ -182,7 +222,10 @@ public final class ComponentTemplateSourceImpl extends InvalidationEventHubImpl
         if (!r.exists())
             return missingTemplate;
 
-        tracker.add(r.toURL());
+        if (tracker != null)
+        {
+            tracker.add(r.toURL());
+        }
 
         return parser.parseTemplate(r);
     }
@@ -210,21 +253,94 @@ public final class ComponentTemplateSourceImpl extends InvalidationEventHubImpl
     }
 
     /**
-     * Checks to see if any parsed resource has changed. If so, then all internal caches are cleared, and an
-     * invalidation event is fired. This is brute force ... a more targeted dependency management strategy may come
-     * later.
+     * Checks to see if any parsed resource has changed. If so, then the changed templates are discarded and an
+     * invalidation event identifying the affected components is fired (or, if a template has been added or removed,
+     * all internal caches are cleared, and everything is invalidated).
      */
     public void checkForUpdates()
     {
-        if (tracker.containsChanges())
+        if (tracker == null)
+        {
+            return;
+        }
+
+        List<URL> changes = tracker.findChanges();
+
+        if (changes.isEmpty())
+        {
+            return;
+        }
+
+        Set<String> componentNames = discardChangedTemplates(changes);
+
+        if (componentNames == null)
         {
             invalidate();
+        } else
+        {
+            fireInvalidationEvent(componentNames);
+        }
+    }
+
+    /**
+     * Discards just the parsed templates for the changed resources; the templates still resolve to the same
+     * resources. Returns the class names of the components using the discarded templates, or null, discarding
+     * nothing, if any change is not to a parsed template (typically, a change to a folder, because a file has been
+     * added or removed).
+     */
+    private Set<String> discardChangedTemplates(List<URL> changes)
+    {
+        Map<String, Resource> resourceByURL = CollectionFactory.newMap();
+
+        for (Resource resource : templates.keySet())
+        {
+            URL url = resource.toURL();
+
+            if (url != null)
+            {
+                resourceByURL.put(url.toExternalForm(), resource);
+            }
+        }
+
+        List<Resource> changed = CollectionFactory.newList();
+
+        for (URL url : changes)
+        {
+            Resource resource = resourceByURL.get(url.toExternalForm());
+
+            if (resource == null)
+            {
+                return null;
+            }
+
+            changed.add(resource);
+        }
+
+        for (Resource resource : changed)
+        {
+            templates.remove(resource);
         }
+
+        Set<String> result = CollectionFactory.newSet();
+
+        for (Map.Entry<TemplateKey, Resource> e : templateResources.entrySet())
+        {
+            if (changed.contains(e.getValue()))
+            {
+                result.add(e.getKey().componentName);
+            }
+        }
+
+        return result;
     }
 
     private void invalidate()
     {
-        tracker.clear();
+        if (tracker != null)
+        {
+            tracker.clear();
+        }
+
         templateResources.clear();
         templates.clear();
         fireInvalidationEvent();
@@ -1,4 +1,4 @@
-// Copyright 2007-2013 The Apache Software Foundation
+// Copyright 2007-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -94,6 +94,30 @@ public class DocumentLinkerImpl implements DocumentLinker
         hasScriptsOrInitializations = true;
     }
 
+    /**
+     * Returns the stylesheets added to the document.
+     *
+     * @since 5.4
+     */
+    public List<StylesheetLink> getStylesheetLinks()
+    {
+        return includedStylesheets;
+    }
+
+    /**
+     * Returns the URLs of all JavaScript libraries added to the document, core libraries first.
+     *
+     * @since 5.4
+     */
+    public List<String> getLibraryURLs()
+    {
+        List<String> result = CollectionFactory.newList(coreLibraryURLs);
+
+        result.addAll(libraryURLs);
+
+        return result;
+    }
+
     /**
      * Updates the supplied Document, possibly adding &lt;head&gt; or &lt;body&gt; elements.
      *
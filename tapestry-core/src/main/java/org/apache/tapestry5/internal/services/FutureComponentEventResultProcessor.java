@@ -0,0 +1,77 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.json.JSONObject;
+import org.apache.tapestry5.services.ComponentEventResultProcessor;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+
+/**
+ * Processes a {@link Future} returned from an event handler method, passing its value (once available) on to the
+ * master {@link ComponentEventResultProcessor}. For an Ajax request, a null value results in an empty JSON reply (just
+ * as when an event handler method returns nothing); for a traditional request, a null value is an error, since by the
+ * time the future completes the active page can no longer be rendered as normal.
+ *
+ * @see AsyncResultHandler
+ * @since 5.4
+ */
+@SuppressWarnings("unchecked")
+public class FutureComponentEventResultProcessor implements ComponentEventResultProcessor<Future>
+{
+    private final AsyncResultHandler asyncResultHandler;
+
+    private final ComponentEventResultProcessor masterProcessor;
+
+    private final boolean ajax;
+
+    /**
+     * @param asyncResultHandler
+     *         used to wait for the future to complete
+     * @param masterProcessor
+     *         used to process the value of the future
+     * @param ajax
+     *         if true, the master processor is the one for Ajax requests
+     */
+    public FutureComponentEventResultProcessor(AsyncResultHandler asyncResultHandler,
+                                               ComponentEventResultProcessor masterProcessor, boolean ajax)
+    {
+        this.asyncResultHandler = asyncResultHandler;
+        this.masterProcessor = masterProcessor;
+        this.ajax = ajax;
+    }
+
+    public void processResultValue(Future value) throws IOException
+    {
+        asyncResultHandler.handle(value, new ComponentEventResultProcessor()
+        {
+            public void processResultValue(Object value) throws IOException
+            {
+                if (value == null)
+                {
+                    if (!ajax)
+                    {
+                        throw new IllegalStateException("A Future returned from an event handler method completed with a null value; it must provide a non-null result (such as a page class or Link) to be processed.");
+                    }
+
+                    value = new JSONObject();
+                }
+
+                masterProcessor.processResultValue(value);
+            }
+        });
+    }
+}
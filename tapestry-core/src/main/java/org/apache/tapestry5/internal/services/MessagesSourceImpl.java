@@ -1,4 +1,4 @@
-// Copyright 2006-2013 The Apache Software Foundation
+// Copyright 2006-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -26,9 +26,12 @@ import org.apache.tapestry5.services.messages.PropertiesFileParser;
 import org.apache.tapestry5.services.pageload.ComponentResourceLocator;
 import org.apache.tapestry5.services.pageload.ComponentResourceSelector;
 
+import java.net.URL;
 import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A utility class that encapsulates all the logic for reading properties files and assembling {@link Messages} from
@@ -69,6 +72,18 @@ public class MessagesSourceImpl extends InvalidationEventHubImpl implements Mess
 
     private final Map<String, String> emptyMap = Collections.emptyMap();
 
+    /**
+     * Keyed on properties file, the ids of the bundles that have read it. Values are only accessed while synchronized
+     * on the map.
+     */
+    private final Map<Resource, Set<Object>> resourceToBundleIds = CollectionFactory.newMap();
+
+    /**
+     * Keyed on bundle id, the ids of the bundles that extend it (that is, whose parent it is). Values are only
+     * accessed while synchronized on {@link #resourceToBundleIds}.
+     */
+    private final Map<Object, Set<Object>> childBundleIds = CollectionFactory.newMap();
+
     public MessagesSourceImpl(boolean productionMode, URLChangeTracker tracker,
                               ComponentResourceLocator resourceLocator, PropertiesFileParser propertiesFileParser)
     {
@@ -81,10 +96,126 @@ public class MessagesSourceImpl extends InvalidationEventHubImpl implements Mess
 
     public void checkForUpdates()
     {
-        if (tracker != null && tracker.containsChanges())
+        if (tracker == null)
+        {
+            return;
+        }
+
+        List<URL> changes = tracker.findChanges();
+
+        if (changes.isEmpty())
+        {
+            return;
+        }
+
+        Set<String> bundleIds = discardChangedProperties(changes);
+
+        if (bundleIds == null)
         {
             invalidate();
+        } else
+        {
+            // Assembling the messages again is cheap, as long as the unchanged properties files are not re-read.
+
+            messagesByBundleIdAndSelector.clear();
+            cookedProperties.clear();
+
+            fireInvalidationEvent(bundleIds);
+        }
+    }
+
+    /**
+     * Discards the raw properties read from the changed properties files. Returns the ids of the affected bundles
+     * (those that read a changed file, and those that extend them), or null, discarding nothing, if any change is not
+     * to a properties file that has been read (typically, a change to a folder, because a file has been added or
+     * removed).
+     */
+    private Set<String> discardChangedProperties(List<URL> changes)
+    {
+        Map<String, Resource> resourceByURL = CollectionFactory.newMap();
+
+        for (Resource resource : rawProperties.keySet())
+        {
+            URL url = resource.toURL();
+
+            if (url != null)
+            {
+                resourceByURL.put(url.toExternalForm(), resource);
+            }
+        }
+
+        List<Resource> changed = CollectionFactory.newList();
+
+        for (URL url : changes)
+        {
+            Resource resource = resourceByURL.get(url.toExternalForm());
+
+            if (resource == null)
+            {
+                return null;
+            }
+
+            changed.add(resource);
+        }
+
+        for (Resource resource : changed)
+        {
+            rawProperties.remove(resource);
         }
+
+        return findAffectedBundleIds(changed);
+    }
+
+    private Set<String> findAffectedBundleIds(List<Resource> changed)
+    {
+        Set<String> result = CollectionFactory.newSet();
+
+        LinkedList<Object> queue = new LinkedList<Object>();
+
+        synchronized (resourceToBundleIds)
+        {
+            for (Resource resource : changed)
+            {
+                Set<Object> bundleIds = resourceToBundleIds.get(resource);
+
+                if (bundleIds != null)
+                {
+                    queue.addAll(bundleIds);
+                }
+            }
+
+            while (!queue.isEmpty())
+            {
+                Object bundleId = queue.removeFirst();
+
+                if (!result.add(bundleId.toString()))
+                {
+                    continue;
+                }
+
+                Set<Object> children = childBundleIds.get(bundleId);
+
+                if (children != null)
+                {
+                    queue.addAll(children);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static <K> void addToMapSet(Map<K, Set<Object>> map, K key, Object value)
+    {
+        Set<Object> values = map.get(key);
+
+        if (values == null)
+        {
+            values = CollectionFactory.newSet();
+            map.put(key, values);
+        }
+
+        values.add(value);
     }
 
     public void invalidate()
@@ -93,6 +224,12 @@ public class MessagesSourceImpl extends InvalidationEventHubImpl implements Mess
         cookedProperties.clear();
         rawProperties.clear();
 
+        synchronized (resourceToBundleIds)
+        {
+            resourceToBundleIds.clear();
+            childBundleIds.clear();
+        }
+
         tracker.clear();
 
         fireInvalidationEvent();
@@ -147,6 +284,19 @@ public class MessagesSourceImpl extends InvalidationEventHubImpl implements Mess
 
         // Localizations are now in least-specific to most-specific order.
 
+        synchronized (resourceToBundleIds)
+        {
+            for (Resource localization : localizations)
+            {
+                addToMapSet(resourceToBundleIds, localization, bundle.getId());
+            }
+
+            if (bundle.getParent() != null)
+            {
+                addToMapSet(childBundleIds, bundle.getParent().getId(), bundle.getId());
+            }
+        }
+
         Map<String, String> previous = findBundleProperties(bundle.getParent(), selector);
 
         for (Resource localization : F.flow(localizations).reverse())
@@ -1,4 +1,4 @@
-// Copyright 2010, 2011, 2012 The Apache Software Foundation
+// Copyright 2010, 2011, 2012, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -16,14 +16,16 @@ package org.apache.tapestry5.internal.services;
 
 import org.apache.tapestry5.func.F;
 import org.apache.tapestry5.func.Mapper;
+import org.apache.tapestry5.internal.event.InvalidationEventHubImpl;
 import org.apache.tapestry5.internal.services.assets.ResourceChangeTracker;
 import org.apache.tapestry5.internal.structure.Page;
 import org.apache.tapestry5.ioc.annotations.PostInjection;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.services.ComponentClassResolver;
 import org.apache.tapestry5.services.ComponentClasses;
-import org.apache.tapestry5.services.ComponentMessages;
-import org.apache.tapestry5.services.ComponentTemplates;
 import org.apache.tapestry5.services.InvalidationEventHub;
+import org.apache.tapestry5.services.ResourceInvalidationCallback;
+import org.apache.tapestry5.services.messages.ComponentMessagesSource;
 import org.apache.tapestry5.services.pageload.ComponentRequestSelectorAnalyzer;
 import org.apache.tapestry5.services.pageload.ComponentResourceSelector;
 
@@ -37,6 +39,10 @@ public class PageSourceImpl implements PageSource
 
     private final PageLoader pageLoader;
 
+    private final ComponentDependencyRegistry dependencyRegistry;
+
+    private final ComponentClassResolver componentClassResolver;
+
     private static final class CachedPageKey
     {
         final String pageName;
@@ -70,10 +76,13 @@ public class PageSourceImpl implements PageSource
 
     private final Map<CachedPageKey, SoftReference<Page>> pageCache = CollectionFactory.newConcurrentMap();
 
-    public PageSourceImpl(PageLoader pageLoader, ComponentRequestSelectorAnalyzer selectorAnalyzer)
+    public PageSourceImpl(PageLoader pageLoader, ComponentRequestSelectorAnalyzer selectorAnalyzer,
+                          ComponentDependencyRegistry dependencyRegistry, ComponentClassResolver componentClassResolver)
     {
         this.pageLoader = pageLoader;
         this.selectorAnalyzer = selectorAnalyzer;
+        this.dependencyRegistry = dependencyRegistry;
+        this.componentClassResolver = componentClassResolver;
     }
 
     public Page getPage(String canonicalPageName)
@@ -111,13 +120,26 @@ public class PageSourceImpl implements PageSource
 
     @PostInjection
     public void setupInvalidation(@ComponentClasses InvalidationEventHub classesHub,
-                                  @ComponentTemplates InvalidationEventHub templatesHub,
-                                  @ComponentMessages InvalidationEventHub messagesHub,
+                                  ComponentTemplateSource templateSource,
+                                  ComponentMessagesSource messagesSource,
                                   ResourceChangeTracker resourceChangeTracker)
     {
         classesHub.clearOnInvalidation(pageCache);
-        templatesHub.clearOnInvalidation(pageCache);
-        messagesHub.clearOnInvalidation(pageCache);
+
+        // A change to a template or message catalog only affects the pages that include the changed component.
+        // The hubs are obtained from the sources, as the @ComponentTemplates and @ComponentMessages services are
+        // proxies that only implement InvalidationEventHub.
+
+        ResourceInvalidationCallback callback = new ResourceInvalidationCallback()
+        {
+            public void resourcesInvalidated(Set<String> resources)
+            {
+                discardPages(resources);
+            }
+        };
+
+        InvalidationEventHubImpl.addResourceInvalidationCallback(templateSource.getInvalidationEventHub(), callback);
+        InvalidationEventHubImpl.addResourceInvalidationCallback(messagesSource.getInvalidationEventHub(), callback);
 
         // Because Assets can be injected into pages, and Assets are invalidated when
         // an Asset's value is changed (partly due to the change, in 5.4, to include the asset's
@@ -126,6 +148,25 @@ public class PageSourceImpl implements PageSource
         resourceChangeTracker.clearOnInvalidation(pageCache);
     }
 
+    private void discardPages(Set<String> classNames)
+    {
+        if (classNames.isEmpty())
+        {
+            pageCache.clear();
+            return;
+        }
+
+        Set<String> affected = dependencyRegistry.getDependents(classNames);
+
+        for (CachedPageKey key : pageCache.keySet())
+        {
+            if (affected.contains(componentClassResolver.resolvePageNameToClassName(key.pageName)))
+            {
+                pageCache.remove(key);
+            }
+        }
+    }
+
     public void clearCache()
     {
         pageCache.clear();
@@ -0,0 +1,57 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.services.Response;
+import org.apache.tapestry5.services.javascript.StylesheetLink;
+
+import java.util.List;
+
+/**
+ * Remembers the stylesheets and JavaScript libraries linked into each page (by the {@link DocumentLinker}), so that
+ * later requests for the same page can send them to the client as {@code Link: <url>; rel=preload} response headers
+ * before the page is attached or rendered. Browsers (and proxies that convert preload headers into 103 Early Hints) can
+ * then start fetching them while the server is still rendering.
+ * <p/>
+ * Entries are keyed on the page name and the current locale, and on whether the request is secure and the client
+ * supports compression (both of which affect the asset URLs); they are replaced each time the page renders.
+ *
+ * @see org.apache.tapestry5.SymbolConstants#PRELOAD_HEADERS_ENABLED
+ * @since 5.4
+ */
+public interface PreloadLinkCache
+{
+    /**
+     * Adds the preload headers, if any, previously stored for the page.
+     *
+     * @param pageName
+     *         canonical page name
+     * @param response
+     *         to which headers are added
+     */
+    void addPreloadHeaders(String pageName, Response response);
+
+    /**
+     * Stores the resources linked into a page as it is rendered.
+     *
+     * @param pageName
+     *         canonical page name
+     * @param stylesheets
+     *         stylesheets linked into the page
+     * @param libraryURLs
+     *         JavaScript libraries (from JavaScript stacks, or imported directly) linked into the page
+     */
+    void storePreloads(String pageName, List<StylesheetLink> stylesheets, List<String> libraryURLs);
+}
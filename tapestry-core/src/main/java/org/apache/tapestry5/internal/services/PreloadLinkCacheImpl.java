@@ -0,0 +1,145 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.ioc.annotations.PostInjection;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+import org.apache.tapestry5.ioc.services.ThreadLocale;
+import org.apache.tapestry5.services.ComponentClasses;
+import org.apache.tapestry5.services.InvalidationEventHub;
+import org.apache.tapestry5.services.Request;
+import org.apache.tapestry5.services.Response;
+import org.apache.tapestry5.services.ResponseCompressionAnalyzer;
+import org.apache.tapestry5.services.javascript.StylesheetLink;
+import org.apache.tapestry5.services.javascript.StylesheetOptions;
+
+import java.util.List;
+import java.util.Map;
+
+public class PreloadLinkCacheImpl implements PreloadLinkCache
+{
+    private final ThreadLocale threadLocale;
+
+    private final Request request;
+
+    private final ResponseCompressionAnalyzer compressionAnalyzer;
+
+    private final boolean enabled;
+
+    /**
+     * Keyed on page name, locale, secure and compression support; value is the complete Link header.
+     */
+    private final Map<String, String> cache = CollectionFactory.newConcurrentMap();
+
+    public PreloadLinkCacheImpl(ThreadLocale threadLocale, Request request,
+                                ResponseCompressionAnalyzer compressionAnalyzer,
+
+                                @Symbol(SymbolConstants.PRELOAD_HEADERS_ENABLED)
+                                boolean enabled)
+    {
+        this.threadLocale = threadLocale;
+        this.request = request;
+        this.compressionAnalyzer = compressionAnalyzer;
+        this.enabled = enabled;
+    }
+
+    @PostInjection
+    public void setupInvalidation(@ComponentClasses InvalidationEventHub invalidationEventHub)
+    {
+        invalidationEventHub.clearOnInvalidation(cache);
+    }
+
+    public void addPreloadHeaders(String pageName, Response response)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+
+        String header = cache.get(toKey(pageName));
+
+        if (header != null)
+        {
+            response.addHeader("Link", header);
+        }
+    }
+
+    public void storePreloads(String pageName, List<StylesheetLink> stylesheets, List<String> libraryURLs)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+
+        StringBuilder builder = new StringBuilder();
+
+        for (StylesheetLink stylesheet : stylesheets)
+        {
+            if (isPreloadable(stylesheet.getOptions()))
+            {
+                add(builder, stylesheet.getURL(), "style");
+            }
+        }
+
+        for (String url : libraryURLs)
+        {
+            add(builder, url, "script");
+        }
+
+        String key = toKey(pageName);
+
+        if (builder.length() == 0)
+        {
+            cache.remove(key);
+        } else
+        {
+            cache.put(key, builder.toString());
+        }
+    }
+
+    /**
+     * Stylesheets for other media, or inside a conditional comment, may never be used by the client, so they are not
+     * worth preloading.
+     */
+    private static boolean isPreloadable(StylesheetOptions options)
+    {
+        return InternalUtils.isBlank(options.condition) && (options.media == null || options.media.equals("all")
+                || options.media.equals("screen"));
+    }
+
+    private static void add(StringBuilder builder, String url, String type)
+    {
+        if (builder.length() > 0)
+        {
+            builder.append(", ");
+        }
+
+        builder.append('<').append(url).append(">; rel=preload; as=").append(type);
+    }
+
+    /**
+     * Asset and library URLs differ for compressed content (a "z" prefix, or the compressed module path), and may be
+     * absolute URLs whose scheme follows the request, so those are part of the key as well.
+     */
+    private String toKey(String pageName)
+    {
+        return String.format("%s:%s:%s:%s", pageName.toLowerCase(), threadLocale.getLocale(),
+                request.isSecure() ? "s" : "i",
+                compressionAnalyzer.isGZipSupported() ? "z" : "u");
+    }
+}
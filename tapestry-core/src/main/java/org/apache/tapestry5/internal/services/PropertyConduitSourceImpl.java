@@ -1,4 +1,4 @@
-// Copyright 2007-2013 The Apache Software Foundation
+// Copyright 2007-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -193,17 +193,24 @@ public class PropertyConduitSourceImpl implements PropertyConduitSource
 
     private final PropertyAccess access;
 
-    private final PlasticProxyFactory proxyFactory;
+    private final PlasticProxyFactory proxyFactory, stableProxyFactory;
 
     private final TypeCoercer typeCoercer;
 
     private final StringInterner interner;
 
     /**
-     * Keyed on combination of root class and expression.
+     * Keyed on combination of root class and expression; for root classes that are reloaded when component classes
+     * are invalidated (see {@link #isReloadable(Class)}).
      */
     private final Map<MultiKey, PropertyConduit> cache = CollectionFactory.newConcurrentMap();
 
+    /**
+     * Keyed on combination of root class and expression; for all other root classes. These conduits are built using
+     * a class loader that is not discarded on invalidation, and so are kept.
+     */
+    private final Map<MultiKey, PropertyConduit> stableCache = CollectionFactory.newConcurrentMap();
+
     private final Invariant invariantAnnotation = new Invariant()
     {
         public Class<? extends Annotation> annotationType()
@@ -1294,10 +1301,12 @@ public class PropertyConduitSourceImpl implements PropertyConduitSource
     }
 
     public PropertyConduitSourceImpl(PropertyAccess access, @ComponentLayer
-    PlasticProxyFactory proxyFactory, TypeCoercer typeCoercer, StringInterner interner)
+    PlasticProxyFactory proxyFactory, @Builtin PlasticProxyFactory stableProxyFactory, TypeCoercer typeCoercer,
+                                     StringInterner interner)
     {
         this.access = access;
         this.proxyFactory = proxyFactory;
+        this.stableProxyFactory = stableProxyFactory;
         this.typeCoercer = typeCoercer;
         this.interner = interner;
 
@@ -1326,13 +1335,56 @@ public class PropertyConduitSourceImpl implements PropertyConduitSource
 
         if (result == null)
         {
-            result = build(rootClass, expression);
-            cache.put(key, result);
+            result = stableCache.get(key);
+        }
+
+        if (result == null)
+        {
+            if (isReloadable(rootClass))
+            {
+                result = build(rootClass, expression, proxyFactory);
+                cache.put(key, result);
+            } else
+            {
+                result = build(rootClass, expression, stableProxyFactory);
+                stableCache.put(key, result);
+            }
         }
 
         return result;
     }
 
+    /**
+     * Returns true if the class will be reloaded when component classes are invalidated: that is, the class was loaded
+     * by the component class loader, or is not visible to the (non-reloading) class loader used for other classes.
+     * All types navigated by an expression are resolved by the root class's class loader, so only the root class
+     * needs to be checked.
+     */
+    private boolean isReloadable(Class rootClass)
+    {
+        ClassLoader loader = rootClass.getClassLoader();
+
+        // Classes from the bootstrap class loader (such as java.lang.String).
+
+        if (loader == null)
+        {
+            return false;
+        }
+
+        if (loader == proxyFactory.getClassLoader())
+        {
+            return true;
+        }
+
+        try
+        {
+            return Class.forName(rootClass.getName(), false, stableProxyFactory.getClassLoader()) != rootClass;
+        } catch (ClassNotFoundException ex)
+        {
+            return true;
+        }
+    }
+
     /**
      * Builds a subclass of {@link PropertyConduitDelegate} that implements the
      * get() and set() methods and overrides the
@@ -1345,9 +1397,11 @@ public class PropertyConduitSourceImpl implements PropertyConduitSource
      *         class of root object for expression evaluation
      * @param expression
      *         expression to be evaluated
+     * @param factory
+     *         used to create the conduit class
      * @return the conduit
      */
-    private PropertyConduit build(final Class rootClass, String expression)
+    private PropertyConduit build(final Class rootClass, String expression, PlasticProxyFactory factory)
     {
         Tree tree = parse(expression);
 
@@ -1412,7 +1466,7 @@ public class PropertyConduitSourceImpl implements PropertyConduitSource
                     break;
             }
 
-            return proxyFactory.createProxy(InternalPropertyConduit.class,
+            return factory.createProxy(InternalPropertyConduit.class,
                     new PropertyConduitBuilder(rootClass, expression, tree)).newInstance();
         } catch (Exception ex)
         {
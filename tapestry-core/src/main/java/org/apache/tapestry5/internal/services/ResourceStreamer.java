@@ -1,4 +1,4 @@
-// Copyright 2006, 2008, 2011, 2013 The Apache Software Foundation
+// Copyright 2006, 2008, 2011, 2013, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -82,4 +82,18 @@ public interface ResourceStreamer
      * @since 5.4
      */
     boolean streamResource(StreamableResource resource, String providedChecksum, Set<Options> options) throws IOException;
+
+    /**
+     * As with {@link #streamResource(org.apache.tapestry5.services.assets.StreamableResource, String, java.util.Set)},
+     * but records the request in the {@link org.apache.tapestry5.services.assets.AssetMetrics} under the provided
+     * name (rather than the resource's description), including any time spent before the resource was available
+     * (for example, assembling a JavaScript stack).
+     *
+     * @param name
+     *         identifies the asset or stack in the metrics
+     * @param startNanos
+     *         {@linkplain System#nanoTime() time} at which processing of the request started
+     * @since 5.4
+     */
+    boolean streamResource(StreamableResource resource, String providedChecksum, Set<Options> options, String name, long startNanos) throws IOException;
 }
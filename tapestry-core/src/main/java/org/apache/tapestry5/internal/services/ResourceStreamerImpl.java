@@ -1,4 +1,4 @@
-// Copyright 2006-2013 The Apache Software Foundation
+// Copyright 2006-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -23,7 +23,10 @@ import org.apache.tapestry5.ioc.Resource;
 import org.apache.tapestry5.ioc.annotations.Symbol;
 import org.apache.tapestry5.services.Request;
 import org.apache.tapestry5.services.Response;
+import org.apache.tapestry5.services.ResponseCompressionAnalyzer;
+import org.apache.tapestry5.services.assets.AssetMetrics;
 import org.apache.tapestry5.services.assets.CompressionStatus;
+import org.apache.tapestry5.services.assets.EncodedStreamableResource;
 import org.apache.tapestry5.services.assets.StreamableResource;
 import org.apache.tapestry5.services.assets.StreamableResourceProcessing;
 import org.apache.tapestry5.services.assets.StreamableResourceSource;
@@ -39,6 +42,8 @@ public class ResourceStreamerImpl implements ResourceStreamer
 
     private static final String QUOTE = "\"";
 
+    static final String IMMUTABLE_CACHE_CONTROL = String.format("public, max-age=%d, immutable", InternalConstants.TEN_YEARS / 1000);
+
     private final Request request;
 
     private final Response response;
@@ -51,6 +56,10 @@ public class ResourceStreamerImpl implements ResourceStreamer
 
     private final ResourceChangeTracker resourceChangeTracker;
 
+    private final ResponseCompressionAnalyzer analyzer;
+
+    private final AssetMetrics metrics;
+
     public ResourceStreamerImpl(Request request,
 
                                 Response response,
@@ -62,7 +71,11 @@ public class ResourceStreamerImpl implements ResourceStreamer
                                 @Symbol(SymbolConstants.PRODUCTION_MODE)
                                 boolean productionMode,
 
-                                ResourceChangeTracker resourceChangeTracker)
+                                ResourceChangeTracker resourceChangeTracker,
+
+                                ResponseCompressionAnalyzer analyzer,
+
+                                AssetMetrics metrics)
     {
         this.request = request;
         this.response = response;
@@ -71,6 +84,8 @@ public class ResourceStreamerImpl implements ResourceStreamer
         this.tracker = tracker;
         this.productionMode = productionMode;
         this.resourceChangeTracker = resourceChangeTracker;
+        this.analyzer = analyzer;
+        this.metrics = metrics;
     }
 
     public boolean streamResource(final Resource resource, final String providedChecksum, final Set<Options> options) throws IOException
@@ -86,6 +101,8 @@ public class ResourceStreamerImpl implements ResourceStreamer
 
         final boolean compress = providedChecksum.startsWith("z");
 
+        final long startNanos = System.nanoTime();
+
         return tracker.perform(String.format("Streaming %s%s", resource, compress ? " (compressed)" : ""), new IOOperation<Boolean>()
         {
             public Boolean perform() throws IOException
@@ -96,16 +113,23 @@ public class ResourceStreamerImpl implements ResourceStreamer
 
                 StreamableResource streamable = streamableResourceSource.getStreamableResource(resource, processing, resourceChangeTracker);
 
-                return streamResource(streamable, compress ? providedChecksum.substring(1) : providedChecksum, options);
+                return streamResource(streamable, compress ? providedChecksum.substring(1) : providedChecksum, options,
+                        resource.toString(), startNanos);
             }
         });
     }
 
     public boolean streamResource(StreamableResource streamable, String providedChecksum, Set<Options> options) throws IOException
+    {
+        return streamResource(streamable, providedChecksum, options, streamable.getDescription(), System.nanoTime());
+    }
+
+    public boolean streamResource(StreamableResource streamable, String providedChecksum, Set<Options> options, String name, long startNanos) throws IOException
     {
         assert streamable != null;
         assert providedChecksum != null;
         assert options != null;
+        assert name != null;
 
         String actualChecksum = streamable.getChecksum();
 
@@ -128,14 +152,43 @@ public class ResourceStreamerImpl implements ResourceStreamer
             ifModifiedSince = -1;
         }
 
+        // The same URL may be served with different content encodings to different clients; this applies to
+        // 304 responses as well.
+        if (streamable.getCompression() == CompressionStatus.COMPRESSED)
+        {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+
         if (ifModifiedSince > 0 && ifModifiedSince >= lastModified)
         {
             response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+            metrics.recordRequest(name, true, null, 0, System.nanoTime() - startNanos);
+
             return true;
         }
 
-        // ETag should be surrounded with quotes.
-        String token = QUOTE + actualChecksum + QUOTE;
+        String contentEncoding = null;
+
+        if (streamable.getCompression() == CompressionStatus.COMPRESSED)
+        {
+            contentEncoding = InternalConstants.GZIP_CONTENT_ENCODING;
+
+            if (streamable instanceof EncodedStreamableResource)
+            {
+                EncodedStreamableResource encoded = (EncodedStreamableResource) streamable;
+
+                // May be null, if the client accepts none of the encodings; the identity encoding is always acceptable.
+                contentEncoding = analyzer.selectContentEncoding(encoded.getContentEncodings());
+
+                streamable = encoded.forContentEncoding(contentEncoding);
+            }
+        }
+
+        // ETag should be surrounded with quotes. Each content encoding is a different representation of the resource
+        // (with the same checksum), so it gets its own entity tag; otherwise a cache could hand gzip content to
+        // a client that only accepts the identity encoding (or vice versa).
+        String token = QUOTE + actualChecksum + (contentEncoding == null ? "" : "-" + contentEncoding) + QUOTE;
 
         // Even when sending a 304, we want the ETag associated with the request.
         // In most cases (except JavaScript modules), the checksum is also embedded into the URL.
@@ -149,6 +202,9 @@ public class ResourceStreamerImpl implements ResourceStreamer
         if (token.equals(providedToken))
         {
             response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+            metrics.recordRequest(name, true, null, 0, System.nanoTime() - startNanos);
+
             return true;
         }
 
@@ -164,6 +220,13 @@ public class ResourceStreamerImpl implements ResourceStreamer
             // Starting in 5.4, this is a lot less necessary; any change to a Resource will result
             // in a new asset URL with the changed checksum incorporated into the URL.
             response.setDateHeader("Expires", lastModified + InternalConstants.TEN_YEARS);
+
+            // When the URL includes the checksum (just validated), the content at the URL can never change; this
+            // prevents browsers from re-validating it (for example, when the user reloads the page).
+            if (providedChecksum.length() > 0)
+            {
+                response.setHeader("Cache-Control", IMMUTABLE_CACHE_CONTROL);
+            }
         }
 
         // This is really for modules, which can not have a content hash code in the URL; therefore, we want
@@ -174,19 +237,21 @@ public class ResourceStreamerImpl implements ResourceStreamer
             response.setHeader("Cache-Control", "max-age=0, must-revalidate");
         }
 
-        response.setContentLength(streamable.getSize());
-
-        if (streamable.getCompression() == CompressionStatus.COMPRESSED)
+        if (contentEncoding != null)
         {
-            response.setHeader(InternalConstants.CONTENT_ENCODING_HEADER, InternalConstants.GZIP_CONTENT_ENCODING);
+            response.setHeader(InternalConstants.CONTENT_ENCODING_HEADER, contentEncoding);
         }
 
+        response.setContentLength(streamable.getSize());
+
         OutputStream os = response.getOutputStream(streamable.getContentType());
 
         streamable.streamTo(os);
 
         os.close();
 
+        metrics.recordRequest(name, false, contentEncoding, streamable.getSize(), System.nanoTime() - startNanos);
+
         return true;
     }
 
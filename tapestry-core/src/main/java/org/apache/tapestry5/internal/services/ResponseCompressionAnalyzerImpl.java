@@ -1,4 +1,4 @@
-// Copyright 2009-2013 The Apache Software Foundation
+// Copyright 2009-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -17,13 +17,21 @@ package org.apache.tapestry5.internal.services;
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.internal.InternalConstants;
 import org.apache.tapestry5.internal.TapestryInternalUtils;
 import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.services.ResponseCompressionAnalyzer;
 import org.apache.tapestry5.services.assets.CompressionAnalyzer;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 public class ResponseCompressionAnalyzerImpl implements ResponseCompressionAnalyzer
 {
+    private static final List<String> GZIP_ONLY = Arrays.asList(InternalConstants.GZIP_CONTENT_ENCODING);
+
     private final HttpServletRequest request;
 
     private final boolean gzipCompressionEnabled;
@@ -40,34 +48,92 @@ public class ResponseCompressionAnalyzerImpl implements ResponseCompressionAnaly
     }
 
     public boolean isGZipSupported()
+    {
+        return selectContentEncoding(GZIP_ONLY) != null;
+    }
+
+    public String selectContentEncoding(List<String> contentEncodings)
     {
         if (!gzipCompressionEnabled)
         {
-            return false;
+            return null;
         }
 
         // TAP5-1880:
-        if (request.getProtocol() == "HTTP/1.0")
+        if ("HTTP/1.0".equals(request.getProtocol()))
         {
-            return false;
+            return null;
         }
 
-        String supportedEncodings = request.getHeader("Accept-Encoding");
+        String acceptEncoding = request.getHeader("Accept-Encoding");
 
-        if (supportedEncodings == null)
+        if (acceptEncoding == null)
         {
-            return false;
+            return null;
+        }
+
+        Map<String, Float> qualities = parseQualities(acceptEncoding);
+
+        Float wildcard = qualities.get("*");
+
+        String result = null;
+        float best = 0;
+
+        for (String encoding : contentEncodings)
+        {
+            Float quality = qualities.get(encoding.toLowerCase());
+
+            if (quality == null)
+            {
+                quality = wildcard;
+            }
+
+            // Strictly greater: on a tie, the earlier (preferred) encoding wins.
+
+            if (quality != null && quality > best)
+            {
+                result = encoding;
+                best = quality;
+            }
         }
 
-        for (String encoding : TapestryInternalUtils.splitAtCommas(supportedEncodings))
+        return result;
+    }
+
+    /**
+     * Parses the Accept-Encoding header, i.e. "br;q=1.0, gzip;q=0.8, *;q=0.1", into a map from (lower case)
+     * encoding to quality; an encoding without a quality has quality 1. A malformed quality is treated as 0.
+     */
+    static Map<String, Float> parseQualities(String acceptEncoding)
+    {
+        Map<String, Float> result = CollectionFactory.newMap();
+
+        for (String term : TapestryInternalUtils.splitAtCommas(acceptEncoding))
         {
-            if (encoding.equalsIgnoreCase("gzip"))
+            String[] parts = term.split(";");
+
+            float quality = 1;
+
+            for (int i = 1; i < parts.length; i++)
             {
-                return true;
+                String parameter = parts[i].trim();
+
+                if (parameter.startsWith("q="))
+                {
+                    try
+                    {
+                        quality = Float.parseFloat(parameter.substring(2).trim());
+                    } catch (NumberFormatException ex)
+                    {
+                        quality = 0;
+                    }
+                }
             }
+
+            result.put(parts[0].trim().toLowerCase(), quality);
         }
 
-        return false;
+        return result;
     }
 
     public boolean isGZipEnabled(String contentType)
@@ -0,0 +1,71 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import javax.servlet.ServletContext;
+
+/**
+ * Determines whether the servlet container supports Servlet 3.0 asynchronous processing. Tapestry is compiled against
+ * the Servlet 2.5 API; the few classes that make use of asynchronous processing are compiled separately, and are only
+ * loaded (by name) once it is known that the container supports them.
+ *
+ * @since 5.4
+ */
+public class ServletAsyncSupport
+{
+    /**
+     * Returns true if the Servlet 3.0 API is available, and the container implements it.
+     *
+     * @param context
+     *         the servlet context, or null when there is none (inside the PageTester)
+     */
+    public static boolean isAvailable(ServletContext context)
+    {
+        if (context == null || context.getMajorVersion() < 3)
+        {
+            return false;
+        }
+
+        try
+        {
+            Class.forName("javax.servlet.AsyncContext", false, ServletAsyncSupport.class.getClassLoader());
+
+            return true;
+        } catch (ClassNotFoundException ex)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Loads a class that makes use of the Servlet 3.0 API; should only be invoked once {@link #isAvailable(ServletContext)}
+     * has returned true.
+     *
+     * @param type
+     *         the type implemented by the class
+     * @param className
+     *         fully qualified class name
+     */
+    public static <T> Class<? extends T> loadImplementation(Class<T> type, String className)
+    {
+        try
+        {
+            return Class.forName(className, true, ServletAsyncSupport.class.getClassLoader()).asSubclass(type);
+        } catch (ClassNotFoundException ex)
+        {
+            throw new RuntimeException(String.format("Unable to load class %s: %s", className, ex), ex);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.ajax;
+
+import org.apache.tapestry5.QueryParameterConstants;
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.internal.InternalConstants;
+import org.apache.tapestry5.internal.services.AjaxPartialResponseRenderer;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.json.JSONArray;
+import org.apache.tapestry5.json.JSONObject;
+import org.apache.tapestry5.services.*;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Handles batch requests, sent by the client (see the t5/core/zone-batch module) to refresh several zones with a single
+ * Ajax request. The {@linkplain QueryParameterConstants#BATCH_EVENTS events parameter} identifies any number of
+ * component event URLs; each event is passed through the normal {@link ComponentRequestHandler} pipeline (so the
+ * page is attached just once, and all filters still apply), with the event's result collected as a zone update. A single
+ * partial page render response containing the content for every zone is sent once all events have been triggered.
+ *
+ * @see SymbolConstants#BATCH_EVENT_PATH
+ * @see BatchedEventResultProcessor
+ * @since 5.4
+ */
+public class BatchEventDispatcher implements Dispatcher
+{
+    private final ComponentRequestHandler componentRequestHandler;
+
+    private final ComponentEventLinkEncoder linkEncoder;
+
+    private final RequestGlobals requestGlobals;
+
+    private final AjaxPartialResponseRenderer partialRenderer;
+
+    private final String dispatchPath;
+
+    public BatchEventDispatcher(ComponentRequestHandler componentRequestHandler,
+                                ComponentEventLinkEncoder linkEncoder,
+                                RequestGlobals requestGlobals,
+                                AjaxPartialResponseRenderer partialRenderer,
+                                PathConstructor pathConstructor,
+                                @Symbol(SymbolConstants.BATCH_EVENT_PATH)
+                                String batchEventPath)
+    {
+        this.componentRequestHandler = componentRequestHandler;
+        this.linkEncoder = linkEncoder;
+        this.requestGlobals = requestGlobals;
+        this.partialRenderer = partialRenderer;
+
+        dispatchPath = pathConstructor.constructDispatchPath(batchEventPath);
+    }
+
+    public boolean dispatch(Request request, Response response) throws IOException
+    {
+        if (!request.getPath().equals(dispatchPath))
+        {
+            return false;
+        }
+
+        String events = request.getParameter(QueryParameterConstants.BATCH_EVENTS);
+
+        if (events == null)
+        {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                    String.format("Batch request did not include the '%s' query parameter.", QueryParameterConstants.BATCH_EVENTS));
+
+            return true;
+        }
+
+        JSONArray specs = new JSONArray(events);
+
+        request.setAttribute(InternalConstants.BATCHED_EVENT, true);
+
+        try
+        {
+            for (int i = 0; i < specs.length(); i++)
+            {
+                JSONObject spec = specs.getJSONObject(i);
+
+                Request eventRequest = new BatchedEventRequest(request, spec.getString("url"),
+                        (JSONObject) spec.opt("parameters"));
+
+                triggerEvent(eventRequest, response);
+            }
+        } finally
+        {
+            request.setAttribute(InternalConstants.BATCHED_EVENT, null);
+        }
+
+        // Now render all the zone updates queued up by the individual events as a single response.
+
+        partialRenderer.renderPartialPageMarkup();
+
+        return true;
+    }
+
+    private void triggerEvent(Request eventRequest, Response response) throws IOException
+    {
+        ComponentEventRequestParameters parameters = linkEncoder.decodeComponentEventRequest(eventRequest);
+
+        if (parameters == null)
+        {
+            throw new IllegalArgumentException(String.format("Path '%s' inside a batch request does not identify a component event.",
+                    eventRequest.getPath()));
+        }
+
+        Request batchRequest = requestGlobals.getRequest();
+
+        // Services (and components) see the Request via RequestGlobals, so the event's own view of the request
+        // (its path and query parameters) must be stored there while the event is processed.
+
+        requestGlobals.storeRequestResponse(eventRequest, response);
+
+        try
+        {
+            componentRequestHandler.handleComponentEvent(parameters);
+        } finally
+        {
+            requestGlobals.storeRequestResponse(batchRequest, response);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.ajax;
+
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+import org.apache.tapestry5.json.JSONObject;
+import org.apache.tapestry5.services.DelegatingRequest;
+import org.apache.tapestry5.services.Request;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A view of the batch request as it applies to a single component event within the batch: the path and the
+ * query parameters are those of the event's URL (plus any additional parameters provided by the client),
+ * everything else is delegated to the batch request.
+ *
+ * @since 5.4
+ */
+class BatchedEventRequest extends DelegatingRequest
+{
+    private final String path;
+
+    private final Map<String, List<String>> parameters = CollectionFactory.newMap();
+
+    BatchedEventRequest(Request request, String url, JSONObject extraParameters)
+    {
+        super(request);
+
+        int questionx = url.indexOf('?');
+
+        String clientPath = questionx < 0 ? url : url.substring(0, questionx);
+
+        String contextPath = request.getContextPath();
+
+        if (!clientPath.startsWith(contextPath + "/"))
+        {
+            throw new IllegalArgumentException(String.format("Batched event URL '%s' does not start with the context path ('%s').",
+                    url, contextPath));
+        }
+
+        path = clientPath.substring(contextPath.length());
+
+        if (questionx >= 0)
+        {
+            for (String pair : url.substring(questionx + 1).split("&"))
+            {
+                if (pair.length() == 0)
+                {
+                    continue;
+                }
+
+                int equalsx = pair.indexOf('=');
+
+                if (equalsx < 0)
+                {
+                    addParameter(decode(pair), "");
+                } else
+                {
+                    addParameter(decode(pair.substring(0, equalsx)), decode(pair.substring(equalsx + 1)));
+                }
+            }
+        }
+
+        if (extraParameters != null)
+        {
+            for (String name : extraParameters.keys())
+            {
+                addParameter(name, String.valueOf(extraParameters.get(name)));
+            }
+        }
+    }
+
+    private void addParameter(String name, String value)
+    {
+        List<String> values = parameters.get(name);
+
+        if (values == null)
+        {
+            values = CollectionFactory.newList();
+            parameters.put(name, values);
+        }
+
+        values.add(value);
+    }
+
+    private static String decode(String input)
+    {
+        try
+        {
+            return URLDecoder.decode(input, "UTF-8");
+        } catch (UnsupportedEncodingException ex)
+        {
+            // UTF-8 is always supported.
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public String getPath()
+    {
+        return path;
+    }
+
+    @Override
+    public List<String> getParameterNames()
+    {
+        return InternalUtils.sortedKeys(parameters);
+    }
+
+    @Override
+    public String getParameter(String name)
+    {
+        List<String> values = parameters.get(name);
+
+        return values == null ? null : values.get(0);
+    }
+
+    @Override
+    public String[] getParameters(String name)
+    {
+        List<String> values = parameters.get(name);
+
+        return values == null ? null : values.toArray(new String[values.size()]);
+    }
+
+    @Override
+    public boolean isXHR()
+    {
+        return true;
+    }
+}
@@ -0,0 +1,92 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.ajax;
+
+import org.apache.tapestry5.ClientBodyElement;
+import org.apache.tapestry5.ComponentResources;
+import org.apache.tapestry5.QueryParameterConstants;
+import org.apache.tapestry5.internal.services.RequestPageCache;
+import org.apache.tapestry5.runtime.Component;
+import org.apache.tapestry5.runtime.RenderCommand;
+import org.apache.tapestry5.services.ComponentEventResultProcessor;
+import org.apache.tapestry5.services.Request;
+import org.apache.tapestry5.services.ajax.AjaxResponseRenderer;
+
+import java.io.IOException;
+
+/**
+ * Processes the result of a single component event inside a batch request. Rather than sending a response, the
+ * result is converted into a zone update (via {@link AjaxResponseRenderer#addRender(String, Object)}) for the zone
+ * identified by the event's {@link QueryParameterConstants#ZONE_ID} parameter. All zone updates are rendered together
+ * once every event in the batch has been processed.
+ *
+ * @see BatchEventDispatcher
+ * @since 5.4
+ */
+public class BatchedEventResultProcessor implements ComponentEventResultProcessor<Object>
+{
+    private final Request request;
+
+    private final RequestPageCache cache;
+
+    private final AjaxResponseRenderer ajaxResponseRenderer;
+
+    public BatchedEventResultProcessor(Request request, RequestPageCache cache, AjaxResponseRenderer ajaxResponseRenderer)
+    {
+        this.request = request;
+        this.cache = cache;
+        this.ajaxResponseRenderer = ajaxResponseRenderer;
+    }
+
+    public void processResultValue(Object value) throws IOException
+    {
+        String zoneId = request.getParameter(QueryParameterConstants.ZONE_ID);
+
+        if (zoneId == null)
+        {
+            throw new IllegalArgumentException(String.format("A component event inside a batch request must identify the zone to update (with the '%s' query parameter).",
+                    QueryParameterConstants.ZONE_ID));
+        }
+
+        ajaxResponseRenderer.addRender(zoneId, toRenderCommand(zoneId, value));
+    }
+
+    private Object toRenderCommand(String zoneId, Object value)
+    {
+        if (value instanceof ClientBodyElement)
+        {
+            return ((ClientBodyElement) value).getBody();
+        }
+
+        // Components are transformed to implement RenderCommand, so they must be checked for first; rendering
+        // the component itself (rather than its ComponentPageElement) is not possible.
+
+        if (value instanceof Component)
+        {
+            ComponentResources resources = ((Component) value).getComponentResources();
+
+            if (value != resources.getPage())
+            {
+                return cache.get(resources.getPageName()).getComponentElementByNestedId(resources.getNestedId());
+            }
+        } else if (value instanceof RenderCommand)
+        {
+            return value;
+        }
+
+        throw new IllegalArgumentException(String.format("The component event for zone '%s' returned %s, which can not be processed as part of a batch request; only blocks and components may be returned.",
+                zoneId, value));
+    }
+}
@@ -0,0 +1,131 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.ajax;
+
+import org.apache.tapestry5.ContentType;
+import org.apache.tapestry5.QueryParameterConstants;
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.internal.InternalConstants;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+import org.apache.tapestry5.services.Dispatcher;
+import org.apache.tapestry5.services.PathConstructor;
+import org.apache.tapestry5.services.Request;
+import org.apache.tapestry5.services.RequestGlobals;
+import org.apache.tapestry5.services.Response;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Handles connections to the push channel. A client that accepts "text/event-stream" (i.e., an EventSource) is
+ * connected using Server-Sent Events, with each zone update written as a separate event. Any other client is treated
+ * as a long poll, and receives a JSON array of zone updates once any are available (or an empty array once the
+ * connection times out).
+ * <p/>
+ * The client identifies itself, and the topics it subscribes to, using the signed subscriptions rendered into the page
+ * (see {@link PushChannelManager#createSubscription(String)}); requests with missing or tampered subscriptions are
+ * rejected.
+ * <p/>
+ * The connection is held open by the {@link PushConnector}, using Servlet 3.0 asynchronous processing; this dispatcher
+ * is only contributed when the container supports it.
+ *
+ * @see SymbolConstants#PUSH_PATH
+ * @see PushChannelManager
+ * @since 5.4
+ */
+public class PushChannelDispatcher implements Dispatcher
+{
+    private static final String EVENT_STREAM_MIME_TYPE = "text/event-stream";
+
+    private final PushChannelManager manager;
+
+    private final PushConnector connector;
+
+    private final RequestGlobals requestGlobals;
+
+    private final String dispatchPath;
+
+    private final String outputEncoding;
+
+    public PushChannelDispatcher(PushChannelManager manager,
+                                 PushConnector connector,
+                                 RequestGlobals requestGlobals,
+                                 PathConstructor pathConstructor,
+
+                                 @Symbol(SymbolConstants.PUSH_PATH)
+                                 String pushPath,
+
+                                 @Symbol(SymbolConstants.CHARSET)
+                                 String outputEncoding)
+    {
+        this.manager = manager;
+        this.connector = connector;
+        this.requestGlobals = requestGlobals;
+        this.outputEncoding = outputEncoding;
+
+        dispatchPath = pathConstructor.constructDispatchPath(pushPath);
+    }
+
+    public boolean dispatch(Request request, Response response) throws IOException
+    {
+        if (!request.getPath().equals(dispatchPath))
+        {
+            return false;
+        }
+
+        String subscriptions = request.getParameter(QueryParameterConstants.PUSH_SUBSCRIPTIONS);
+
+        if (InternalUtils.isBlank(subscriptions))
+        {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                    String.format("Push channel request did not include the '%s' query parameter.", QueryParameterConstants.PUSH_SUBSCRIPTIONS));
+
+            return true;
+        }
+
+        HttpServletRequest servletRequest = requestGlobals.getHTTPServletRequest();
+        HttpServletResponse servletResponse = requestGlobals.getHTTPServletResponse();
+
+        HttpSession session = servletRequest.getSession(false);
+
+        PushSubscriber subscriber = manager.subscribe(Arrays.asList(subscriptions.split(",")),
+                session == null ? null : session.getId());
+
+        if (subscriber == null)
+        {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "Push channel subscription is not valid.");
+
+            return true;
+        }
+
+        String accept = request.getHeader("Accept");
+
+        boolean streaming = accept != null && accept.contains(EVENT_STREAM_MIME_TYPE);
+
+        ContentType contentType = new ContentType(streaming ? EVENT_STREAM_MIME_TYPE : InternalConstants.JSON_MIME_TYPE,
+                outputEncoding);
+
+        servletResponse.setContentType(contentType.toString());
+        servletResponse.setHeader("Cache-Control", "no-cache");
+
+        connector.connect(servletRequest, servletResponse, subscriber, streaming);
+
+        return true;
+    }
+}
@@ -0,0 +1,79 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.ajax;
+
+import org.apache.tapestry5.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * Tracks the clients of the push channel, and delivers zone updates to them.
+ *
+ * @see PushChannelDispatcher
+ * @see org.apache.tapestry5.services.ajax.ZoneUpdatePublisher
+ * @since 5.4
+ */
+public interface PushChannelManager
+{
+    /**
+     * Creates a subscription to the topics for the page being rendered, for the client to present when it connects
+     * to the push channel. The subscription is signed (using the {@link org.apache.tapestry5.services.ClientDataEncoder}),
+     * so that clients may only subscribe to the topics of the pages they have been sent. All the subscriptions
+     * created during a single request identify the same client.
+     *
+     * @param topics
+     *         comma-separated list of topics, possibly blank
+     * @return the encoded subscription
+     */
+    String createSubscription(String topics);
+
+    /**
+     * Returns the subscriber for the subscriptions, creating a new one if the client is new, or if the client has
+     * changed its topics or session.
+     *
+     * @param subscriptions
+     *         subscriptions previously created by {@link #createSubscription(String)}
+     * @param sessionId
+     *         id of the client's session, or null
+     * @return the subscriber, or null if any subscription has been tampered with, or if the subscriptions do not all
+     *         identify the same client
+     */
+    PushSubscriber subscribe(List<String> subscriptions, String sessionId);
+
+    /**
+     * Returns true if any client has subscribed to the topic.
+     */
+    boolean hasTopicSubscribers(String topic);
+
+    /**
+     * Returns true if any client has connected using the session.
+     */
+    boolean hasSessionSubscribers(String sessionId);
+
+    /**
+     * Queues the update for every subscriber to the topic, and sends it to those currently connected.
+     *
+     * @param topic
+     *         topic name
+     * @param update
+     *         JSONObject with {@link PushSubscriber#ZONE} and {@link PushSubscriber#CONTENT} keys
+     */
+    void publishToTopic(String topic, JSONObject update);
+
+    /**
+     * Queues the update for every subscriber connected using the session, and sends it to those currently connected.
+     */
+    void publishToSession(String sessionId, JSONObject update);
+}
@@ -0,0 +1,279 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.ajax;
+
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.func.Predicate;
+import org.apache.tapestry5.ioc.Invokable;
+import org.apache.tapestry5.ioc.annotations.IntermediateType;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.services.ParallelExecutor;
+import org.apache.tapestry5.ioc.services.PerThreadValue;
+import org.apache.tapestry5.ioc.services.PerthreadManager;
+import org.apache.tapestry5.ioc.services.cron.IntervalSchedule;
+import org.apache.tapestry5.ioc.services.cron.PeriodicExecutor;
+import org.apache.tapestry5.ioc.util.TimeInterval;
+import org.apache.tapestry5.json.JSONObject;
+import org.apache.tapestry5.services.ClientDataEncoder;
+import org.apache.tapestry5.services.ClientDataSink;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.*;
+
+public class PushChannelManagerImpl implements PushChannelManager
+{
+    private final Map<String, PushSubscriber> subscribers = CollectionFactory.newConcurrentMap();
+
+    private final ParallelExecutor parallelExecutor;
+
+    private final ClientDataEncoder clientDataEncoder;
+
+    /**
+     * Identifies the client for the subscriptions created while rendering the current request.
+     */
+    private final PerThreadValue<String> requestClientId;
+
+    private final Logger logger;
+
+    private final int queueSize;
+
+    private final long timeout;
+
+    public PushChannelManagerImpl(ParallelExecutor parallelExecutor, PeriodicExecutor periodicExecutor,
+                                  ClientDataEncoder clientDataEncoder, PerthreadManager perthreadManager,
+                                  Logger logger,
+
+                                  @Symbol(SymbolConstants.PUSH_QUEUE_SIZE)
+                                  int queueSize,
+
+                                  @Symbol(SymbolConstants.PUSH_TIMEOUT)
+                                  @IntermediateType(TimeInterval.class)
+                                  long timeout)
+    {
+        this.parallelExecutor = parallelExecutor;
+        this.clientDataEncoder = clientDataEncoder;
+        this.logger = logger;
+        this.queueSize = queueSize;
+        this.timeout = timeout;
+
+        requestClientId = perthreadManager.createValue();
+
+        periodicExecutor.addJob(new IntervalSchedule(timeout), "Push channel subscriber expiration", new Runnable()
+        {
+            public void run()
+            {
+                expireSubscribers();
+            }
+        });
+    }
+
+    public String createSubscription(String topics)
+    {
+        String clientId = requestClientId.get();
+
+        if (clientId == null)
+        {
+            clientId = UUID.randomUUID().toString();
+
+            requestClientId.set(clientId);
+        }
+
+        ClientDataSink sink = clientDataEncoder.createSink();
+
+        try
+        {
+            ObjectOutputStream stream = sink.getObjectOutputStream();
+
+            stream.writeUTF(clientId);
+            stream.writeUTF(topics == null ? "" : topics);
+
+            stream.close();
+        } catch (IOException ex)
+        {
+            throw new RuntimeException(String.format("Unable to encode push channel subscription: %s", ex), ex);
+        }
+
+        return sink.getClientData();
+    }
+
+    public PushSubscriber subscribe(List<String> subscriptions, String sessionId)
+    {
+        String clientId = null;
+
+        Set<String> topics = CollectionFactory.newSet();
+
+        for (String subscription : subscriptions)
+        {
+            String[] decoded = decode(subscription);
+
+            if (decoded == null || (clientId != null && !clientId.equals(decoded[0])))
+            {
+                return null;
+            }
+
+            clientId = decoded[0];
+
+            for (String topic : decoded[1].split(","))
+            {
+                if (topic.trim().length() > 0)
+                {
+                    topics.add(topic.trim());
+                }
+            }
+        }
+
+        if (clientId == null)
+        {
+            return null;
+        }
+
+        PushSubscriber subscriber = subscribers.get(clientId);
+
+        if (subscriber != null && subscriber.isSameSubscription(topics, sessionId))
+        {
+            return subscriber;
+        }
+
+        subscriber = new PushSubscriber(clientId, topics, sessionId, queueSize);
+
+        subscribers.put(clientId, subscriber);
+
+        return subscriber;
+    }
+
+    /**
+     * Returns the client id and topics of the subscription, or null if it has been tampered with.
+     */
+    private String[] decode(String subscription)
+    {
+        try
+        {
+            ObjectInputStream stream = clientDataEncoder.decodeClientData(subscription);
+
+            try
+            {
+                return new String[]{stream.readUTF(), stream.readUTF()};
+            } finally
+            {
+                stream.close();
+            }
+        } catch (Exception ex)
+        {
+            logger.debug("Rejected push channel subscription: {}", ex.toString());
+
+            return null;
+        }
+    }
+
+    public boolean hasTopicSubscribers(String topic)
+    {
+        return find(topicMatcher(topic)) != null;
+    }
+
+    public boolean hasSessionSubscribers(String sessionId)
+    {
+        return find(sessionMatcher(sessionId)) != null;
+    }
+
+    public void publishToTopic(String topic, JSONObject update)
+    {
+        publish(topicMatcher(topic), update);
+    }
+
+    public void publishToSession(String sessionId, JSONObject update)
+    {
+        publish(sessionMatcher(sessionId), update);
+    }
+
+    private static Predicate<PushSubscriber> topicMatcher(final String topic)
+    {
+        return new Predicate<PushSubscriber>()
+        {
+            public boolean accept(PushSubscriber subscriber)
+            {
+                return subscriber.isSubscribedToTopic(topic);
+            }
+        };
+    }
+
+    private static Predicate<PushSubscriber> sessionMatcher(final String sessionId)
+    {
+        return new Predicate<PushSubscriber>()
+        {
+            public boolean accept(PushSubscriber subscriber)
+            {
+                return subscriber.isInSession(sessionId);
+            }
+        };
+    }
+
+    private PushSubscriber find(Predicate<PushSubscriber> matcher)
+    {
+        for (PushSubscriber subscriber : subscribers.values())
+        {
+            if (matcher.accept(subscriber))
+            {
+                return subscriber;
+            }
+        }
+
+        return null;
+    }
+
+    private void publish(Predicate<PushSubscriber> matcher, JSONObject update)
+    {
+        for (final PushSubscriber subscriber : subscribers.values())
+        {
+            if (matcher.accept(subscriber) && subscriber.offer(update))
+            {
+                // Writing to the client may block, so it is done by a thread from the pool, rather than by
+                // the request thread that published the update.
+
+                parallelExecutor.invoke(new Invokable<Void>()
+                {
+                    public Void invoke()
+                    {
+                        subscriber.flush();
+
+                        return null;
+                    }
+                });
+            }
+        }
+    }
+
+    private void expireSubscribers()
+    {
+        long cutoff = System.currentTimeMillis() - 2 * timeout;
+
+        Iterator<PushSubscriber> i = subscribers.values().iterator();
+
+        while (i.hasNext())
+        {
+            PushSubscriber subscriber = i.next();
+
+            if (subscriber.isExpired(cutoff))
+            {
+                logger.debug("Discarding push channel client {}.", subscriber.getClientId());
+
+                i.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.ajax;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * A push channel request held open by the container, through which zone updates are sent to a
+ * {@link PushSubscriber}.
+ *
+ * @see PushConnector
+ * @since 5.4
+ */
+public interface PushConnection
+{
+    /**
+     * Returns the writer for the response to the client.
+     */
+    PrintWriter getWriter() throws IOException;
+
+    /**
+     * Completes the response, closing the connection. Does nothing if the container has already completed it.
+     */
+    void complete();
+}
@@ -0,0 +1,48 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.ajax;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Holds push channel requests open, so that zone updates can be sent to a {@link PushSubscriber} as they are
+ * published. The implementation uses Servlet 3.0 asynchronous processing; it is compiled separately from the rest of
+ * Tapestry, and is only used when the container supports it (see
+ * {@link org.apache.tapestry5.internal.services.ServletAsyncSupport}).
+ *
+ * @see PushChannelDispatcher
+ * @since 5.4
+ */
+public interface PushConnector
+{
+    /**
+     * Connects the subscriber to the request. When the request can not be held open (because a filter in front of
+     * Tapestry does not support asynchronous processing), any queued updates are sent immediately instead, and the
+     * client will simply reconnect.
+     *
+     * @param request
+     *         the push channel request
+     * @param response
+     *         response for the request, with content type already set
+     * @param subscriber
+     *         to connect
+     * @param streaming
+     *         true for an event stream (Server-Sent Events), false for a long poll
+     */
+    void connect(HttpServletRequest request, HttpServletResponse response, PushSubscriber subscriber, boolean streaming)
+            throws IOException;
+}
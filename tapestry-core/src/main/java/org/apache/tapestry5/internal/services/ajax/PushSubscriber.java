@@ -0,0 +1,379 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.ajax;
+
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.json.JSONArray;
+import org.apache.tapestry5.json.JSONObject;
+
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * A single client of the push channel, with a bounded queue of zone updates waiting to be delivered. The client may be
+ * connected with an event stream (Server-Sent Events), where each update is written as soon as it is available, or
+ * with a long poll, where the first available updates complete the request. In between connections, updates
+ * accumulate in the queue; an update for a zone replaces any update for the same zone already in the queue, and the
+ * oldest update is discarded when the queue is full.
+ *
+ * @see PushChannelManager
+ * @since 5.4
+ */
+public class PushSubscriber
+{
+    /**
+     * Key, in each update, for the client id of the zone to update.
+     */
+    public static final String ZONE = "zone";
+
+    /**
+     * Key, in each update, for the new content (markup) for the zone.
+     */
+    public static final String CONTENT = "content";
+
+    private final String clientId;
+
+    private final Set<String> topics;
+
+    private final String sessionId;
+
+    private final int queueSize;
+
+    private final LinkedList<JSONObject> queue = CollectionFactory.newLinkedList();
+
+    /**
+     * Held while writing to the client, so that batches of updates are written one at a time, in the order they were
+     * taken from the queue. Never acquired while holding the subscriber's own lock.
+     */
+    private final Object writeLock = new Object();
+
+    private PushConnection connection;
+
+    private boolean streaming;
+
+    private long lastActive = System.currentTimeMillis();
+
+    public PushSubscriber(String clientId, Set<String> topics, String sessionId, int queueSize)
+    {
+        this.clientId = clientId;
+        this.topics = topics;
+        this.sessionId = sessionId;
+        this.queueSize = queueSize;
+    }
+
+    public String getClientId()
+    {
+        return clientId;
+    }
+
+    /**
+     * Returns true if this subscriber was created for the same topics and session.
+     */
+    public boolean isSameSubscription(Set<String> topics, String sessionId)
+    {
+        return this.topics.equals(topics) && equal(this.sessionId, sessionId);
+    }
+
+    public boolean isSubscribedToTopic(String topic)
+    {
+        return topics.contains(topic);
+    }
+
+    public boolean isInSession(String sessionId)
+    {
+        return this.sessionId != null && this.sessionId.equals(sessionId);
+    }
+
+    private static boolean equal(String left, String right)
+    {
+        return left == null ? right == null : left.equals(right);
+    }
+
+    /**
+     * Adds an update to the queue.
+     *
+     * @return true if the subscriber is currently connected, and the update should be {@linkplain #flush() flushed}
+     */
+    public synchronized boolean offer(JSONObject update)
+    {
+        String zone = update.getString(ZONE);
+
+        Iterator<JSONObject> i = queue.iterator();
+
+        while (i.hasNext())
+        {
+            if (i.next().getString(ZONE).equals(zone))
+            {
+                i.remove();
+            }
+        }
+
+        if (queue.size() >= queueSize)
+        {
+            queue.removeFirst();
+        }
+
+        queue.add(update);
+
+        return connection != null;
+    }
+
+    /**
+     * Connects the subscriber to a request held open by the {@link PushConnector}, replacing any prior connection,
+     * and immediately sends any queued updates.
+     */
+    public void connect(PushConnection connection, boolean streaming) throws IOException
+    {
+        PushConnection previous;
+
+        synchronized (this)
+        {
+            previous = this.connection;
+
+            this.connection = connection;
+            this.streaming = streaming;
+            lastActive = System.currentTimeMillis();
+        }
+
+        if (previous != null)
+        {
+            previous.complete();
+        }
+
+        if (streaming)
+        {
+            synchronized (writeLock)
+            {
+                PrintWriter writer = connection.getWriter();
+
+                // Tell the EventSource to reconnect quickly once the connection times out.
+
+                writer.print("retry: 1000\n\n");
+                writer.flush();
+            }
+        }
+
+        flush();
+    }
+
+    /**
+     * Used when the request can not be held open: sends whatever updates are queued (possibly none) as the complete
+     * response.
+     */
+    public void send(ServletResponse response, boolean streaming) throws IOException
+    {
+        List<JSONObject> updates;
+
+        synchronized (this)
+        {
+            lastActive = System.currentTimeMillis();
+
+            updates = drain();
+        }
+
+        write(response.getWriter(), streaming, updates);
+    }
+
+    /**
+     * Sends any queued updates to the connected client. For a long poll, this completes the request.
+     * <p/>
+     * The queue is drained while holding the subscriber's lock, but the updates are written to the client outside of
+     * it, so that a slow client does not hold up threads {@linkplain #offer(JSONObject) offering} new updates.
+     */
+    public void flush()
+    {
+        synchronized (writeLock)
+        {
+            PushConnection target;
+            boolean streaming;
+            List<JSONObject> updates;
+
+            synchronized (this)
+            {
+                if (connection == null || queue.isEmpty())
+                {
+                    return;
+                }
+
+                target = connection;
+                streaming = this.streaming;
+                updates = drain();
+
+                // A long poll is over once it has received some updates.
+
+                if (!streaming)
+                {
+                    detach();
+                }
+            }
+
+            boolean failed;
+
+            try
+            {
+                PrintWriter writer = target.getWriter();
+
+                write(writer, streaming, updates);
+
+                failed = writer.checkError();
+            } catch (Exception ex)
+            {
+                failed = true;
+            }
+
+            if (failed)
+            {
+                // The client has gone away; the updates go back in the queue for when it reconnects.
+                // Zone updates are idempotent, so sending an update twice is harmless.
+
+                requeue(updates);
+
+                disconnect(target);
+            }
+
+            if (failed || !streaming)
+            {
+                target.complete();
+            }
+        }
+    }
+
+    private List<JSONObject> drain()
+    {
+        List<JSONObject> result = CollectionFactory.newList(queue);
+
+        queue.clear();
+
+        return result;
+    }
+
+    /**
+     * Puts updates that could not be sent back at the front of the queue, unless newer updates for the same zones have
+     * been queued since.
+     */
+    private synchronized void requeue(List<JSONObject> updates)
+    {
+        for (int i = updates.size() - 1; i >= 0 && queue.size() < queueSize; i--)
+        {
+            JSONObject update = updates.get(i);
+
+            if (!isQueued(update.getString(ZONE)))
+            {
+                queue.addFirst(update);
+            }
+        }
+    }
+
+    private boolean isQueued(String zone)
+    {
+        for (JSONObject update : queue)
+        {
+            if (update.getString(ZONE).equals(zone))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static void write(PrintWriter writer, boolean streaming, List<JSONObject> updates)
+    {
+        if (streaming)
+        {
+            for (JSONObject update : updates)
+            {
+                writer.print("data: ");
+                writer.print(update.toCompactString());
+                writer.print("\n\n");
+            }
+        } else
+        {
+            JSONArray array = new JSONArray();
+
+            for (JSONObject update : updates)
+            {
+                array.put(update);
+            }
+
+            writer.print(array.toCompactString());
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * Invoked when the connection times out. A long poll is completed with an empty list of updates.
+     */
+    public void timeout(PushConnection connection)
+    {
+        synchronized (writeLock)
+        {
+            boolean longPoll;
+
+            synchronized (this)
+            {
+                if (this.connection != connection)
+                {
+                    return;
+                }
+
+                longPoll = !streaming;
+
+                detach();
+            }
+
+            if (longPoll)
+            {
+                try
+                {
+                    write(connection.getWriter(), false, Collections.<JSONObject>emptyList());
+                } catch (Exception ex)
+                {
+                    // Ignore, the client will reconnect.
+                }
+            }
+        }
+
+        connection.complete();
+    }
+
+    /**
+     * Invoked when a connection completes, or fails.
+     */
+    public synchronized void disconnect(PushConnection connection)
+    {
+        if (this.connection == connection)
+        {
+            detach();
+        }
+    }
+
+    private void detach()
+    {
+        connection = null;
+        lastActive = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns true if the subscriber is not connected, and has not been connected since the cutoff time.
+     */
+    public synchronized boolean isExpired(long cutoff)
+    {
+        return connection == null && lastActive < cutoff;
+    }
+}
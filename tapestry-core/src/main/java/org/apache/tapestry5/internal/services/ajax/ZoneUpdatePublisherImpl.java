@@ -0,0 +1,74 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.ajax;
+
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+import org.apache.tapestry5.json.JSONObject;
+import org.apache.tapestry5.services.PartialTemplateRenderer;
+import org.apache.tapestry5.services.RequestGlobals;
+import org.apache.tapestry5.services.ajax.ZoneUpdatePublisher;
+
+import javax.servlet.http.HttpSession;
+
+public class ZoneUpdatePublisherImpl implements ZoneUpdatePublisher
+{
+    private final PushChannelManager manager;
+
+    private final PartialTemplateRenderer partialTemplateRenderer;
+
+    private final RequestGlobals requestGlobals;
+
+    public ZoneUpdatePublisherImpl(PushChannelManager manager, PartialTemplateRenderer partialTemplateRenderer, RequestGlobals requestGlobals)
+    {
+        this.manager = manager;
+        this.partialTemplateRenderer = partialTemplateRenderer;
+        this.requestGlobals = requestGlobals;
+    }
+
+    public ZoneUpdatePublisher publish(String topic, String clientId, Object renderer)
+    {
+        assert InternalUtils.isNonBlank(topic);
+
+        // Don't bother rendering the content if there's no one to send it to.
+
+        if (manager.hasTopicSubscribers(topic))
+        {
+            manager.publishToTopic(topic, toUpdate(clientId, renderer));
+        }
+
+        return this;
+    }
+
+    public ZoneUpdatePublisher publishToSession(String clientId, Object renderer)
+    {
+        HttpSession session = requestGlobals.getHTTPServletRequest().getSession(false);
+
+        if (session != null && manager.hasSessionSubscribers(session.getId()))
+        {
+            manager.publishToSession(session.getId(), toUpdate(clientId, renderer));
+        }
+
+        return this;
+    }
+
+    private JSONObject toUpdate(String clientId, Object renderer)
+    {
+        assert InternalUtils.isNonBlank(clientId);
+        assert renderer != null;
+
+        return new JSONObject(PushSubscriber.ZONE, clientId,
+                PushSubscriber.CONTENT, partialTemplateRenderer.render(renderer));
+    }
+}
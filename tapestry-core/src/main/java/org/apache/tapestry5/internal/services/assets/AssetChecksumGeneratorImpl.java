@@ -1,4 +1,4 @@
-// Copyright 2013 The Apache Software Foundation
+// Copyright 2013, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,7 +14,10 @@
 
 package org.apache.tapestry5.internal.services.assets;
 
+import org.apache.commons.codec.binary.Hex;
+import org.apache.tapestry5.SymbolConstants;
 import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.annotations.Symbol;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.services.assets.AssetChecksumGenerator;
 import org.apache.tapestry5.services.assets.StreamableResource;
@@ -23,11 +26,14 @@ import org.apache.tapestry5.services.assets.StreamableResourceSource;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Map;
 import java.util.zip.Adler32;
 
 public class AssetChecksumGeneratorImpl implements AssetChecksumGenerator
 {
+    static final String ADLER32 = "Adler32";
 
     private final StreamableResourceSource streamableResourceSource;
 
@@ -35,10 +41,21 @@ public class AssetChecksumGeneratorImpl implements AssetChecksumGenerator
 
     private final Map<StreamableResource, String> cache = CollectionFactory.newConcurrentMap();
 
-    public AssetChecksumGeneratorImpl(StreamableResourceSource streamableResourceSource, ResourceChangeTracker tracker)
+    private final String algorithm;
+
+    public AssetChecksumGeneratorImpl(StreamableResourceSource streamableResourceSource, ResourceChangeTracker tracker,
+                                      @Symbol(SymbolConstants.ASSET_CHECKSUM_ALGORITHM)
+                                      String algorithm)
     {
         this.streamableResourceSource = streamableResourceSource;
         this.tracker = tracker;
+        this.algorithm = algorithm;
+
+        if (!algorithm.equals(ADLER32))
+        {
+            // Fail at startup, not on the first request.
+            newDigest();
+        }
 
         tracker.clearOnInvalidation(cache);
     }
@@ -65,11 +82,25 @@ public class AssetChecksumGeneratorImpl implements AssetChecksumGenerator
         return result;
     }
 
+    private MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException ex)
+        {
+            throw new IllegalArgumentException(String.format("Asset checksum algorithm '%s' (symbol %s) is not available.",
+                    algorithm, SymbolConstants.ASSET_CHECKSUM_ALGORITHM), ex);
+        }
+    }
+
     private String toChecksum(InputStream is) throws IOException
     {
         // Adler32 is very fast and suitable for these purposes (MD5 and SHA are slower, and
-        // are targetted at cryptographic solutions).
-        Adler32 checksum = new Adler32();
+        // are targetted at cryptographic solutions). A message digest is stronger, and better suited
+        // to content shared across many servers (or a CDN) for a long time.
+        Adler32 checksum = algorithm.equals(ADLER32) ? new Adler32() : null;
+        MessageDigest digest = checksum == null ? newDigest() : null;
 
         byte[] buffer = new byte[1024];
 
@@ -84,11 +115,19 @@ public class AssetChecksumGeneratorImpl implements AssetChecksumGenerator
                     break;
                 }
 
-                checksum.update(buffer, 0, length);
+                if (checksum != null)
+                {
+                    checksum.update(buffer, 0, length);
+                } else
+                {
+                    digest.update(buffer, 0, length);
+                }
             }
 
-            // Reduces it down to just 32 bits which we express in hex.
-            return Long.toHexString(checksum.getValue());
+            // Adler32 reduces it down to just 32 bits which we express in hex.
+            return checksum != null
+                    ? Long.toHexString(checksum.getValue())
+                    : new String(Hex.encodeHex(digest.digest()));
         } finally
         {
             is.close();
@@ -0,0 +1,134 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.services.assets.AssetMetrics;
+import org.apache.tapestry5.services.assets.AssetStatistics;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AssetMetricsImpl implements AssetMetrics
+{
+    private static final String TOTALS = "*";
+
+    private static class Counters
+    {
+        final AtomicLong requests = new AtomicLong(), notModified = new AtomicLong(), cacheHits = new AtomicLong(),
+                cacheMisses = new AtomicLong(), compressedBytes = new AtomicLong(), uncompressedBytes = new AtomicLong(),
+                totalNanos = new AtomicLong();
+
+        AssetStatistics toStatistics(String name)
+        {
+            return new AssetStatistics(name, requests.get(), notModified.get(), cacheHits.get(), cacheMisses.get(),
+                    compressedBytes.get(), uncompressedBytes.get(), totalNanos.get());
+        }
+    }
+
+    private final ConcurrentMap<String, Counters> counters = CollectionFactory.newConcurrentMap();
+
+    private volatile Counters totals = new Counters();
+
+    private Counters get(String name)
+    {
+        Counters result = counters.get(name);
+
+        if (result == null)
+        {
+            Counters created = new Counters();
+
+            result = counters.putIfAbsent(name, created);
+
+            if (result == null)
+            {
+                result = created;
+            }
+        }
+
+        return result;
+    }
+
+    public void recordRequest(String name, boolean notModified, String contentEncoding, long bytes, long elapsedNanos)
+    {
+        assert name != null;
+
+        record(get(name), notModified, contentEncoding, bytes, elapsedNanos);
+        record(totals, notModified, contentEncoding, bytes, elapsedNanos);
+    }
+
+    private static void record(Counters counters, boolean notModified, String contentEncoding, long bytes, long elapsedNanos)
+    {
+        counters.requests.incrementAndGet();
+
+        if (notModified)
+        {
+            counters.notModified.incrementAndGet();
+        }
+
+        (contentEncoding == null ? counters.uncompressedBytes : counters.compressedBytes).addAndGet(bytes);
+
+        counters.totalNanos.addAndGet(elapsedNanos);
+    }
+
+    public void recordCacheAccess(String name, boolean hit)
+    {
+        assert name != null;
+
+        record(get(name), hit);
+        record(totals, hit);
+    }
+
+    private static void record(Counters counters, boolean hit)
+    {
+        (hit ? counters.cacheHits : counters.cacheMisses).incrementAndGet();
+    }
+
+    public List<AssetStatistics> getStatistics()
+    {
+        List<AssetStatistics> result = CollectionFactory.newList();
+
+        for (Map.Entry<String, Counters> entry : counters.entrySet())
+        {
+            result.add(entry.getValue().toStatistics(entry.getKey()));
+        }
+
+        Collections.sort(result, new Comparator<AssetStatistics>()
+        {
+            public int compare(AssetStatistics o1, AssetStatistics o2)
+            {
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
+
+        return result;
+    }
+
+    public AssetStatistics getTotals()
+    {
+        return totals.toStatistics(TOTALS);
+    }
+
+    public void reset()
+    {
+        counters.clear();
+
+        totals = new Counters();
+    }
+}
@@ -0,0 +1,225 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.Asset;
+import org.apache.tapestry5.internal.AssetConstants;
+import org.apache.tapestry5.internal.TapestryInternalUtils;
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.services.ClasspathMatcher;
+import org.apache.tapestry5.ioc.services.ClasspathScanner;
+import org.apache.tapestry5.ioc.services.ThreadLocale;
+import org.apache.tapestry5.ioc.util.ExceptionUtils;
+import org.apache.tapestry5.services.AssetFactory;
+import org.apache.tapestry5.services.AssetSource;
+import org.apache.tapestry5.services.ClasspathAssetAliasManager;
+import org.apache.tapestry5.services.ContextProvider;
+import org.apache.tapestry5.services.LocalizationSetter;
+import org.apache.tapestry5.services.assets.AssetPrecompiler;
+import org.apache.tapestry5.services.assets.StreamableResourceProcessing;
+import org.apache.tapestry5.services.assets.StreamableResourceSource;
+import org.apache.tapestry5.services.javascript.JavaScriptStack;
+import org.apache.tapestry5.services.javascript.JavaScriptStackSource;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+public class AssetPrecompilerImpl implements AssetPrecompiler
+{
+    private static final String MODULES_FOLDER = "META-INF/modules/";
+
+    // Matches ContextAssetRequestHandler: these are never served as assets.
+    private static final Pattern ILLEGAL_CONTEXT_FOLDER = Pattern.compile("^(web|meta)-inf$", Pattern.CASE_INSENSITIVE);
+
+    private final Logger logger;
+
+    private final StreamableResourceSource streamableResourceSource;
+
+    private final ResourceChangeTracker tracker;
+
+    private final ClasspathAssetAliasManager aliasManager;
+
+    private final ClasspathScanner scanner;
+
+    private final AssetSource assetSource;
+
+    private final AssetFactory contextAssetFactory;
+
+    private final JavaScriptStackSource stackSource;
+
+    private final JavaScriptStackAssembler stackAssembler;
+
+    private final ThreadLocale threadLocale;
+
+    private final LocalizationSetter localizationSetter;
+
+    public AssetPrecompilerImpl(Logger logger, StreamableResourceSource streamableResourceSource,
+                                ResourceChangeTracker tracker, ClasspathAssetAliasManager aliasManager,
+                                ClasspathScanner scanner, AssetSource assetSource,
+                                @ContextProvider AssetFactory contextAssetFactory,
+                                JavaScriptStackSource stackSource, JavaScriptStackAssembler stackAssembler,
+                                ThreadLocale threadLocale, LocalizationSetter localizationSetter)
+    {
+        this.logger = logger;
+        this.streamableResourceSource = streamableResourceSource;
+        this.tracker = tracker;
+        this.aliasManager = aliasManager;
+        this.scanner = scanner;
+        this.assetSource = assetSource;
+        this.contextAssetFactory = contextAssetFactory;
+        this.stackSource = stackSource;
+        this.stackAssembler = stackAssembler;
+        this.threadLocale = threadLocale;
+        this.localizationSetter = localizationSetter;
+    }
+
+    public int precompile(File outputDirectory, File contextDirectory) throws IOException
+    {
+        final Set<String> extensions = CollectionFactory.newSet("js", "css");
+
+        extensions.addAll(streamableResourceSource.fileExtensionsForContentType("text/javascript"));
+        extensions.addAll(streamableResourceSource.fileExtensionsForContentType("text/css"));
+
+        ClasspathMatcher matcher = new ClasspathMatcher()
+        {
+            public boolean matches(String packagePath, String fileName)
+            {
+                return extensions.contains(TapestryInternalUtils.toFileSuffix(fileName));
+            }
+        };
+
+        Map<String, Resource> resources = CollectionFactory.newMap();
+
+        for (String folder : aliasManager.getMappings().values())
+        {
+            addClasspathResources(resources, folder.endsWith("/") ? folder : folder + "/", matcher);
+        }
+
+        addClasspathResources(resources, MODULES_FOLDER, matcher);
+
+        // Stack stylesheets are only available as URLs, but are normally in an aliased folder.
+
+        for (String stackName : stackSource.getStackNames())
+        {
+            JavaScriptStack stack = stackSource.getStack(stackName);
+
+            for (Asset asset : stack.getJavaScriptLibraries())
+            {
+                add(resources, asset.getResource());
+            }
+        }
+
+        if (contextDirectory != null)
+        {
+            addContextResources(resources, contextDirectory, "", extensions);
+        }
+
+        PrecompiledAssetWriter writer = new PrecompiledAssetWriter(outputDirectory);
+
+        for (Map.Entry<String, Resource> e : resources.entrySet())
+        {
+            Resource resource = e.getValue();
+
+            try
+            {
+                writer.add(e.getKey(),
+                        streamableResourceSource.getStreamableResource(resource, StreamableResourceProcessing.COMPRESSION_DISABLED, tracker),
+                        streamableResourceSource.getStreamableResource(resource, StreamableResourceProcessing.COMPRESSION_ENABLED, tracker));
+            } catch (Exception ex)
+            {
+                // Typically, a file that is only meaningful when imported into another (such as a Less include).
+                // It is still processed normally at runtime, if ever requested.
+
+                logger.warn(String.format("Unable to precompile %s: %s", resource, ExceptionUtils.toMessage(ex)));
+            }
+        }
+
+        Locale previous = threadLocale.getLocale();
+
+        try
+        {
+            for (String stackName : stackSource.getStackNames())
+            {
+                for (Locale locale : localizationSetter.getSupportedLocales())
+                {
+                    threadLocale.setLocale(locale);
+
+                    writer.add(PrecompiledAssetWriter.toStackKey(stackName, locale),
+                            stackAssembler.assembleJavaScriptResourceForStack(stackName, false),
+                            stackAssembler.assembleJavaScriptResourceForStack(stackName, true));
+                }
+            }
+        } finally
+        {
+            threadLocale.setLocale(previous);
+        }
+
+        writer.finish();
+
+        logger.info(String.format("Precompiled %,d assets and stacks into %s.", writer.getCount(),
+                new File(outputDirectory, ROOT_FOLDER)));
+
+        return writer.getCount();
+    }
+
+    private void addClasspathResources(Map<String, Resource> resources, String folder, ClasspathMatcher matcher) throws IOException
+    {
+        for (String path : scanner.scan(folder, matcher))
+        {
+            add(resources, assetSource.resourceForPath(AssetConstants.CLASSPATH + ":" + path));
+        }
+    }
+
+    private void addContextResources(Map<String, Resource> resources, File directory, String path, Set<String> extensions)
+    {
+        File[] files = directory.listFiles();
+
+        if (files == null)
+        {
+            return;
+        }
+
+        for (File file : files)
+        {
+            String filePath = path + file.getName();
+
+            if (file.isDirectory())
+            {
+                if (!(path.length() == 0 && ILLEGAL_CONTEXT_FOLDER.matcher(file.getName()).matches()))
+                {
+                    addContextResources(resources, file, filePath + "/", extensions);
+                }
+
+                continue;
+            }
+
+            if (extensions.contains(TapestryInternalUtils.toFileSuffix(file.getName())))
+            {
+                add(resources, contextAssetFactory.getRootResource().forFile(filePath));
+            }
+        }
+    }
+
+    private static void add(Map<String, Resource> resources, Resource resource)
+    {
+        resources.put(PrecompiledAssetWriter.toKey(resource), resource);
+    }
+}
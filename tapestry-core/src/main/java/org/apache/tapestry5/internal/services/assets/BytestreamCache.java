@@ -1,4 +1,4 @@
-// Copyright 2010 The Apache Software Foundation
+// Copyright 2010, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,26 +14,44 @@
 
 package org.apache.tapestry5.internal.services.assets;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import org.apache.tapestry5.internal.TapestryInternalUtils;
+
+import java.io.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A wrapper around a byte-stream, represented internally as a byte array. Part of the fix
  * to TAP5-1116, avoiding a live lock due to ByteArrayOutputStream.writeTo() being a synchronized
  * method.
- * 
+ * <p/>
+ * Starting in 5.4, large content may instead be kept in a temporary file (see {@link SpoolingOutputStream}); the
+ * file is deleted by {@link #delete()}, invoked by whatever owns the content once it is no longer needed. Each stream
+ * opened on the file holds a reference to it, so a stream opened before the content is deleted may still be read to
+ * the end; the file itself is removed when the last such stream is closed.
+ *
  * @since 5.2.0
  */
 public class BytestreamCache
 {
     private final byte[] streamData;
 
+    private final File file;
+
+    private final int size;
+
+    /**
+     * References to the temporary file: one for the owner (until {@link #delete()}) and one for each open stream.
+     */
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private final AtomicBoolean deleted = new AtomicBoolean();
+
     public BytestreamCache(byte[] streamData)
     {
         this.streamData = streamData;
+        this.file = null;
+        this.size = streamData.length;
     }
 
     public BytestreamCache(ByteArrayOutputStream os)
@@ -41,18 +59,135 @@ public class BytestreamCache
         this(os.toByteArray());
     }
 
+    /**
+     * Wraps the content of a temporary file, which becomes owned by this cache.
+     *
+     * @since 5.4
+     */
+    public BytestreamCache(File file, int size)
+    {
+        this.streamData = null;
+        this.file = file;
+        this.size = size;
+    }
+
     public void writeTo(OutputStream os) throws IOException
     {
-        os.write(streamData, 0, streamData.length);
+        if (file == null)
+        {
+            os.write(streamData, 0, streamData.length);
+            return;
+        }
+
+        InputStream is = openStream();
+
+        try
+        {
+            TapestryInternalUtils.copy(is, os);
+        } finally
+        {
+            is.close();
+        }
     }
 
     public int size()
     {
-        return streamData.length;
+        return size;
+    }
+
+    /**
+     * Opens a stream to read the content. For spooled content, the stream keeps the temporary file from being deleted
+     * until it is closed.
+     *
+     * @throws FileNotFoundException
+     *         if the spooled content has already been deleted
+     */
+    public InputStream openStream() throws IOException
+    {
+        if (file == null)
+        {
+            return new ByteArrayInputStream(streamData);
+        }
+
+        acquire();
+
+        try
+        {
+            return new FilterInputStream(new BufferedInputStream(new FileInputStream(file)))
+            {
+                private final AtomicBoolean closed = new AtomicBoolean();
+
+                @Override
+                public void close() throws IOException
+                {
+                    if (closed.compareAndSet(false, true))
+                    {
+                        try
+                        {
+                            super.close();
+                        } finally
+                        {
+                            releaseReference();
+                        }
+                    }
+                }
+            };
+        } catch (IOException ex)
+        {
+            releaseReference();
+
+            throw ex;
+        }
+    }
+
+    private void acquire() throws FileNotFoundException
+    {
+        while (true)
+        {
+            int current = references.get();
+
+            if (current == 0 || deleted.get())
+            {
+                throw new FileNotFoundException(String.format("Spooled content %s has been deleted.", file));
+            }
+
+            if (references.compareAndSet(current, current + 1))
+            {
+                return;
+            }
+        }
+    }
+
+    private void releaseReference()
+    {
+        if (references.decrementAndGet() == 0)
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * Returns true if the content is kept in a temporary file, rather than in memory.
+     *
+     * @since 5.4
+     */
+    public boolean isSpooled()
+    {
+        return file != null;
     }
 
-    public InputStream openStream()
+    /**
+     * Deletes the temporary file holding the content, if any; no new streams may be opened afterwards. The file is
+     * deleted once any streams already open on it are closed. Repeated invocations are ignored, and nothing happens
+     * for content kept in memory.
+     *
+     * @since 5.4
+     */
+    public void delete()
     {
-        return new ByteArrayInputStream(streamData);
+        if (file != null && deleted.compareAndSet(false, true))
+        {
+            releaseReference();
+        }
     }
 }
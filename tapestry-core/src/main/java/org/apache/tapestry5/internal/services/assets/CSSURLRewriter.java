@@ -1,4 +1,4 @@
-// Copyright 2013 The Apache Software Foundation
+// Copyright 2013, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -21,9 +21,7 @@ import org.apache.tapestry5.ioc.Resource;
 import org.apache.tapestry5.services.AssetSource;
 import org.apache.tapestry5.services.assets.*;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -34,6 +32,7 @@ import java.util.regex.Pattern;
  * the CSS file and the image assets it may refer to (useful for incorporating a hash of the resource's content into
  * the exposed URL).
  * <p/>
+ * The content is rewritten as it is streamed, a few lines at a time, rather than being read fully into memory.
  * <p/>
  * One potential problem with URL rewriting is the way that URLs for referenced resources are generated; we are
  * somewhat banking on the fact that referenced resources are non-compressable images.
@@ -65,12 +64,16 @@ public class CSSURLRewriter extends DelegatingSRS
 
     private final AssetChecksumGenerator checksumGenerator;
 
-    public CSSURLRewriter(StreamableResourceSource delegate, OperationTracker tracker, AssetSource assetSource, AssetChecksumGenerator checksumGenerator)
+    private final int spoolThreshold;
+
+    public CSSURLRewriter(StreamableResourceSource delegate, OperationTracker tracker, AssetSource assetSource, AssetChecksumGenerator checksumGenerator,
+                          int spoolThreshold)
     {
         super(delegate);
         this.tracker = tracker;
         this.assetSource = assetSource;
         this.checksumGenerator = checksumGenerator;
+        this.spoolThreshold = spoolThreshold;
     }
 
     @Override
@@ -93,26 +96,114 @@ public class CSSURLRewriter extends DelegatingSRS
                 {
                     public StreamableResource perform() throws IOException
                     {
-                        String baseString = readAsString(base);
-
-                        String filtered = replaceURLs(baseString, baseResource);
+                        SpoolingOutputStream output = new SpoolingOutputStream(spoolThreshold);
 
-                        if (filtered == null)
+                        if (!rewrite(base, baseResource, output))
                         {
                             // No URLs were replaced so no need to create a new StreamableResource
+                            output.discard();
+
                             return base;
                         }
 
-                        BytestreamCache cache = new BytestreamCache(filtered.getBytes("UTF-8"));
-
-                        return new StreamableResourceImpl(base.getDescription(), "text/css",
+                        StreamableResource result = new StreamableResourceImpl(base.getDescription(), "text/css",
                                 CompressionStatus.COMPRESSABLE,
                                 base.getLastModified(),
-                                cache, checksumGenerator);
+                                output.toBytestreamCache(), checksumGenerator);
+
+                        // The original content is not cached (this is the innermost stage of the pipeline), and is
+                        // no longer needed.
+                        StreamableResourceImpl.release(base);
+
+                        return result;
                     }
                 });
     }
 
+    /**
+     * Streams the content of the resource to the output, replacing relative URLs along the way. The content is
+     * processed in chunks that end with a line break (the pattern never matches a URL that spans lines), but a chunk
+     * is extended while its last {@code url(} is not yet closed, as whitespace (including line breaks) is allowed
+     * around the URL.
+     *
+     * @return true if any relative URLs were replaced
+     */
+    private boolean rewrite(StreamableResource resource, Resource baseResource, OutputStream output) throws IOException
+    {
+        boolean didReplace = false;
+
+        StringBuilder pending = new StringBuilder();
+        char[] buffer = new char[8192];
+
+        Reader reader = new InputStreamReader(resource.openStream(), "UTF-8");
+        Writer writer = new OutputStreamWriter(output, "UTF-8");
+
+        try
+        {
+            while (true)
+            {
+                int length = reader.read(buffer);
+
+                if (length < 0)
+                {
+                    break;
+                }
+
+                pending.append(buffer, 0, length);
+
+                int split = findSplit(pending);
+
+                if (split > 0)
+                {
+                    didReplace |= write(pending.substring(0, split), baseResource, writer);
+
+                    pending.delete(0, split);
+                }
+            }
+
+            didReplace |= write(pending.toString(), baseResource, writer);
+        } finally
+        {
+            reader.close();
+            writer.close();
+        }
+
+        return didReplace;
+    }
+
+    private static int findSplit(StringBuilder pending)
+    {
+        int split = pending.lastIndexOf("\n") + 1;
+
+        if (split == 0)
+        {
+            return 0;
+        }
+
+        int lastURL = pending.lastIndexOf("url(", split - 1);
+
+        if (lastURL >= 0)
+        {
+            int close = pending.indexOf(")", lastURL);
+
+            if (close < 0 || close >= split)
+            {
+                return 0;
+            }
+        }
+
+        return split;
+    }
+
+    private boolean write(String chunk, Resource baseResource, Writer writer) throws IOException
+    {
+        String replaced = replaceURLs(chunk, baseResource);
+
+        writer.write(replaced == null ? chunk : replaced);
+
+        return replaced != null;
+    }
+
     /**
      * Replaces any relative URLs in the content for the resource and returns the content with
      * the URLs expanded.
@@ -181,38 +272,4 @@ public class CSSURLRewriter extends DelegatingSRS
     {
         matcher.appendReplacement(output, String.format("url(\"%s\")", assetURL));
     }
-
-
-    // TODO: I'm thinking there's an (internal) service that should be created to make this more reusable.
-    private String readAsString(StreamableResource resource) throws IOException
-    {
-        StringBuffer result = new StringBuffer(resource.getSize());
-        char[] buffer = new char[5000];
-
-        InputStream is = resource.openStream();
-
-        InputStreamReader reader = new InputStreamReader(is, "UTF-8");
-
-        try
-        {
-
-            while (true)
-            {
-                int length = reader.read(buffer);
-
-                if (length < 0)
-                {
-                    break;
-                }
-
-                result.append(buffer, 0, length);
-            }
-        } finally
-        {
-            reader.close();
-            is.close();
-        }
-
-        return result.toString();
-    }
 }
@@ -1,4 +1,4 @@
-// Copyright 2013 The Apache Software Foundation
+// Copyright 2013, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,39 +14,160 @@
 
 package org.apache.tapestry5.internal.services.assets;
 
-import org.apache.tapestry5.services.assets.AssetChecksumGenerator;
-import org.apache.tapestry5.services.assets.CompressionStatus;
-import org.apache.tapestry5.services.assets.StreamableResource;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.services.assets.*;
 
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * GZip compressed representation of a {@link StreamableResource}.
+ * Compressed representation of a {@link StreamableResource}, in one or more content encodings. The content for the
+ * first (preferred) encoding is computed immediately, the content for any other encoding the first time it is needed;
+ * each is kept for the life of this object (in memory, or in a temporary file for content over the spool threshold,
+ * until {@link #release() released}). The base resource is not released along with this resource.
+ * Content is compressed as it is streamed from the base resource. The checksum is always that of the uncompressed content, so that the same
+ * URL can be used whatever encoding the client ends up accepting.
  *
  * @since 5.4
  */
-public class CompressedStreamableResource extends StreamableResourceImpl
+public class CompressedStreamableResource extends StreamableResourceImpl implements EncodedStreamableResource
 {
+    private static final List<ContentEncoder> GZIP_ONLY = Collections.<ContentEncoder>singletonList(new GZipContentEncoder());
+
+    private final StreamableResource base;
+
+    private final List<ContentEncoder> encoders;
+
+    private final List<String> contentEncodings = CollectionFactory.newList();
+
+    private final ConcurrentMap<String, StreamableResource> variants = CollectionFactory.newConcurrentMap();
+
+    private final int spoolThreshold;
+
+    /**
+     * Compresses using just GZIP.
+     */
     public CompressedStreamableResource(StreamableResource base, AssetChecksumGenerator assetChecksumGenerator) throws IOException
     {
-        super(base.getDescription(), base.getContentType(), CompressionStatus.COMPRESSED, base.getLastModified(), compressContent(base), assetChecksumGenerator);
+        this(base, GZIP_ONLY, assetChecksumGenerator);
+    }
+
+    /**
+     * Compresses using the encoders, keeping all compressed content in memory.
+     */
+    public CompressedStreamableResource(StreamableResource base, List<ContentEncoder> encoders, AssetChecksumGenerator assetChecksumGenerator) throws IOException
+    {
+        this(base, encoders, assetChecksumGenerator, 0);
+    }
+
+    /**
+     * @param spoolThreshold
+     *         size, in bytes, beyond which compressed content is kept in a temporary file rather than in memory, or
+     *         zero to always keep it in memory
+     */
+    public CompressedStreamableResource(StreamableResource base, List<ContentEncoder> encoders, AssetChecksumGenerator assetChecksumGenerator,
+                                        int spoolThreshold) throws IOException
+    {
+        super(base.getDescription(), base.getContentType(), CompressionStatus.COMPRESSED, base.getLastModified(), compressContent(base, encoders.get(0), spoolThreshold), assetChecksumGenerator);
 
         assert base.getCompression() == CompressionStatus.COMPRESSABLE;
+
+        this.base = base;
+        this.encoders = encoders;
+        // Other encodings are spooled only if the preferred one is, so that isSpooled() doesn't change as they
+        // are added.
+        this.spoolThreshold = bytestreamCache.isSpooled() ? spoolThreshold : 0;
+
+        for (ContentEncoder encoder : encoders)
+        {
+            contentEncodings.add(encoder.getContentEncoding());
+        }
+
+        variants.put(contentEncodings.get(0), this);
     }
 
-    private static BytestreamCache compressContent(StreamableResource resource) throws IOException
+    private static BytestreamCache compressContent(StreamableResource resource, ContentEncoder encoder, int spoolThreshold) throws IOException
     {
-        ByteArrayOutputStream compressed = new ByteArrayOutputStream(resource.getSize());
-        OutputStream compressor = new BufferedOutputStream(new GZIPOutputStream(compressed));
+        SpoolingOutputStream compressed = new SpoolingOutputStream(spoolThreshold);
+        OutputStream compressor = new BufferedOutputStream(encoder.createEncodingStream(compressed));
 
         resource.streamTo(compressor);
 
         compressor.close();
 
-        return new BytestreamCache(compressed);
+        return compressed.toBytestreamCache();
+    }
+
+    @Override
+    public String getChecksum() throws IOException
+    {
+        return base.getChecksum();
+    }
+
+    @Override
+    public void release()
+    {
+        for (StreamableResource variant : variants.values())
+        {
+            if (variant != this)
+            {
+                release(variant);
+            }
+        }
+
+        super.release();
+    }
+
+    public List<String> getContentEncodings()
+    {
+        return contentEncodings;
+    }
+
+    public StreamableResource forContentEncoding(String contentEncoding) throws IOException
+    {
+        if (contentEncoding == null)
+        {
+            return base;
+        }
+
+        StreamableResource result = variants.get(contentEncoding);
+
+        if (result == null)
+        {
+            int index = contentEncodings.indexOf(contentEncoding);
+
+            if (index < 0)
+            {
+                throw new IllegalArgumentException(String.format("Content encoding '%s' is not available for %s; available encodings: %s.",
+                        contentEncoding, description, contentEncodings));
+            }
+
+            // Two threads may both encode the content; the loser releases its copy.
+
+            result = new StreamableResourceImpl(description, contentType, CompressionStatus.COMPRESSED, lastModified,
+                    compressContent(base, encoders.get(index), spoolThreshold), assetChecksumGenerator)
+            {
+                @Override
+                public String getChecksum() throws IOException
+                {
+                    return base.getChecksum();
+                }
+            };
+
+            StreamableResource existing = variants.putIfAbsent(contentEncoding, result);
+
+            if (existing != null)
+            {
+                release(result);
+
+                result = existing;
+            }
+        }
+
+        return result;
     }
 }
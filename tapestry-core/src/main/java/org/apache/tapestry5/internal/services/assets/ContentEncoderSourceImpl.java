@@ -0,0 +1,35 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.services.assets.ContentEncoder;
+import org.apache.tapestry5.services.assets.ContentEncoderSource;
+
+import java.util.List;
+
+public class ContentEncoderSourceImpl implements ContentEncoderSource
+{
+    private final List<ContentEncoder> encoders;
+
+    public ContentEncoderSourceImpl(List<ContentEncoder> encoders)
+    {
+        this.encoders = encoders;
+    }
+
+    public List<ContentEncoder> getEncoders()
+    {
+        return encoders;
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright 2013 The Apache Software Foundation
+// Copyright 2013-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -16,9 +16,12 @@ package org.apache.tapestry5.internal.services.assets;
 
 import org.apache.tapestry5.Asset;
 import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.ioc.Invokable;
 import org.apache.tapestry5.ioc.Resource;
 import org.apache.tapestry5.ioc.annotations.Symbol;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.services.ParallelExecutor;
+import org.apache.tapestry5.ioc.services.RegistryShutdownHub;
 import org.apache.tapestry5.ioc.services.ThreadLocale;
 import org.apache.tapestry5.services.assets.*;
 import org.apache.tapestry5.services.javascript.JavaScriptStack;
@@ -29,6 +32,7 @@ import java.io.*;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.*;
 import java.util.regex.Pattern;
 
 public class JavaScriptStackAssemblerImpl implements JavaScriptStackAssembler
@@ -51,6 +55,16 @@ public class JavaScriptStackAssemblerImpl implements JavaScriptStackAssembler
 
     private final boolean minificationEnabled;
 
+    private final PrecompiledAssets precompiledAssets;
+
+    private final ContentEncoderSource contentEncoderSource;
+
+    private final ParallelExecutor parallelExecutor;
+
+    private final int spoolThreshold;
+
+    private final AssetMetrics metrics;
+
     private final Map<String, StreamableResource> cache = CollectionFactory.newCaseInsensitiveMap();
 
     // TODO: Support for aggregated CSS as well as aggregated JavaScript
@@ -59,7 +73,14 @@ public class JavaScriptStackAssemblerImpl implements JavaScriptStackAssembler
                                         JavaScriptStackSource stackSource, AssetChecksumGenerator checksumGenerator, ModuleManager moduleManager,
                                         ResourceMinimizer resourceMinimizer,
                                         @Symbol(SymbolConstants.MINIFICATION_ENABLED)
-                                        boolean minificationEnabled)
+                                        boolean minificationEnabled,
+                                        PrecompiledAssets precompiledAssets,
+                                        ContentEncoderSource contentEncoderSource,
+                                        ParallelExecutor parallelExecutor,
+                                        @Symbol(SymbolConstants.ASSET_SPOOL_THRESHOLD)
+                                        int spoolThreshold,
+                                        AssetMetrics metrics,
+                                        RegistryShutdownHub shutdownHub)
     {
         this.threadLocale = threadLocale;
         this.resourceChangeTracker = resourceChangeTracker;
@@ -69,8 +90,37 @@ public class JavaScriptStackAssemblerImpl implements JavaScriptStackAssembler
         this.moduleManager = moduleManager;
         this.resourceMinimizer = resourceMinimizer;
         this.minificationEnabled = minificationEnabled;
+        this.precompiledAssets = precompiledAssets;
+        this.contentEncoderSource = contentEncoderSource;
+        this.parallelExecutor = parallelExecutor;
+        this.spoolThreshold = spoolThreshold;
+        this.metrics = metrics;
+
+        Runnable releaseAll = new Runnable()
+        {
+            public void run()
+            {
+                releaseCache();
+            }
+        };
 
-        resourceChangeTracker.clearOnInvalidation(cache);
+        resourceChangeTracker.addInvalidationCallback(releaseAll);
+        shutdownHub.addRegistryShutdownListener(releaseAll);
+    }
+
+    /**
+     * Clears the cache, deleting the temporary files of any assembled stacks spooled to disk.
+     */
+    private void releaseCache()
+    {
+        List<StreamableResource> resources = CollectionFactory.newList(cache.values());
+
+        cache.clear();
+
+        for (StreamableResource resource : resources)
+        {
+            StreamableResourceImpl.release(resource);
+        }
     }
 
     public StreamableResource assembleJavaScriptResourceForStack(String stackName, boolean compress) throws IOException
@@ -90,6 +140,8 @@ public class JavaScriptStackAssemblerImpl implements JavaScriptStackAssembler
 
         StreamableResource result = cache.get(key);
 
+        metrics.recordCacheAccess("stack:" + stackName, result != null);
+
         if (result == null)
         {
             result = assemble(locale, stackName, compress);
@@ -101,11 +153,18 @@ public class JavaScriptStackAssemblerImpl implements JavaScriptStackAssembler
 
     private StreamableResource assemble(Locale locale, String stackName, boolean compress) throws IOException
     {
-        if (compress)
+        StreamableResource precompiled = precompiledAssets.findStack(stackName, locale, compress);
+
+        if (precompiled != null)
+        {
+            return precompiled;
+        }
+
+        if (compress && !contentEncoderSource.getEncoders().isEmpty())
         {
             StreamableResource uncompressed = assembleJavascriptResourceForStack(locale, stackName, false);
 
-            return new CompressedStreamableResource(uncompressed, checksumGenerator);
+            return new CompressedStreamableResource(uncompressed, contentEncoderSource.getEncoders(), checksumGenerator, spoolThreshold);
         }
 
         JavaScriptStack stack = stackSource.getStack(stackName);
@@ -160,7 +219,7 @@ public class JavaScriptStackAssemblerImpl implements JavaScriptStackAssembler
 
     private class Assembly
     {
-        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(2000);
+        final SpoolingOutputStream outputStream = new SpoolingOutputStream(spoolThreshold);
         final PrintWriter writer;
         long lastModified = 0;
         final StringBuilder description;
@@ -173,29 +232,100 @@ public class JavaScriptStackAssemblerImpl implements JavaScriptStackAssembler
             this.description = new StringBuilder(description);
         }
 
-        void add(Resource resource, StreamableReader reader) throws IOException
+        void add(Resource resource, Future<StreamableResource> future, StreamableReader reader) throws IOException
         {
             writer.format("\n/* %s */;\n", resource.toString());
 
             description.append(sep).append(resource.toString());
             sep = ", ";
 
-            StreamableResource streamable = streamableResourceSource.getStreamableResource(resource,
-                    StreamableResourceProcessing.FOR_AGGREGATION, resourceChangeTracker);
+            StreamableResource streamable = get(future);
 
             writer.print(reader.read(streamable));
 
             lastModified = Math.max(lastModified, streamable.getLastModified());
+
+            // Content read for aggregation is never cached, so it is ours to release.
+            StreamableResourceImpl.release(streamable);
         }
 
-        StreamableResource finish()
+        StreamableResource finish() throws IOException
         {
             writer.close();
 
             return new StreamableResourceImpl(
                     description.toString(),
                     JAVASCRIPT_CONTENT_TYPE, CompressionStatus.COMPRESSABLE, lastModified,
-                    new BytestreamCache(outputStream), checksumGenerator);
+                    outputStream.toBytestreamCache(), checksumGenerator);
+        }
+    }
+
+    private Future<StreamableResource> process(final Resource resource)
+    {
+        Invokable<StreamableResource> invokable = new Invokable<StreamableResource>()
+        {
+            public StreamableResource invoke()
+            {
+                try
+                {
+                    return streamableResourceSource.getStreamableResource(resource,
+                            StreamableResourceProcessing.FOR_AGGREGATION, resourceChangeTracker);
+                } catch (IOException ex)
+                {
+                    throw new RuntimeException(ex);
+                }
+            }
+        };
+
+        try
+        {
+            return parallelExecutor.invoke(invokable);
+        } catch (RejectedExecutionException ex)
+        {
+            // The thread pool is saturated; just do the work in this thread.
+
+            FutureTask<StreamableResource> task = new FutureTask<StreamableResource>(toCallable(invokable));
+
+            task.run();
+
+            return task;
+        }
+    }
+
+    private static <T> Callable<T> toCallable(final Invokable<T> invokable)
+    {
+        return new Callable<T>()
+        {
+            public T call()
+            {
+                return invokable.invoke();
+            }
+        };
+    }
+
+    private static StreamableResource get(Future<StreamableResource> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        } catch (InterruptedException ex)
+        {
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+
+            if (cause.getClass() == RuntimeException.class && cause.getCause() instanceof IOException)
+            {
+                throw (IOException) cause.getCause();
+            }
+
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+
+            throw new RuntimeException(cause);
         }
     }
 
@@ -203,11 +333,13 @@ public class JavaScriptStackAssemblerImpl implements JavaScriptStackAssembler
     {
         Assembly assembly = new Assembly(String.format("'%s' JavaScript stack, for locale %s, resources=", stackName, localeName));
 
+        List<Resource> resources = CollectionFactory.newList();
+        List<StreamableReader> readers = CollectionFactory.newList();
+
         for (Asset library : libraries)
         {
-            Resource resource = library.getResource();
-
-            assembly.add(resource, libraryReader);
+            resources.add(library.getResource());
+            readers.add(libraryReader);
         }
 
         for (String moduleName : moduleNames)
@@ -219,7 +351,23 @@ public class JavaScriptStackAssemblerImpl implements JavaScriptStackAssembler
                 throw new IllegalArgumentException(String.format("Could not identify a resource for module name '%s'.", moduleName));
             }
 
-            assembly.add(resource, new ModuleReader(moduleName));
+            resources.add(resource);
+            readers.add(new ModuleReader(moduleName));
+        }
+
+        // Each resource may need to be compiled (say, from CoffeeScript), so they are all processed in parallel, then
+        // assembled in order.
+
+        List<Future<StreamableResource>> futures = CollectionFactory.newList();
+
+        for (Resource resource : resources)
+        {
+            futures.add(process(resource));
+        }
+
+        for (int i = 0; i < resources.size(); i++)
+        {
+            assembly.add(resources.get(i), futures.get(i), readers.get(i));
         }
 
         StreamableResource streamable = assembly.finish();
@@ -0,0 +1,70 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.ioc.annotations.UsesMappedConfiguration;
+import org.apache.tapestry5.json.JSONObject;
+import org.apache.tapestry5.services.assets.StreamableResource;
+import org.apache.tapestry5.services.javascript.ModuleBundle;
+
+/**
+ * Groups JavaScript modules into bundles, as defined by contributions to this service: each contribution maps a
+ * bundle name to a {@link ModuleBundle} identifying the root modules of the bundle, and the bundle also includes the
+ * dependencies of those modules (as identified by their {@code define()} calls). Modules reachable from more than one bundle go into a separate
+ * {@linkplain #SHARED_BUNDLE shared} bundle. Modules aggregated into a
+ * {@linkplain org.apache.tapestry5.services.javascript.JavaScriptStack JavaScript stack}, and modules that are not
+ * anonymous AMD modules (such as shimmed libraries), are never bundled.
+ * <p/>
+ * Bundles are built in the background, once at startup and again whenever a module changes; until the first build
+ * completes, the manifest is empty and modules are loaded individually. Because the bundles depend only on the
+ * configuration and the modules' content, every server in a cluster produces the same bundles with the same names.
+ * <p/>
+ * Bundles are themselves modules (in the {@link #BUNDLE_FOLDER} folder), whose names incorporate a checksum of their
+ * content; the {@linkplain #getManifest() manifest} maps each bundle to the modules it defines, in the form expected
+ * by the RequireJS "bundles" configuration.
+ *
+ * @see org.apache.tapestry5.SymbolConstants#MODULE_BUNDLING_ENABLED
+ * @since 5.4
+ */
+@UsesMappedConfiguration(key = String.class, value = ModuleBundle.class)
+public interface ModuleBundler
+{
+    /**
+     * Folder (the leading term of the module name) for bundles.
+     */
+    String BUNDLE_FOLDER = "bundle";
+
+    /**
+     * Name of the bundle for modules required by more than one contributed bundle.
+     */
+    String SHARED_BUNDLE = "shared";
+
+    /**
+     * Returns the manifest: keys are bundle names, values are arrays of the module names each bundle defines. Empty
+     * if bundling is disabled, or the bundles have not yet been built.
+     */
+    JSONObject getManifest();
+
+    /**
+     * Returns the content for a bundle, or null if the bundle name is not known. Bundles from the previous build
+     * remain available, for pages rendered before the most recent build completed.
+     *
+     * @param bundleName
+     *         name of the bundle, as from the {@linkplain #getManifest() manifest}
+     * @param compress
+     *         if true, the compressed content is returned (if compression is enabled)
+     */
+    StreamableResource getBundle(String bundleName, boolean compress);
+}
@@ -0,0 +1,508 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.ioc.Invokable;
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+import org.apache.tapestry5.ioc.services.ParallelExecutor;
+import org.apache.tapestry5.ioc.util.ExceptionUtils;
+import org.apache.tapestry5.json.JSONArray;
+import org.apache.tapestry5.json.JSONObject;
+import org.apache.tapestry5.services.assets.*;
+import org.apache.tapestry5.services.javascript.JavaScriptStackSource;
+import org.apache.tapestry5.services.javascript.ModuleBundle;
+import org.apache.tapestry5.services.javascript.ModuleManager;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class ModuleBundlerImpl implements ModuleBundler
+{
+    private static final String JAVASCRIPT_CONTENT_TYPE = "text/javascript";
+
+    private final static Pattern DEFINE = Pattern.compile("\\bdefine\\s*\\(");
+
+    private final static Pattern ANONYMOUS_DEFINE = Pattern.compile("\\bdefine\\s*\\(\\s*(\\[|function)");
+
+    private final static Pattern DEPENDENCIES = Pattern.compile("\\bdefine\\s*\\(\\s*\\[([^\\]]*)\\]");
+
+    private final static Pattern QUOTED = Pattern.compile("[\"']([^\"']+)[\"']");
+
+    private final static Pattern NOT_WORD = Pattern.compile("\\W+");
+
+    private final static Set<String> PSEUDO_MODULES = CollectionFactory.newSet("require", "exports", "module");
+
+    /**
+     * What we need to know about a module to bundle it.
+     */
+    private static class ModuleInfo
+    {
+        /**
+         * If true, the module's content is an anonymous AMD module, whose name can be supplied as it is bundled.
+         */
+        final boolean bundleable;
+
+        final List<String> dependencies;
+
+        ModuleInfo(boolean bundleable, List<String> dependencies)
+        {
+            this.bundleable = bundleable;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private static final ModuleInfo NOT_BUNDLEABLE = new ModuleInfo(false, Collections.<String>emptyList());
+
+    /**
+     * The result of one build: the manifest, and the content of each bundle.
+     */
+    private static class Bundles
+    {
+        final JSONObject manifest = new JSONObject();
+
+        final Map<String, StreamableResource> uncompressed = CollectionFactory.newMap();
+
+        final Map<String, StreamableResource> compressed = CollectionFactory.newMap();
+    }
+
+    private static final Bundles NO_BUNDLES = new Bundles();
+
+    private final ModuleManager moduleManager;
+
+    private final StreamableResourceSource streamableResourceSource;
+
+    private final ResourceChangeTracker resourceChangeTracker;
+
+    private final JavaScriptStackSource stackSource;
+
+    private final AssetChecksumGenerator checksumGenerator;
+
+    private final ResourceMinimizer resourceMinimizer;
+
+    private final ContentEncoderSource contentEncoderSource;
+
+    private final ParallelExecutor parallelExecutor;
+
+    private final Logger logger;
+
+    private final boolean minificationEnabled;
+
+    /**
+     * Keyed on bundle name, sorted so that every server builds the same bundles.
+     */
+    private final SortedMap<String, ModuleBundle> configuration;
+
+    /**
+     * The most recent build, and the one before it; pages rendered before the current build completed may still
+     * request bundles from the previous build.
+     */
+    private volatile Bundles current = NO_BUNDLES, previous = NO_BUNDLES;
+
+    private boolean building, rebuildNeeded;
+
+    public ModuleBundlerImpl(Map<String, ModuleBundle> configuration,
+                             ModuleManager moduleManager, StreamableResourceSource streamableResourceSource,
+                             ResourceChangeTracker resourceChangeTracker, JavaScriptStackSource stackSource,
+                             AssetChecksumGenerator checksumGenerator, ResourceMinimizer resourceMinimizer,
+                             ContentEncoderSource contentEncoderSource, ParallelExecutor parallelExecutor,
+                             Logger logger,
+                             @Symbol(SymbolConstants.MINIFICATION_ENABLED)
+                             boolean minificationEnabled,
+                             @Symbol(SymbolConstants.MODULE_BUNDLING_ENABLED)
+                             boolean enabled)
+    {
+        this.configuration = new TreeMap<String, ModuleBundle>(configuration);
+        this.moduleManager = moduleManager;
+        this.streamableResourceSource = streamableResourceSource;
+        this.resourceChangeTracker = resourceChangeTracker;
+        this.stackSource = stackSource;
+        this.checksumGenerator = checksumGenerator;
+        this.resourceMinimizer = resourceMinimizer;
+        this.contentEncoderSource = contentEncoderSource;
+        this.parallelExecutor = parallelExecutor;
+        this.logger = logger;
+        this.minificationEnabled = minificationEnabled;
+
+        if (!enabled || configuration.isEmpty())
+        {
+            return;
+        }
+
+        resourceChangeTracker.addInvalidationCallback(new Runnable()
+        {
+            public void run()
+            {
+                startBuild();
+            }
+        });
+
+        startBuild();
+    }
+
+    public JSONObject getManifest()
+    {
+        return current.manifest;
+    }
+
+    public StreamableResource getBundle(String bundleName, boolean compress)
+    {
+        StreamableResource result = getBundle(current, bundleName, compress);
+
+        return result != null ? result : getBundle(previous, bundleName, compress);
+    }
+
+    private static StreamableResource getBundle(Bundles bundles, String bundleName, boolean compress)
+    {
+        return (compress ? bundles.compressed : bundles.uncompressed).get(bundleName);
+    }
+
+    /**
+     * Builds the bundles in a pooled thread. If a build is already in progress, another build starts once it
+     * finishes (a module may have changed after the running build read it).
+     */
+    private void startBuild()
+    {
+        synchronized (this)
+        {
+            if (building)
+            {
+                rebuildNeeded = true;
+
+                return;
+            }
+
+            building = true;
+        }
+
+        parallelExecutor.invoke(new Invokable<Void>()
+        {
+            public Void invoke()
+            {
+                build();
+
+                return null;
+            }
+        });
+    }
+
+    private void build()
+    {
+        while (true)
+        {
+            try
+            {
+                long startNanos = System.nanoTime();
+
+                Bundles bundles = buildBundles();
+
+                // A rebuild that changes nothing (for example, a change to a module that isn't bundled) must not
+                // discard the previous bundles.
+
+                if (!bundles.manifest.equals(current.manifest))
+                {
+                    previous = current;
+                }
+
+                current = bundles;
+
+                logger.info(String.format("Built %,d JavaScript module bundles in %,d ms.",
+                        bundles.uncompressed.size(), (System.nanoTime() - startNanos) / 1000000));
+            } catch (Exception ex)
+            {
+                logger.error(String.format("Unable to build JavaScript module bundles: %s", ExceptionUtils.toMessage(ex)), ex);
+            }
+
+            synchronized (this)
+            {
+                if (!rebuildNeeded)
+                {
+                    building = false;
+
+                    return;
+                }
+
+                rebuildNeeded = false;
+            }
+        }
+    }
+
+    private Bundles buildBundles() throws IOException
+    {
+        Set<String> stackModules = CollectionFactory.newSet();
+
+        for (String stackName : stackSource.getStackNames())
+        {
+            stackModules.addAll(stackSource.getStack(stackName).getModules());
+        }
+
+        Map<String, ModuleInfo> moduleInfo = CollectionFactory.newMap();
+
+        Map<String, Set<String>> bundleClosures = CollectionFactory.newMap();
+
+        // Keyed on module name, the contributed bundles that (directly or indirectly) require the module.
+        Map<String, List<String>> moduleBundles = CollectionFactory.newMap();
+
+        for (Map.Entry<String, ModuleBundle> e : configuration.entrySet())
+        {
+            String name = e.getKey();
+
+            Set<String> closure = closure(e.getValue().rootModules, stackModules, moduleInfo);
+
+            bundleClosures.put(name, closure);
+
+            for (String moduleName : closure)
+            {
+                InternalUtils.addToMapList(moduleBundles, moduleName, name);
+            }
+        }
+
+        List<String> shared = CollectionFactory.newList();
+
+        for (Map.Entry<String, List<String>> e : moduleBundles.entrySet())
+        {
+            if (e.getValue().size() > 1)
+            {
+                shared.add(e.getKey());
+            }
+        }
+
+        Bundles result = new Bundles();
+
+        addBundle(result, SHARED_BUNDLE, shared);
+
+        for (String name : configuration.keySet())
+        {
+            List<String> bundleOnly = CollectionFactory.newList();
+
+            for (String moduleName : bundleClosures.get(name))
+            {
+                if (moduleBundles.get(moduleName).size() == 1)
+                {
+                    bundleOnly.add(moduleName);
+                }
+            }
+
+            addBundle(result, NOT_WORD.matcher(name.toLowerCase()).replaceAll("-"), bundleOnly);
+        }
+
+        return result;
+    }
+
+    private void addBundle(Bundles bundles, String term, List<String> moduleNames) throws IOException
+    {
+        // A bundle of one module doesn't save a request.
+        if (moduleNames.size() < 2)
+        {
+            return;
+        }
+
+        Collections.sort(moduleNames);
+
+        StreamableResource content = assemble(term, moduleNames);
+
+        String bundleName = String.format("%s/%s-%s", BUNDLE_FOLDER, term, content.getChecksum());
+
+        List<ContentEncoder> encoders = contentEncoderSource.getEncoders();
+
+        bundles.uncompressed.put(bundleName, content);
+        bundles.compressed.put(bundleName,
+                !encoders.isEmpty() && content.getCompression() == CompressionStatus.COMPRESSABLE
+                        ? new CompressedStreamableResource(content, encoders, checksumGenerator)
+                        : content);
+
+        bundles.manifest.put(bundleName, new JSONArray().putAll(moduleNames));
+    }
+
+    /**
+     * Returns the bundleable modules in the transitive closure of the required modules, omitting modules provided by
+     * stacks.
+     */
+    private Set<String> closure(Collection<String> required, Set<String> stackModules, Map<String, ModuleInfo> moduleInfo) throws IOException
+    {
+        Set<String> result = CollectionFactory.newSet();
+
+        LinkedList<String> queue = new LinkedList<String>(required);
+
+        while (!queue.isEmpty())
+        {
+            String moduleName = queue.removeFirst();
+
+            if (result.contains(moduleName) || stackModules.contains(moduleName))
+            {
+                continue;
+            }
+
+            ModuleInfo info = moduleInfo.get(moduleName);
+
+            if (info == null)
+            {
+                info = analyze(moduleName);
+
+                moduleInfo.put(moduleName, info);
+            }
+
+            if (!info.bundleable)
+            {
+                continue;
+            }
+
+            result.add(moduleName);
+
+            queue.addAll(info.dependencies);
+        }
+
+        return result;
+    }
+
+    private ModuleInfo analyze(String moduleName) throws IOException
+    {
+        Resource resource = moduleManager.findResourceForModule(moduleName);
+
+        if (resource == null)
+        {
+            return NOT_BUNDLEABLE;
+        }
+
+        String content = getContent(readModule(resource));
+
+        Matcher define = DEFINE.matcher(content);
+        Matcher anonymous = ANONYMOUS_DEFINE.matcher(content);
+
+        // Named modules (and shimmed libraries, which do not define a module at all) are left alone.
+
+        if (!(define.find() && anonymous.find() && anonymous.start() == define.start()))
+        {
+            return NOT_BUNDLEABLE;
+        }
+
+        List<String> dependencies = CollectionFactory.newList();
+
+        Matcher dependencyList = DEPENDENCIES.matcher(content);
+
+        if (dependencyList.find() && dependencyList.start() == define.start())
+        {
+            Matcher quoted = QUOTED.matcher(dependencyList.group(1));
+
+            while (quoted.find())
+            {
+                String dependency = quoted.group(1);
+
+                // Loader plugins (such as "text!...") are left to RequireJS.
+
+                if (!PSEUDO_MODULES.contains(dependency) && dependency.indexOf('!') < 0)
+                {
+                    dependencies.add(resolve(moduleName, dependency));
+                }
+            }
+        }
+
+        return new ModuleInfo(true, dependencies);
+    }
+
+    /**
+     * Resolves a relative dependency ("./foo" or "../bar") against the name of the module.
+     */
+    private static String resolve(String moduleName, String dependency)
+    {
+        if (!(dependency.startsWith("./") || dependency.startsWith("../")))
+        {
+            return dependency;
+        }
+
+        LinkedList<String> terms = new LinkedList<String>(Arrays.asList(moduleName.split("/")));
+
+        // Drop the module's own name, leaving its folder.
+        terms.removeLast();
+
+        for (String term : dependency.split("/"))
+        {
+            if (term.equals(".."))
+            {
+                if (!terms.isEmpty())
+                {
+                    terms.removeLast();
+                }
+            } else if (!term.equals("."))
+            {
+                terms.add(term);
+            }
+        }
+
+        return InternalUtils.join(terms, "/");
+    }
+
+    private StreamableResource readModule(Resource resource) throws IOException
+    {
+        return streamableResourceSource.getStreamableResource(resource,
+                StreamableResourceProcessing.FOR_AGGREGATION, resourceChangeTracker);
+    }
+
+    private static String getContent(StreamableResource streamable) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(streamable.getSize());
+
+        streamable.streamTo(bos);
+
+        return new String(bos.toByteArray(), "UTF-8");
+    }
+
+    private StreamableResource assemble(String description, List<String> moduleNames) throws IOException
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(2000);
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(outputStream, "UTF-8"));
+
+        long lastModified = 0;
+
+        for (String moduleName : moduleNames)
+        {
+            Resource resource = moduleManager.findResourceForModule(moduleName);
+
+            if (resource == null)
+            {
+                throw new IllegalArgumentException(String.format("Could not identify a resource for module name '%s'.", moduleName));
+            }
+
+            StreamableResource streamable = readModule(resource);
+
+            writer.format("\n/* %s */;\n", resource.toString());
+
+            // Supply the name for the anonymous module, just as when a module is aggregated into a JavaScript stack.
+
+            writer.print(DEFINE.matcher(getContent(streamable)).replaceFirst(
+                    Matcher.quoteReplacement("define(\"" + moduleName + "\",")));
+
+            lastModified = Math.max(lastModified, streamable.getLastModified());
+
+            // Content read for aggregation is never cached, so it is ours to release.
+            StreamableResourceImpl.release(streamable);
+        }
+
+        writer.close();
+
+        StreamableResource streamable = new StreamableResourceImpl(
+                String.format("'%s' module bundle, modules=%s", description, InternalUtils.join(moduleNames)),
+                JAVASCRIPT_CONTENT_TYPE, CompressionStatus.COMPRESSABLE, lastModified,
+                new BytestreamCache(outputStream), checksumGenerator);
+
+        return minificationEnabled ? resourceMinimizer.minimize(streamable) : streamable;
+    }
+}
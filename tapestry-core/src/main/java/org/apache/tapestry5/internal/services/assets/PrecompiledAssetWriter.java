@@ -0,0 +1,161 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.internal.InternalConstants;
+import org.apache.tapestry5.json.JSONArray;
+import org.apache.tapestry5.json.JSONObject;
+import org.apache.tapestry5.services.assets.AssetPrecompiler;
+import org.apache.tapestry5.services.assets.CompressionStatus;
+import org.apache.tapestry5.services.assets.EncodedStreamableResource;
+import org.apache.tapestry5.services.assets.StreamableResource;
+
+import java.io.*;
+import java.util.Locale;
+
+/**
+ * Writes the precompiled artifact: each distinct content is written once, to a file named for its checksum (plus a
+ * file for each content encoding of the compressed content, if any, such as "&lt;checksum&gt;.gzip"), and the manifest
+ * maps each resource (or stack) to its content.
+ *
+ * @see PrecompiledAssetsImpl
+ * @since 5.4
+ */
+public class PrecompiledAssetWriter
+{
+    static final String CONTENT_TYPE = "contentType";
+
+    static final String LAST_MODIFIED = "lastModified";
+
+    static final String CHECKSUM = "checksum";
+
+    static final String ENCODINGS = "encodings";
+
+    private final File folder;
+
+    private final JSONObject manifest = new JSONObject();
+
+    public PrecompiledAssetWriter(File outputDirectory) throws IOException
+    {
+        folder = new File(outputDirectory, AssetPrecompiler.ROOT_FOLDER);
+
+        if (!folder.isDirectory() && !folder.mkdirs())
+        {
+            throw new IOException(String.format("Unable to create directory %s.", folder));
+        }
+    }
+
+    public static String toKey(Resource resource)
+    {
+        return resource.toString();
+    }
+
+    public static String toStackKey(String stackName, Locale locale)
+    {
+        return String.format("stack:%s:%s", stackName, locale);
+    }
+
+    static String toFileName(String checksum, String contentEncoding)
+    {
+        return checksum + "." + contentEncoding;
+    }
+
+    /**
+     * Adds a resource to the artifact.
+     *
+     * @param key
+     *         identifies the resource
+     * @param resource
+     *         the fully processed (but uncompressed) content
+     * @param compressed
+     *         the compressed content, or null; content that is not actually {@linkplain CompressionStatus#COMPRESSED compressed} is ignored;
+     *         for an {@link EncodedStreamableResource}, every content encoding is written
+     */
+    public void add(String key, StreamableResource resource, StreamableResource compressed) throws IOException
+    {
+        String checksum = resource.getChecksum();
+
+        write(resource, checksum);
+
+        JSONArray encodings = new JSONArray();
+
+        if (compressed instanceof EncodedStreamableResource)
+        {
+            EncodedStreamableResource encoded = (EncodedStreamableResource) compressed;
+
+            for (String contentEncoding : encoded.getContentEncodings())
+            {
+                write(encoded.forContentEncoding(contentEncoding), toFileName(checksum, contentEncoding));
+
+                encodings.put(contentEncoding);
+            }
+        } else if (compressed != null && compressed.getCompression() == CompressionStatus.COMPRESSED)
+        {
+            write(compressed, toFileName(checksum, InternalConstants.GZIP_CONTENT_ENCODING));
+
+            encodings.put(InternalConstants.GZIP_CONTENT_ENCODING);
+        }
+
+        manifest.put(key, new JSONObject()
+                .put(CONTENT_TYPE, resource.getContentType())
+                .put(LAST_MODIFIED, resource.getLastModified())
+                .put(CHECKSUM, checksum)
+                .put(ENCODINGS, encodings));
+    }
+
+    public int getCount()
+    {
+        return manifest.length();
+    }
+
+    private void write(StreamableResource resource, String fileName) throws IOException
+    {
+        File file = new File(folder, fileName);
+
+        // Content-addressed: identical content (for instance, the same stack for several locales) is written once.
+
+        if (file.exists())
+        {
+            return;
+        }
+
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+
+        try
+        {
+            resource.streamTo(os);
+        } finally
+        {
+            os.close();
+        }
+    }
+
+    /**
+     * Writes the manifest; invoked once all resources have been added.
+     */
+    public void finish() throws IOException
+    {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(folder, AssetPrecompiler.MANIFEST)), "UTF-8");
+
+        try
+        {
+            writer.write(manifest.toString());
+        } finally
+        {
+            writer.close();
+        }
+    }
+}
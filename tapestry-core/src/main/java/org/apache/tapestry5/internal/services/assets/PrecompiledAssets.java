@@ -0,0 +1,47 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.services.assets.StreamableResource;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Provides access, at runtime, to the assets written by the {@link org.apache.tapestry5.services.assets.AssetPrecompiler}.
+ *
+ * @see org.apache.tapestry5.SymbolConstants#PRECOMPILED_ASSETS_ENABLED
+ * @since 5.4
+ */
+public interface PrecompiledAssets
+{
+    /**
+     * Returns the precompiled content for a resource, or null if the resource was not precompiled (or precompiled
+     * assets are disabled).
+     *
+     * @param resource
+     *         the base resource, before any transformation
+     * @param compressed
+     *         if true, the compressed content is returned, if available
+     */
+    StreamableResource find(Resource resource, boolean compressed) throws IOException;
+
+    /**
+     * Returns the precompiled, aggregated content for a JavaScript stack, or null if the stack was not precompiled for
+     * the locale (or precompiled assets are disabled).
+     */
+    StreamableResource findStack(String stackName, Locale locale, boolean compressed) throws IOException;
+}
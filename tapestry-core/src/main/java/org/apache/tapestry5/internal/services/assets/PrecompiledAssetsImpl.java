@@ -0,0 +1,350 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.internal.TapestryInternalUtils;
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.util.ClasspathResource;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.util.ExceptionUtils;
+import org.apache.tapestry5.json.JSONObject;
+import org.apache.tapestry5.services.assets.AssetPrecompiler;
+import org.apache.tapestry5.services.assets.CompressionStatus;
+import org.apache.tapestry5.services.assets.EncodedStreamableResource;
+import org.apache.tapestry5.services.assets.StreamableResource;
+import org.slf4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads the precompiled artifact's manifest from the classpath, if present; the manifest is read at startup. The
+ * checksum of each asset comes from the manifest, so building an asset's URL requires neither reading nor
+ * checksumming its content. Content is read when first streamed, and then kept in memory (as with the normal asset
+ * caches).
+ *
+ * @since 5.4
+ */
+public class PrecompiledAssetsImpl implements PrecompiledAssets
+{
+    /**
+     * Describes and streams the content in the preferred encoding; other encodings are provided by subclasses.
+     */
+    private static abstract class DelegatingEncodedResource implements EncodedStreamableResource
+    {
+        private final StreamableResource delegate;
+
+        DelegatingEncodedResource(StreamableResource delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        public String getDescription()
+        {
+            return delegate.getDescription();
+        }
+
+        public CompressionStatus getCompression()
+        {
+            return delegate.getCompression();
+        }
+
+        public String getContentType()
+        {
+            return delegate.getContentType();
+        }
+
+        public int getSize()
+        {
+            return delegate.getSize();
+        }
+
+        public void streamTo(OutputStream os) throws IOException
+        {
+            delegate.streamTo(os);
+        }
+
+        public InputStream openStream() throws IOException
+        {
+            return delegate.openStream();
+        }
+
+        public long getLastModified()
+        {
+            return delegate.getLastModified();
+        }
+
+        public String getChecksum() throws IOException
+        {
+            return delegate.getChecksum();
+        }
+    }
+
+    /**
+     * Precompiled content, identified by the checksum in the manifest, and only read when needed.
+     */
+    private static class PrecompiledResource implements StreamableResource
+    {
+        private final String description, contentType, checksum;
+
+        private final CompressionStatus compression;
+
+        private final long lastModified;
+
+        private final Resource content;
+
+        private volatile BytestreamCache cache;
+
+        PrecompiledResource(String description, String contentType, CompressionStatus compression, long lastModified,
+                            String checksum, Resource content)
+        {
+            this.description = description;
+            this.contentType = contentType;
+            this.compression = compression;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+            this.content = content;
+        }
+
+        private BytestreamCache getCache() throws IOException
+        {
+            // Two threads may both read the content; that's harmless.
+
+            if (cache == null)
+            {
+                cache = new BytestreamCache(read(content));
+            }
+
+            return cache;
+        }
+
+        public String getDescription()
+        {
+            return description;
+        }
+
+        public CompressionStatus getCompression()
+        {
+            return compression;
+        }
+
+        public String getContentType()
+        {
+            return contentType;
+        }
+
+        public int getSize()
+        {
+            try
+            {
+                return getCache().size();
+            } catch (IOException ex)
+            {
+                throw new RuntimeException(String.format("Unable to read precompiled content for %s: %s", description,
+                        ExceptionUtils.toMessage(ex)), ex);
+            }
+        }
+
+        public void streamTo(OutputStream os) throws IOException
+        {
+            getCache().writeTo(os);
+        }
+
+        public InputStream openStream() throws IOException
+        {
+            return getCache().openStream();
+        }
+
+        public long getLastModified()
+        {
+            return lastModified;
+        }
+
+        public String getChecksum()
+        {
+            return checksum;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("StreamableResource<%s %s %s lastModified: %tc checksum: %s>", contentType, description,
+                    compression.name(), lastModified, checksum);
+        }
+    }
+
+    private final Resource manifestResource;
+
+    private final JSONObject manifest;
+
+    private final Map<String, StreamableResource> cache = CollectionFactory.newConcurrentMap();
+
+    public PrecompiledAssetsImpl(Logger logger,
+                                 @Symbol(SymbolConstants.PRECOMPILED_ASSETS_ENABLED)
+                                 boolean enabled) throws IOException
+    {
+        this(logger, enabled, new ClasspathResource(AssetPrecompiler.ROOT_FOLDER + "/" + AssetPrecompiler.MANIFEST));
+    }
+
+    PrecompiledAssetsImpl(Logger logger, boolean enabled, Resource manifestResource) throws IOException
+    {
+        this.manifestResource = manifestResource;
+
+        manifest = enabled && manifestResource.exists()
+                ? new JSONObject(new String(read(manifestResource), "UTF-8"))
+                : null;
+
+        if (manifest != null)
+        {
+            logger.info(String.format("Serving %,d precompiled assets from %s.", manifest.length(), manifestResource));
+        }
+    }
+
+    public StreamableResource find(Resource resource, boolean compressed) throws IOException
+    {
+        return find(PrecompiledAssetWriter.toKey(resource), compressed);
+    }
+
+    public StreamableResource findStack(String stackName, Locale locale, boolean compressed) throws IOException
+    {
+        return find(PrecompiledAssetWriter.toStackKey(stackName, locale), compressed);
+    }
+
+    private StreamableResource find(String key, boolean compressed) throws IOException
+    {
+        if (manifest == null)
+        {
+            return null;
+        }
+
+        JSONObject entry = (JSONObject) manifest.opt(key);
+
+        if (entry == null)
+        {
+            return null;
+        }
+
+        boolean useCompressed = compressed && entry.getJSONArray(PrecompiledAssetWriter.ENCODINGS).length() > 0;
+
+        String cacheKey = (useCompressed ? "z:" : "") + key;
+
+        StreamableResource result = cache.get(cacheKey);
+
+        if (result == null)
+        {
+            result = useCompressed ? loadEncoded(key, entry) : load(key, entry, null);
+
+            cache.put(cacheKey, result);
+        }
+
+        return result;
+    }
+
+    private StreamableResource loadEncoded(final String key, final JSONObject entry) throws IOException
+    {
+        final List<String> contentEncodings = CollectionFactory.newList();
+
+        for (Object encoding : entry.getJSONArray(PrecompiledAssetWriter.ENCODINGS))
+        {
+            contentEncodings.add((String) encoding);
+        }
+
+        final Map<String, StreamableResource> variants = CollectionFactory.newConcurrentMap();
+
+        StreamableResource preferred = load(key, entry, contentEncodings.get(0));
+
+        variants.put(contentEncodings.get(0), preferred);
+
+        return new DelegatingEncodedResource(preferred)
+        {
+            public List<String> getContentEncodings()
+            {
+                return contentEncodings;
+            }
+
+            public StreamableResource forContentEncoding(String contentEncoding) throws IOException
+            {
+                if (contentEncoding == null)
+                {
+                    return find(key, false);
+                }
+
+                StreamableResource result = variants.get(contentEncoding);
+
+                if (result == null)
+                {
+                    if (!contentEncodings.contains(contentEncoding))
+                    {
+                        throw new IllegalArgumentException(String.format("Content encoding '%s' is not available for %s; available encodings: %s.",
+                                contentEncoding, key, contentEncodings));
+                    }
+
+                    result = load(key, entry, contentEncoding);
+
+                    variants.put(contentEncoding, result);
+                }
+
+                return result;
+            }
+        };
+    }
+
+    private StreamableResource load(String key, JSONObject entry, String contentEncoding) throws IOException
+    {
+        final String checksum = entry.getString(PrecompiledAssetWriter.CHECKSUM);
+
+        Resource content = manifestResource.forFile(contentEncoding == null
+                ? checksum
+                : PrecompiledAssetWriter.toFileName(checksum, contentEncoding));
+
+        if (!content.exists())
+        {
+            throw new IOException(String.format("Precompiled content for %s (%s) is missing.", key, content));
+        }
+
+        // Precompiled content is not compressed again; uncompressed content has already been through
+        // compression (when that was worthwhile).
+
+        return new PrecompiledResource(String.format("%s (precompiled)", key),
+                entry.getString(PrecompiledAssetWriter.CONTENT_TYPE),
+                contentEncoding == null ? CompressionStatus.NOT_COMPRESSABLE : CompressionStatus.COMPRESSED,
+                entry.getLong(PrecompiledAssetWriter.LAST_MODIFIED),
+                checksum, content);
+    }
+
+    private static byte[] read(Resource resource) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        InputStream is = resource.openStream();
+
+        try
+        {
+            TapestryInternalUtils.copy(is, bos);
+        } finally
+        {
+            is.close();
+        }
+
+        return bos.toByteArray();
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright 2011, 2012 The Apache Software Foundation
+// Copyright 2011, 2012, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ import org.apache.tapestry5.internal.event.InvalidationEventHubImpl;
 import org.apache.tapestry5.ioc.Resource;
 import org.apache.tapestry5.ioc.annotations.PostInjection;
 import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.services.FileWatcherSource;
 import org.apache.tapestry5.ioc.internal.util.URLChangeTracker;
 import org.apache.tapestry5.ioc.services.ClasspathURLConverter;
 import org.apache.tapestry5.services.UpdateListener;
@@ -38,14 +39,17 @@ public class ResourceChangeTrackerImpl extends InvalidationEventHubImpl implemen
 
     public ResourceChangeTrackerImpl(ClasspathURLConverter classpathURLConverter,
                                      @Symbol(SymbolConstants.PRODUCTION_MODE)
-                                     boolean productionMode)
+                                     boolean productionMode,
+                                     @Symbol(SymbolConstants.FILE_WATCHING_ENABLED)
+                                     boolean fileWatchingEnabled, FileWatcherSource fileWatcherSource)
     {
         super(productionMode);
 
         // Use granularity of seconds (not milliseconds) since that works properly
         // with response headers for identifying last modified. Don't track
         // folder changes, just changes to actual files.
-        tracker = productionMode ? null : new URLChangeTracker(classpathURLConverter, true, false);
+        tracker = productionMode ? null : new URLChangeTracker(classpathURLConverter, true, false,
+                fileWatchingEnabled ? fileWatcherSource.getFileWatcher() : null);
     }
 
     @PostInjection
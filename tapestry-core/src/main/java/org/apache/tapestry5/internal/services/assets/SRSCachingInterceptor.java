@@ -1,4 +1,4 @@
-// Copyright 2011, 2012 The Apache Software Foundation
+// Copyright 2011, 2012, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -17,6 +17,8 @@ package org.apache.tapestry5.internal.services.assets;
 import org.apache.tapestry5.internal.TapestryInternalUtils;
 import org.apache.tapestry5.ioc.Resource;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.services.RegistryShutdownHub;
+import org.apache.tapestry5.services.assets.AssetMetrics;
 import org.apache.tapestry5.services.assets.ResourceDependencies;
 import org.apache.tapestry5.services.assets.StreamableResource;
 import org.apache.tapestry5.services.assets.StreamableResourceProcessing;
@@ -25,19 +27,56 @@ import org.apache.tapestry5.services.assets.StreamableResourceSource;
 import java.io.IOException;
 import java.lang.ref.SoftReference;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * An interceptor for the {@link StreamableResourceSource} service that handles caching of content.
+ * <p/>
+ * Resources whose content is in memory are cached using soft references. Resources whose content has been spooled to
+ * a temporary file (see {@link SpoolingOutputStream}) take up little memory, and are cached until the next
+ * invalidation (or registry shutdown), when they are released; each temporary file is deleted once any requests still
+ * streaming its content have finished.
  */
 public class SRSCachingInterceptor extends DelegatingSRS
 {
     private final Map<Resource, SoftReference<StreamableResource>> cache = CollectionFactory.newConcurrentMap();
 
-    public SRSCachingInterceptor(StreamableResourceSource delegate, ResourceChangeTracker tracker)
+    private final ConcurrentMap<Resource, StreamableResourceImpl> spooledCache = CollectionFactory.newConcurrentMap();
+
+    private final AssetMetrics metrics;
+
+    public SRSCachingInterceptor(StreamableResourceSource delegate, ResourceChangeTracker tracker, AssetMetrics metrics,
+                                 RegistryShutdownHub shutdownHub)
     {
         super(delegate);
 
-        tracker.clearOnInvalidation(cache);
+        this.metrics = metrics;
+
+        Runnable releaseAll = new Runnable()
+        {
+            public void run()
+            {
+                cache.clear();
+
+                releaseSpooled();
+            }
+        };
+
+        tracker.addInvalidationCallback(releaseAll);
+        shutdownHub.addRegistryShutdownListener(releaseAll);
+    }
+
+    private void releaseSpooled()
+    {
+        for (Resource resource : spooledCache.keySet())
+        {
+            StreamableResourceImpl spooled = spooledCache.remove(resource);
+
+            if (spooled != null)
+            {
+                spooled.release();
+            }
+        }
     }
 
     public StreamableResource getStreamableResource(Resource baseResource, StreamableResourceProcessing processing, ResourceDependencies dependencies)
@@ -48,7 +87,14 @@ public class SRSCachingInterceptor extends DelegatingSRS
             return delegate.getStreamableResource(baseResource, processing, dependencies);
         }
 
-        StreamableResource result = TapestryInternalUtils.getAndDeref(cache, baseResource);
+        StreamableResource result = spooledCache.get(baseResource);
+
+        if (result == null)
+        {
+            result = TapestryInternalUtils.getAndDeref(cache, baseResource);
+        }
+
+        metrics.recordCacheAccess(baseResource.toString(), result != null);
 
         if (result == null)
         {
@@ -58,13 +104,36 @@ public class SRSCachingInterceptor extends DelegatingSRS
             {
                 dependencies.addDependency(baseResource);
 
-                cache.put(baseResource, new SoftReference<StreamableResource>(result));
+                result = store(baseResource, result);
             }
         }
 
         return result;
     }
 
+    private StreamableResource store(Resource baseResource, StreamableResource result)
+    {
+        if (result instanceof StreamableResourceImpl && ((StreamableResourceImpl) result).isSpooled())
+        {
+            StreamableResourceImpl existing = spooledCache.putIfAbsent(baseResource, (StreamableResourceImpl) result);
+
+            if (existing == null)
+            {
+                return result;
+            }
+
+            // Another thread got there first; keep its copy.
+
+            StreamableResourceImpl.release(result);
+
+            return existing;
+        }
+
+        cache.put(baseResource, new SoftReference<StreamableResource>(result));
+
+        return result;
+    }
+
     /**
      * Always returns true; a subclass may extend this to only cache the resource in some circumstances.
      *
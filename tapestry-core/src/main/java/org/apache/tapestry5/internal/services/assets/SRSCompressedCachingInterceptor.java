@@ -1,4 +1,4 @@
-// Copyright 2011, 2012 The Apache Software Foundation
+// Copyright 2011, 2012, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,6 +14,8 @@
 
 package org.apache.tapestry5.internal.services.assets;
 
+import org.apache.tapestry5.ioc.services.RegistryShutdownHub;
+import org.apache.tapestry5.services.assets.AssetMetrics;
 import org.apache.tapestry5.services.assets.CompressionStatus;
 import org.apache.tapestry5.services.assets.StreamableResource;
 import org.apache.tapestry5.services.assets.StreamableResourceProcessing;
@@ -25,9 +27,10 @@ import org.apache.tapestry5.services.assets.StreamableResourceSource;
  */
 public class SRSCompressedCachingInterceptor extends SRSCachingInterceptor
 {
-    public SRSCompressedCachingInterceptor(StreamableResourceSource delegate, ResourceChangeTracker tracker)
+    public SRSCompressedCachingInterceptor(StreamableResourceSource delegate, ResourceChangeTracker tracker, AssetMetrics metrics,
+                                           RegistryShutdownHub shutdownHub)
     {
-        super(delegate, tracker);
+        super(delegate, tracker, metrics, shutdownHub);
     }
 
     /**
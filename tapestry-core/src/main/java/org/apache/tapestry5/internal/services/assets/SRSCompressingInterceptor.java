@@ -1,4 +1,4 @@
-// Copyright 2011-2013 The Apache Software Foundation
+// Copyright 2011-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -25,11 +25,18 @@ public class SRSCompressingInterceptor extends DelegatingSRS
 
     private final AssetChecksumGenerator checksumGenerator;
 
-    public SRSCompressingInterceptor(StreamableResourceSource delegate, int compressionCutoff, AssetChecksumGenerator checksumGenerator)
+    private final ContentEncoderSource contentEncoderSource;
+
+    private final int spoolThreshold;
+
+    public SRSCompressingInterceptor(StreamableResourceSource delegate, int compressionCutoff, AssetChecksumGenerator checksumGenerator,
+                                     ContentEncoderSource contentEncoderSource, int spoolThreshold)
     {
         super(delegate);
         this.compressionCutoff = compressionCutoff;
         this.checksumGenerator = checksumGenerator;
+        this.contentEncoderSource = contentEncoderSource;
+        this.spoolThreshold = spoolThreshold;
     }
 
     public StreamableResource getStreamableResource(Resource baseResource, StreamableResourceProcessing processing, ResourceDependencies dependencies)
@@ -42,7 +49,7 @@ public class SRSCompressingInterceptor extends DelegatingSRS
 
     private StreamableResource compress(StreamableResource uncompressed) throws IOException
     {
-        if (uncompressed.getCompression() != CompressionStatus.COMPRESSABLE)
+        if (uncompressed.getCompression() != CompressionStatus.COMPRESSABLE || contentEncoderSource.getEncoders().isEmpty())
         {
             return uncompressed;
         }
@@ -57,6 +64,6 @@ public class SRSCompressingInterceptor extends DelegatingSRS
             return uncompressed;
         }
 
-        return new CompressedStreamableResource(uncompressed, checksumGenerator);
+        return new CompressedStreamableResource(uncompressed, contentEncoderSource.getEncoders(), checksumGenerator, spoolThreshold);
     }
 }
@@ -1,4 +1,4 @@
-// Copyright 2011, 2012 The Apache Software Foundation
+// Copyright 2011, 2012, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -39,7 +39,16 @@ public class SRSMinimizingInterceptor extends DelegatingSRS
 
         if (processing != StreamableResourceProcessing.FOR_AGGREGATION)
         {
-            return minimizer.minimize(streamable);
+            StreamableResource minimized = minimizer.minimize(streamable);
+
+            // The unminimized content comes from further down the pipeline, where nothing caches it.
+
+            if (minimized != streamable)
+            {
+                StreamableResourceImpl.release(streamable);
+            }
+
+            return minimized;
         }
 
         return streamable;
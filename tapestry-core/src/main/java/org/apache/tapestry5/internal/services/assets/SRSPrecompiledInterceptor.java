@@ -0,0 +1,59 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.services.assets.ResourceDependencies;
+import org.apache.tapestry5.services.assets.StreamableResource;
+import org.apache.tapestry5.services.assets.StreamableResourceProcessing;
+import org.apache.tapestry5.services.assets.StreamableResourceSource;
+
+import java.io.IOException;
+
+/**
+ * Serves {@linkplain PrecompiledAssets precompiled} content, when available, in place of the rest of the pipeline.
+ * Resources requested for aggregation always go through the normal pipeline, as aggregation needs the content
+ * before minification.
+ *
+ * @since 5.4
+ */
+public class SRSPrecompiledInterceptor extends DelegatingSRS
+{
+    private final PrecompiledAssets precompiledAssets;
+
+    public SRSPrecompiledInterceptor(StreamableResourceSource delegate, PrecompiledAssets precompiledAssets)
+    {
+        super(delegate);
+
+        this.precompiledAssets = precompiledAssets;
+    }
+
+    @Override
+    public StreamableResource getStreamableResource(Resource baseResource, StreamableResourceProcessing processing, ResourceDependencies dependencies) throws IOException
+    {
+        if (processing != StreamableResourceProcessing.FOR_AGGREGATION)
+        {
+            StreamableResource precompiled = precompiledAssets.find(baseResource,
+                    processing == StreamableResourceProcessing.COMPRESSION_ENABLED);
+
+            if (precompiled != null)
+            {
+                return precompiled;
+            }
+        }
+
+        return delegate.getStreamableResource(baseResource, processing, dependencies);
+    }
+}
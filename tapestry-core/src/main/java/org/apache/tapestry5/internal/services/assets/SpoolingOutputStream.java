@@ -0,0 +1,141 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import java.io.*;
+
+/**
+ * An output stream used to capture the content of an asset as it passes through the
+ * {@link org.apache.tapestry5.services.assets.StreamableResourceSource} pipeline. Content is buffered in memory until
+ * it exceeds a threshold, at which point the buffered content (and everything after it) is written to a temporary
+ * file instead; this bounds the memory needed to transform, and cache, very large assets.
+ *
+ * @see org.apache.tapestry5.SymbolConstants#ASSET_SPOOL_THRESHOLD
+ * @since 5.4
+ */
+public class SpoolingOutputStream extends OutputStream
+{
+    private final int threshold;
+
+    private ByteArrayOutputStream buffer;
+
+    private File file;
+
+    private OutputStream fileStream;
+
+    private int size;
+
+    private boolean closed;
+
+    /**
+     * @param threshold
+     *         maximum number of bytes kept in memory; zero or less to never spool to a file
+     */
+    public SpoolingOutputStream(int threshold)
+    {
+        this.threshold = threshold;
+
+        buffer = new ByteArrayOutputStream(threshold > 0 ? Math.min(threshold, 8192) : 8192);
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("Stream has been closed.");
+        }
+
+        if (fileStream == null && threshold > 0 && size + len > threshold)
+        {
+            spool();
+        }
+
+        if (fileStream == null)
+        {
+            buffer.write(b, off, len);
+        } else
+        {
+            fileStream.write(b, off, len);
+        }
+
+        size += len;
+    }
+
+    private void spool() throws IOException
+    {
+        file = File.createTempFile("tapestry-asset-", ".tmp");
+
+        fileStream = new BufferedOutputStream(new FileOutputStream(file));
+
+        buffer.writeTo(fileStream);
+
+        buffer = null;
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        if (fileStream != null)
+        {
+            fileStream.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (!closed)
+        {
+            closed = true;
+
+            if (fileStream != null)
+            {
+                fileStream.close();
+            }
+        }
+    }
+
+    /**
+     * Closes the stream (if not already closed) and returns its content, which is either in memory or in a temporary
+     * file owned by the returned cache; the owner of the cache is responsible for eventually invoking
+     * {@link BytestreamCache#delete()}.
+     */
+    public BytestreamCache toBytestreamCache() throws IOException
+    {
+        close();
+
+        return file == null ? new BytestreamCache(buffer) : new BytestreamCache(file, size);
+    }
+
+    /**
+     * Closes the stream and deletes the temporary file (if any); used when the content is not needed after all.
+     */
+    public void discard() throws IOException
+    {
+        close();
+
+        if (file != null)
+        {
+            file.delete();
+        }
+    }
+}
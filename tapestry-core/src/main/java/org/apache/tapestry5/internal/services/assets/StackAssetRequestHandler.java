@@ -1,4 +1,4 @@
-// Copyright 2010-2013 The Apache Software Foundation
+// Copyright 2010-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -64,17 +64,19 @@ public class StackAssetRequestHandler implements AssetRequestHandler
 
     public boolean handleAssetRequest(Request request, Response response, final String extraPath) throws IOException
     {
+        final long startNanos = System.nanoTime();
+
         return tracker.perform(String.format("Streaming JavaScript asset stack %s", extraPath),
                 new IOOperation<Boolean>()
                 {
                     public Boolean perform() throws IOException
                     {
-                        return streamStackResource(extraPath);
+                        return streamStackResource(extraPath, startNanos);
                     }
                 });
     }
 
-    private boolean streamStackResource(String extraPath) throws IOException
+    private boolean streamStackResource(String extraPath, long startNanos) throws IOException
     {
         Matcher matcher = pathPattern.matcher(extraPath);
 
@@ -127,6 +129,6 @@ public class StackAssetRequestHandler implements AssetRequestHandler
             return false;
         }
 
-        return resourceStreamer.streamResource(resource, checksum, ResourceStreamer.DEFAULT_OPTIONS);
+        return resourceStreamer.streamResource(resource, checksum, ResourceStreamer.DEFAULT_OPTIONS, "stack:" + stackName, startNanos);
     }
 }
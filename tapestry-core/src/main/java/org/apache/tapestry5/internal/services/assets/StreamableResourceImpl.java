@@ -1,4 +1,4 @@
-// Copyright 2013 The Apache Software Foundation
+// Copyright 2013, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -79,6 +79,42 @@ public class StreamableResourceImpl implements StreamableResource
         return bytestreamCache.openStream();
     }
 
+    /**
+     * Returns true if any of the content of this resource is kept in a temporary file, rather than in memory.
+     *
+     * @since 5.4
+     */
+    public boolean isSpooled()
+    {
+        return bytestreamCache.isSpooled();
+    }
+
+    /**
+     * Deletes any temporary file holding the content of this resource; invoked by the owner of the resource (a cache,
+     * or the next stage of the {@link org.apache.tapestry5.services.assets.StreamableResourceSource} pipeline) once
+     * the resource is no longer needed. Content already being streamed by other threads is not cut short; the file is
+     * deleted once those streams are closed.
+     *
+     * @since 5.4
+     */
+    public void release()
+    {
+        bytestreamCache.delete();
+    }
+
+    /**
+     * Releases the resource, if it is a {@link StreamableResourceImpl}; other implementations are left alone.
+     *
+     * @since 5.4
+     */
+    public static void release(StreamableResource resource)
+    {
+        if (resource instanceof StreamableResourceImpl)
+        {
+            ((StreamableResourceImpl) resource).release();
+        }
+    }
+
     @Override
     public String toString()
     {
@@ -1,4 +1,4 @@
-// Copyright 2011, 2012 The Apache Software Foundation
+// Copyright 2011, 2012, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,12 +14,13 @@
 
 package org.apache.tapestry5.internal.services.assets;
 
+import org.apache.tapestry5.SymbolConstants;
 import org.apache.tapestry5.internal.TapestryInternalUtils;
 import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.annotations.Symbol;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.services.assets.*;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Map;
@@ -37,15 +38,20 @@ public class StreamableResourceSourceImpl implements StreamableResourceSource
 
     private final AssetChecksumGenerator checksumGenerator;
 
+    private final int spoolThreshold;
+
     public StreamableResourceSourceImpl(Map<String, ResourceTransformer> configuration,
                                         ContentTypeAnalyzer contentTypeAnalyzer, CompressionAnalyzer compressionAnalyzer,
-                                        ResourceChangeTracker resourceChangeTracker, AssetChecksumGenerator checksumGenerator)
+                                        ResourceChangeTracker resourceChangeTracker, AssetChecksumGenerator checksumGenerator,
+                                        @Symbol(SymbolConstants.ASSET_SPOOL_THRESHOLD)
+                                        int spoolThreshold)
     {
         this.configuration = configuration;
         this.contentTypeAnalyzer = contentTypeAnalyzer;
         this.compressionAnalyzer = compressionAnalyzer;
         this.resourceChangeTracker = resourceChangeTracker;
         this.checksumGenerator = checksumGenerator;
+        this.spoolThreshold = spoolThreshold;
     }
 
     public Set<String> fileExtensionsForContentType(String contentType)
@@ -100,13 +106,13 @@ public class StreamableResourceSourceImpl implements StreamableResourceSource
 
     private BytestreamCache readStream(InputStream stream) throws IOException
     {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        SpoolingOutputStream sos = new SpoolingOutputStream(spoolThreshold);
 
-        TapestryInternalUtils.copy(stream, bos);
+        TapestryInternalUtils.copy(stream, sos);
 
         stream.close();
 
-        return new BytestreamCache(bos);
+        return sos.toBytestreamCache();
     }
 
 }
@@ -1,4 +1,4 @@
-// Copyright 2012, 2013 The Apache Software Foundation
+// Copyright 2012-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@ package org.apache.tapestry5.internal.services.javascript;
 
 import org.apache.tapestry5.internal.services.AssetDispatcher;
 import org.apache.tapestry5.internal.services.ResourceStreamer;
+import org.apache.tapestry5.internal.services.assets.ModuleBundler;
 import org.apache.tapestry5.ioc.IOOperation;
 import org.apache.tapestry5.ioc.OperationTracker;
 import org.apache.tapestry5.ioc.Resource;
@@ -23,6 +24,7 @@ import org.apache.tapestry5.services.Dispatcher;
 import org.apache.tapestry5.services.PathConstructor;
 import org.apache.tapestry5.services.Request;
 import org.apache.tapestry5.services.Response;
+import org.apache.tapestry5.services.assets.StreamableResource;
 import org.apache.tapestry5.services.javascript.ModuleManager;
 
 import java.io.IOException;
@@ -32,7 +34,8 @@ import java.util.Set;
 /**
  * Handler contributed to {@link AssetDispatcher} with key "modules". It interprets the extra path as a module name,
  * and searches for the corresponding JavaScript module.  Unlike normal assets, modules do not include any kind of checksum
- * in the URL, and do not set a far-future expires header.
+ * in the URL, and do not set a far-future expires header. The exception is {@linkplain ModuleBundler module bundles},
+ * whose names include a checksum.
  *
  * @see ModuleManager
  */
@@ -40,6 +43,8 @@ public class ModuleDispatcher implements Dispatcher
 {
     private final ModuleManager moduleManager;
 
+    private final ModuleBundler moduleBundler;
+
     private final ResourceStreamer streamer;
 
     private final OperationTracker tracker;
@@ -50,7 +55,12 @@ public class ModuleDispatcher implements Dispatcher
 
     private final Set<ResourceStreamer.Options> omitExpiration = EnumSet.of(ResourceStreamer.Options.OMIT_EXPIRATION);
 
+    private final Set<ResourceStreamer.Options> defaultOptions = EnumSet.noneOf(ResourceStreamer.Options.class);
+
+    private final String bundlePrefix = ModuleBundler.BUNDLE_FOLDER + "/";
+
     public ModuleDispatcher(ModuleManager moduleManager,
+                            ModuleBundler moduleBundler,
                             ResourceStreamer streamer,
                             OperationTracker tracker,
                             PathConstructor pathConstructor,
@@ -58,6 +68,7 @@ public class ModuleDispatcher implements Dispatcher
                             boolean compress)
     {
         this.moduleManager = moduleManager;
+        this.moduleBundler = moduleBundler;
         this.streamer = streamer;
         this.tracker = tracker;
         this.compress = compress;
@@ -101,6 +112,15 @@ public class ModuleDispatcher implements Dispatcher
         {
             public Boolean perform() throws IOException
             {
+                if (moduleName.startsWith(bundlePrefix))
+                {
+                    StreamableResource bundle = moduleBundler.getBundle(moduleName, compress);
+
+                    // The name includes a checksum, so the bundle may be cached by the client indefinitely.
+
+                    return bundle != null && streamer.streamResource(bundle, "", defaultOptions);
+                }
+
                 Resource resource = moduleManager.findResourceForModule(moduleName);
 
                 if (resource != null)
@@ -1,4 +1,4 @@
-// Copyright 2012, 2013 The Apache Software Foundation
+// Copyright 2012-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@ package org.apache.tapestry5.internal.services.javascript;
 
 import org.apache.tapestry5.SymbolConstants;
 import org.apache.tapestry5.dom.Element;
+import org.apache.tapestry5.internal.services.assets.ModuleBundler;
 import org.apache.tapestry5.internal.services.assets.ResourceChangeTracker;
 import org.apache.tapestry5.ioc.Messages;
 import org.apache.tapestry5.ioc.Resource;
@@ -59,6 +60,8 @@ public class ModuleManagerImpl implements ModuleManager
 
     private final String basePath, compressedBasePath;
 
+    private final ModuleBundler moduleBundler;
+
     public ModuleManagerImpl(ResponseCompressionAnalyzer compressionAnalyzer,
                              AssetSource assetSource,
                              Map<String, JavaScriptModuleConfiguration> configuration,
@@ -70,11 +73,13 @@ public class ModuleManagerImpl implements ModuleManager
                              boolean productionMode,
                              @Symbol(SymbolConstants.MODULE_PATH_PREFIX)
                              String modulePathPrefix,
-                             PathConstructor pathConstructor)
+                             PathConstructor pathConstructor,
+                             ModuleBundler moduleBundler)
     {
         this.compressionAnalyzer = compressionAnalyzer;
         this.globalMessages = globalMessages;
         this.compactJSON = compactJSON;
+        this.moduleBundler = moduleBundler;
 
         basePath = pathConstructor.constructClientPath(modulePathPrefix);
         compressedBasePath = pathConstructor.constructClientPath(modulePathPrefix + ".gz");
@@ -92,6 +97,13 @@ public class ModuleManagerImpl implements ModuleManager
         // This is the part that can vary from one request to another, based on the capabilities of the client.
         JSONObject config = baseConfig.copy().put("baseUrl", getBaseURL());
 
+        JSONObject bundles = moduleBundler.getManifest();
+
+        if (bundles.length() > 0)
+        {
+            config.put("bundles", bundles);
+        }
+
         // TAP5-2196: allow changes to the configuration in a per-request basis.
         for (ModuleConfigurationCallback callback : callbacks)
         {
@@ -1,4 +1,4 @@
-// Copyright 2007-2013 The Apache Software Foundation
+// Copyright 2007-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -31,6 +31,8 @@ import org.apache.tapestry5.services.ResponseCompressionAnalyzer;
 import org.apache.tapestry5.services.assets.CompressionAnalyzer;
 import org.apache.tapestry5.test.PageTester;
 
+import java.util.List;
+
 /**
  * Used in conjunction with {@link PageTester} to mock up and/or stub out portions of Tapestry that
  * need to be handled differently when testing.
@@ -75,6 +77,11 @@ public class PageTesterModule
             {
                 return true;
             }
+
+            public String selectContentEncoding(List<String> contentEncodings)
+            {
+                return contentEncodings.isEmpty() ? null : contentEncodings.get(0);
+            }
         });
     }
 
@@ -1,4 +1,4 @@
-// Copyright 2011, 2012, 2013 The Apache Software Foundation
+// Copyright 2011, 2012, 2013, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -23,6 +23,7 @@ import org.apache.tapestry5.internal.services.messages.ClientLocalizationMessage
 import org.apache.tapestry5.ioc.*;
 import org.apache.tapestry5.ioc.annotations.*;
 import org.apache.tapestry5.ioc.services.FactoryDefaults;
+import org.apache.tapestry5.ioc.services.RegistryShutdownHub;
 import org.apache.tapestry5.ioc.services.SymbolProvider;
 import org.apache.tapestry5.services.*;
 import org.apache.tapestry5.services.assets.*;
@@ -50,6 +51,10 @@ public class AssetsModule
         binder.bind(ResourceMinimizer.class, MasterResourceMinimizer.class);
         binder.bind(AssetChecksumGenerator.class, AssetChecksumGeneratorImpl.class);
         binder.bind(JavaScriptStackAssembler.class, JavaScriptStackAssemblerImpl.class);
+        binder.bind(PrecompiledAssets.class, PrecompiledAssetsImpl.class).eagerLoad();
+        binder.bind(AssetPrecompiler.class, AssetPrecompilerImpl.class);
+        binder.bind(AssetMetrics.class, AssetMetricsImpl.class);
+        binder.bind(ContentEncoderSource.class, ContentEncoderSourceImpl.class);
     }
 
     @Contribute(AssetSource.class)
@@ -75,6 +80,8 @@ public class AssetsModule
         configuration.add(SymbolConstants.GZIP_COMPRESSION_ENABLED, true);
         configuration.add(SymbolConstants.COMBINE_SCRIPTS, SymbolConstants.PRODUCTION_MODE_VALUE);
         configuration.add(SymbolConstants.ASSET_URL_FULL_QUALIFIED, false);
+        configuration.add(SymbolConstants.PRECOMPILED_ASSETS_ENABLED, SymbolConstants.PRODUCTION_MODE_VALUE);
+        configuration.add(SymbolConstants.ASSET_CHECKSUM_ALGORITHM, "Adler32");
 
         configuration.add(SymbolConstants.ASSET_PATH_PREFIX, "assets");
 
@@ -91,10 +98,25 @@ public class AssetsModule
                                                       @Symbol(SymbolConstants.GZIP_COMPRESSION_ENABLED)
                                                       boolean gzipEnabled, @Symbol(SymbolConstants.MIN_GZIP_SIZE)
                                                       int compressionCutoff,
-                                                      AssetChecksumGenerator checksumGenerator)
+                                                      AssetChecksumGenerator checksumGenerator,
+                                                      ContentEncoderSource contentEncoderSource,
+                                                      @Symbol(SymbolConstants.ASSET_SPOOL_THRESHOLD)
+                                                      int spoolThreshold)
     {
         return gzipEnabled
-                ? new SRSCompressingInterceptor(delegate, compressionCutoff, checksumGenerator)
+                ? new SRSCompressingInterceptor(delegate, compressionCutoff, checksumGenerator, contentEncoderSource, spoolThreshold)
+                : null;
+    }
+
+    // Outermost: precompiled content has already been through the rest of the pipeline.
+    @Decorate(id = "Precompiled", serviceInterface = StreamableResourceSource.class)
+    @Order("before:CacheCompressed")
+    public StreamableResourceSource enablePrecompiledAssets(StreamableResourceSource delegate,
+                                                            @Symbol(SymbolConstants.PRECOMPILED_ASSETS_ENABLED)
+                                                            boolean enabled, PrecompiledAssets precompiledAssets)
+    {
+        return enabled
+                ? new SRSPrecompiledInterceptor(delegate, precompiledAssets)
                 : null;
     }
 
@@ -102,19 +124,22 @@ public class AssetsModule
     @Order("before:GZIpCompression")
     public StreamableResourceSource enableCompressedCaching(StreamableResourceSource delegate,
                                                             @Symbol(SymbolConstants.GZIP_COMPRESSION_ENABLED)
-                                                            boolean gzipEnabled, ResourceChangeTracker tracker)
+                                                            boolean gzipEnabled, ResourceChangeTracker tracker,
+                                                            AssetMetrics metrics, RegistryShutdownHub shutdownHub)
     {
         return gzipEnabled
-                ? new SRSCompressedCachingInterceptor(delegate, tracker)
+                ? new SRSCompressedCachingInterceptor(delegate, tracker, metrics, shutdownHub)
                 : null;
     }
 
     @Decorate(id = "Cache", serviceInterface = StreamableResourceSource.class)
     @Order("after:GZipCompression")
     public StreamableResourceSource enableUncompressedCaching(StreamableResourceSource delegate,
-                                                              ResourceChangeTracker tracker)
+                                                              ResourceChangeTracker tracker,
+                                                              AssetMetrics metrics,
+                                                              RegistryShutdownHub shutdownHub)
     {
-        return new SRSCachingInterceptor(delegate, tracker);
+        return new SRSCachingInterceptor(delegate, tracker, metrics, shutdownHub);
     }
 
     // Goes after cache, to ensure that what we are caching is the minified version.
@@ -137,9 +162,11 @@ public class AssetsModule
     public StreamableResourceSource enableCSSURLRewriting(StreamableResourceSource delegate,
                                                           OperationTracker tracker,
                                                           AssetSource assetSource,
-                                                          AssetChecksumGenerator checksumGenerator)
+                                                          AssetChecksumGenerator checksumGenerator,
+                                                          @Symbol(SymbolConstants.ASSET_SPOOL_THRESHOLD)
+                                                          int spoolThreshold)
     {
-        return new CSSURLRewriter(delegate, tracker, assetSource, checksumGenerator);
+        return new CSSURLRewriter(delegate, tracker, assetSource, checksumGenerator, spoolThreshold);
     }
 
     /**
@@ -205,6 +232,17 @@ public class AssetsModule
         configuration.add("application/vnd.ms-fontobject", false);
     }
 
+    /**
+     * Contributes the "gzip" content encoder (at maximum compression, since each asset is only compressed once).
+     *
+     * @since 5.4
+     */
+    @Contribute(ContentEncoderSource.class)
+    public static void setupStandardContentEncoders(OrderedConfiguration<ContentEncoder> configuration)
+    {
+        configuration.add(InternalConstants.GZIP_CONTENT_ENCODING, new GZipContentEncoder());
+    }
+
     @Marker(ContextProvider.class)
     public static AssetFactory buildContextAssetFactory(ApplicationGlobals globals,
                                                         AssetPathConstructor assetPathConstructor,
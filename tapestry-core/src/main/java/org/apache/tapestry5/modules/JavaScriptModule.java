@@ -21,6 +21,8 @@ import org.apache.tapestry5.internal.InternalConstants;
 import org.apache.tapestry5.internal.services.DocumentLinker;
 import org.apache.tapestry5.internal.services.ResourceStreamer;
 import org.apache.tapestry5.internal.services.ajax.JavaScriptSupportImpl;
+import org.apache.tapestry5.internal.services.assets.ModuleBundler;
+import org.apache.tapestry5.internal.services.assets.ModuleBundlerImpl;
 import org.apache.tapestry5.internal.services.assets.ResourceChangeTracker;
 import org.apache.tapestry5.internal.services.javascript.*;
 import org.apache.tapestry5.internal.util.MessageCatalogResource;
@@ -61,6 +63,7 @@ public class JavaScriptModule
     {
         binder.bind(ModuleManager.class, ModuleManagerImpl.class);
         binder.bind(JavaScriptStackSource.class, JavaScriptStackSourceImpl.class);
+        binder.bind(ModuleBundler.class, ModuleBundlerImpl.class).eagerLoad();
         binder.bind(JavaScriptStack.class, ExtensibleJavaScriptStack.class).withMarker(Core.class).withId("CoreJavaScriptStack");
     }
 
@@ -192,6 +195,7 @@ public class JavaScriptModule
     @Primary
     public static void setupModuleDispatchers(OrderedConfiguration<Dispatcher> configuration,
                                               ModuleManager moduleManager,
+                                              ModuleBundler moduleBundler,
                                               OperationTracker tracker,
                                               ResourceStreamer resourceStreamer,
                                               PathConstructor pathConstructor,
@@ -199,11 +203,11 @@ public class JavaScriptModule
                                               String modulePathPrefix)
     {
         configuration.add("Modules",
-                new ModuleDispatcher(moduleManager, resourceStreamer, tracker, pathConstructor, modulePathPrefix, false),
+                new ModuleDispatcher(moduleManager, moduleBundler, resourceStreamer, tracker, pathConstructor, modulePathPrefix, false),
                 "after:Asset", "before:ComponentEvent");
 
         configuration.add("ComnpressedModules",
-                new ModuleDispatcher(moduleManager, resourceStreamer, tracker, pathConstructor, modulePathPrefix, true),
+                new ModuleDispatcher(moduleManager, moduleBundler, resourceStreamer, tracker, pathConstructor, modulePathPrefix, true),
                 "after:Modules", "before:ComponentEvent");
     }
 
@@ -335,6 +339,7 @@ public class JavaScriptModule
     {
         configuration.add(SymbolConstants.JAVASCRIPT_INFRASTRUCTURE_PROVIDER, "prototype");
         configuration.add(SymbolConstants.MODULE_PATH_PREFIX, "modules");
+        configuration.add(SymbolConstants.MODULE_BUNDLING_ENABLED, SymbolConstants.PRODUCTION_MODE_VALUE);
     }
 
     @Contribute(ModuleManager.class)
@@ -39,7 +39,13 @@ import org.apache.tapestry5.internal.renderers.*;
 import org.apache.tapestry5.internal.services.*;
 import org.apache.tapestry5.internal.services.ajax.AjaxFormUpdateFilter;
 import org.apache.tapestry5.internal.services.ajax.AjaxResponseRendererImpl;
+import org.apache.tapestry5.internal.services.ajax.BatchEventDispatcher;
+import org.apache.tapestry5.internal.services.ajax.PushChannelDispatcher;
+import org.apache.tapestry5.internal.services.ajax.PushChannelManager;
+import org.apache.tapestry5.internal.services.ajax.PushChannelManagerImpl;
+import org.apache.tapestry5.internal.services.ajax.PushConnector;
 import org.apache.tapestry5.internal.services.ajax.MultiZoneUpdateEventResultProcessor;
+import org.apache.tapestry5.internal.services.ajax.ZoneUpdatePublisherImpl;
 import org.apache.tapestry5.internal.services.linktransform.LinkTransformerImpl;
 import org.apache.tapestry5.internal.services.linktransform.LinkTransformerInterceptor;
 import org.apache.tapestry5.internal.services.messages.PropertiesFileParserImpl;
@@ -73,6 +79,7 @@ import org.apache.tapestry5.runtime.RenderCommand;
 import org.apache.tapestry5.runtime.RenderQueue;
 import org.apache.tapestry5.services.*;
 import org.apache.tapestry5.services.ajax.AjaxResponseRenderer;
+import org.apache.tapestry5.services.ajax.ZoneUpdatePublisher;
 import org.apache.tapestry5.services.dynamic.DynamicTemplate;
 import org.apache.tapestry5.services.dynamic.DynamicTemplateParser;
 import org.apache.tapestry5.services.javascript.JavaScriptSupport;
@@ -104,6 +111,7 @@ import java.net.URL;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 /**
@@ -372,6 +380,9 @@ public final class TapestryModule
         binder.bind(PathConstructor.class, PathConstructorImpl.class);
         binder.bind(DateUtilities.class, DateUtilitiesImpl.class);
         binder.bind(PartialTemplateRenderer.class, PartialTemplateRendererImpl.class);
+        binder.bind(PushChannelManager.class, PushChannelManagerImpl.class);
+        binder.bind(ZoneUpdatePublisher.class, ZoneUpdatePublisherImpl.class);
+        binder.bind(PreloadLinkCache.class, PreloadLinkCacheImpl.class);
     }
 
     // ========================================================================
@@ -818,13 +829,16 @@ public final class TapestryModule
      * <dd>Stores the request and response into the {@link org.apache.tapestry5.services.RequestGlobals} service (this
      * is repeated at the end of the pipeline, in case any filter substitutes the request or response).
      * <dt>EndOfRequest</dt>
-     * <dd>Notifies internal services that the request has ended</dd>
+     * <dd>Notifies internal services that the request has ended (or, for a request suspended while waiting for an
+     * asynchronous result, detaches its per-thread state; see {@link AsyncResultHandler})</dd>
      * </dl>
      */
     public void contributeRequestHandler(OrderedConfiguration<RequestFilter> configuration, Context context,
 
                                          @Symbol(SymbolConstants.PRODUCTION_MODE)
-                                         boolean productionMode)
+                                         boolean productionMode,
+
+                                         final AsyncResultHandler asyncResultHandler)
     {
         RequestFilter staticFilesFilter = new StaticFilesFilter(context);
 
@@ -852,6 +866,27 @@ public final class TapestryModule
             }
         };
 
+        // Requests can only be suspended when the container supports asynchronous processing.
+
+        RequestFilter detachOrFireEndOfRequestEvent = new RequestFilter()
+        {
+            public boolean service(Request request, Response response, RequestHandler handler) throws IOException
+            {
+                try
+                {
+                    return handler.service(request, response);
+                } finally
+                {
+                    // A suspended request ends once it is resumed.
+
+                    if (!asyncResultHandler.detachSuspendedRequest())
+                    {
+                        endOfRequestEventHub.fire();
+                    }
+                }
+            }
+        };
+
         if (productionMode)
         {
             configuration.add("CheckForUpdates", null, "before:*");
@@ -864,7 +899,7 @@ public final class TapestryModule
 
         configuration.add("StoreIntoGlobals", storeIntoGlobals);
 
-        configuration.add("EndOfRequest", fireEndOfRequestEvent);
+        configuration.add("EndOfRequest", isServletAsyncSupported() ? detachOrFireEndOfRequestEvent : fireEndOfRequestEvent);
 
         configuration.addInstance("ErrorFilter", RequestErrorFilter.class);
     }
@@ -1393,6 +1428,40 @@ public final class TapestryModule
         return shadowBuilder.build(source, "proxyFactory", PlasticProxyFactory.class);
     }
 
+    /**
+     * Suspends requests waiting for a {@link Future} using Servlet 3.0 asynchronous processing when the container
+     * supports it; otherwise, the request thread simply waits for the result.
+     *
+     * @since 5.4
+     */
+    public AsyncResultHandler buildAsyncResultHandler(ObjectLocator locator)
+    {
+        if (isServletAsyncSupported())
+        {
+            return locator.autobuild(ServletAsyncSupport.loadImplementation(AsyncResultHandler.class,
+                    "org.apache.tapestry5.internal.services.AsyncResultHandlerImpl"));
+        }
+
+        return locator.autobuild(BlockingAsyncResultHandler.class);
+    }
+
+    /**
+     * Holds push channel connections open using Servlet 3.0 asynchronous processing; only used when the container
+     * supports it.
+     *
+     * @since 5.4
+     */
+    public static PushConnector buildPushConnector(ObjectLocator locator)
+    {
+        return locator.autobuild(ServletAsyncSupport.loadImplementation(PushConnector.class,
+                "org.apache.tapestry5.internal.services.ajax.AsyncPushConnector"));
+    }
+
+    private boolean isServletAsyncSupported()
+    {
+        return ServletAsyncSupport.isAvailable(applicationGlobals.getServletContext());
+    }
+
     /**
      * Ordered contributions to the MasterDispatcher service allow different URL
      * matching strategies to occur.
@@ -1543,12 +1612,20 @@ public final class TapestryModule
      * <dd>The stream response is sent as the actual reply.</dd>
      * <dt>URL</dt>
      * <dd>Sends a redirect to a (presumably) external URL</dd>
+     * <dt>{@link Future}</dt>
+     * <dd>The value of the future, once available, is processed as if it had been returned directly (see
+     * {@link AsyncResultHandler})</dd>
      * </dl>
      */
     public void contributeComponentEventResultProcessor(@Traditional
                                                         @ComponentInstanceProcessor
                                                         ComponentEventResultProcessor componentInstanceProcessor,
 
+                                                        @Primary
+                                                        ComponentEventResultProcessor masterProcessor,
+
+                                                        AsyncResultHandler asyncResultHandler,
+
                                                         MappedConfiguration<Class, ComponentEventResultProcessor> configuration)
     {
         configuration.add(Link.class, new ComponentEventResultProcessor<Link>()
@@ -1578,6 +1655,8 @@ public final class TapestryModule
         configuration.addInstance(StreamResponse.class, StreamResponseResultProcessor.class);
 
         configuration.addInstance(StreamPageContent.class, StreamPageContentResultProcessor.class);
+
+        configuration.add(Future.class, new FutureComponentEventResultProcessor(asyncResultHandler, masterProcessor, false));
     }
 
     /**
@@ -1601,6 +1680,9 @@ public final class TapestryModule
      * <dd>Treats the class as a page class and sends a redirect for a page render for that page</dd>
      * <dt>{@link org.apache.tapestry5.ajax.MultiZoneUpdate}</dt>
      * <dd>Sends a single JSON response to update the content of multiple zones
+     * <dt>{@link Future}</dt>
+     * <dd>The value of the future, once available, is processed as if it had been returned directly (see
+     * {@link AsyncResultHandler})</dd>
      * </dl>
      * <p/>
      * In most cases, when you want to support a new type, you should convert it to one of the built-in supported types
@@ -1610,7 +1692,12 @@ public final class TapestryModule
     @Contribute(ComponentEventResultProcessor.class)
     @Ajax
     public static void provideBaseAjaxComponentEventResultProcessors(
-            MappedConfiguration<Class, ComponentEventResultProcessor> configuration)
+            MappedConfiguration<Class, ComponentEventResultProcessor> configuration,
+
+            @Ajax
+            ComponentEventResultProcessor masterProcessor,
+
+            AsyncResultHandler asyncResultHandler)
     {
         configuration.addInstance(RenderCommand.class, RenderCommandComponentEventResultProcessor.class);
         configuration.addInstance(Component.class, AjaxComponentInstanceEventResultProcessor.class);
@@ -1623,6 +1710,7 @@ public final class TapestryModule
         configuration.addInstance(Class.class, AjaxPageClassComponentEventResultProcessor.class);
         configuration.addInstance(MultiZoneUpdate.class, MultiZoneUpdateEventResultProcessor.class);
         configuration.addInstance(HttpError.class, HttpErrorComponentEventResultProcessor.class);
+        configuration.add(Future.class, new FutureComponentEventResultProcessor(asyncResultHandler, masterProcessor, true));
     }
 
     /**
@@ -1635,12 +1723,18 @@ public final class TapestryModule
      * <dt>PageRender</dt>
      * <dd>Identifies the {@link org.apache.tapestry5.services.PageRenderRequestParameters} and forwards onto
      * {@link PageRenderRequestHandler}</dd>
+     * <dt>BatchEvent</dt>
+     * <dd>Triggers several component events, identified in a single Ajax request, and combines their zone updates
+     * into one response (see {@link SymbolConstants#BATCH_EVENT_PATH})</dd>
+     * <dt>PushChannel</dt>
+     * <dd>Holds open connections used to push zone updates to the client (see {@link ZoneUpdatePublisher}); only
+     * contributed when the container supports Servlet 3.0 asynchronous processing</dd>
      * <dt>ComponentEvent</dt>
      * <dd>Identifies the {@link ComponentEventRequestParameters} and forwards onto the
      * {@link ComponentEventRequestHandler}</dd>
      * </dl>
      */
-    public static void contributeMasterDispatcher(OrderedConfiguration<Dispatcher> configuration)
+    public void contributeMasterDispatcher(OrderedConfiguration<Dispatcher> configuration)
     {
         // Looks for the root path and renders the start page. This is
         // maintained for compatibility
@@ -1649,6 +1743,15 @@ public final class TapestryModule
 
         configuration.addInstance("RootPath", RootPathDispatcher.class, "before:Asset");
 
+        configuration.addInstance("BatchEvent", BatchEventDispatcher.class, "before:ComponentEvent");
+
+        // The push channel holds connections open using Servlet 3.0 asynchronous processing.
+
+        if (isServletAsyncSupported())
+        {
+            configuration.addInstance("PushChannel", PushChannelDispatcher.class, "before:ComponentEvent");
+        }
+
         configuration.addInstance("ComponentEvent", ComponentEventDispatcher.class, "before:PageRender");
 
         configuration.addInstance("PageRender", PageRenderDispatcher.class);
@@ -1728,7 +1831,9 @@ public final class TapestryModule
                                          @Symbol(SymbolConstants.INCLUDE_CORE_STACK)
                                          final boolean includeCoreStack,
 
-                                         final ValidationDecoratorFactory validationDecoratorFactory)
+                                         final ValidationDecoratorFactory validationDecoratorFactory,
+
+                                         final PreloadLinkCache preloadLinkCache)
     {
         MarkupRendererFilter documentLinker = new MarkupRendererFilter()
         {
@@ -1743,6 +1848,13 @@ public final class TapestryModule
                 environment.pop(DocumentLinker.class);
 
                 linker.updateDocument(writer.getDocument());
+
+                String pageName = requestGlobals.getActivePageName();
+
+                if (pageName != null)
+                {
+                    preloadLinkCache.storePreloads(pageName, linker.getStylesheetLinks(), linker.getLibraryURLs());
+                }
             }
         };
 
@@ -1949,11 +2061,18 @@ public final class TapestryModule
     }
 
     /**
-     * Contributes a single filter, "Secure", which checks for non-secure
-     * requests that access secure pages.
+     * Contributes filters:
+     * <dl>
+     * <dt>Secure</dt>
+     * <dd>Checks for non-secure requests that access secure pages</dd>
+     * <dt>PreloadHeaders (since 5.4)</dt>
+     * <dd>Adds preload headers for the stylesheets and libraries the page used when last rendered (see
+     * {@link SymbolConstants#PRELOAD_HEADERS_ENABLED})</dd>
+     * </dl>
      */
     public void contributePageRenderRequestHandler(OrderedConfiguration<PageRenderRequestFilter> configuration,
-                                                   final RequestSecurityManager securityManager)
+                                                   final RequestSecurityManager securityManager,
+                                                   final PreloadLinkCache preloadLinkCache)
     {
         PageRenderRequestFilter secureFilter = new PageRenderRequestFilter()
         {
@@ -1969,6 +2088,19 @@ public final class TapestryModule
         };
 
         configuration.add("Secure", secureFilter);
+
+        PageRenderRequestFilter preloadFilter = new PageRenderRequestFilter()
+        {
+            public void handle(PageRenderRequestParameters parameters, PageRenderRequestHandler handler)
+                    throws IOException
+            {
+                preloadLinkCache.addPreloadHeaders(parameters.getLogicalPageName(), response);
+
+                handler.handle(parameters);
+            }
+        };
+
+        configuration.add("PreloadHeaders", preloadFilter, "after:Secure");
     }
 
     public static void contributeTemplateParser(MappedConfiguration<String, URL> config)
@@ -2001,6 +2133,7 @@ public final class TapestryModule
 
         configuration.add(SymbolConstants.FILE_CHECK_INTERVAL, "1 s");
         configuration.add(SymbolConstants.FILE_CHECK_UPDATE_TIMEOUT, "50 ms");
+        configuration.add(SymbolConstants.FILE_WATCHING_ENABLED, true);
 
         // This should be overridden for particular applications. These are the
         // locales for which we have (at least some) localized messages.
@@ -2051,6 +2184,7 @@ public final class TapestryModule
         configuration.add(SymbolConstants.EXCEPTION_REPORT_PAGE, "ExceptionReport");
 
         configuration.add(SymbolConstants.MIN_GZIP_SIZE, 100);
+        configuration.add(SymbolConstants.ASSET_SPOOL_THRESHOLD, 1024 * 1024);
 
         Random random = new Random(System.currentTimeMillis());
 
@@ -2074,6 +2208,13 @@ public final class TapestryModule
 
         configuration.add(SymbolConstants.APPLICATION_FOLDER, "");
 
+        configuration.add(SymbolConstants.BATCH_EVENT_PATH, "t5batch");
+        configuration.add(SymbolConstants.PUSH_PATH, "t5push");
+        configuration.add(SymbolConstants.PUSH_QUEUE_SIZE, 50);
+        configuration.add(SymbolConstants.PUSH_TIMEOUT, "30 s");
+        configuration.add(SymbolConstants.ASYNC_TIMEOUT, "60 s");
+        configuration.add(SymbolConstants.PRELOAD_HEADERS_ENABLED, SymbolConstants.PRODUCTION_MODE_VALUE);
+
         // Grid component parameter defaults
         configuration.add(ComponentParameterConstants.GRID_ROWS_PER_PAGE, GridConstants.ROWS_PER_PAGE);
         configuration.add(ComponentParameterConstants.GRID_PAGER_POSITION, GridConstants.PAGER_POSITION);
@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2011, 2012 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2011, 2012, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -31,6 +31,8 @@ import java.util.Map;
  * </dl>
  * <p/>
  * Starting in Tapestry 5.3, these services are disabled in production (it does nothing).
+ * <p/>
+ * Starting in Tapestry 5.4, some hubs also implement {@link ResourceInvalidationEventHub}.
  *
  * @since 5.1.0.0
  */
@@ -0,0 +1,37 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.services;
+
+import java.util.Set;
+
+/**
+ * Callback informed of exactly which resources have been invalidated, allowing the receiver to discard just the
+ * cached data derived from those resources.
+ *
+ * @see ResourceInvalidationEventHub#addResourceInvalidationCallback(ResourceInvalidationCallback)
+ * @since 5.4
+ */
+public interface ResourceInvalidationCallback
+{
+    /**
+     * Invoked when resources have been invalidated.
+     *
+     * @param resources
+     *         identifies the invalidated resources; for the {@link ComponentTemplates} and {@link ComponentMessages}
+     *         hubs, these are the class names of the components whose templates or message catalogs have changed. An
+     *         empty set means that everything has been invalidated.
+     */
+    void resourcesInvalidated(Set<String> resources);
+}
@@ -0,0 +1,32 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.services;
+
+/**
+ * An {@link InvalidationEventHub} that can also report exactly which resources have been invalidated. The hubs for
+ * component templates and message catalogs implement this interface; code that receives an arbitrary hub should check
+ * for it with <code>instanceof</code>, and fall back to {@link #addInvalidationCallback(Runnable)} otherwise.
+ *
+ * @since 5.4
+ */
+public interface ResourceInvalidationEventHub extends InvalidationEventHub
+{
+    /**
+     * Adds a callback that is informed of exactly which resources have been invalidated (or that everything has
+     * been). Callbacks added via {@link #addInvalidationCallback(Runnable)} are invoked for every invalidation, no
+     * matter which resources it affects. Does nothing in production mode.
+     */
+    void addResourceInvalidationCallback(ResourceInvalidationCallback callback);
+}
@@ -1,4 +1,4 @@
-// Copyright 2009-2013 The Apache Software Foundation
+// Copyright 2009-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -16,8 +16,10 @@ package org.apache.tapestry5.services;
 
 import org.apache.tapestry5.services.assets.CompressionAnalyzer;
 
+import java.util.List;
+
 /**
- * Used to determine if the client supports GZip compression of the response.
+ * Used to determine if the client supports GZip (or other) compression of the response.
  *
  * @see CompressionAnalyzer
  * @see org.apache.tapestry5.SymbolConstants#GZIP_COMPRESSION_ENABLED
@@ -42,4 +44,17 @@ public interface ResponseCompressionAnalyzer
      * @since 5.4
      */
     boolean isGZipEnabled(String contentType);
+
+    /**
+     * Selects the content encoding to use for a response, based on the Accept-Encoding request header: the encoding
+     * with the highest quality value ("q") wins; when the client accepts several encodings equally, the earliest
+     * in the list wins.
+     *
+     * @param contentEncodings
+     *         the available content encodings (such as "br" or "gzip"), in order of preference
+     * @return the selected encoding, or null if the client accepts none of them (or compression is disabled)
+     * @see org.apache.tapestry5.services.assets.ContentEncoderSource
+     * @since 5.4
+     */
+    String selectContentEncoding(List<String> contentEncodings);
 }
@@ -0,0 +1,55 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.services.ajax;
+
+/**
+ * Pushes zone updates to clients connected to the {@linkplain org.apache.tapestry5.SymbolConstants#PUSH_PATH push channel},
+ * rather than waiting for the client to request them (as with the {@link org.apache.tapestry5.corelib.mixins.ZoneRefresh}
+ * mixin). Clients connect using the {@link org.apache.tapestry5.corelib.mixins.ZonePush} mixin.
+ * <p/>
+ * The content is rendered immediately (using the {@link org.apache.tapestry5.services.PartialTemplateRenderer}), so these
+ * methods should be invoked from inside a request, typically from an event handler method. As with the
+ * PartialTemplateRenderer, any JavaScript or CSS that the content would normally import is ignored.
+ *
+ * @since 5.4
+ */
+public interface ZoneUpdatePublisher
+{
+    /**
+     * Publishes an update to every client subscribed to the topic.
+     *
+     * @param topic
+     *         name of topic clients subscribe to
+     * @param clientId
+     *         client id of the zone to update
+     * @param renderer
+     *         a {@link org.apache.tapestry5.Block}, {@link org.apache.tapestry5.runtime.Component} or other object that can be
+     *         {@linkplain org.apache.tapestry5.ioc.services.TypeCoercer coerced} to {@link org.apache.tapestry5.runtime.RenderCommand}
+     * @return this publisher, for a fluid interface
+     */
+    ZoneUpdatePublisher publish(String topic, String clientId, Object renderer);
+
+    /**
+     * Publishes an update to every client connected using the current request's session (for example, other browser
+     * windows of the same user). Does nothing if the request does not have a session.
+     *
+     * @param clientId
+     *         client id of the zone to update
+     * @param renderer
+     *         the new content for the zone (as with {@link #publish(String, String, Object)})
+     * @return this publisher, for a fluid interface
+     */
+    ZoneUpdatePublisher publishToSession(String clientId, Object renderer);
+}
@@ -0,0 +1,74 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.services.assets;
+
+import java.util.List;
+
+/**
+ * Collects metrics about the serving of assets: requests, {@linkplain javax.servlet.http.HttpServletResponse#SC_NOT_MODIFIED
+ * not modified} responses, hits and misses of the {@link StreamableResourceSource} caches, bytes sent (compressed and
+ * uncompressed) and processing time. Metrics are kept per asset (named for its {@link org.apache.tapestry5.ioc.Resource},
+ * for example "classpath:META-INF/assets/app/app.css") and per JavaScript stack (for example, "stack:core").
+ * <p/>
+ * The metrics are displayed by the "Assets" tab of the T5Dashboard page, and are exposed via JMX when the
+ * tapestry-jmx library is on the classpath.
+ *
+ * @since 5.4
+ */
+public interface AssetMetrics
+{
+    /**
+     * Records the outcome of a request for an asset or stack.
+     *
+     * @param name
+     *         identifies the asset or stack
+     * @param notModified
+     *         if true, the client's copy was current and no content was sent
+     * @param contentEncoding
+     *         the content encoding (such as "gzip") used for the content, or null if sent uncompressed
+     * @param bytes
+     *         number of bytes of content sent
+     * @param elapsedNanos
+     *         time taken to process the request, in nanoseconds
+     */
+    void recordRequest(String name, boolean notModified, String contentEncoding, long bytes, long elapsedNanos);
+
+    /**
+     * Records a lookup in one of the {@link StreamableResourceSource} caches. A single request may consult more than
+     * one cache (a miss in the cache of compressed content is followed by a lookup in the cache of uncompressed
+     * content).
+     *
+     * @param name
+     *         identifies the asset or stack
+     * @param hit
+     *         true if the content was found in the cache, false if it had to be (re-)created
+     */
+    void recordCacheAccess(String name, boolean hit);
+
+    /**
+     * Returns a snapshot of the metrics collected since startup (or since the last {@link #reset()}), sorted by name.
+     */
+    List<AssetStatistics> getStatistics();
+
+    /**
+     * Returns a snapshot of the metrics of all assets and stacks combined (with name "*").
+     */
+    AssetStatistics getTotals();
+
+    /**
+     * Discards all collected metrics.
+     */
+    void reset();
+}
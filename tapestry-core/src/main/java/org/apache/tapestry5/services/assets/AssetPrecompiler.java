@@ -0,0 +1,60 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.services.assets;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Runs the full {@link StreamableResourceSource} pipeline (transformation, minification, compression and checksum)
+ * for every JavaScript and CSS asset the application knows about, ahead of deployment. This covers assets in every
+ * {@linkplain org.apache.tapestry5.services.ClasspathAssetAliasManager aliased classpath folder}, every module under
+ * <code>META-INF/modules</code>, the libraries of every
+ * {@linkplain org.apache.tapestry5.services.javascript.JavaScriptStack JavaScript stack}, each stack in aggregated
+ * form (for each supported locale) and, optionally, assets in the web application context.
+ * <p/>
+ * The result is a content-addressed artifact: a manifest, plus one file per distinct content (named for its
+ * checksum), with an additional file for each content encoding (such as GZIP) where compression is worthwhile. When
+ * the artifact is on the classpath at runtime, these are served directly.
+ *
+ * @see org.apache.tapestry5.util.PrecompileAssets
+ * @see org.apache.tapestry5.SymbolConstants#PRECOMPILED_ASSETS_ENABLED
+ * @since 5.4
+ */
+public interface AssetPrecompiler
+{
+    /**
+     * Folder, within the class path (and within the output directory), containing the precompiled artifact.
+     */
+    String ROOT_FOLDER = "META-INF/precompiled-assets";
+
+    /**
+     * Name of the manifest file within the {@link #ROOT_FOLDER}.
+     */
+    String MANIFEST = "manifest.json";
+
+    /**
+     * Precompiles all known assets.
+     *
+     * @param outputDirectory
+     *         directory in which to create the {@link #ROOT_FOLDER}, typically a directory packaged into the
+     *         application's WAR (for example, WEB-INF/classes)
+     * @param contextDirectory
+     *         web application context directory, whose assets should also be precompiled, or null to skip
+     *         context assets
+     * @return the number of assets (and stacks) precompiled
+     */
+    int precompile(File outputDirectory, File contextDirectory) throws IOException;
+}
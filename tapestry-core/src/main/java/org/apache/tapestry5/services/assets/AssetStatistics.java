@@ -0,0 +1,123 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.services.assets;
+
+/**
+ * An immutable snapshot of the {@linkplain AssetMetrics metrics} for a single asset or stack.
+ *
+ * @since 5.4
+ */
+public class AssetStatistics
+{
+    private final String name;
+
+    private final long requests, notModified, cacheHits, cacheMisses, compressedBytes, uncompressedBytes, totalNanos;
+
+    public AssetStatistics(String name, long requests, long notModified, long cacheHits, long cacheMisses,
+                           long compressedBytes, long uncompressedBytes, long totalNanos)
+    {
+        this.name = name;
+        this.requests = requests;
+        this.notModified = notModified;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+        this.compressedBytes = compressedBytes;
+        this.uncompressedBytes = uncompressedBytes;
+        this.totalNanos = totalNanos;
+    }
+
+    /**
+     * The asset (or stack) name.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Total number of requests, including those that resulted in a not modified response.
+     */
+    public long getRequests()
+    {
+        return requests;
+    }
+
+    /**
+     * Number of requests where the client's copy was current, and no content was sent.
+     */
+    public long getNotModified()
+    {
+        return notModified;
+    }
+
+    public long getCacheHits()
+    {
+        return cacheHits;
+    }
+
+    public long getCacheMisses()
+    {
+        return cacheMisses;
+    }
+
+    /**
+     * Percentage (0 - 100) of cache lookups that were hits, or 0 if there have been no lookups.
+     */
+    public int getCacheHitRate()
+    {
+        long lookups = cacheHits + cacheMisses;
+
+        return lookups == 0 ? 0 : (int) (cacheHits * 100 / lookups);
+    }
+
+    /**
+     * Bytes of content sent with a content encoding (such as gzip).
+     */
+    public long getCompressedBytes()
+    {
+        return compressedBytes;
+    }
+
+    /**
+     * Bytes of content sent without a content encoding.
+     */
+    public long getUncompressedBytes()
+    {
+        return uncompressedBytes;
+    }
+
+    /**
+     * Total processing time, in milliseconds.
+     */
+    public long getTotalTime()
+    {
+        return totalNanos / 1000000;
+    }
+
+    /**
+     * Average processing time per request, in microseconds.
+     */
+    public long getAverageTime()
+    {
+        return requests == 0 ? 0 : totalNanos / requests / 1000;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("AssetStatistics[%s requests: %d notModified: %d cacheHits: %d cacheMisses: %d compressedBytes: %d uncompressedBytes: %d totalTime: %d ms]",
+                name, requests, notModified, cacheHits, cacheMisses, compressedBytes, uncompressedBytes, getTotalTime());
+    }
+}
@@ -0,0 +1,41 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.services.assets;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encodes (that is, compresses) the content of assets for a particular HTTP content encoding, such as "gzip" or "br".
+ * Compressed assets are encoded once (and cached) for each content encoding, so an encoder should use its
+ * maximum compression level.
+ *
+ * @see ContentEncoderSource
+ * @since 5.4
+ */
+public interface ContentEncoder
+{
+    /**
+     * Returns the value for the Content-Encoding response header (and matched against the Accept-Encoding request
+     * header), for example "gzip".
+     */
+    String getContentEncoding();
+
+    /**
+     * Wraps a stream; content written to the returned stream is encoded and written to the provided stream. Closing the
+     * returned stream must complete the encoding, and close the provided stream.
+     */
+    OutputStream createEncodingStream(OutputStream stream) throws IOException;
+}
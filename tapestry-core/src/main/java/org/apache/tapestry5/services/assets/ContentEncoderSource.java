@@ -0,0 +1,37 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.services.assets;
+
+import org.apache.tapestry5.ioc.annotations.UsesOrderedConfiguration;
+
+import java.util.List;
+
+/**
+ * Provides the {@link ContentEncoder}s used to compress assets. Tapestry contributes an encoder for "gzip" (with id
+ * "gzip"); add-on libraries may contribute others, such as Brotli ("br"). The order of the configuration is the
+ * server's preference, used when the client accepts more than one encoding equally.
+ *
+ * @see EncodedStreamableResource
+ * @see org.apache.tapestry5.services.ResponseCompressionAnalyzer#selectContentEncoding(java.util.List)
+ * @since 5.4
+ */
+@UsesOrderedConfiguration(ContentEncoder.class)
+public interface ContentEncoderSource
+{
+    /**
+     * Returns all encoders, in order of preference.
+     */
+    List<ContentEncoder> getEncoders();
+}
@@ -0,0 +1,45 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.services.assets;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A {@linkplain CompressionStatus#COMPRESSED compressed} resource that can provide its content in any of several
+ * content encodings; the encoding is negotiated with the client when the resource is streamed. The methods inherited
+ * from {@link StreamableResource} describe the content in the first (preferred) encoding.
+ * <p/>
+ * A compressed StreamableResource that does not implement this interface is assumed to be GZIP encoded.
+ *
+ * @see ContentEncoderSource
+ * @since 5.4
+ */
+public interface EncodedStreamableResource extends StreamableResource
+{
+    /**
+     * Returns the available content encodings, in order of preference.
+     */
+    List<String> getContentEncodings();
+
+    /**
+     * Returns the content in a specific encoding. Each encoding is computed just once.
+     *
+     * @param contentEncoding
+     *         one of the {@linkplain #getContentEncodings() available encodings}, or null for the unencoded content
+     * @return the content in that encoding; the checksum is always that of the unencoded content
+     */
+    StreamableResource forContentEncoding(String contentEncoding) throws IOException;
+}
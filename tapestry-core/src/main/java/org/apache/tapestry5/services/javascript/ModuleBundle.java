@@ -0,0 +1,48 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.services.javascript;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Defines a bundle of JavaScript modules, as contributed (keyed on bundle name) to the
+ * {@link org.apache.tapestry5.internal.services.assets.ModuleBundler} service. The bundle contains the root modules and
+ * their dependencies, excepting any dependency shared with another bundle.
+ *
+ * @see org.apache.tapestry5.SymbolConstants#MODULE_BUNDLING_ENABLED
+ * @since 5.4
+ */
+public final class ModuleBundle
+{
+    /**
+     * Names of the modules the bundle is built from.
+     */
+    public final List<String> rootModules;
+
+    public ModuleBundle(String... rootModules)
+    {
+        assert rootModules.length > 0;
+
+        this.rootModules = Collections.unmodifiableList(Arrays.asList(rootModules));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("ModuleBundle[%s]", rootModules);
+    }
+}
@@ -0,0 +1,192 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.tree;
+
+import org.apache.tapestry5.BaseOptimizedSessionPersistedObject;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+
+import java.util.Set;
+
+/**
+ * A {@link TreeExpansionModel} that stores the expanded {@link TreeNode} ids compactly, for trees with a great many
+ * expanded nodes. Ids that are non-negative integers (as is typical of database keys) are stored in a sorted array of
+ * ints, four bytes per expanded node however large the ids are. Any other id is stored as a String, as with
+ * {@link DefaultTreeExpansionModel}.
+ *
+ * @param <T>
+ * @since 5.4
+ */
+public class CompactTreeExpansionModel<T> extends BaseOptimizedSessionPersistedObject implements TreeExpansionModel<T>
+{
+    private static final long serialVersionUID = 3329614466851183725L;
+
+    /**
+     * The expanded numeric ids, in ascending order, in the first {@link #expandedCount} elements.
+     */
+    private int[] expandedNumbers = new int[0];
+
+    private int expandedCount;
+
+    private final Set<String> expandedIds = CollectionFactory.newSet();
+
+    /**
+     * Returns the id as a number, or -1 if it must be stored as a String. Only the canonical form of each number (no
+     * sign or leading zeros) is converted, so that each number corresponds to exactly one id.
+     */
+    static int toNumber(String id)
+    {
+        int length = id.length();
+
+        if (length == 0 || length > 10 || (length > 1 && id.charAt(0) == '0'))
+        {
+            return -1;
+        }
+
+        long result = 0;
+
+        for (int i = 0; i < length; i++)
+        {
+            char ch = id.charAt(i);
+
+            if (ch < '0' || ch > '9')
+            {
+                return -1;
+            }
+
+            result = result * 10 + (ch - '0');
+        }
+
+        return result <= Integer.MAX_VALUE ? (int) result : -1;
+    }
+
+    /**
+     * Returns the index of the number within the expanded numbers or, if not present, (-(insertion point) - 1).
+     */
+    private int search(int number)
+    {
+        int low = 0;
+        int high = expandedCount - 1;
+
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            int value = expandedNumbers[middle];
+
+            if (value < number)
+            {
+                low = middle + 1;
+            } else if (value > number)
+            {
+                high = middle - 1;
+            } else
+            {
+                return middle;
+            }
+        }
+
+        return -low - 1;
+    }
+
+    public boolean isExpanded(TreeNode<T> node)
+    {
+        assert node != null;
+
+        String id = node.getId();
+        int number = toNumber(id);
+
+        return number < 0 ? expandedIds.contains(id) : search(number) >= 0;
+    }
+
+    public void markExpanded(TreeNode<T> node)
+    {
+        assert node != null;
+
+        String id = node.getId();
+        int number = toNumber(id);
+
+        if (number < 0)
+        {
+            if (expandedIds.add(id))
+                markDirty();
+
+            return;
+        }
+
+        int index = search(number);
+
+        if (index >= 0)
+        {
+            return;
+        }
+
+        int insertion = -index - 1;
+
+        if (expandedCount == expandedNumbers.length)
+        {
+            int[] larger = new int[Math.max(8, expandedCount * 2)];
+
+            System.arraycopy(expandedNumbers, 0, larger, 0, expandedCount);
+
+            expandedNumbers = larger;
+        }
+
+        System.arraycopy(expandedNumbers, insertion, expandedNumbers, insertion + 1, expandedCount - insertion);
+
+        expandedNumbers[insertion] = number;
+        expandedCount++;
+
+        markDirty();
+    }
+
+    public void markCollapsed(TreeNode<T> node)
+    {
+        assert node != null;
+
+        String id = node.getId();
+        int number = toNumber(id);
+
+        if (number < 0)
+        {
+            if (expandedIds.remove(id))
+                markDirty();
+
+            return;
+        }
+
+        int index = search(number);
+
+        if (index < 0)
+        {
+            return;
+        }
+
+        System.arraycopy(expandedNumbers, index + 1, expandedNumbers, index, expandedCount - index - 1);
+
+        expandedCount--;
+
+        markDirty();
+    }
+
+    public void clear()
+    {
+        if (!expandedIds.isEmpty() || expandedCount > 0)
+        {
+            expandedIds.clear();
+            expandedNumbers = new int[0];
+            expandedCount = 0;
+            markDirty();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.util;
+
+import java.util.concurrent.Future;
+
+/**
+ * A {@link Future} that notifies listeners once it completes. When an event handler method returns a ListenableFuture
+ * that has not yet completed, the request is suspended (rather than holding the request thread until the value is
+ * available), and is resumed by the listener.
+ *
+ * @see ListenableFutureTask
+ * @see org.apache.tapestry5.SymbolConstants#ASYNC_TIMEOUT
+ * @since 5.4
+ */
+public interface ListenableFuture<V> extends Future<V>
+{
+    /**
+     * Adds a listener to be run once the future completes (successfully, with a failure, or by being cancelled). The
+     * listener runs in the thread that completes the future or, if the future has already completed, immediately in
+     * the current thread.
+     *
+     * @param listener
+     *         to run on completion
+     */
+    void addListener(Runnable listener);
+}
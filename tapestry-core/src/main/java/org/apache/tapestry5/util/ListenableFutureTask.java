@@ -0,0 +1,77 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.util;
+
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A {@link FutureTask} that is also a {@link ListenableFuture}; it may be submitted to any
+ * {@link java.util.concurrent.Executor}.
+ *
+ * @since 5.4
+ */
+public class ListenableFutureTask<V> extends FutureTask<V> implements ListenableFuture<V>
+{
+    private final List<Runnable> listeners = CollectionFactory.newList();
+
+    public ListenableFutureTask(Callable<V> callable)
+    {
+        super(callable);
+    }
+
+    public ListenableFutureTask(Runnable runnable, V result)
+    {
+        super(runnable, result);
+    }
+
+    public void addListener(Runnable listener)
+    {
+        assert listener != null;
+
+        synchronized (listeners)
+        {
+            if (!isDone())
+            {
+                listeners.add(listener);
+
+                return;
+            }
+        }
+
+        listener.run();
+    }
+
+    @Override
+    protected void done()
+    {
+        List<Runnable> completed;
+
+        synchronized (listeners)
+        {
+            completed = CollectionFactory.newList(listeners);
+
+            listeners.clear();
+        }
+
+        for (Runnable listener : completed)
+        {
+            listener.run();
+        }
+    }
+}
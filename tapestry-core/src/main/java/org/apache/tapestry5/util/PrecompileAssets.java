@@ -0,0 +1,88 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.util;
+
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.services.assets.AssetPrecompiler;
+import org.apache.tapestry5.test.PageTester;
+
+import java.io.File;
+
+/**
+ * Command line tool that precompiles an application's assets ahead of deployment, using the
+ * {@link AssetPrecompiler} service. The application's registry is started outside of any servlet container (as with
+ * the {@link PageTester}), with the full classpath of the application, including any libraries that contribute
+ * {@linkplain org.apache.tapestry5.services.assets.ResourceTransformer transformers} or
+ * {@linkplain org.apache.tapestry5.services.assets.ResourceMinimizer minimizers}.
+ * <p/>
+ * Arguments:
+ * <ol>
+ * <li>application package (as with the <code>tapestry.app-package</code> context parameter)</li>
+ * <li>application name (the filter name)</li>
+ * <li>output directory, which should be packaged onto the application's classpath (such as WEB-INF/classes)</li>
+ * <li>optional: web application context directory; when provided, context assets are also precompiled</li>
+ * </ol>
+ * The tool runs in production mode, unless the <code>tapestry.production-mode</code> system property is set. Other
+ * symbols that affect generated URLs, such as {@link SymbolConstants#CONTEXT_PATH}, should be set the same way they
+ * will be in deployment (for example, as system properties). For instance, from Gradle:
+ * <pre>
+ * task precompileAssets(type: JavaExec) {
+ *   main = "org.apache.tapestry5.util.PrecompileAssets"
+ *   classpath = sourceSets.main.runtimeClasspath
+ *   args "com.example.app", "app", "$buildDir/precompiled", "src/main/webapp"
+ *   systemProperty "tapestry.context-path", "/shop"
+ * }
+ * war {
+ *   dependsOn precompileAssets
+ *   from("$buildDir/precompiled") { into "WEB-INF/classes" }
+ * }
+ * </pre>
+ *
+ * @see SymbolConstants#PRECOMPILED_ASSETS_ENABLED
+ * @since 5.4
+ */
+public class PrecompileAssets
+{
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 3 || args.length > 4)
+        {
+            System.err.println("Usage: PrecompileAssets <app-package> <app-name> <output-directory> [<context-directory>]");
+            System.exit(-1);
+        }
+
+        // Don't serve a previously precompiled artifact (which may be on the classpath) while precompiling!
+
+        System.setProperty(SymbolConstants.PRECOMPILED_ASSETS_ENABLED, "false");
+
+        if (System.getProperty(SymbolConstants.PRODUCTION_MODE) == null)
+        {
+            System.setProperty(SymbolConstants.PRODUCTION_MODE, "true");
+        }
+
+        File contextDirectory = args.length == 4 ? new File(args[3]) : null;
+
+        PageTester tester = new PageTester(args[0], args[1],
+                contextDirectory == null ? PageTester.DEFAULT_CONTEXT_PATH : contextDirectory.getPath());
+
+        try
+        {
+            tester.getService(AssetPrecompiler.class).precompile(new File(args[2]), contextDirectory);
+        } finally
+        {
+            tester.shutdown();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.ioc.annotations.IntermediateType;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.services.PerThreadValue;
+import org.apache.tapestry5.ioc.services.PerthreadManager;
+import org.apache.tapestry5.ioc.util.TimeInterval;
+import org.apache.tapestry5.services.ComponentEventResultProcessor;
+import org.apache.tapestry5.services.RequestExceptionHandler;
+import org.apache.tapestry5.services.RequestGlobals;
+import org.apache.tapestry5.util.ListenableFuture;
+import org.slf4j.Logger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Implementation of {@link AsyncResultHandler} that suspends requests using Servlet 3.0 asynchronous processing. This
+ * class is compiled against the Servlet 3.0 API, and is only used when the container supports it (see
+ * {@link ServletAsyncSupport}); otherwise, the {@link BlockingAsyncResultHandler} is used.
+ *
+ * @since 5.4
+ */
+@SuppressWarnings("unchecked")
+public class AsyncResultHandlerImpl extends BlockingAsyncResultHandler
+{
+    private final RequestGlobals requestGlobals;
+
+    private final RequestExceptionHandler exceptionHandler;
+
+    private final PerthreadManager perthreadManager;
+
+    private final EndOfRequestEventHub endOfRequestEventHub;
+
+    private final Logger logger;
+
+    private final PerThreadValue<Resumption> suspended;
+
+    public AsyncResultHandlerImpl(RequestGlobals requestGlobals, RequestExceptionHandler exceptionHandler,
+                                  PerthreadManager perthreadManager, EndOfRequestEventHub endOfRequestEventHub,
+                                  Logger logger,
+
+                                  @Symbol(SymbolConstants.ASYNC_TIMEOUT)
+                                  @IntermediateType(TimeInterval.class)
+                                  long timeout)
+    {
+        super(timeout);
+
+        this.requestGlobals = requestGlobals;
+        this.exceptionHandler = exceptionHandler;
+        this.perthreadManager = perthreadManager;
+        this.endOfRequestEventHub = endOfRequestEventHub;
+        this.logger = logger;
+
+        suspended = perthreadManager.createValue();
+    }
+
+    @Override
+    public void handle(Future<?> result, ComponentEventResultProcessor processor) throws IOException
+    {
+        HttpServletRequest servletRequest = requestGlobals.getHTTPServletRequest();
+
+        // Without a servlet request (i.e., inside the PageTester), when some filter in front of Tapestry does not
+        // support asynchronous processing, or when there is no way to be notified once the future completes, the
+        // only option is to wait for the result on the current thread.
+
+        if (result.isDone() || !(result instanceof ListenableFuture) || servletRequest == null
+                || !servletRequest.isAsyncSupported())
+        {
+            super.handle(result, processor);
+
+            return;
+        }
+
+        AsyncContext context = servletRequest.startAsync(servletRequest, requestGlobals.getHTTPServletResponse());
+
+        context.setTimeout(timeout);
+
+        Resumption resumption = new Resumption(context, result, processor);
+
+        context.addListener(resumption);
+
+        suspended.set(resumption);
+
+        ((ListenableFuture) result).addListener(resumption);
+    }
+
+    @Override
+    public boolean detachSuspendedRequest()
+    {
+        Resumption resumption = suspended.get();
+
+        if (resumption == null)
+        {
+            return false;
+        }
+
+        suspended.set(null);
+
+        resumption.detached(perthreadManager.detach());
+
+        return true;
+    }
+
+    /**
+     * Resumes a suspended request once both the request thread has detached its per-thread state, and the future has
+     * completed (or the container has timed out the request).
+     */
+    private class Resumption implements Runnable, AsyncListener
+    {
+        private final AsyncContext context;
+
+        private final Future<?> result;
+
+        private final ComponentEventResultProcessor processor;
+
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private final AtomicInteger pending = new AtomicInteger(2);
+
+        private volatile Object perthreadData;
+
+        private volatile RuntimeException failure;
+
+        Resumption(AsyncContext context, Future<?> result, ComponentEventResultProcessor processor)
+        {
+            this.context = context;
+            this.result = result;
+            this.processor = processor;
+        }
+
+        void detached(Object data)
+        {
+            perthreadData = data;
+
+            ready();
+        }
+
+        /**
+         * Invoked when the future completes.
+         */
+        public void run()
+        {
+            if (finished.compareAndSet(false, true))
+            {
+                ready();
+            }
+        }
+
+        public void onTimeout(AsyncEvent event)
+        {
+            abandon(timedOut());
+        }
+
+        public void onError(AsyncEvent event)
+        {
+            abandon(new RuntimeException("The suspended request failed.", event.getThrowable()));
+        }
+
+        public void onComplete(AsyncEvent event)
+        {
+        }
+
+        public void onStartAsync(AsyncEvent event)
+        {
+        }
+
+        private void abandon(RuntimeException ex)
+        {
+            if (finished.compareAndSet(false, true))
+            {
+                failure = ex;
+
+                result.cancel(true);
+
+                ready();
+            }
+        }
+
+        private void ready()
+        {
+            if (pending.decrementAndGet() == 0)
+            {
+                resume();
+            }
+        }
+
+        private void resume()
+        {
+            // The current thread may have per-thread state of its own (for example, if it is a pooled thread doing
+            // other work); that is put aside while the request is finished.
+
+            Object previous = perthreadManager.detach();
+
+            perthreadManager.attach(perthreadData);
+
+            try
+            {
+                try
+                {
+                    if (failure != null)
+                    {
+                        throw failure;
+                    }
+
+                    processor.processResultValue(await(result));
+                } catch (Throwable ex)
+                {
+                    report(ex);
+                } finally
+                {
+                    endOfRequestEventHub.fire();
+                }
+            } catch (Throwable ex)
+            {
+                logger.error(String.format("Unable to finish suspended request %s: %s",
+                        requestGlobals.getRequest().getPath(), ex), ex);
+            } finally
+            {
+                perthreadManager.cleanup();
+                perthreadManager.attach(previous);
+
+                context.complete();
+            }
+        }
+
+        private void report(Throwable ex)
+        {
+            try
+            {
+                exceptionHandler.handleRequestException(ex);
+            } catch (Throwable ex2)
+            {
+                logger.error(String.format("Unable to report failure of suspended request %s: %s",
+                        requestGlobals.getRequest().getPath(), ex2), ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.ajax;
+
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.ioc.annotations.IntermediateType;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.util.TimeInterval;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Holds push channel requests open using Servlet 3.0 asynchronous processing, so that no request thread is tied up
+ * waiting for updates.
+ *
+ * @since 5.4
+ */
+public class AsyncPushConnector implements PushConnector
+{
+    private final long timeout;
+
+    public AsyncPushConnector(@Symbol(SymbolConstants.PUSH_TIMEOUT)
+                              @IntermediateType(TimeInterval.class)
+                              long timeout)
+    {
+        this.timeout = timeout;
+    }
+
+    public void connect(HttpServletRequest request, HttpServletResponse response, PushSubscriber subscriber,
+                        boolean streaming) throws IOException
+    {
+        if (!request.isAsyncSupported())
+        {
+            subscriber.send(response, streaming);
+
+            return;
+        }
+
+        AsyncContext context = request.startAsync(request, response);
+
+        context.setTimeout(timeout);
+
+        AsyncConnection connection = new AsyncConnection(context, subscriber);
+
+        context.addListener(connection);
+
+        subscriber.connect(connection, streaming);
+    }
+
+    private static class AsyncConnection implements PushConnection, AsyncListener
+    {
+        private final AsyncContext context;
+
+        private final PushSubscriber subscriber;
+
+        AsyncConnection(AsyncContext context, PushSubscriber subscriber)
+        {
+            this.context = context;
+            this.subscriber = subscriber;
+        }
+
+        public PrintWriter getWriter() throws IOException
+        {
+            return context.getResponse().getWriter();
+        }
+
+        public void complete()
+        {
+            try
+            {
+                context.complete();
+            } catch (IllegalStateException ex)
+            {
+                // Already completed by the container.
+            }
+        }
+
+        public void onComplete(AsyncEvent event)
+        {
+            subscriber.disconnect(this);
+        }
+
+        public void onTimeout(AsyncEvent event)
+        {
+            subscriber.timeout(this);
+        }
+
+        public void onError(AsyncEvent event)
+        {
+            subscriber.disconnect(this);
+        }
+
+        public void onStartAsync(AsyncEvent event)
+        {
+        }
+    }
+}
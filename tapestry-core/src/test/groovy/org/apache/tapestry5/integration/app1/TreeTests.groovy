@@ -1,4 +1,4 @@
-// Copyright 2011-2013 The Apache Software Foundation
+// Copyright 2011-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -68,4 +68,24 @@ class TreeTests extends App1TestCase {
 
         waitForCSSSelectedElementToAppear "span.selected-leaf-node"
     }
+
+    @Test
+    void nodes_in_batches() {
+        openLinks "Tree Component Batch Demo"
+
+        // Click on Numbers (10000 children)
+        click "//div[@class='tree-container test-hook']/ul/li[3]/span[@class='tree-icon']"
+
+        waitForAjaxRequestsToComplete PAGE_LOAD_TIMEOUT
+
+        assertTextPresent "99", "9900 more"
+        assertFalse isTextPresent("100")
+
+        click "css=.tree-more-label"
+
+        waitForAjaxRequestsToComplete PAGE_LOAD_TIMEOUT
+
+        assertTextPresent "100", "199", "9800 more"
+        assertFalse isTextPresent("9900 more")
+    }
 }
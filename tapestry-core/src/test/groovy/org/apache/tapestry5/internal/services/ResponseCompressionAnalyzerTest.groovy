@@ -23,4 +23,41 @@ class ResponseCompressionAnalyzerTest extends TestBase {
 
     verify()
   }
+
+  private String select(String acceptEncoding, List<String> encodings) {
+
+    HttpServletRequest request = newMock(HttpServletRequest)
+
+    expect(request.getProtocol()).andReturn("HTTP/1.1").atLeastOnce()
+    expect(request.getHeader("Accept-Encoding")).andReturn(acceptEncoding).atLeastOnce()
+
+    replay()
+
+    def result = new ResponseCompressionAnalyzerImpl(request, true, null).selectContentEncoding(encodings)
+
+    verify()
+
+    return result
+  }
+
+  @Test
+  void "content encoding with highest quality is selected"() {
+    assert select("gzip;q=0.5, br", ["gzip", "br"]) == "br"
+    assert select("gzip, br;q=0.8", ["br", "gzip"]) == "gzip"
+  }
+
+  @Test
+  void "server preference breaks ties"() {
+    assert select("gzip, deflate, br", ["br", "gzip"]) == "br"
+    assert select("gzip, deflate, br", ["gzip", "br"]) == "gzip"
+  }
+
+  @Test
+  void "wildcard and zero quality"() {
+    assert select("*", ["br", "gzip"]) == "br"
+    assert select("br;q=0, *;q=0.1", ["br", "gzip"]) == "gzip"
+    assert select("gzip;q=0", ["gzip"]) == null
+    assert select("identity", ["gzip"]) == null
+    assert select(null, ["gzip"]) == null
+  }
 }
@@ -3,7 +3,11 @@ package org.apache.tapestry5.internal.services.assets
 import org.apache.tapestry5.Asset
 import org.apache.tapestry5.internal.test.InternalBaseTestCase
 import org.apache.tapestry5.ioc.Resource
+import org.apache.tapestry5.ioc.internal.QuietOperationTracker
 import org.apache.tapestry5.services.AssetSource
+import org.apache.tapestry5.services.assets.CompressionStatus
+import org.apache.tapestry5.services.assets.StreamableResourceProcessing
+import org.apache.tapestry5.services.assets.StreamableResourceSource
 import org.testng.annotations.Test
 
 
@@ -17,7 +21,7 @@ body {
 }
 '''
 
-        def rewriter = new CSSURLRewriter(null, null, null, null)
+        def rewriter = new CSSURLRewriter(null, null, null, null, 0)
 
         assertNull rewriter.replaceURLs(input, null)
     }
@@ -43,7 +47,7 @@ body {
         replay()
 
 
-        def rewriter = new CSSURLRewriter(null, null, assetSource, null)
+        def rewriter = new CSSURLRewriter(null, null, assetSource, null, 0)
 
         def output = rewriter.replaceURLs input, resource
 
@@ -78,7 +82,7 @@ body {
 
         replay()
 
-        def rewriter = new CSSURLRewriter(null, null, assetSource, null)
+        def rewriter = new CSSURLRewriter(null, null, assetSource, null, 0)
 
         def output = rewriter.replaceURLs input, resource
 
@@ -112,7 +116,7 @@ body {
         replay()
 
 
-        def rewriter = new CSSURLRewriter(null, null, assetSource, null)
+        def rewriter = new CSSURLRewriter(null, null, assetSource, null, 0)
 
         def output = rewriter.replaceURLs input, resource
 
@@ -134,7 +138,7 @@ body {
 }
 '''
 
-        def rewriter = new CSSURLRewriter(null, null, null, null)
+        def rewriter = new CSSURLRewriter(null, null, null, null, 0)
 
         assertNull rewriter.replaceURLs(input, null)
     }
@@ -147,7 +151,7 @@ body {
 }
 '''
 
-        def rewriter = new CSSURLRewriter(null, null, null, null)
+        def rewriter = new CSSURLRewriter(null, null, null, null, 0)
 
         assertNull rewriter.replaceURLs(input, null)
     }
@@ -178,7 +182,7 @@ body {
         replay()
 
 
-        def rewriter = new CSSURLRewriter(null, null, assetSource, null)
+        def rewriter = new CSSURLRewriter(null, null, assetSource, null, 0)
 
         def output = rewriter.replaceURLs input, resource
 
@@ -199,7 +203,7 @@ span {
 }
 '''
 
-        def rewriter = new CSSURLRewriter(null, null, null, null)
+        def rewriter = new CSSURLRewriter(null, null, null, null, 0)
 
         assertNull rewriter.replaceURLs(input, null)
     }
@@ -229,7 +233,7 @@ div.busy {
 
         replay()
 
-        def rewriter = new CSSURLRewriter(null, null, assetSource, null)
+        def rewriter = new CSSURLRewriter(null, null, assetSource, null, 0)
 
         def output = rewriter.replaceURLs input, resource
 
@@ -269,7 +273,7 @@ div.busy {
 
         replay()
 
-        def rewriter = new CSSURLRewriter(null, null, assetSource, null)
+        def rewriter = new CSSURLRewriter(null, null, assetSource, null, 0)
 
         def output = rewriter.replaceURLs input, resource
 
@@ -284,4 +288,163 @@ div.busy {
 
     }
 
+    // The content is read 8192 characters at a time; the padding positions the URL near the end of the first read.
+    private static String padTo(int length, String content) {
+        def padding = new StringBuilder("/*")
+
+        while (padding.length() < length - 4) {
+            padding.append("x")
+        }
+
+        padding.append(" */\n")
+
+        return padding.toString() + content
+    }
+
+    private static StreamableResourceImpl spooled(String content) {
+        def output = new SpoolingOutputStream(100)
+
+        output.write(content.getBytes("UTF-8"))
+
+        return new StreamableResourceImpl("test.css", "text/css", CompressionStatus.COMPRESSABLE, 0, output.toBytestreamCache(), null)
+    }
+
+    private static String contentOf(resource) {
+        def bos = new ByteArrayOutputStream()
+
+        resource.streamTo(bos)
+
+        return bos.toString("UTF-8")
+    }
+
+    @Test
+    void url_crossing_chunk_boundary_is_replaced() {
+
+        def input = padTo(8160, '''body { background: white url("images/back.png") attach-x; }
+''')
+
+        def assetSource = newMock AssetSource
+        def resource = newMock Resource
+        def asset = newMock Asset
+
+        expect(
+            assetSource.getAsset(resource, "images/back.png", null)
+        ).andReturn asset
+
+        expect(asset.toClientURL()).andReturn "/ctx/images/back.png"
+
+        replay()
+
+        def rewriter = new CSSURLRewriter(null, null, assetSource, null, 0)
+
+        def bos = new ByteArrayOutputStream()
+
+        assertTrue rewriter.rewrite(spooled(input), resource, bos)
+
+        assertEquals bos.toString("UTF-8"), input.replace("images/back.png", "/ctx/images/back.png")
+
+        verify()
+    }
+
+    @Test
+    void url_spanning_lines_across_chunk_boundary_is_replaced() {
+
+        // The line breaks inside the url() fall on either side of the end of the first read.
+
+        def input = padTo(8149, '''div.busy {
+  background-image: url(
+    "images/ajax.gif"
+  );
+}
+''')
+
+        def assetSource = newMock AssetSource
+        def resource = newMock Resource
+        def asset = newMock Asset
+
+        expect(
+            assetSource.getAsset(resource, "images/ajax.gif", null)
+        ).andReturn asset
+
+        expect(asset.toClientURL()).andReturn "/ctx/images/ajax.gif"
+
+        replay()
+
+        def rewriter = new CSSURLRewriter(null, null, assetSource, null, 0)
+
+        def bos = new ByteArrayOutputStream()
+
+        assertTrue rewriter.rewrite(spooled(input), resource, bos)
+
+        assertEquals bos.toString("UTF-8"), input.replace('''url(
+    "images/ajax.gif"
+  )''', 'url("/ctx/images/ajax.gif")')
+
+        verify()
+    }
+
+    @Test
+    void split_is_after_last_line_break() {
+        assertEquals CSSURLRewriter.findSplit(new StringBuilder("a {}\nb {")), 5
+        assertEquals CSSURLRewriter.findSplit(new StringBuilder("a { background: url(x.png); }\nb {")), 30
+    }
+
+    @Test
+    void no_split_without_a_line_break() {
+        assertEquals CSSURLRewriter.findSplit(new StringBuilder("a { background: url(x.png); }")), 0
+    }
+
+    @Test
+    void no_split_inside_an_open_url() {
+        assertEquals CSSURLRewriter.findSplit(new StringBuilder("a { background: url(\n  'x.png'")), 0
+        assertEquals CSSURLRewriter.findSplit(new StringBuilder("a { background: url(\n  'x.png'\n")), 0
+    }
+
+    @Test
+    void split_after_a_url_closed_across_lines() {
+        assertEquals CSSURLRewriter.findSplit(new StringBuilder("a { background: url(\n  'x.png'\n); }\nb")), 36
+    }
+
+    @Test
+    void spooled_original_is_released_once_rewritten() {
+
+        def input = padTo(200, '''body { background: white url("images/back.png") attach-x; }
+''')
+
+        def delegate = newMock StreamableResourceSource
+        def assetSource = newMock AssetSource
+        def resource = newMock Resource
+        def asset = newMock Asset
+        def base = spooled(input)
+
+        expect(
+            delegate.getStreamableResource(resource, StreamableResourceProcessing.COMPRESSION_DISABLED, null)
+        ).andReturn base
+
+        expect(
+            assetSource.getAsset(resource, "images/back.png", null)
+        ).andReturn asset
+
+        expect(asset.toClientURL()).andReturn "/ctx/images/back.png"
+
+        replay()
+
+        def rewriter = new CSSURLRewriter(delegate, new QuietOperationTracker(), assetSource, null, 100)
+
+        def rewritten = rewriter.getStreamableResource(resource, StreamableResourceProcessing.COMPRESSION_DISABLED, null)
+
+        assertTrue rewritten.isSpooled()
+        assertEquals contentOf(rewritten), input.replace("images/back.png", "/ctx/images/back.png")
+
+        try {
+            base.openStream()
+            unreachable()
+        } catch (FileNotFoundException ex) {
+            // Expected: the original's temporary file has been deleted.
+        }
+
+        rewritten.release()
+
+        verify()
+    }
 }
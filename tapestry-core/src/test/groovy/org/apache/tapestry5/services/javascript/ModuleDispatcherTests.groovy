@@ -1,5 +1,6 @@
 package org.apache.tapestry5.services.javascript
 
+import org.apache.tapestry5.internal.services.assets.ModuleBundler
 import org.apache.tapestry5.internal.services.javascript.ModuleDispatcher
 import org.apache.tapestry5.ioc.internal.QuietOperationTracker
 import org.apache.tapestry5.ioc.test.TestBase
@@ -21,7 +22,7 @@ class ModuleDispatcherTests extends TestBase {
 
         replay()
 
-        def handler = new ModuleDispatcher(null, null, new QuietOperationTracker(), pc, "modules", false)
+        def handler = new ModuleDispatcher(null, null, null, new QuietOperationTracker(), pc, "modules", false)
 
         assert handler.dispatch(request, null) == false
 
@@ -53,7 +54,29 @@ class ModuleDispatcherTests extends TestBase {
 
         replay()
 
-        def handler = new ModuleDispatcher(manager, null, new QuietOperationTracker(), pc, "modules", false)
+        def handler = new ModuleDispatcher(manager, null, null, new QuietOperationTracker(), pc, "modules", false)
+
+        assert handler.dispatch(request, null) == false
+
+        verify()
+    }
+
+    @Test
+    void "returns false if bundle is not known"() {
+
+        def bundler = newMock ModuleBundler
+        def request = newMock Request
+        def pc = newMock PathConstructor
+
+        expect(pc.constructDispatchPath("modules.gz")).andReturn("/modules.gz")
+
+        expect(request.path).andReturn("/modules.gz/bundle/shared-abc123.js")
+
+        expect(bundler.getBundle("bundle/shared-abc123", true)).andReturn null
+
+        replay()
+
+        def handler = new ModuleDispatcher(null, bundler, null, new QuietOperationTracker(), pc, "modules", true)
 
         assert handler.dispatch(request, null) == false
 
@@ -1,4 +1,4 @@
-// Copyright 2006, 2007 The Apache Software Foundation
+// Copyright 2006, 2007, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,14 +14,21 @@
 
 package org.apache.tapestry5.corelib.components;
 
+import org.apache.tapestry5.ComponentAction;
 import org.apache.tapestry5.MarkupWriter;
+import org.apache.tapestry5.PrefetchingValueEncoder;
 import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.services.FormSupport;
 import org.apache.tapestry5.services.Heartbeat;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
 import org.easymock.EasyMock;
 import org.testng.annotations.Test;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 public class LoopTest extends InternalBaseTestCase
 {
@@ -89,4 +96,86 @@ public class LoopTest extends InternalBaseTestCase
 
         assertFalse(loop.setup());
     }
+
+    /**
+     * With a prefetching encoder, each client value is stored in the form just once (with all the other values, for
+     * the encoder to prefetch).
+     */
+    @Test
+    public void client_values_for_prefetching_encoder_are_stored_once()
+    {
+        Heartbeat hb = mockHeartbeat();
+        MarkupWriter writer = mockMarkupWriter();
+        FormSupport formSupport = newMock(FormSupport.class);
+        PrefetchingValueEncoder<String> encoder = newMock(PrefetchingValueEncoder.class);
+        Capture<ComponentAction> actions = new Capture<ComponentAction>(CaptureType.ALL);
+
+        Loop<String> loop = new Loop<String>();
+
+        formSupport.store(EasyMock.same(loop), EasyMock.capture(actions));
+        EasyMock.expectLastCall().anyTimes();
+
+        // Each value is converted just once, when rendering.
+
+        expect(encoder.toClient("alpha")).andReturn("a");
+        expect(encoder.toClient("beta")).andReturn("b");
+
+        hb.begin();
+        EasyMock.expectLastCall().times(4);
+
+        hb.end();
+        EasyMock.expectLastCall().times(4);
+
+        encoder.prefetch(Arrays.asList("a", "b"));
+
+        expect(encoder.toValue("a")).andReturn("alpha");
+        expect(encoder.toValue("b")).andReturn("beta");
+
+        replay();
+
+        loop.setHeartbeat(hb);
+        loop.setFormSupport(formSupport);
+        loop.setEncoder(encoder);
+        loop.setSource(Arrays.asList("alpha", "beta"));
+
+        assertTrue(loop.setup());
+
+        loop.begin(writer);
+        assertFalse(loop.after(writer));
+        loop.begin(writer);
+        assertNull(loop.after(writer));
+
+        loop.cleanupRender();
+
+        List<String> stored = CollectionFactory.newList();
+
+        for (ComponentAction action : actions.getValues())
+        {
+            stored.add(action.toString());
+        }
+
+        assertEquals(stored, Arrays.asList("Loop.PrepareForSubmission", "Loop.PrefetchClientValues[a, b]",
+                "Loop.ResetIndex",
+                "Loop.RestorePrefetchedValue", "Loop.EndHeartbeat",
+                "Loop.RestorePrefetchedValue", "Loop.EndHeartbeat",
+                "Loop.NotifyContainer"));
+
+        // Now, process the submission (all but notifying the container).
+
+        List<String> restored = CollectionFactory.newList();
+
+        for (ComponentAction<Loop> action : actions.getValues().subList(0, stored.size() - 1))
+        {
+            action.execute(loop);
+
+            if (action.toString().equals("Loop.RestorePrefetchedValue"))
+            {
+                restored.add(loop.getValue());
+            }
+        }
+
+        assertEquals(restored, Arrays.asList("alpha", "beta"));
+
+        verify();
+    }
 }
@@ -0,0 +1,222 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.grid;
+
+import org.apache.tapestry5.PropertyConduit;
+import org.apache.tapestry5.beaneditor.PropertyModel;
+import org.apache.tapestry5.ioc.Invokable;
+import org.apache.tapestry5.ioc.services.ParallelExecutor;
+import org.apache.tapestry5.ioc.test.TestBase;
+import org.testng.annotations.Test;
+
+import java.lang.annotation.Annotation;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class IndexedCollectionGridDataSourceTest extends TestBase
+{
+    /**
+     * Rows are int arrays; each column is a property.
+     */
+    private PropertyModel column(String name, final int index)
+    {
+        PropertyConduit conduit = new PropertyConduit()
+        {
+            public Object get(Object instance)
+            {
+                int value = ((int[]) instance)[index];
+
+                return value < 0 ? null : value;
+            }
+
+            public void set(Object instance, Object value)
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            public Class getPropertyType()
+            {
+                return Integer.class;
+            }
+
+            public <T extends Annotation> T getAnnotation(Class<T> annotationClass)
+            {
+                return null;
+            }
+        };
+
+        PropertyModel model = newMock(PropertyModel.class);
+
+        expect(model.getPropertyName()).andReturn(name).anyTimes();
+        expect(model.getConduit()).andReturn(conduit).anyTimes();
+
+        return model;
+    }
+
+    private static List<int[]> randomRows(int count)
+    {
+        Random random = new Random(42);
+        List<int[]> rows = new ArrayList<int[]>();
+
+        for (int i = 0; i < count; i++)
+        {
+            // A few nulls (negative values), and plenty of duplicates.
+
+            rows.add(new int[]{random.nextInt(100) - 5, random.nextInt(1000), i});
+        }
+
+        return rows;
+    }
+
+    /**
+     * The expected order, using a conventional sort.
+     */
+    private static List<int[]> expected(List<int[]> rows, final int primary, final boolean primaryAscending, final int secondary)
+    {
+        List<int[]> sorted = new ArrayList<int[]>(rows);
+
+        Collections.sort(sorted, new Comparator<int[]>()
+        {
+            public int compare(int[] o1, int[] o2)
+            {
+                int result = compareValues(o1[primary], o2[primary]);
+
+                if (result != 0)
+                    return primaryAscending ? result : -result;
+
+                return compareValues(o1[secondary], o2[secondary]);
+            }
+        });
+
+        return sorted;
+    }
+
+    private static int compareValues(int value1, int value2)
+    {
+        // Negative values stand in for null, which sorts first.
+
+        return Integer.valueOf(Math.max(value1, -1)).compareTo(Math.max(value2, -1));
+    }
+
+    private static void assertRows(GridDataSource source, List<int[]> expected, int startIndex, int endIndex)
+    {
+        for (int i = startIndex; i <= endIndex; i++)
+        {
+            assertSame(source.getRowValue(i), expected.get(i), "Row #" + i);
+        }
+    }
+
+    @Test
+    public void first_page_and_later_page_match_full_sort()
+    {
+        List<int[]> rows = randomRows(1000);
+
+        PropertyModel first = column("first", 0);
+        PropertyModel second = column("second", 1);
+
+        replay();
+
+        IndexedCollectionGridDataSource source = new IndexedCollectionGridDataSource(rows);
+
+        List<SortConstraint> constraints = Arrays.asList(new SortConstraint(first, ColumnSort.DESCENDING),
+                new SortConstraint(second, ColumnSort.ASCENDING));
+
+        List<int[]> expected = expected(rows, 0, false, 1);
+
+        // Selected, rather than sorted.
+
+        source.prepare(0, 24, constraints);
+
+        assertRows(source, expected, 0, 24);
+
+        // Requires the full sort.
+
+        source.prepare(975, 999, constraints);
+
+        assertRows(source, expected, 975, 999);
+
+        source.prepare(25, 49, constraints);
+
+        assertRows(source, expected, 25, 49);
+
+        verify();
+    }
+
+    @Test
+    public void unsorted_rows_are_in_original_order()
+    {
+        List<int[]> rows = randomRows(10);
+
+        GridDataSource source = new IndexedCollectionGridDataSource(rows);
+
+        source.prepare(0, 9, Collections.<SortConstraint>emptyList());
+
+        assertRows(source, rows, 0, 9);
+
+        assertEquals(source.getAvailableRows(), 10);
+        assertNull(source.getRowValue(10));
+    }
+
+    @Test
+    public void large_collections_are_sorted_in_parallel()
+    {
+        List<int[]> rows = randomRows(IndexedCollectionGridDataSource.PARALLEL_SORT_THRESHOLD + 1);
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+        ParallelExecutor executor = new ParallelExecutor()
+        {
+            public <T> Future<T> invoke(final Invokable<T> invocable)
+            {
+                return executorService.submit(new Callable<T>()
+                {
+                    public T call() throws Exception
+                    {
+                        return invocable.invoke();
+                    }
+                });
+            }
+
+            public <T> T invoke(Class<T> proxyType, Invokable<T> invocable)
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        PropertyModel second = column("second", 1);
+
+        replay();
+
+        try
+        {
+            GridDataSource source = new IndexedCollectionGridDataSource(rows, executor);
+
+            source.prepare(rows.size() - 25, rows.size() - 1,
+                    Collections.singletonList(new SortConstraint(second, ColumnSort.ASCENDING)));
+
+            List<int[]> expected = expected(rows, 1, true, 2);
+
+            assertRows(source, expected, 0, rows.size() - 1);
+        } finally
+        {
+            executorService.shutdown();
+        }
+
+        verify();
+    }
+}
@@ -0,0 +1,101 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.grid;
+
+import org.apache.tapestry5.ioc.Invokable;
+import org.apache.tapestry5.ioc.test.TestBase;
+import org.testng.annotations.Test;
+
+public class RowCountCacheTest extends TestBase
+{
+    private static class Counter implements Invokable<Integer>
+    {
+        int invocations;
+
+        final int count;
+
+        Counter(int count)
+        {
+            this.count = count;
+        }
+
+        public Integer invoke()
+        {
+            invocations++;
+
+            return count;
+        }
+    }
+
+    @Test
+    public void counts_are_cached_by_key()
+    {
+        RowCountCache cache = new RowCountCache(10, 60000);
+
+        Counter fred = new Counter(99);
+        Counter barney = new Counter(23);
+
+        assertEquals(cache.getRowCount("fred", fred), 99);
+        assertEquals(cache.getRowCount("fred", fred), 99);
+        assertEquals(cache.getRowCount("barney", barney), 23);
+
+        assertEquals(fred.invocations, 1);
+        assertEquals(barney.invocations, 1);
+
+        cache.invalidate("fred");
+
+        assertEquals(cache.getRowCount("fred", fred), 99);
+        assertEquals(fred.invocations, 2);
+
+        cache.clear();
+
+        assertEquals(cache.getRowCount("barney", barney), 23);
+        assertEquals(barney.invocations, 2);
+    }
+
+    @Test
+    public void least_recently_used_count_is_discarded_when_full()
+    {
+        RowCountCache cache = new RowCountCache(2, 60000);
+
+        Counter fred = new Counter(99);
+        Counter barney = new Counter(23);
+        Counter wilma = new Counter(107);
+
+        cache.getRowCount("fred", fred);
+        cache.getRowCount("barney", barney);
+        cache.getRowCount("fred", fred);
+        cache.getRowCount("wilma", wilma);
+
+        cache.getRowCount("fred", fred);
+        cache.getRowCount("barney", barney);
+
+        assertEquals(fred.invocations, 1);
+        assertEquals(barney.invocations, 2);
+    }
+
+    @Test
+    public void expired_counts_are_recounted()
+    {
+        RowCountCache cache = new RowCountCache(10, 0);
+
+        Counter fred = new Counter(99);
+
+        cache.getRowCount("fred", fred);
+        cache.getRowCount("fred", fred);
+
+        assertEquals(fred.invocations, 2);
+    }
+}
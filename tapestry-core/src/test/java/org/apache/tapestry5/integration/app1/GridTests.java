@@ -1,4 +1,4 @@
-// Copyright 2009-2013 The Apache Software Foundation
+// Copyright 2009-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -283,6 +283,29 @@ public class GridTests extends App1TestCase
                 "Timestamp should not have changed because updates are in-place.");
     }
 
+    @Test
+    public void virtual_scroll_grid()
+    {
+        String rows = "//div[@class='virtual-grid']//tbody/tr[not(@class='virtual-grid-spacer')]";
+
+        openLinks("Virtual Scroll Grid Demo");
+
+        // Just the first window of rows, and no pager.
+
+        assertEquals(getXpathCount(rows).intValue(), 25);
+        assertText("//div[@class='virtual-grid']//tbody/tr[2]/td[1]", "Bug Juice");
+        assertFalse(isElementPresent("link=2"));
+
+        // Jump to the end; the last window is rendered and the first is discarded.
+
+        runScript("var c = document.querySelector('div.virtual-grid'); c.scrollTop = c.scrollHeight;");
+
+        waitForCondition("selenium.isTextPresent('radioioAmbient')", PAGE_LOAD_TIMEOUT);
+
+        assertFalse(isTextPresent("Bug Juice"));
+        assertTrue(getXpathCount(rows).intValue() < 100, "Rows out of view should have been discarded.");
+    }
+
     /**
      * TAPESTRY-2502
      */
@@ -1,4 +1,4 @@
-// Copyright 2006-2013 The Apache Software Foundation
+// Copyright 2006-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -99,6 +99,8 @@ public class Index
 
                     new Item("TreeSelectionDemo", "Tree Component Selection Demo", "Demo of Selection with Tree Component"),
 
+                    new Item("TreeBatchDemo", "Tree Component Batch Demo", "Demo of Tree Component rendering nodes in batches"),
+
                     new Item("InvalidExpressionInDynamicTemplate", "Invalid Dynamic Expression",
                             "Invalid expression in a Dynamic Template"),
 
@@ -440,6 +442,9 @@ public class Index
 
                     new Item("inplacegriddemo", "In-Place Grid Demo", "Grid that updates in-place using Ajax"),
 
+                    new Item("virtualscrollgriddemo", "Virtual Scroll Grid Demo",
+                            "Grid that renders rows, using Ajax, as they scroll into view"),
+
                     new Item("methodadvicedemo", "Method Advice Demo", "Advising component methods."),
 
                     new Item("HasBodyDemo", "Has Body Demo", "Verify the hasBody() method of ComponentResources"),
@@ -0,0 +1,113 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.integration.app2;
+
+import org.apache.tapestry5.grid.KeysetGridDataSource;
+import org.apache.tapestry5.grid.SortConstraint;
+import org.apache.tapestry5.grid.UncountedGridDataSource;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An uncounted source of the numbers 1 to 23 that pages by key (the number of the row before the page), and records
+ * how it found the prepared rows.
+ */
+public class KeysetNumberSource implements UncountedGridDataSource, KeysetGridDataSource
+{
+    public static final int COUNT = 23;
+
+    public static class Row
+    {
+        private final int number;
+
+        public Row(int number)
+        {
+            this.number = number;
+        }
+
+        public int getNumber()
+        {
+            return number;
+        }
+    }
+
+    private final Map<Integer, Integer> bookmarks = CollectionFactory.newMap();
+
+    private final List<Row> rows = CollectionFactory.newList();
+
+    private int startIndex;
+
+    private String seek = "unprepared";
+
+    public boolean isRowCountKnown()
+    {
+        return false;
+    }
+
+    public int getAvailableRows()
+    {
+        return startIndex + rows.size();
+    }
+
+    public void prepare(int startIndex, int endIndex, List<SortConstraint> sortConstraints)
+    {
+        Integer after = bookmarks.get(startIndex);
+
+        seek = after == null ? "offset " + startIndex : "after " + after;
+
+        int first = after == null ? startIndex + 1 : after + 1;
+
+        this.startIndex = startIndex;
+
+        rows.clear();
+
+        for (int number = first; number <= COUNT && number <= first + endIndex - startIndex; number++)
+        {
+            rows.add(new Row(number));
+        }
+    }
+
+    public Object getRowValue(int index)
+    {
+        int offset = index - startIndex;
+
+        return offset < 0 || offset >= rows.size() ? null : rows.get(offset);
+    }
+
+    public Class getRowType()
+    {
+        return Row.class;
+    }
+
+    public Serializable getBookmark(int index)
+    {
+        int offset = index - startIndex;
+
+        return offset < 1 || offset > rows.size() ? null : rows.get(offset - 1).getNumber();
+    }
+
+    public void addBookmark(int index, Serializable bookmark)
+    {
+        bookmarks.put(index, (Integer) bookmark);
+    }
+
+    public String getSeek()
+    {
+        return seek;
+    }
+}
@@ -0,0 +1,94 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.integration.app2.pages;
+
+import org.apache.tapestry5.ValueEncoder;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.tree.DefaultTreeExpansionModel;
+import org.apache.tapestry5.tree.DefaultTreeModel;
+import org.apache.tapestry5.tree.TreeExpansionModel;
+import org.apache.tapestry5.tree.TreeModel;
+import org.apache.tapestry5.tree.TreeModelAdapter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A Tree of seven root nodes, named "a" to "g"; node "a" has five children ("a1" to "a5") and is expanded.
+ */
+public class TestPageForTreeBatches
+{
+    private static final ValueEncoder<String> ENCODER = new ValueEncoder<String>()
+    {
+        public String toClient(String value)
+        {
+            return value;
+        }
+
+        public String toValue(String clientValue)
+        {
+            return clientValue;
+        }
+    };
+
+    private static final TreeModelAdapter<String> ADAPTER = new TreeModelAdapter<String>()
+    {
+        public boolean isLeaf(String value)
+        {
+            return !hasChildren(value);
+        }
+
+        public boolean hasChildren(String value)
+        {
+            return value.equals("a");
+        }
+
+        public List<String> getChildren(String value)
+        {
+            return hasChildren(value) ? names("a1", "a2", "a3", "a4", "a5") : Collections.<String>emptyList();
+        }
+
+        public String getLabel(String value)
+        {
+            return value;
+        }
+    };
+
+    private static List<String> names(String... names)
+    {
+        return CollectionFactory.newList(names);
+    }
+
+    private TreeModel<String> model;
+
+    public TreeModel<String> getModel()
+    {
+        if (model == null)
+        {
+            model = new DefaultTreeModel<String>(ENCODER, ADAPTER, names("a", "b", "c", "d", "e", "f", "g"));
+        }
+
+        return model;
+    }
+
+    public TreeExpansionModel<String> getExpansionModel()
+    {
+        TreeExpansionModel<String> result = new DefaultTreeExpansionModel<String>();
+
+        result.markExpanded(getModel().getById("a"));
+
+        return result;
+    }
+}
@@ -0,0 +1,40 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.integration.app2.pages;
+
+import org.apache.tapestry5.integration.app2.KeysetNumberSource;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+
+import java.util.List;
+
+public class TestPageForVirtualScrollGrid
+{
+    public List<KeysetNumberSource.Row> getNumbers()
+    {
+        List<KeysetNumberSource.Row> result = CollectionFactory.newList();
+
+        for (int i = 1; i <= 100; i++)
+        {
+            result.add(new KeysetNumberSource.Row(i));
+        }
+
+        return result;
+    }
+
+    public KeysetNumberSource getUncounted()
+    {
+        return new KeysetNumberSource();
+    }
+}
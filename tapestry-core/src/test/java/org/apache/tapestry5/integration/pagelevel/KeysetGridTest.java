@@ -0,0 +1,187 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.tapestry5.integration.pagelevel;
+
+import org.apache.tapestry5.dom.Document;
+import org.apache.tapestry5.dom.Element;
+import org.apache.tapestry5.dom.Visitor;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.test.PageTester;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the Grid and GridPager with a data source that neither counts its rows nor keeps state between requests.
+ */
+public class KeysetGridTest extends Assert
+{
+    private PageTester tester;
+
+    @BeforeMethod
+    public void setup()
+    {
+        tester = new PageTester(TestConstants.APP2_PACKAGE, TestConstants.APP2_NAME);
+    }
+
+    @AfterMethod
+    public void after()
+    {
+        if (tester != null)
+        {
+            tester.shutdown();
+        }
+    }
+
+    /**
+     * Returns the text of each pager item (page numbers, and "..." for an ellipsis), mapped to its link.
+     */
+    private static Map<String, Element> pagerLinks(Document doc)
+    {
+        final Map<String, Element> result = new LinkedHashMap<String, Element>();
+
+        Element pager = doc.getRootElement().getElementByAttributeValue("class", "pagination");
+
+        if (pager != null)
+        {
+            pager.visit(new Visitor()
+            {
+                public void visit(Element element)
+                {
+                    if (element.getName().equals("a"))
+                    {
+                        result.put(element.getChildMarkup().trim(), element);
+                    }
+                }
+            });
+        }
+
+        return result;
+    }
+
+    private static List<String> numbers(Document doc)
+    {
+        final List<String> result = CollectionFactory.newList();
+
+        doc.getRootElement().visit(new Visitor()
+        {
+            public void visit(Element element)
+            {
+                if (element.getName().equals("td"))
+                {
+                    result.add(element.getChildMarkup().trim());
+                }
+            }
+        });
+
+        return result;
+    }
+
+    private static String seek(Document doc)
+    {
+        return doc.getElementById("seek").getChildMarkup().trim();
+    }
+
+    @Test
+    public void uncounted_first_page_links_only_to_next_page()
+    {
+        Document doc = tester.renderPage("TestPageForKeysetGrid");
+
+        assertEquals(numbers(doc), CollectionFactory.newList("1", "2", "3", "4", "5"));
+        assertEquals(seek(doc), "offset 0");
+
+        // Page 1 (current), page 2, then an ellipsis in place of the unknown last page.
+
+        assertEquals(CollectionFactory.newList(pagerLinks(doc).keySet()), CollectionFactory.newList("1", "2", "..."));
+    }
+
+    @Test
+    public void page_link_carries_bookmark_to_next_request()
+    {
+        Document doc = tester.renderPage("TestPageForKeysetGrid");
+
+        doc = tester.clickLink(pagerLinks(doc).get("2"));
+
+        assertEquals(numbers(doc), CollectionFactory.newList("6", "7", "8", "9", "10"));
+        assertEquals(seek(doc), "after 5");
+        assertEquals(CollectionFactory.newList(pagerLinks(doc).keySet()), CollectionFactory.newList("1", "2", "3", "..."));
+
+        doc = tester.clickLink(pagerLinks(doc).get("3"));
+
+        assertEquals(numbers(doc), CollectionFactory.newList("11", "12", "13", "14", "15"));
+        assertEquals(seek(doc), "after 10");
+    }
+
+    @Test
+    public void last_page_has_no_ellipsis()
+    {
+        Document doc = tester.renderPage("TestPageForKeysetGrid");
+
+        for (String page : new String[]{"2", "3", "4", "5"})
+        {
+            doc = tester.clickLink(pagerLinks(doc).get(page));
+        }
+
+        assertEquals(numbers(doc), CollectionFactory.newList("21", "22", "23"));
+        assertEquals(seek(doc), "after 20");
+        assertFalse(pagerLinks(doc).containsKey("..."));
+        assertFalse(pagerLinks(doc).containsKey("6"));
+    }
+
+    @Test
+    public void tampered_bookmark_is_ignored()
+    {
+        Document doc = tester.renderPage("TestPageForKeysetGrid");
+
+        Element link = pagerLinks(doc).get("2");
+
+        String href = link.getAttribute("href");
+
+        // The bookmark follows the page number in the event context; it starts with its HMAC, change the first
+        // character of that.
+
+        int start = href.indexOf("/2/") + 3;
+
+        char first = href.charAt(start);
+
+        link.forceAttributes("href", href.substring(0, start) + (first == 'A' ? 'B' : 'A') + href.substring(start + 1));
+
+        doc = tester.clickLink(link);
+
+        assertEquals(numbers(doc), CollectionFactory.newList("6", "7", "8", "9", "10"));
+        assertEquals(seek(doc), "offset 5");
+    }
+
+    @Test
+    public void bookmark_only_applies_to_the_request_that_follows_the_link()
+    {
+        Document doc = tester.renderPage("TestPageForKeysetGrid");
+
+        tester.clickLink(pagerLinks(doc).get("2"));
+
+        // Rendering again (as on a browser refresh) finds the same page, without the bookmark.
+
+        doc = tester.renderPage("TestPageForKeysetGrid");
+
+        assertEquals(numbers(doc), CollectionFactory.newList("6", "7", "8", "9", "10"));
+        assertEquals(seek(doc), "offset 5");
+    }
+}
@@ -0,0 +1,126 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.integration.pagelevel;
+
+import org.apache.tapestry5.dom.Document;
+import org.apache.tapestry5.dom.Element;
+import org.apache.tapestry5.dom.Node;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.test.PageTester;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+/**
+ * Tests the rendering of a Tree's nodes in batches; rendering the further batches is an Ajax request, covered by the
+ * Selenium tests (TreeTests).
+ */
+public class TreeBatchesTest extends Assert
+{
+    private PageTester tester;
+
+    private Element roots;
+
+    @BeforeMethod
+    public void setup()
+    {
+        tester = new PageTester(TestConstants.APP2_PACKAGE, TestConstants.APP2_NAME);
+
+        Document doc = tester.renderPage("TestPageForTreeBatches");
+
+        roots = doc.getRootElement().getElementByAttributeValue("class", "tree-container").find("ul");
+    }
+
+    @AfterMethod
+    public void after()
+    {
+        if (tester != null)
+        {
+            tester.shutdown();
+        }
+    }
+
+    /**
+     * Returns the &lt;li&gt; elements directly inside the &lt;ul&gt;.
+     */
+    private static List<Element> items(Element list)
+    {
+        List<Element> result = CollectionFactory.newList();
+
+        for (Node node : list.getChildren())
+        {
+            if (node instanceof Element && ((Element) node).getName().equals("li"))
+            {
+                result.add((Element) node);
+            }
+        }
+
+        return result;
+    }
+
+    private static String label(Element item)
+    {
+        return item.getElementByAttributeValue("class", "tree-label").getChildMarkup().trim();
+    }
+
+    @Test
+    public void root_nodes_are_rendered_in_a_batch()
+    {
+        List<Element> items = items(roots);
+
+        assertEquals(items.size(), 4);
+
+        assertEquals(label(items.get(0)), "a");
+        assertEquals(label(items.get(1)), "b");
+        assertEquals(label(items.get(2)), "c");
+
+        // The last node of the batch isn't the last item of the list.
+
+        assertEquals(items.get(2).getAttribute("class"), "leaf-node");
+
+        Element more = items.get(3);
+
+        assertEquals(more.getAttribute("class"), "last tree-more");
+
+        Element moreLabel = more.find("span");
+
+        assertEquals(moreLabel.getAttribute("class"), "tree-more-label");
+        assertEquals(moreLabel.getAttribute("data-tree-more-offset"), "3");
+        assertEquals(moreLabel.getAttribute("data-tree-more-parent"), "");
+        assertEquals(moreLabel.getChildMarkup().trim(), "4 more…");
+    }
+
+    @Test
+    public void children_of_expanded_node_are_rendered_in_a_batch()
+    {
+        Element children = items(roots).get(0).find("ul");
+
+        List<Element> items = items(children);
+
+        assertEquals(items.size(), 4);
+
+        assertEquals(label(items.get(0)), "a1");
+        assertEquals(label(items.get(2)), "a3");
+
+        Element moreLabel = items.get(3).find("span");
+
+        assertEquals(moreLabel.getAttribute("data-tree-more-offset"), "3");
+        assertEquals(moreLabel.getAttribute("data-tree-more-parent"), "a");
+        assertEquals(moreLabel.getChildMarkup().trim(), "2 more…");
+    }
+}
@@ -0,0 +1,122 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.integration.pagelevel;
+
+import org.apache.tapestry5.dom.Document;
+import org.apache.tapestry5.dom.Element;
+import org.apache.tapestry5.dom.Visitor;
+import org.apache.tapestry5.test.PageTester;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the initial render of a Grid in virtual scroll mode; the windows of rows requested as the Grid scrolls are
+ * covered by the Selenium tests (GridTests).
+ */
+public class VirtualScrollGridTest extends Assert
+{
+    private PageTester tester;
+
+    private Document doc;
+
+    @BeforeMethod
+    public void setup()
+    {
+        tester = new PageTester(TestConstants.APP2_PACKAGE, TestConstants.APP2_NAME);
+
+        doc = tester.renderPage("TestPageForVirtualScrollGrid");
+    }
+
+    @AfterMethod
+    public void after()
+    {
+        if (tester != null)
+        {
+            tester.shutdown();
+        }
+    }
+
+    private Element container(String id)
+    {
+        Element result = doc.getElementById(id).getElementByAttributeValue("class", "virtual-grid");
+
+        assertNotNull(result);
+
+        return result;
+    }
+
+    private static int count(Element element, final String name)
+    {
+        final int[] result = {0};
+
+        element.visit(new Visitor()
+        {
+            public void visit(Element element)
+            {
+                if (element.getName().equals(name))
+                {
+                    result[0]++;
+                }
+            }
+        });
+
+        return result[0];
+    }
+
+    @Test
+    public void renders_first_window_without_pager()
+    {
+        Element container = container("counted");
+
+        assertEquals(count(container.find("table/tbody"), "tr"), 10);
+        assertEquals(container.find("table/tbody/tr/td").getChildMarkup().trim(), "1");
+
+        assertNull(doc.getRootElement().getElementByAttributeValue("class", "pagination"));
+    }
+
+    @Test
+    public void container_describes_rows_for_client()
+    {
+        Element container = container("counted");
+
+        assertEquals(container.getAttribute("data-rows-per-page"), "10");
+        assertEquals(container.getAttribute("data-current-page"), "1");
+        assertEquals(container.getAttribute("data-available-rows"), "100");
+        assertEquals(container.getAttribute("data-row-count-known"), "true");
+        assertTrue(container.getAttribute("data-virtual-grid-url").endsWith(":virtualrows"));
+
+        // The client-side module is initialized with the container's id.
+
+        String id = container.getAttribute("id");
+
+        assertNotNull(id);
+        assertTrue(doc.toString().contains(String.format("\"t5/core/virtual-grid\",\"%s\"", id)));
+    }
+
+    @Test
+    public void uncounted_source_reports_rows_found_so_far()
+    {
+        Element container = container("uncounted");
+
+        assertEquals(count(container.find("table/tbody"), "tr"), 5);
+
+        // The Grid looks one row past the window, so the client knows there is more to scroll to.
+
+        assertEquals(container.getAttribute("data-available-rows"), "6");
+        assertEquals(container.getAttribute("data-row-count-known"), "false");
+    }
+}
@@ -0,0 +1,172 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.ComponentEventCallback;
+import org.apache.tapestry5.EventContext;
+import org.apache.tapestry5.QueryParameterConstants;
+import org.apache.tapestry5.TrackableComponentEventCallback;
+import org.apache.tapestry5.internal.EmptyEventContext;
+import org.apache.tapestry5.internal.InternalComponentResources;
+import org.apache.tapestry5.internal.InternalConstants;
+import org.apache.tapestry5.internal.structure.ComponentPageElement;
+import org.apache.tapestry5.internal.structure.Page;
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.runtime.RenderCommand;
+import org.apache.tapestry5.services.ComponentEventRequestParameters;
+import org.apache.tapestry5.services.ComponentEventResultProcessor;
+import org.apache.tapestry5.services.Environment;
+import org.apache.tapestry5.services.Request;
+import org.apache.tapestry5.services.ajax.AjaxResponseRenderer;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+
+public class AjaxComponentEventRequestHandlerTest extends InternalBaseTestCase
+{
+    private RequestPageCache cache;
+
+    private Request request;
+
+    private PageRenderQueue queue;
+
+    private ComponentEventResultProcessor resultProcessor;
+
+    private PageActivator pageActivator;
+
+    private Environment environment;
+
+    private AjaxPartialResponseRenderer partialRenderer;
+
+    private AjaxResponseRenderer ajaxResponseRenderer;
+
+    private EventContext context = new EmptyEventContext();
+
+    private ComponentEventRequestParameters parameters = new ComponentEventRequestParameters("Dashboard", "Dashboard",
+            "stats", "zonerefresh", context, context);
+
+    @Test
+    public void batched_event_result_is_collected_as_zone_update() throws IOException
+    {
+        final RenderCommand block = mockRenderCommand();
+
+        trainBatchedEvent(new IAnswer<Boolean>()
+        {
+            public Boolean answer() throws Throwable
+            {
+                ComponentEventCallback callback = (ComponentEventCallback) EasyMock.getCurrentArguments()[2];
+
+                return callback.handleResult(block);
+            }
+        });
+
+        // The result is collected for the zone identified by the event's own request ...
+
+        train_getParameter(request, QueryParameterConstants.ZONE_ID, "stats");
+
+        expect(ajaxResponseRenderer.addRender("stats", block)).andReturn(ajaxResponseRenderer);
+
+        trainEnvironmentPop();
+
+        // ... and neither the normal result processor nor the partial renderer is invoked.
+
+        replay();
+
+        newHandler().handle(parameters);
+
+        verify();
+    }
+
+    @Test
+    public void batched_event_without_result_sends_no_response() throws IOException
+    {
+        trainBatchedEvent(new IAnswer<Boolean>()
+        {
+            public Boolean answer() throws Throwable
+            {
+                return true;
+            }
+        });
+
+        trainEnvironmentPop();
+
+        // Outside of a batch, an empty JSON reply would be sent here; in a batch, the response is
+        // left to the BatchEventDispatcher.
+
+        replay();
+
+        newHandler().handle(parameters);
+
+        verify();
+    }
+
+    /**
+     * Trains the handler's collaborators for a batched event, up to (and including) triggering the event on the
+     * component.
+     */
+    private void trainBatchedEvent(IAnswer<Boolean> trigger) throws IOException
+    {
+        cache = mockRequestPageCache();
+        request = mockRequest();
+        queue = mockPageRenderQueue();
+        resultProcessor = mockComponentEventResultProcessor();
+        pageActivator = newMock(PageActivator.class);
+        environment = mockEnvironment();
+        partialRenderer = newMock(AjaxPartialResponseRenderer.class);
+        ajaxResponseRenderer = newMock(AjaxResponseRenderer.class);
+
+        Page page = mockPage();
+        ComponentPageElement rootElement = mockComponentPageElement();
+        InternalComponentResources pageResources = mockInternalComponentResources();
+        ComponentPageElement element = mockComponentPageElement();
+
+        train_get(cache, "Dashboard", page);
+        train_getAttribute(request, InternalConstants.BATCHED_EVENT, true);
+
+        queue.setRenderingPage(page);
+
+        train_getRootElement(page, rootElement);
+        train_getComponentResources(rootElement, pageResources);
+
+        expect(pageActivator.activatePage(EasyMock.eq(pageResources), EasyMock.eq(context),
+                EasyMock.isA(ComponentEventResultProcessor.class))).andReturn(false);
+
+        request.setAttribute(InternalConstants.PAGE_NAME_ATTRIBUTE_NAME, "Dashboard");
+
+        train_getComponentElementByNestedId(page, "stats", element);
+
+        expect(environment.push(EasyMock.eq(ComponentEventResultProcessor.class),
+                EasyMock.isA(ComponentEventResultProcessor.class))).andReturn(null);
+        expect(environment.push(EasyMock.eq(TrackableComponentEventCallback.class),
+                EasyMock.isA(TrackableComponentEventCallback.class))).andReturn(null);
+
+        expect(element.triggerContextEvent(EasyMock.eq("zonerefresh"), EasyMock.eq(context),
+                EasyMock.isA(ComponentEventCallback.class))).andAnswer(trigger);
+    }
+
+    private void trainEnvironmentPop()
+    {
+        expect(environment.pop(TrackableComponentEventCallback.class)).andReturn(null);
+        expect(environment.pop(ComponentEventResultProcessor.class)).andReturn(null);
+    }
+
+    private AjaxComponentEventRequestHandler newHandler()
+    {
+        return new AjaxComponentEventRequestHandler(cache, request, queue, resultProcessor, pageActivator,
+                environment, partialRenderer, ajaxResponseRenderer);
+    }
+}
@@ -0,0 +1,276 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.ioc.internal.services.PerthreadManagerImpl;
+import org.apache.tapestry5.ioc.services.PerThreadValue;
+import org.apache.tapestry5.ioc.services.PerthreadManager;
+import org.apache.tapestry5.services.ComponentEventResultProcessor;
+import org.apache.tapestry5.services.RequestExceptionHandler;
+import org.apache.tapestry5.services.RequestGlobals;
+import org.apache.tapestry5.util.ListenableFutureTask;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.*;
+
+public class AsyncResultHandlerImplTest extends InternalBaseTestCase
+{
+    private final Logger logger = LoggerFactory.getLogger(AsyncResultHandlerImplTest.class);
+
+    private static Callable<Object> callable(final Object value)
+    {
+        return new Callable<Object>()
+        {
+            public Object call() throws Exception
+            {
+                if (value instanceof Exception)
+                {
+                    throw (Exception) value;
+                }
+
+                return value;
+            }
+        };
+    }
+
+    private AsyncResultHandler newHandler(RequestGlobals globals, RequestExceptionHandler exceptionHandler,
+                                          PerthreadManager perthreadManager, EndOfRequestEventHub hub)
+    {
+        return new AsyncResultHandlerImpl(globals, exceptionHandler, perthreadManager, hub, logger, 1000);
+    }
+
+    @Test
+    public void completed_future_is_processed_immediately() throws IOException
+    {
+        RequestGlobals globals = mockRequestGlobals();
+        ComponentEventResultProcessor processor = newMock(ComponentEventResultProcessor.class);
+        HttpServletRequest servletRequest = newMock(HttpServletRequest.class);
+
+        FutureTask<Object> future = new ListenableFutureTask<Object>(callable("done"));
+        future.run();
+
+        expect(globals.getHTTPServletRequest()).andReturn(servletRequest);
+        processor.processResultValue("done");
+
+        replay();
+
+        AsyncResultHandler handler = newHandler(globals, null, new PerthreadManagerImpl(logger), null);
+
+        handler.handle(future, processor);
+
+        assertFalse(handler.detachSuspendedRequest());
+
+        verify();
+    }
+
+    @Test
+    public void failure_of_completed_future_is_rethrown() throws IOException
+    {
+        RequestGlobals globals = mockRequestGlobals();
+        ComponentEventResultProcessor processor = newMock(ComponentEventResultProcessor.class);
+
+        RuntimeException failure = new RuntimeException("Backend unavailable.");
+
+        FutureTask<Object> future = new FutureTask<Object>(callable(failure));
+        future.run();
+
+        expect(globals.getHTTPServletRequest()).andReturn(null);
+
+        replay();
+
+        AsyncResultHandler handler = newHandler(globals, null, new PerthreadManagerImpl(logger), null);
+
+        try
+        {
+            handler.handle(future, processor);
+            unreachable();
+        } catch (RuntimeException ex)
+        {
+            assertSame(ex, failure);
+        }
+
+        verify();
+    }
+
+    @Test
+    public void pending_future_that_can_not_notify_is_waited_for() throws Exception
+    {
+        RequestGlobals globals = mockRequestGlobals();
+        ComponentEventResultProcessor processor = newMock(ComponentEventResultProcessor.class);
+        HttpServletRequest servletRequest = newMock(HttpServletRequest.class);
+
+        final FutureTask<Object> future = new FutureTask<Object>(callable("done"));
+
+        expect(globals.getHTTPServletRequest()).andReturn(servletRequest);
+        processor.processResultValue("done");
+
+        replay();
+
+        AsyncResultHandler handler = newHandler(globals, null, new PerthreadManagerImpl(logger), null);
+
+        new Thread(future).start();
+
+        handler.handle(future, processor);
+
+        assertFalse(handler.detachSuspendedRequest());
+
+        verify();
+    }
+
+    @Test
+    public void blocking_handler_waits_for_listenable_future() throws Exception
+    {
+        ComponentEventResultProcessor processor = newMock(ComponentEventResultProcessor.class);
+
+        FutureTask<Object> future = new ListenableFutureTask<Object>(callable("done"));
+
+        processor.processResultValue("done");
+
+        replay();
+
+        AsyncResultHandler handler = new BlockingAsyncResultHandler(1000);
+
+        new Thread(future).start();
+
+        handler.handle(future, processor);
+
+        assertFalse(handler.detachSuspendedRequest());
+
+        verify();
+    }
+
+    @Test
+    public void pending_future_suspends_request_and_resumes_with_per_thread_state() throws Exception
+    {
+        RequestGlobals globals = mockRequestGlobals();
+        HttpServletRequest servletRequest = newMock(HttpServletRequest.class);
+        HttpServletResponse servletResponse = newMock(HttpServletResponse.class);
+        AsyncContext context = newMock(AsyncContext.class);
+        EndOfRequestEventHub hub = newMock(EndOfRequestEventHub.class);
+
+        PerthreadManager perthreadManager = new PerthreadManagerImpl(logger);
+        final PerThreadValue<String> value = perthreadManager.createValue();
+
+        final ListenableFutureTask<Object> future = new ListenableFutureTask<Object>(callable("done"));
+
+        final CountDownLatch completed = new CountDownLatch(1);
+        final String[] processed = new String[2];
+
+        ComponentEventResultProcessor processor = new ComponentEventResultProcessor()
+        {
+            public void processResultValue(Object result)
+            {
+                processed[0] = (String) result;
+                processed[1] = value.get();
+            }
+        };
+
+        expect(globals.getHTTPServletRequest()).andReturn(servletRequest);
+        expect(globals.getHTTPServletResponse()).andReturn(servletResponse);
+        expect(servletRequest.isAsyncSupported()).andReturn(true);
+        expect(servletRequest.startAsync(servletRequest, servletResponse)).andReturn(context);
+        context.setTimeout(1000);
+        context.addListener(EasyMock.isA(AsyncListener.class));
+
+        // On the thread that completes the future:
+
+        hub.fire();
+        context.complete();
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>()
+        {
+            public Object answer() throws Throwable
+            {
+                completed.countDown();
+
+                return null;
+            }
+        });
+
+        replay();
+
+        AsyncResultHandler handler = newHandler(globals, null, perthreadManager, hub);
+
+        value.set("request state");
+
+        handler.handle(future, processor);
+
+        assertTrue(handler.detachSuspendedRequest());
+
+        // The request thread is left clean.
+
+        assertFalse(value.exists());
+
+        new Thread(future).start();
+
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+
+        verify();
+
+        assertEquals(processed[0], "done");
+        assertEquals(processed[1], "request state");
+    }
+
+    @Test
+    public void suspended_request_fails_on_timeout() throws Exception
+    {
+        RequestGlobals globals = mockRequestGlobals();
+        HttpServletRequest servletRequest = newMock(HttpServletRequest.class);
+        HttpServletResponse servletResponse = newMock(HttpServletResponse.class);
+        AsyncContext context = newMock(AsyncContext.class);
+        EndOfRequestEventHub hub = newMock(EndOfRequestEventHub.class);
+        RequestExceptionHandler exceptionHandler = newMock(RequestExceptionHandler.class);
+        ComponentEventResultProcessor processor = newMock(ComponentEventResultProcessor.class);
+
+        ListenableFutureTask<Object> future = new ListenableFutureTask<Object>(callable("done"));
+
+        Capture<AsyncListener> listener = new Capture<AsyncListener>();
+
+        expect(globals.getHTTPServletRequest()).andReturn(servletRequest);
+        expect(globals.getHTTPServletResponse()).andReturn(servletResponse);
+        expect(servletRequest.isAsyncSupported()).andReturn(true);
+        expect(servletRequest.startAsync(servletRequest, servletResponse)).andReturn(context);
+        context.setTimeout(1000);
+        context.addListener(EasyMock.capture(listener));
+
+        exceptionHandler.handleRequestException(EasyMock.isA(RuntimeException.class));
+        hub.fire();
+        context.complete();
+
+        replay();
+
+        AsyncResultHandler handler = newHandler(globals, exceptionHandler, new PerthreadManagerImpl(logger), hub);
+
+        handler.handle(future, processor);
+
+        assertTrue(handler.detachSuspendedRequest());
+
+        listener.getValue().onTimeout(null);
+
+        verify();
+
+        assertTrue(future.isCancelled());
+    }
+}
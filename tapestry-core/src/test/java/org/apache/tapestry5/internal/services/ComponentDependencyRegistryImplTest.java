@@ -0,0 +1,49 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.test.TestBase;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+public class ComponentDependencyRegistryImplTest extends TestBase
+{
+    @Test
+    public void dependents_are_found_transitively()
+    {
+        ComponentDependencyRegistry registry = new ComponentDependencyRegistryImpl();
+
+        registry.register("pages.Index", "components.Layout");
+        registry.register("pages.About", "components.Layout");
+        registry.register("components.Layout", "components.Menu");
+        registry.register("pages.Admin", "components.AdminLayout");
+        registry.register("components.AdminLayout", "components.Layout");
+
+        // Self-dependencies (such as a recursive component) are ignored.
+        registry.register("components.Menu", "components.Menu");
+
+        assertEquals(registry.getDependents(Arrays.asList("components.Menu")),
+                CollectionFactory.newSet("components.Menu", "components.Layout", "components.AdminLayout",
+                        "pages.Index", "pages.About", "pages.Admin"));
+
+        assertEquals(registry.getDependents(Arrays.asList("components.AdminLayout")),
+                CollectionFactory.newSet("components.AdminLayout", "pages.Admin"));
+
+        assertEquals(registry.getDependents(Arrays.asList("components.Unknown")),
+                CollectionFactory.newSet("components.Unknown"));
+    }
+}
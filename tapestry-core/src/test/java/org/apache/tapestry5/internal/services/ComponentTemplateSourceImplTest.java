@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2010, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2010, 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.Collections;
 import java.util.Locale;
 import java.util.UUID;
 
@@ -30,6 +31,7 @@ import org.apache.tapestry5.ioc.internal.util.ClasspathResource;
 import org.apache.tapestry5.ioc.services.ClasspathURLConverter;
 import org.apache.tapestry5.model.ComponentModel;
 import org.apache.tapestry5.services.InvalidationListener;
+import org.apache.tapestry5.services.ResourceInvalidationCallback;
 import org.apache.tapestry5.services.pageload.ComponentResourceLocator;
 import org.apache.tapestry5.services.pageload.ComponentResourceSelector;
 import org.apache.tapestry5.services.templates.ComponentTemplateLocator;
@@ -100,13 +102,14 @@ public class ComponentTemplateSourceImplTest extends InternalBaseTestCase
         train_getComponentClassName(model, PACKAGE + ".Fred");
 
         expect(resource.exists()).andReturn(true);
-        expect(resource.toURL()).andReturn(null);
+
+        // In production mode, templates are not tracked for changes, so the URL is never obtained.
 
         train_parseTemplate(parser, resource, template);
 
         replay();
 
-        ComponentTemplateSource source = new ComponentTemplateSourceImpl(true, parser, locator, converter);
+        ComponentTemplateSource source = new ComponentTemplateSourceImpl(true, parser, locator, converter, false, null);
 
         assertSame(source.getTemplate(model, english), template);
 
@@ -146,6 +149,7 @@ public class ComponentTemplateSourceImplTest extends InternalBaseTestCase
         TemplateParser parser = mockTemplateParser();
         ComponentTemplate template = mockComponentTemplate();
         InvalidationListener listener = mockInvalidationListener();
+        ResourceInvalidationCallback callback = newMock(ResourceInvalidationCallback.class);
 
         train_getComponentClassName(model, "baz.Biff");
 
@@ -155,8 +159,9 @@ public class ComponentTemplateSourceImplTest extends InternalBaseTestCase
 
         replay();
 
-        ComponentTemplateSourceImpl source = new ComponentTemplateSourceImpl(false, parser, locator, converter);
+        ComponentTemplateSourceImpl source = new ComponentTemplateSourceImpl(false, parser, locator, converter, false, null);
         source.addInvalidationListener(listener);
+        source.addResourceInvalidationCallback(callback);
 
         assertSame(source.getTemplate(model, Locale.ENGLISH), template);
 
@@ -176,6 +181,10 @@ public class ComponentTemplateSourceImplTest extends InternalBaseTestCase
 
         listener.objectWasInvalidated();
 
+        // Just the component using the template is invalidated.
+
+        callback.resourcesInvalidated(Collections.singleton("baz.Biff"));
+
         replay();
 
         // Check for updates (which will be found).
@@ -183,12 +192,11 @@ public class ComponentTemplateSourceImplTest extends InternalBaseTestCase
 
         verify();
 
-        // Check that the cache really is cleared.
+        // Check that the changed template really is discarded (it still resolves to the same resource, so the
+        // locator is not invoked again).
 
         train_getComponentClassName(model, "baz.Biff");
 
-        expect(locator.locateTemplate(model, english)).andReturn(localized);
-
         train_parseTemplate(parser, localized, template);
 
         replay();
@@ -215,7 +223,6 @@ public class ComponentTemplateSourceImplTest extends InternalBaseTestCase
         expect(locator.locateTemplate(model, english)).andReturn(resource).once();
 
         expect(resource.exists()).andReturn(true).anyTimes();
-        expect(resource.toURL()).andReturn(null).anyTimes();
 
         expect(locator.locateTemplate(model, french)).andReturn(resource).once();
 
@@ -223,7 +230,7 @@ public class ComponentTemplateSourceImplTest extends InternalBaseTestCase
 
         replay();
 
-        ComponentTemplateSourceImpl source = new ComponentTemplateSourceImpl(true, parser, locator, converter);
+        ComponentTemplateSourceImpl source = new ComponentTemplateSourceImpl(true, parser, locator, converter, false, null);
 
         assertSame(source.getTemplate(model, Locale.ENGLISH), template);
 
@@ -261,7 +268,7 @@ public class ComponentTemplateSourceImplTest extends InternalBaseTestCase
 
         replay();
 
-        ComponentTemplateSourceImpl source = new ComponentTemplateSourceImpl(true, parser, locator, converter);
+        ComponentTemplateSourceImpl source = new ComponentTemplateSourceImpl(true, parser, locator, converter, false, null);
 
         ComponentTemplate template = source.getTemplate(model, Locale.ENGLISH);
 
@@ -287,13 +294,12 @@ public class ComponentTemplateSourceImplTest extends InternalBaseTestCase
         expect(locator.locateTemplate(parentModel, english)).andReturn(resource).once();
 
         expect(resource.exists()).andReturn(true);
-        expect(resource.toURL()).andReturn(null);
 
         train_parseTemplate(parser, resource, template);
 
         replay();
 
-        ComponentTemplateSource source = new ComponentTemplateSourceImpl(true, parser, locator, converter);
+        ComponentTemplateSource source = new ComponentTemplateSourceImpl(true, parser, locator, converter, false, null);
 
         assertSame(source.getTemplate(model, english), template);
 
@@ -0,0 +1,144 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.ioc.services.ThreadLocale;
+import org.apache.tapestry5.services.Request;
+import org.apache.tapestry5.services.Response;
+import org.apache.tapestry5.services.ResponseCompressionAnalyzer;
+import org.apache.tapestry5.services.javascript.StylesheetLink;
+import org.apache.tapestry5.services.javascript.StylesheetOptions;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+
+public class PreloadLinkCacheImplTest extends InternalBaseTestCase
+{
+    private void train_request(Request request, ResponseCompressionAnalyzer analyzer, boolean secure, boolean gzip)
+    {
+        expect(request.isSecure()).andReturn(secure);
+        expect(analyzer.isGZipSupported()).andReturn(gzip);
+    }
+
+    @Test
+    public void headers_added_for_previously_rendered_page()
+    {
+        ThreadLocale threadLocale = newMock(ThreadLocale.class);
+        Response response = mockResponse();
+
+        Request request = mockRequest();
+        ResponseCompressionAnalyzer analyzer = newMock(ResponseCompressionAnalyzer.class);
+
+        expect(threadLocale.getLocale()).andReturn(Locale.ENGLISH).atLeastOnce();
+        train_request(request, analyzer, false, true);
+        train_request(request, analyzer, false, true);
+
+        response.addHeader("Link",
+                "</css/app.css>; rel=preload; as=style, </js/require.js>; rel=preload; as=script, </js/app.js>; rel=preload; as=script");
+
+        replay();
+
+        PreloadLinkCache cache = new PreloadLinkCacheImpl(threadLocale, request, analyzer, true);
+
+        cache.storePreloads("Index", Arrays.asList(new StylesheetLink("/css/app.css"),
+                new StylesheetLink("/css/print.css", new StylesheetOptions("print")),
+                new StylesheetLink("/css/ie.css", new StylesheetOptions(null, "IE"))),
+                Arrays.asList("/js/require.js", "/js/app.js"));
+
+        cache.addPreloadHeaders("index", response);
+
+        verify();
+    }
+
+    @Test
+    public void no_headers_for_page_not_yet_rendered_in_locale()
+    {
+        ThreadLocale threadLocale = newMock(ThreadLocale.class);
+        Response response = mockResponse();
+
+        Request request = mockRequest();
+        ResponseCompressionAnalyzer analyzer = newMock(ResponseCompressionAnalyzer.class);
+
+        expect(threadLocale.getLocale()).andReturn(Locale.ENGLISH);
+        expect(threadLocale.getLocale()).andReturn(Locale.FRENCH);
+        train_request(request, analyzer, false, true);
+        train_request(request, analyzer, false, true);
+
+        replay();
+
+        PreloadLinkCache cache = new PreloadLinkCacheImpl(threadLocale, request, analyzer, true);
+
+        cache.storePreloads("Index", Collections.<StylesheetLink>emptyList(), Arrays.asList("/js/require.js"));
+
+        cache.addPreloadHeaders("Index", response);
+
+        verify();
+    }
+
+    @Test
+    public void nothing_stored_when_disabled()
+    {
+        ThreadLocale threadLocale = newMock(ThreadLocale.class);
+        Request request = mockRequest();
+        ResponseCompressionAnalyzer analyzer = newMock(ResponseCompressionAnalyzer.class);
+        Response response = mockResponse();
+
+        replay();
+
+        PreloadLinkCache cache = new PreloadLinkCacheImpl(threadLocale, request, analyzer, false);
+
+        cache.storePreloads("Index", Collections.<StylesheetLink>emptyList(), Arrays.asList("/js/require.js"));
+
+        cache.addPreloadHeaders("Index", response);
+
+        verify();
+    }
+
+    @Test
+    public void headers_are_specific_to_compression_and_security()
+    {
+        ThreadLocale threadLocale = newMock(ThreadLocale.class);
+        Request request = mockRequest();
+        ResponseCompressionAnalyzer analyzer = newMock(ResponseCompressionAnalyzer.class);
+        Response response = mockResponse();
+
+        expect(threadLocale.getLocale()).andReturn(Locale.ENGLISH).atLeastOnce();
+
+        train_request(request, analyzer, false, true);
+        train_request(request, analyzer, false, false);
+        train_request(request, analyzer, true, true);
+        train_request(request, analyzer, false, true);
+
+        response.addHeader("Link", "</js/z123/app.js>; rel=preload; as=script");
+
+        replay();
+
+        PreloadLinkCache cache = new PreloadLinkCacheImpl(threadLocale, request, analyzer, true);
+
+        cache.storePreloads("Index", Collections.<StylesheetLink>emptyList(), Arrays.asList("/js/z123/app.js"));
+
+        // Uncompressed client, then secure client: different URLs, so nothing sent.
+
+        cache.addPreloadHeaders("Index", response);
+        cache.addPreloadHeaders("Index", response);
+
+        cache.addPreloadHeaders("Index", response);
+
+        verify();
+    }
+}
@@ -0,0 +1,143 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.services.Request;
+import org.apache.tapestry5.services.Response;
+import org.apache.tapestry5.services.ResponseCompressionAnalyzer;
+import org.apache.tapestry5.services.assets.AssetMetrics;
+import org.apache.tapestry5.services.assets.CompressionStatus;
+import org.apache.tapestry5.services.assets.EncodedStreamableResource;
+import org.apache.tapestry5.services.assets.StreamableResource;
+import org.easymock.EasyMock;
+import org.testng.annotations.Test;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+public class ResourceStreamerImplTest extends InternalBaseTestCase
+{
+    private static final List<String> GZIP = Arrays.asList("gzip");
+
+    private void train_negotiation(EncodedStreamableResource streamable, Request request, ResponseCompressionAnalyzer analyzer,
+                                   String contentEncoding, StreamableResource variant, String providedETag) throws IOException
+    {
+        expect(streamable.getDescription()).andReturn("app.css");
+        expect(streamable.getChecksum()).andReturn("abc");
+        expect(streamable.getLastModified()).andReturn(1000L);
+        expect(request.getDateHeader(ResourceStreamerImpl.IF_MODIFIED_SINCE_HEADER)).andReturn(-1L);
+        expect(streamable.getCompression()).andReturn(CompressionStatus.COMPRESSED).atLeastOnce();
+        expect(streamable.getContentEncodings()).andReturn(GZIP);
+        expect(analyzer.selectContentEncoding(GZIP)).andReturn(contentEncoding);
+        expect(streamable.forContentEncoding(contentEncoding)).andReturn(variant);
+        expect(request.getHeader("If-None-Match")).andReturn(providedETag);
+    }
+
+    @Test
+    public void etag_for_encoded_content_includes_content_encoding() throws IOException
+    {
+        Request request = mockRequest();
+        Response response = mockResponse();
+        ResponseCompressionAnalyzer analyzer = newMock(ResponseCompressionAnalyzer.class);
+        AssetMetrics metrics = newMock(AssetMetrics.class);
+        EncodedStreamableResource streamable = newMock(EncodedStreamableResource.class);
+        StreamableResource variant = newMock(StreamableResource.class);
+
+        train_negotiation(streamable, request, analyzer, "gzip", variant, "\"abc-gzip\"");
+
+        response.setHeader("Vary", "Accept-Encoding");
+        response.setHeader("ETag", "\"abc-gzip\"");
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        metrics.recordRequest(EasyMock.eq("app.css"), EasyMock.eq(true), (String) EasyMock.isNull(),
+                EasyMock.eq(0L), EasyMock.anyLong());
+
+        replay();
+
+        ResourceStreamer streamer = new ResourceStreamerImpl(request, response, null, null, false, null, analyzer, metrics);
+
+        assertTrue(streamer.streamResource(streamable, "abc", ResourceStreamer.DEFAULT_OPTIONS));
+
+        verify();
+    }
+
+    @Test
+    public void etag_of_other_encoding_does_not_match() throws IOException
+    {
+        Request request = mockRequest();
+        Response response = mockResponse();
+        ResponseCompressionAnalyzer analyzer = newMock(ResponseCompressionAnalyzer.class);
+        AssetMetrics metrics = newMock(AssetMetrics.class);
+        EncodedStreamableResource streamable = newMock(EncodedStreamableResource.class);
+        StreamableResource variant = newMock(StreamableResource.class);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        // The client no longer accepts gzip, but has the gzip encoded content cached.
+
+        train_negotiation(streamable, request, analyzer, null, variant, "\"abc-gzip\"");
+
+        response.setHeader("Vary", "Accept-Encoding");
+        response.setHeader("ETag", "\"abc\"");
+        response.disableCompression();
+        response.setDateHeader("Last-Modified", 1000L);
+
+        expect(variant.getSize()).andReturn(3).atLeastOnce();
+        expect(variant.getContentType()).andReturn("text/css");
+        response.setContentLength(3);
+        expect(response.getOutputStream("text/css")).andReturn(os);
+        variant.streamTo(os);
+        metrics.recordRequest(EasyMock.eq("app.css"), EasyMock.eq(false), (String) EasyMock.isNull(),
+                EasyMock.eq(3L), EasyMock.anyLong());
+
+        replay();
+
+        ResourceStreamer streamer = new ResourceStreamerImpl(request, response, null, null, false, null, analyzer, metrics);
+
+        assertTrue(streamer.streamResource(streamable, "abc", ResourceStreamer.DEFAULT_OPTIONS));
+
+        verify();
+    }
+
+    @Test
+    public void not_modified_since_response_varies_by_content_encoding() throws IOException
+    {
+        Request request = mockRequest();
+        Response response = mockResponse();
+        AssetMetrics metrics = newMock(AssetMetrics.class);
+        EncodedStreamableResource streamable = newMock(EncodedStreamableResource.class);
+
+        expect(streamable.getDescription()).andReturn("app.css");
+        expect(streamable.getChecksum()).andReturn("abc");
+        expect(streamable.getLastModified()).andReturn(1000L);
+        expect(request.getDateHeader(ResourceStreamerImpl.IF_MODIFIED_SINCE_HEADER)).andReturn(2000L);
+        expect(streamable.getCompression()).andReturn(CompressionStatus.COMPRESSED);
+
+        response.setHeader("Vary", "Accept-Encoding");
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        metrics.recordRequest(EasyMock.eq("app.css"), EasyMock.eq(true), (String) EasyMock.isNull(),
+                EasyMock.eq(0L), EasyMock.anyLong());
+
+        replay();
+
+        ResourceStreamer streamer = new ResourceStreamerImpl(request, response, null, null, false, null, null, metrics);
+
+        assertTrue(streamer.streamResource(streamable, "abc", ResourceStreamer.DEFAULT_OPTIONS));
+
+        verify();
+    }
+}
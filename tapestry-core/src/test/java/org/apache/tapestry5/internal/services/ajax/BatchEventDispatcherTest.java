@@ -0,0 +1,210 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.ajax;
+
+import org.apache.tapestry5.QueryParameterConstants;
+import org.apache.tapestry5.internal.EmptyEventContext;
+import org.apache.tapestry5.internal.InternalConstants;
+import org.apache.tapestry5.internal.services.AjaxPartialResponseRenderer;
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.json.JSONArray;
+import org.apache.tapestry5.json.JSONObject;
+import org.apache.tapestry5.services.*;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.testng.annotations.Test;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+
+public class BatchEventDispatcherTest extends InternalBaseTestCase
+{
+    private static final String BATCH_PATH = "/t5/batch";
+
+    @Test
+    public void other_paths_are_ignored() throws IOException
+    {
+        Request request = mockRequest();
+        Response response = mockResponse();
+        PathConstructor pathConstructor = newMock(PathConstructor.class);
+        ComponentRequestHandler handler = mockComponentRequestHandler();
+        ComponentEventLinkEncoder linkEncoder = newMock(ComponentEventLinkEncoder.class);
+        RequestGlobals requestGlobals = mockRequestGlobals();
+        AjaxPartialResponseRenderer partialRenderer = newMock(AjaxPartialResponseRenderer.class);
+
+        expect(pathConstructor.constructDispatchPath("t5/batch")).andReturn(BATCH_PATH);
+        train_getPath(request, "/index");
+
+        replay();
+
+        BatchEventDispatcher dispatcher = new BatchEventDispatcher(handler, linkEncoder, requestGlobals,
+                partialRenderer, pathConstructor, "t5/batch");
+
+        assertFalse(dispatcher.dispatch(request, response));
+
+        verify();
+    }
+
+    @Test
+    public void events_parameter_is_required() throws IOException
+    {
+        Request request = mockRequest();
+        Response response = mockResponse();
+        PathConstructor pathConstructor = newMock(PathConstructor.class);
+        ComponentRequestHandler handler = mockComponentRequestHandler();
+        ComponentEventLinkEncoder linkEncoder = newMock(ComponentEventLinkEncoder.class);
+        RequestGlobals requestGlobals = mockRequestGlobals();
+        AjaxPartialResponseRenderer partialRenderer = newMock(AjaxPartialResponseRenderer.class);
+
+        expect(pathConstructor.constructDispatchPath("t5/batch")).andReturn(BATCH_PATH);
+        train_getPath(request, BATCH_PATH);
+        train_getParameter(request, QueryParameterConstants.BATCH_EVENTS, null);
+
+        response.sendError(EasyMock.eq(HttpServletResponse.SC_BAD_REQUEST), EasyMock.contains(QueryParameterConstants.BATCH_EVENTS));
+
+        replay();
+
+        BatchEventDispatcher dispatcher = new BatchEventDispatcher(handler, linkEncoder, requestGlobals,
+                partialRenderer, pathConstructor, "t5/batch");
+
+        assertTrue(dispatcher.dispatch(request, response));
+
+        verify();
+    }
+
+    @Test
+    public void each_event_is_handled_then_zones_are_rendered_together() throws IOException
+    {
+        Request request = mockRequest();
+        Response response = mockResponse();
+        PathConstructor pathConstructor = newMock(PathConstructor.class);
+        ComponentRequestHandler handler = mockComponentRequestHandler();
+        ComponentEventLinkEncoder linkEncoder = newMock(ComponentEventLinkEncoder.class);
+        final RequestGlobals requestGlobals = mockRequestGlobals();
+        AjaxPartialResponseRenderer partialRenderer = newMock(AjaxPartialResponseRenderer.class);
+
+        final ComponentEventRequestParameters stats = new ComponentEventRequestParameters("Dashboard", "Dashboard",
+                "stats", "zonerefresh", new EmptyEventContext(), new EmptyEventContext());
+        final ComponentEventRequestParameters news = new ComponentEventRequestParameters("Dashboard", "Dashboard",
+                "news", "zonerefresh", new EmptyEventContext(), new EmptyEventContext());
+
+        JSONArray events = new JSONArray(
+                new JSONObject("url", "/ctx/dashboard.stats:zonerefresh", "parameters", new JSONObject("t:zoneid", "stats")),
+                new JSONObject("url", "/ctx/dashboard.news:zonerefresh", "parameters", new JSONObject("t:zoneid", "news")));
+
+        final List<String> zoneIds = CollectionFactory.newList();
+
+        expect(pathConstructor.constructDispatchPath("t5/batch")).andReturn(BATCH_PATH);
+        train_getPath(request, BATCH_PATH);
+        train_getParameter(request, QueryParameterConstants.BATCH_EVENTS, events.toCompactString());
+        expect(request.getContextPath()).andReturn("/ctx").atLeastOnce();
+
+        request.setAttribute(InternalConstants.BATCHED_EVENT, true);
+
+        expect(linkEncoder.decodeComponentEventRequest(EasyMock.isA(BatchedEventRequest.class))).andAnswer(
+                new IAnswer<ComponentEventRequestParameters>()
+                {
+                    public ComponentEventRequestParameters answer() throws Throwable
+                    {
+                        Request eventRequest = (Request) EasyMock.getCurrentArguments()[0];
+
+                        return eventRequest.getPath().startsWith("/dashboard.stats") ? stats : news;
+                    }
+                }).times(2);
+
+        expect(requestGlobals.getRequest()).andReturn(request).times(2);
+
+        // While each event is handled, RequestGlobals exposes the event's own request (and its zone id).
+
+        requestGlobals.storeRequestResponse(EasyMock.isA(BatchedEventRequest.class), EasyMock.eq(response));
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>()
+        {
+            public Object answer() throws Throwable
+            {
+                Request eventRequest = (Request) EasyMock.getCurrentArguments()[0];
+
+                zoneIds.add(eventRequest.getParameter(QueryParameterConstants.ZONE_ID));
+
+                return null;
+            }
+        }).times(2);
+
+        requestGlobals.storeRequestResponse(request, response);
+        EasyMock.expectLastCall().times(2);
+
+        handler.handleComponentEvent(stats);
+        handler.handleComponentEvent(news);
+
+        request.setAttribute(InternalConstants.BATCHED_EVENT, null);
+
+        partialRenderer.renderPartialPageMarkup();
+
+        replay();
+
+        BatchEventDispatcher dispatcher = new BatchEventDispatcher(handler, linkEncoder, requestGlobals,
+                partialRenderer, pathConstructor, "t5/batch");
+
+        assertTrue(dispatcher.dispatch(request, response));
+
+        verify();
+
+        assertListsEquals(zoneIds, "stats", "news");
+    }
+
+    @Test
+    public void url_must_identify_component_event() throws IOException
+    {
+        Request request = mockRequest();
+        Response response = mockResponse();
+        PathConstructor pathConstructor = newMock(PathConstructor.class);
+        ComponentRequestHandler handler = mockComponentRequestHandler();
+        ComponentEventLinkEncoder linkEncoder = newMock(ComponentEventLinkEncoder.class);
+        RequestGlobals requestGlobals = mockRequestGlobals();
+        AjaxPartialResponseRenderer partialRenderer = newMock(AjaxPartialResponseRenderer.class);
+
+        JSONArray events = new JSONArray(new JSONObject("url", "/ctx/dashboard"));
+
+        expect(pathConstructor.constructDispatchPath("t5/batch")).andReturn(BATCH_PATH);
+        train_getPath(request, BATCH_PATH);
+        train_getParameter(request, QueryParameterConstants.BATCH_EVENTS, events.toCompactString());
+        expect(request.getContextPath()).andReturn("/ctx").atLeastOnce();
+
+        request.setAttribute(InternalConstants.BATCHED_EVENT, true);
+
+        expect(linkEncoder.decodeComponentEventRequest(EasyMock.isA(BatchedEventRequest.class))).andReturn(null);
+
+        // The marker attribute is removed even when the batch fails.
+
+        request.setAttribute(InternalConstants.BATCHED_EVENT, null);
+
+        replay();
+
+        BatchEventDispatcher dispatcher = new BatchEventDispatcher(handler, linkEncoder, requestGlobals,
+                partialRenderer, pathConstructor, "t5/batch");
+
+        try
+        {
+            dispatcher.dispatch(request, response);
+            unreachable();
+        } catch (IllegalArgumentException ex)
+        {
+            assertEquals(ex.getMessage(), "Path '/dashboard' inside a batch request does not identify a component event.");
+        }
+
+        verify();
+    }
+}
@@ -0,0 +1,85 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.ajax;
+
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.json.JSONObject;
+import org.apache.tapestry5.services.Request;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+public class BatchedEventRequestTest extends InternalBaseTestCase
+{
+    @Test
+    public void path_and_query_parameters_come_from_event_url()
+    {
+        Request request = mockRequest();
+
+        expect(request.getContextPath()).andReturn("/ctx").atLeastOnce();
+
+        replay();
+
+        Request eventRequest = new BatchedEventRequest(request, "/ctx/dashboard.stats:zonerefresh/3?t:ac=a%2Fb&flag",
+                new JSONObject("t:zoneid", "stats"));
+
+        assertEquals(eventRequest.getPath(), "/dashboard.stats:zonerefresh/3");
+        assertEquals(eventRequest.getParameter("t:ac"), "a/b");
+        assertEquals(eventRequest.getParameter("flag"), "");
+        assertEquals(eventRequest.getParameter("t:zoneid"), "stats");
+        assertNull(eventRequest.getParameter("missing"));
+        assertEquals(eventRequest.getParameterNames(), Arrays.asList("flag", "t:ac", "t:zoneid"));
+        assertTrue(eventRequest.isXHR());
+
+        verify();
+    }
+
+    @Test
+    public void multiple_values_for_parameter()
+    {
+        Request request = mockRequest();
+
+        expect(request.getContextPath()).andReturn("").atLeastOnce();
+
+        replay();
+
+        Request eventRequest = new BatchedEventRequest(request, "/index:refresh?x=1&x=2", null);
+
+        assertEquals(eventRequest.getParameters("x"), new String[]{"1", "2"});
+
+        verify();
+    }
+
+    @Test
+    public void url_must_start_with_context_path()
+    {
+        Request request = mockRequest();
+
+        expect(request.getContextPath()).andReturn("/ctx").atLeastOnce();
+
+        replay();
+
+        try
+        {
+            new BatchedEventRequest(request, "/other/index:refresh", null);
+            unreachable();
+        } catch (IllegalArgumentException ex)
+        {
+            assertEquals(ex.getMessage(), "Batched event URL '/other/index:refresh' does not start with the context path ('/ctx').");
+        }
+
+        verify();
+    }
+}
@@ -0,0 +1,127 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.ajax;
+
+import org.apache.tapestry5.ComponentResources;
+import org.apache.tapestry5.QueryParameterConstants;
+import org.apache.tapestry5.internal.services.RequestPageCache;
+import org.apache.tapestry5.internal.structure.ComponentPageElement;
+import org.apache.tapestry5.internal.structure.Page;
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.runtime.Component;
+import org.apache.tapestry5.runtime.RenderCommand;
+import org.apache.tapestry5.services.Request;
+import org.apache.tapestry5.services.ajax.AjaxResponseRenderer;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+
+public class BatchedEventResultProcessorTest extends InternalBaseTestCase
+{
+    @Test
+    public void render_command_is_added_for_zone() throws IOException
+    {
+        Request request = mockRequest();
+        RequestPageCache cache = mockRequestPageCache();
+        AjaxResponseRenderer renderer = newMock(AjaxResponseRenderer.class);
+        RenderCommand block = mockRenderCommand();
+
+        train_getParameter(request, QueryParameterConstants.ZONE_ID, "stats");
+
+        expect(renderer.addRender("stats", block)).andReturn(renderer);
+
+        replay();
+
+        new BatchedEventResultProcessor(request, cache, renderer).processResultValue(block);
+
+        verify();
+    }
+
+    @Test
+    public void component_is_rendered_via_its_page_element() throws IOException
+    {
+        Request request = mockRequest();
+        RequestPageCache cache = mockRequestPageCache();
+        AjaxResponseRenderer renderer = newMock(AjaxResponseRenderer.class);
+        Component component = mockComponent();
+        Component pageComponent = mockComponent();
+        ComponentResources resources = mockComponentResources();
+        Page page = mockPage();
+        ComponentPageElement element = mockComponentPageElement();
+
+        train_getParameter(request, QueryParameterConstants.ZONE_ID, "news");
+        train_getComponentResources(component, resources);
+        train_getPage(resources, pageComponent);
+        train_getPageName(resources, "Dashboard");
+        train_get(cache, "Dashboard", page);
+        train_getNestedId(resources, "news.headlines");
+        train_getComponentElementByNestedId(page, "news.headlines", element);
+
+        expect(renderer.addRender("news", element)).andReturn(renderer);
+
+        replay();
+
+        new BatchedEventResultProcessor(request, cache, renderer).processResultValue(component);
+
+        verify();
+    }
+
+    @Test
+    public void zone_id_is_required() throws IOException
+    {
+        Request request = mockRequest();
+        RequestPageCache cache = mockRequestPageCache();
+        AjaxResponseRenderer renderer = newMock(AjaxResponseRenderer.class);
+        RenderCommand block = mockRenderCommand();
+
+        train_getParameter(request, QueryParameterConstants.ZONE_ID, null);
+
+        replay();
+
+        try
+        {
+            new BatchedEventResultProcessor(request, cache, renderer).processResultValue(block);
+            unreachable();
+        } catch (IllegalArgumentException ex)
+        {
+            assertMessageContains(ex, "must identify the zone to update", QueryParameterConstants.ZONE_ID);
+        }
+
+        verify();
+    }
+
+    @Test
+    public void unsupported_result_is_rejected() throws IOException
+    {
+        Request request = mockRequest();
+        RequestPageCache cache = mockRequestPageCache();
+        AjaxResponseRenderer renderer = newMock(AjaxResponseRenderer.class);
+
+        train_getParameter(request, QueryParameterConstants.ZONE_ID, "stats");
+
+        replay();
+
+        try
+        {
+            new BatchedEventResultProcessor(request, cache, renderer).processResultValue("Index");
+            unreachable();
+        } catch (IllegalArgumentException ex)
+        {
+            assertMessageContains(ex, "zone 'stats' returned Index", "only blocks and components");
+        }
+
+        verify();
+    }
+}
@@ -0,0 +1,100 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.ajax;
+
+import org.apache.tapestry5.internal.services.ClientDataEncoderImpl;
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.ioc.internal.services.PerthreadManagerImpl;
+import org.apache.tapestry5.ioc.services.ParallelExecutor;
+import org.apache.tapestry5.ioc.services.PerthreadManager;
+import org.apache.tapestry5.ioc.services.cron.PeriodicExecutor;
+import org.apache.tapestry5.ioc.services.cron.Schedule;
+import org.easymock.EasyMock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+public class PushChannelManagerImplTest extends InternalBaseTestCase
+{
+    private final Logger logger = LoggerFactory.getLogger(PushChannelManagerImplTest.class);
+
+    private final PerthreadManager perthreadManager = new PerthreadManagerImpl(logger);
+
+    private PushChannelManager newManager() throws Exception
+    {
+        ParallelExecutor parallelExecutor = newMock(ParallelExecutor.class);
+        PeriodicExecutor periodicExecutor = newMock(PeriodicExecutor.class);
+
+        expect(periodicExecutor.addJob(EasyMock.<Schedule>anyObject(), EasyMock.<String>anyObject(),
+                EasyMock.<Runnable>anyObject())).andReturn(null);
+
+        replay();
+
+        return new PushChannelManagerImpl(parallelExecutor, periodicExecutor,
+                new ClientDataEncoderImpl(null, "push channel passphrase", logger, "foo.bar", null),
+                perthreadManager, logger, 10, 30000);
+    }
+
+    @Test
+    public void subscriptions_rendered_in_one_request_identify_one_client() throws Exception
+    {
+        PushChannelManager manager = newManager();
+
+        String news = manager.createSubscription("news, sports");
+        String weather = manager.createSubscription("weather");
+
+        perthreadManager.cleanup();
+
+        String other = manager.createSubscription("news");
+
+        PushSubscriber subscriber = manager.subscribe(Arrays.asList(news, weather), "session");
+
+        assertNotNull(subscriber);
+        assertTrue(subscriber.isSubscribedToTopic("sports"));
+        assertTrue(subscriber.isSubscribedToTopic("weather"));
+        assertTrue(subscriber.isInSession("session"));
+        assertTrue(manager.hasTopicSubscribers("news"));
+
+        assertSame(manager.subscribe(Arrays.asList(news, weather), "session"), subscriber);
+
+        assertNotSame(manager.subscribe(Arrays.asList(other), "session").getClientId(), subscriber.getClientId());
+
+        // Subscriptions from different requests can not be combined
+
+        assertNull(manager.subscribe(Arrays.asList(news, other), "session"));
+
+        verify();
+    }
+
+    @Test
+    public void tampered_subscription_is_rejected() throws Exception
+    {
+        PushChannelManager manager = newManager();
+
+        String subscription = manager.createSubscription("news");
+
+        String forged = new ClientDataEncoderImpl(null, "some other passphrase", logger, "foo.bar", null)
+                .createSink().getClientData();
+
+        assertNull(manager.subscribe(Arrays.asList(forged), null));
+        assertNull(manager.subscribe(Arrays.asList("garbage"), null));
+        assertNull(manager.subscribe(Arrays.asList(subscription, forged), null));
+        assertFalse(manager.hasTopicSubscribers("news"));
+
+        verify();
+    }
+}
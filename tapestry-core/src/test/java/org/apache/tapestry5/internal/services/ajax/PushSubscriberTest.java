@@ -0,0 +1,280 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.ajax;
+
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.json.JSONArray;
+import org.apache.tapestry5.json.JSONObject;
+import org.testng.annotations.Test;
+
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class PushSubscriberTest extends InternalBaseTestCase
+{
+    private static JSONObject update(String zone, String content)
+    {
+        return new JSONObject(PushSubscriber.ZONE, zone, PushSubscriber.CONTENT, content);
+    }
+
+    private static class StubConnection implements PushConnection
+    {
+        private final Writer writer;
+
+        private volatile boolean completed;
+
+        StubConnection(Writer writer)
+        {
+            this.writer = writer;
+        }
+
+        public PrintWriter getWriter()
+        {
+            return new PrintWriter(writer);
+        }
+
+        public void complete()
+        {
+            completed = true;
+        }
+    }
+
+    private String send(PushSubscriber subscriber, boolean streaming) throws Exception
+    {
+        StringWriter buffer = new StringWriter();
+
+        ServletResponse response = newMock(ServletResponse.class);
+
+        expect(response.getWriter()).andReturn(new PrintWriter(buffer));
+
+        replay();
+
+        subscriber.send(response, streaming);
+
+        verify();
+
+        return buffer.toString();
+    }
+
+    @Test
+    public void later_update_replaces_queued_update_for_same_zone() throws Exception
+    {
+        PushSubscriber subscriber = new PushSubscriber("client", CollectionFactory.<String>newSet(), null, 10);
+
+        assertFalse(subscriber.offer(update("a", "first")));
+        subscriber.offer(update("b", "other"));
+        subscriber.offer(update("a", "second"));
+
+        JSONArray updates = new JSONArray(send(subscriber, false));
+
+        assertEquals(updates.length(), 2);
+        assertEquals(updates.getJSONObject(0).getString(PushSubscriber.ZONE), "b");
+        assertEquals(updates.getJSONObject(1).getString(PushSubscriber.CONTENT), "second");
+    }
+
+    @Test
+    public void oldest_update_discarded_when_queue_is_full() throws Exception
+    {
+        PushSubscriber subscriber = new PushSubscriber("client", CollectionFactory.<String>newSet(), null, 2);
+
+        subscriber.offer(update("a", "1"));
+        subscriber.offer(update("b", "2"));
+        subscriber.offer(update("c", "3"));
+
+        assertEquals(send(subscriber, true),
+                "data: {\"zone\":\"b\",\"content\":\"2\"}\n\ndata: {\"zone\":\"c\",\"content\":\"3\"}\n\n");
+    }
+
+    @Test
+    public void queue_is_cleared_once_sent() throws Exception
+    {
+        PushSubscriber subscriber = new PushSubscriber("client", CollectionFactory.<String>newSet(), null, 2);
+
+        subscriber.offer(update("a", "1"));
+
+        send(subscriber, false);
+
+        assertEquals(send(subscriber, false), "[]");
+    }
+
+    @Test
+    public void subscription_matching()
+    {
+        Set<String> topics = CollectionFactory.<String, String>newSet("news");
+
+        PushSubscriber subscriber = new PushSubscriber("client", topics, "session", 2);
+
+        assertTrue(subscriber.isSubscribedToTopic("news"));
+        assertFalse(subscriber.isSubscribedToTopic("sports"));
+        assertTrue(subscriber.isInSession("session"));
+        assertFalse(subscriber.isInSession(null));
+        assertTrue(subscriber.isSameSubscription(CollectionFactory.<String, String>newSet("news"), "session"));
+        assertFalse(subscriber.isSameSubscription(topics, null));
+        assertFalse(subscriber.isExpired(0));
+    }
+
+    @Test
+    public void long_poll_is_completed_once_updates_are_sent() throws Exception
+    {
+        PushSubscriber subscriber = new PushSubscriber("client", CollectionFactory.<String>newSet(), null, 10);
+
+        StringWriter buffer = new StringWriter();
+        StubConnection connection = new StubConnection(buffer);
+
+        subscriber.connect(connection, false);
+
+        assertEquals(buffer.toString(), "");
+        assertTrue(subscriber.offer(update("a", "1")));
+
+        subscriber.flush();
+
+        assertEquals(buffer.toString(), "[{\"zone\":\"a\",\"content\":\"1\"}]");
+        assertTrue(connection.completed);
+        assertFalse(subscriber.offer(update("b", "2")));
+    }
+
+    @Test
+    public void updates_are_kept_when_client_has_gone_away() throws Exception
+    {
+        PushSubscriber subscriber = new PushSubscriber("client", CollectionFactory.<String>newSet(), null, 10);
+
+        StubConnection connection = new StubConnection(new Writer()
+        {
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException
+            {
+                throw new IOException("Connection reset.");
+            }
+
+            @Override
+            public void flush()
+            {
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        });
+
+        subscriber.offer(update("a", "old"));
+
+        subscriber.connect(connection, false);
+
+        assertTrue(connection.completed);
+        assertFalse(subscriber.offer(update("b", "new")));
+
+        JSONArray updates = new JSONArray(send(subscriber, false));
+
+        assertEquals(updates.length(), 2);
+        assertEquals(updates.getJSONObject(0).getString(PushSubscriber.CONTENT), "old");
+        assertEquals(updates.getJSONObject(1).getString(PushSubscriber.CONTENT), "new");
+    }
+
+    @Test
+    public void updates_may_be_offered_while_writing_to_a_slow_client() throws Exception
+    {
+        final PushSubscriber subscriber = new PushSubscriber("client", CollectionFactory.<String>newSet(), null, 10);
+
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final StringWriter buffer = new StringWriter();
+        final boolean[] slow = new boolean[1];
+
+        StubConnection connection = new StubConnection(new Writer()
+        {
+            @Override
+            public void write(char[] cbuf, int off, int len)
+            {
+                buffer.write(cbuf, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException
+            {
+                if (slow[0])
+                {
+                    writing.countDown();
+
+                    try
+                    {
+                        release.await();
+                    } catch (InterruptedException ex)
+                    {
+                        throw new IOException(ex.toString());
+                    }
+                }
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        });
+
+        subscriber.connect(connection, true);
+
+        assertTrue(subscriber.offer(update("a", "1")));
+
+        slow[0] = true;
+
+        Thread flusher = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                subscriber.flush();
+            }
+        };
+
+        flusher.start();
+
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        Thread offerer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                subscriber.offer(update("b", "2"));
+            }
+        };
+
+        offerer.start();
+        offerer.join(5000);
+
+        boolean blocked = offerer.isAlive();
+
+        release.countDown();
+        flusher.join();
+
+        assertFalse(blocked, "Offering an update was blocked by the write to the client.");
+
+        slow[0] = false;
+
+        subscriber.flush();
+
+        assertEquals(buffer.toString(), "retry: 1000\n\n" +
+                "data: {\"zone\":\"a\",\"content\":\"1\"}\n\n" +
+                "data: {\"zone\":\"b\",\"content\":\"2\"}\n\n");
+    }
+}
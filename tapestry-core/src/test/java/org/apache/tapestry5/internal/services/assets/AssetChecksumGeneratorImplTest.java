@@ -0,0 +1,73 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.ioc.test.IOCTestCase;
+import org.apache.tapestry5.services.assets.*;
+import org.easymock.EasyMock;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+public class AssetChecksumGeneratorImplTest extends IOCTestCase
+{
+    private AssetChecksumGenerator newGenerator(String algorithm)
+    {
+        ResourceChangeTracker tracker = newMock(ResourceChangeTracker.class);
+
+        tracker.clearOnInvalidation(EasyMock.<Map<?, ?>>anyObject());
+
+        replay();
+
+        return new AssetChecksumGeneratorImpl(null, tracker, algorithm);
+    }
+
+    private static StreamableResource streamable(String content) throws IOException
+    {
+        return new StreamableResourceImpl("test", "text/plain", CompressionStatus.COMPRESSABLE, 1000L,
+                new BytestreamCache(content.getBytes("UTF-8")), null);
+    }
+
+    @Test
+    public void adler32_checksum() throws IOException
+    {
+        assertEquals(newGenerator("Adler32").generateChecksum(streamable("abc")), "24d0127");
+
+        verify();
+    }
+
+    @Test
+    public void message_digest_checksum() throws IOException
+    {
+        assertEquals(newGenerator("SHA-256").generateChecksum(streamable("abc")),
+                "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+
+        verify();
+    }
+
+    @Test
+    public void unknown_algorithm() throws IOException
+    {
+        try
+        {
+            newGenerator("NOPE-1");
+            unreachable();
+        } catch (IllegalArgumentException ex)
+        {
+            assertEquals(ex.getMessage(), "Asset checksum algorithm 'NOPE-1' (symbol tapestry.asset-checksum-algorithm) is not available.");
+        }
+    }
+}
@@ -0,0 +1,82 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.ioc.test.TestBase;
+import org.apache.tapestry5.services.assets.AssetMetrics;
+import org.apache.tapestry5.services.assets.AssetStatistics;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+public class AssetMetricsImplTest extends TestBase
+{
+    @Test
+    public void requests_and_cache_accesses_are_counted_per_name() throws Exception
+    {
+        AssetMetrics metrics = new AssetMetricsImpl();
+
+        metrics.recordCacheAccess("stack:core", false);
+        metrics.recordCacheAccess("classpath:app.js", false);
+        metrics.recordCacheAccess("classpath:app.js", true);
+        metrics.recordCacheAccess("classpath:app.js", true);
+        metrics.recordCacheAccess("classpath:app.js", true);
+
+        metrics.recordRequest("classpath:app.js", false, "gzip", 100, 3000000);
+        metrics.recordRequest("classpath:app.js", false, null, 400, 1000000);
+        metrics.recordRequest("classpath:app.js", true, null, 0, 2000000);
+        metrics.recordRequest("stack:core", false, "gzip", 1000, 5000000);
+
+        List<AssetStatistics> statistics = metrics.getStatistics();
+
+        assertEquals(statistics.size(), 2);
+
+        AssetStatistics app = statistics.get(0);
+
+        assertEquals(app.getName(), "classpath:app.js");
+        assertEquals(app.getRequests(), 3);
+        assertEquals(app.getNotModified(), 1);
+        assertEquals(app.getCacheHits(), 3);
+        assertEquals(app.getCacheMisses(), 1);
+        assertEquals(app.getCacheHitRate(), 75);
+        assertEquals(app.getCompressedBytes(), 100);
+        assertEquals(app.getUncompressedBytes(), 400);
+        assertEquals(app.getTotalTime(), 6);
+        assertEquals(app.getAverageTime(), 2000);
+
+        assertEquals(statistics.get(1).getName(), "stack:core");
+
+        AssetStatistics totals = metrics.getTotals();
+
+        assertEquals(totals.getRequests(), 4);
+        assertEquals(totals.getCacheHitRate(), 60);
+        assertEquals(totals.getCompressedBytes(), 1100);
+        assertEquals(totals.getTotalTime(), 11);
+    }
+
+    @Test
+    public void reset_discards_all_metrics()
+    {
+        AssetMetrics metrics = new AssetMetricsImpl();
+
+        metrics.recordRequest("stack:core", false, "gzip", 1000, 5000000);
+
+        metrics.reset();
+
+        assertTrue(metrics.getStatistics().isEmpty());
+        assertEquals(metrics.getTotals().getRequests(), 0);
+        assertEquals(metrics.getTotals().getCacheHitRate(), 0);
+    }
+}
@@ -0,0 +1,120 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.test.TestBase;
+import org.apache.tapestry5.services.assets.*;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+public class CompressedStreamableResourceTest extends TestBase
+{
+    private static final String CONTENT = "var compressMe = 'compress me, compress me, compress me';";
+
+    /**
+     * Content-based, so that a checksum computed from the compressed content would differ.
+     */
+    private final AssetChecksumGenerator checksumGenerator = new AssetChecksumGenerator()
+    {
+        public String generateChecksum(Resource resource)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public String generateChecksum(StreamableResource resource) throws IOException
+        {
+            return Integer.toHexString(Arrays.hashCode(read(resource)));
+        }
+    };
+
+    private StreamableResource uncompressed() throws IOException
+    {
+        return new StreamableResourceImpl("test", "text/javascript", CompressionStatus.COMPRESSABLE, 1000L,
+                new BytestreamCache(CONTENT.getBytes("UTF-8")), checksumGenerator);
+    }
+
+    private static byte[] read(StreamableResource resource) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        resource.streamTo(bos);
+
+        return bos.toByteArray();
+    }
+
+    @Test
+    public void preferred_encoding_is_gzip() throws IOException
+    {
+        StreamableResource base = uncompressed();
+
+        CompressedStreamableResource compressed = new CompressedStreamableResource(base, checksumGenerator);
+
+        assertEquals(compressed.getContentEncodings(), Arrays.asList("gzip"));
+        assertEquals(compressed.getCompression(), CompressionStatus.COMPRESSED);
+        assertSame(compressed.forContentEncoding("gzip"), compressed);
+        assertSame(compressed.forContentEncoding(null), base);
+
+        GZIPInputStream is = new GZIPInputStream(new ByteArrayInputStream(read(compressed)));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        int b;
+        while ((b = is.read()) >= 0)
+        {
+            bos.write(b);
+        }
+
+        assertEquals(bos.toString("UTF-8"), CONTENT);
+    }
+
+    @Test
+    public void checksum_is_independent_of_encoding() throws IOException
+    {
+        StreamableResource base = uncompressed();
+
+        CompressedStreamableResource compressed = new CompressedStreamableResource(base,
+                Arrays.<ContentEncoder>asList(new UpperCaseEncoder(), new GZipContentEncoder()), checksumGenerator);
+
+        StreamableResource gzipped = compressed.forContentEncoding("gzip");
+
+        assertEquals(compressed.getChecksum(), base.getChecksum());
+        assertEquals(gzipped.getChecksum(), base.getChecksum());
+
+        assertEquals(new String(read(compressed), "UTF-8"), CONTENT.toUpperCase());
+
+        // Computed once, then cached.
+        assertSame(compressed.forContentEncoding("gzip"), gzipped);
+    }
+
+    @Test
+    public void unknown_encoding_is_an_error() throws IOException
+    {
+        CompressedStreamableResource compressed = new CompressedStreamableResource(uncompressed(), checksumGenerator);
+
+        try
+        {
+            compressed.forContentEncoding("br");
+            unreachable();
+        } catch (IllegalArgumentException ex)
+        {
+            assertMessageContains(ex, "Content encoding 'br' is not available", "available encodings: [gzip]");
+        }
+    }
+}
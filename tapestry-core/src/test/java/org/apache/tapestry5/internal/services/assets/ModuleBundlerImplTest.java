@@ -0,0 +1,296 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.ioc.Invokable;
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.internal.util.ClasspathResource;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.services.ParallelExecutor;
+import org.apache.tapestry5.ioc.test.IOCTestCase;
+import org.apache.tapestry5.json.JSONArray;
+import org.apache.tapestry5.json.JSONObject;
+import org.apache.tapestry5.services.assets.*;
+import org.apache.tapestry5.services.javascript.JavaScriptStack;
+import org.apache.tapestry5.services.javascript.JavaScriptStackSource;
+import org.apache.tapestry5.services.javascript.ModuleBundle;
+import org.apache.tapestry5.services.javascript.ModuleManager;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Future;
+
+public class ModuleBundlerImplTest extends IOCTestCase
+{
+    private final Logger logger = LoggerFactory.getLogger(ModuleBundlerImplTest.class);
+
+    /**
+     * Queues work, so that the test controls when bundles are built.
+     */
+    private static class QueuedExecutor implements ParallelExecutor
+    {
+        final List<Invokable> queued = CollectionFactory.newList();
+
+        public <T> Future<T> invoke(Invokable<T> invocable)
+        {
+            queued.add(invocable);
+
+            return null;
+        }
+
+        public <T> T invoke(Class<T> proxyType, Invokable<T> invocable)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        void runQueued()
+        {
+            while (!queued.isEmpty())
+            {
+                queued.remove(0).invoke();
+            }
+        }
+    }
+
+    /**
+     * Module content, keyed on module name; may be changed by tests.
+     */
+    private final Map<String, String> modules = CollectionFactory.newMap();
+
+    private final Capture<Runnable> invalidation = new Capture<Runnable>();
+
+    private final AssetChecksumGenerator checksumGenerator = new AssetChecksumGenerator()
+    {
+        public String generateChecksum(Resource resource) throws IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public String generateChecksum(StreamableResource resource) throws IOException
+        {
+            return Integer.toHexString(read(resource).hashCode());
+        }
+    };
+
+    private static String read(StreamableResource resource) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        resource.streamTo(bos);
+
+        return bos.toString("UTF-8");
+    }
+
+    private void module(ModuleManager manager, StreamableResourceSource source, final String moduleName, String content) throws IOException
+    {
+        Resource resource = new ClasspathResource("META-INF/modules/" + moduleName + ".js");
+
+        modules.put(moduleName, content);
+
+        EasyMock.expect(manager.findResourceForModule(moduleName)).andReturn(resource).anyTimes();
+
+        EasyMock.expect(source.getStreamableResource(EasyMock.eq(resource), EasyMock.eq(StreamableResourceProcessing.FOR_AGGREGATION),
+                EasyMock.<ResourceDependencies>anyObject())).andAnswer(new IAnswer<StreamableResource>()
+        {
+            public StreamableResource answer() throws Throwable
+            {
+                return new StreamableResourceImpl(moduleName, "text/javascript", CompressionStatus.COMPRESSABLE, 1000L,
+                        new BytestreamCache(modules.get(moduleName).getBytes("UTF-8")), checksumGenerator);
+            }
+        }).anyTimes();
+    }
+
+    private static Map<String, ModuleBundle> configuration()
+    {
+        Map<String, ModuleBundle> result = CollectionFactory.newMap();
+
+        result.put("Index", new ModuleBundle("app/a", "t5/core/dom"));
+        result.put("admin", new ModuleBundle("app/b", "app/missing"));
+
+        return result;
+    }
+
+    private ModuleBundler newBundler(ParallelExecutor executor, boolean enabled) throws IOException
+    {
+        ModuleManager manager = newMock(ModuleManager.class);
+        StreamableResourceSource source = newMock(StreamableResourceSource.class);
+        ResourceChangeTracker tracker = newMock(ResourceChangeTracker.class);
+        JavaScriptStackSource stackSource = newMock(JavaScriptStackSource.class);
+        JavaScriptStack stack = newMock(JavaScriptStack.class);
+
+        if (enabled)
+        {
+            tracker.addInvalidationCallback(EasyMock.capture(invalidation));
+        }
+
+        EasyMock.expect(stackSource.getStackNames()).andReturn(Arrays.asList("core")).anyTimes();
+        EasyMock.expect(stackSource.getStack("core")).andReturn(stack).anyTimes();
+        EasyMock.expect(stack.getModules()).andReturn(Arrays.asList("t5/core/dom")).anyTimes();
+
+        module(manager, source, "app/a", "define([\"./shared\", \"app/only-a\", \"require\", \"text!app/a.html\"], function(s) { return s; });");
+        module(manager, source, "app/only-a", "define([], function() { return 1; });");
+        module(manager, source, "app/b", "define(['app/shared', 'jquery'], function(s, $) { return s; });");
+        module(manager, source, "app/shared", "define([\"../app/util\"], function(u) { return u; });");
+        module(manager, source, "app/util", "define(function() { return 2; });");
+        module(manager, source, "jquery", "window.jQuery = {};");
+
+        EasyMock.expect(manager.findResourceForModule("app/missing")).andReturn(null).anyTimes();
+
+        replay();
+
+        return new ModuleBundlerImpl(configuration(), manager, source, tracker, stackSource, checksumGenerator, null,
+                new ContentEncoderSourceImpl(Collections.<ContentEncoder>emptyList()), executor, logger, false, enabled);
+    }
+
+    private static String find(JSONObject manifest, String prefix)
+    {
+        for (String name : manifest.keys())
+        {
+            if (name.startsWith(prefix))
+            {
+                return name;
+            }
+        }
+
+        return null;
+    }
+
+    @Test
+    public void modules_are_partitioned_into_shared_and_contributed_bundles() throws IOException
+    {
+        QueuedExecutor executor = new QueuedExecutor();
+
+        ModuleBundler bundler = newBundler(executor, true);
+
+        executor.runQueued();
+
+        JSONObject manifest = bundler.getManifest();
+
+        assertEquals(manifest.length(), 2);
+
+        String sharedName = find(manifest, "bundle/shared-");
+        String indexName = find(manifest, "bundle/index-");
+
+        // "admin" only has a single module of its own (jquery is not an AMD module), so has no bundle.
+
+        assertEquals(manifest.getJSONArray(sharedName), new JSONArray("app/shared", "app/util"));
+        assertEquals(manifest.getJSONArray(indexName), new JSONArray("app/a", "app/only-a"));
+
+        String content = read(bundler.getBundle(sharedName, true));
+
+        assertTrue(content.contains("define(\"app/shared\",[\"../app/util\"]"));
+        assertTrue(content.contains("define(\"app/util\",function()"));
+
+        assertNull(bundler.getBundle("bundle/shared-0", false));
+
+        verify();
+    }
+
+    @Test
+    public void bundles_are_built_in_the_background() throws IOException
+    {
+        QueuedExecutor executor = new QueuedExecutor();
+
+        ModuleBundler bundler = newBundler(executor, true);
+
+        // Until built, modules are simply loaded individually.
+
+        assertEquals(bundler.getManifest().length(), 0);
+
+        assertEquals(executor.queued.size(), 1);
+
+        executor.runQueued();
+
+        assertEquals(bundler.getManifest().length(), 2);
+
+        verify();
+    }
+
+    @Test
+    public void bundle_names_are_the_same_for_every_server() throws IOException
+    {
+        QueuedExecutor executor = new QueuedExecutor();
+
+        ModuleBundler first = newBundler(executor, true);
+        executor.runQueued();
+
+        verify();
+
+        ModuleBundler second = newBundler(executor, true);
+        executor.runQueued();
+
+        verify();
+
+        assertEquals(second.getManifest(), first.getManifest());
+    }
+
+    @Test
+    public void bundles_are_rebuilt_when_a_module_changes() throws IOException
+    {
+        QueuedExecutor executor = new QueuedExecutor();
+
+        ModuleBundler bundler = newBundler(executor, true);
+
+        executor.runQueued();
+
+        String oldName = find(bundler.getManifest(), "bundle/shared-");
+
+        modules.put("app/util", "define(function() { return 3; });");
+
+        invalidation.getValue().run();
+
+        // A second change while the rebuild is pending doesn't start another build.
+
+        invalidation.getValue().run();
+
+        assertEquals(executor.queued.size(), 1);
+
+        executor.runQueued();
+
+        String newName = find(bundler.getManifest(), "bundle/shared-");
+
+        assertFalse(newName.equals(oldName));
+
+        assertTrue(read(bundler.getBundle(newName, false)).contains("return 3"));
+
+        // Pages rendered before the rebuild may still ask for the old bundle.
+
+        assertTrue(read(bundler.getBundle(oldName, false)).contains("return 2"));
+
+        verify();
+    }
+
+    @Test
+    public void nothing_is_bundled_when_disabled() throws IOException
+    {
+        QueuedExecutor executor = new QueuedExecutor();
+
+        ModuleBundler bundler = newBundler(executor, false);
+
+        assertTrue(executor.queued.isEmpty());
+
+        assertEquals(bundler.getManifest().length(), 0);
+        assertNull(bundler.getBundle("bundle/index-0", false));
+
+        verify();
+    }
+}
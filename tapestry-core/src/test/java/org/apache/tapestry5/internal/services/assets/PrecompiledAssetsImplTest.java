@@ -0,0 +1,239 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.internal.util.ClasspathResource;
+import org.apache.tapestry5.ioc.test.IOCTestCase;
+import org.apache.tapestry5.services.assets.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+public class PrecompiledAssetsImplTest extends IOCTestCase
+{
+    private static final String CONTENT = "var x = 1;";
+
+    private File outputDirectory;
+
+    private Resource manifest;
+
+    @BeforeMethod
+    public void setup() throws IOException
+    {
+        outputDirectory = new File(System.getProperty("java.io.tmpdir"), "precompiled-" + System.nanoTime());
+
+        // Must exist before the class loader is created, or it is treated as a JAR.
+
+        outputDirectory.mkdirs();
+
+        ClassLoader loader = new URLClassLoader(new URL[]{outputDirectory.toURI().toURL()}, null);
+
+        manifest = new ClasspathResource(loader, AssetPrecompiler.ROOT_FOLDER + "/" + AssetPrecompiler.MANIFEST);
+    }
+
+    private StreamableResource streamable(String content, CompressionStatus compression) throws IOException
+    {
+        return new StreamableResourceImpl("test", "text/javascript", compression, 1000L,
+                new BytestreamCache(content.getBytes("UTF-8")), null)
+        {
+            @Override
+            public String getChecksum()
+            {
+                return "abc123";
+            }
+        };
+    }
+
+    private static String read(StreamableResource resource) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        resource.streamTo(bos);
+
+        return bos.toString("UTF-8");
+    }
+
+    @Test
+    public void all_content_encodings_are_written_and_served() throws IOException
+    {
+        List<ContentEncoder> encoders = Arrays.asList(new GZipContentEncoder(), new UpperCaseEncoder());
+
+        StreamableResource uncompressed = streamable(CONTENT, CompressionStatus.COMPRESSABLE);
+
+        PrecompiledAssetWriter writer = new PrecompiledAssetWriter(outputDirectory);
+
+        writer.add(PrecompiledAssetWriter.toStackKey("core", Locale.FRENCH), uncompressed,
+                new CompressedStreamableResource(uncompressed, encoders, null));
+        writer.finish();
+
+        assertTrue(new File(outputDirectory, AssetPrecompiler.ROOT_FOLDER + "/abc123.gzip").isFile());
+        assertTrue(new File(outputDirectory, AssetPrecompiler.ROOT_FOLDER + "/abc123.upper").isFile());
+
+        PrecompiledAssets assets = new PrecompiledAssetsImpl(LoggerFactory.getLogger(PrecompiledAssetsImplTest.class), true, manifest);
+
+        EncodedStreamableResource resource = (EncodedStreamableResource) assets.findStack("core", Locale.FRENCH, true);
+
+        assertEquals(resource.getContentEncodings(), Arrays.asList("gzip", "upper"));
+        assertEquals(resource.getChecksum(), "abc123");
+        assertEquals(read(resource.forContentEncoding("upper")), CONTENT.toUpperCase());
+        assertEquals(read(resource.forContentEncoding(null)), CONTENT);
+    }
+
+    @Test
+    public void written_resources_can_be_found() throws IOException
+    {
+        Resource resource = new ClasspathResource("META-INF/assets/app/foo.coffee");
+
+        PrecompiledAssetWriter writer = new PrecompiledAssetWriter(outputDirectory);
+
+        writer.add(PrecompiledAssetWriter.toKey(resource),
+                streamable(CONTENT, CompressionStatus.COMPRESSABLE),
+                streamable("gzipped", CompressionStatus.COMPRESSED));
+        writer.finish();
+
+        assertTrue(new File(outputDirectory, AssetPrecompiler.ROOT_FOLDER + "/abc123").isFile());
+        assertTrue(new File(outputDirectory, AssetPrecompiler.ROOT_FOLDER + "/abc123.gzip").isFile());
+
+        Logger logger = mockLogger();
+
+        logger.info("Serving 1 precompiled assets from " + manifest + ".");
+
+        replay();
+
+        PrecompiledAssets assets = new PrecompiledAssetsImpl(logger, true, manifest);
+
+        StreamableResource uncompressed = assets.find(resource, false);
+
+        assertEquals(read(uncompressed), CONTENT);
+        assertEquals(uncompressed.getChecksum(), "abc123");
+        assertEquals(uncompressed.getContentType(), "text/javascript");
+        assertEquals(uncompressed.getLastModified(), 1000L);
+        assertEquals(uncompressed.getCompression(), CompressionStatus.NOT_COMPRESSABLE);
+
+        StreamableResource compressed = assets.find(resource, true);
+
+        assertEquals(read(compressed), "gzipped");
+        assertEquals(compressed.getChecksum(), "abc123");
+        assertEquals(compressed.getCompression(), CompressionStatus.COMPRESSED);
+
+        assertSame(assets.find(resource, true), compressed);
+        assertEquals(read(((EncodedStreamableResource) compressed).forContentEncoding("gzip")), "gzipped");
+        assertSame(((EncodedStreamableResource) compressed).forContentEncoding(null), uncompressed);
+
+        assertNull(assets.find(new ClasspathResource("META-INF/assets/app/bar.js"), false));
+
+        verify();
+    }
+
+    @Test
+    public void uncompressed_content_is_used_when_compression_was_not_worthwhile() throws IOException
+    {
+        PrecompiledAssetWriter writer = new PrecompiledAssetWriter(outputDirectory);
+
+        writer.add(PrecompiledAssetWriter.toStackKey("core", Locale.FRENCH),
+                streamable(CONTENT, CompressionStatus.COMPRESSABLE),
+                streamable(CONTENT, CompressionStatus.COMPRESSABLE));
+        writer.finish();
+
+        assertFalse(new File(outputDirectory, AssetPrecompiler.ROOT_FOLDER + "/abc123.gzip").exists());
+
+        PrecompiledAssets assets = new PrecompiledAssetsImpl(LoggerFactory.getLogger(PrecompiledAssetsImplTest.class), true, manifest);
+
+        StreamableResource resource = assets.findStack("core", Locale.FRENCH, true);
+
+        assertEquals(read(resource), CONTENT);
+        assertEquals(resource.getCompression(), CompressionStatus.NOT_COMPRESSABLE);
+
+        assertNull(assets.findStack("core", Locale.GERMAN, true));
+    }
+
+    @Test
+    public void content_is_not_read_until_needed() throws IOException
+    {
+        Resource resource = new ClasspathResource("META-INF/assets/app/foo.coffee");
+
+        PrecompiledAssetWriter writer = new PrecompiledAssetWriter(outputDirectory);
+
+        writer.add(PrecompiledAssetWriter.toKey(resource), streamable(CONTENT, CompressionStatus.COMPRESSABLE), null);
+        writer.finish();
+
+        PrecompiledAssets assets = new PrecompiledAssetsImpl(LoggerFactory.getLogger(PrecompiledAssetsImplTest.class), true, manifest);
+
+        StreamableResource found = assets.find(resource, false);
+
+        assertTrue(new File(outputDirectory, AssetPrecompiler.ROOT_FOLDER + "/abc123").delete());
+
+        // The checksum, needed to build the asset's URL, comes from the manifest.
+
+        assertEquals(found.getChecksum(), "abc123");
+        assertEquals(found.getContentType(), "text/javascript");
+
+        try
+        {
+            read(found);
+            unreachable();
+        } catch (IOException ex)
+        {
+            // Expected, the content was deleted before it was first read.
+        }
+    }
+
+    @Test
+    public void nothing_is_found_when_disabled() throws IOException
+    {
+        PrecompiledAssetWriter writer = new PrecompiledAssetWriter(outputDirectory);
+
+        writer.add(PrecompiledAssetWriter.toStackKey("core", Locale.FRENCH),
+                streamable(CONTENT, CompressionStatus.COMPRESSABLE), null);
+        writer.finish();
+
+        PrecompiledAssets assets = new PrecompiledAssetsImpl(LoggerFactory.getLogger(PrecompiledAssetsImplTest.class), false, manifest);
+
+        assertNull(assets.findStack("core", Locale.FRENCH, false));
+    }
+
+    @Test
+    public void interceptor_does_not_intercept_resources_for_aggregation() throws IOException
+    {
+        StreamableResourceSource delegate = newMock(StreamableResourceSource.class);
+        PrecompiledAssets assets = newMock(PrecompiledAssets.class);
+        Resource resource = mockResource();
+        StreamableResource precompiled = newMock(StreamableResource.class);
+        StreamableResource aggregated = newMock(StreamableResource.class);
+
+        expect(assets.find(resource, true)).andReturn(precompiled);
+        expect(delegate.getStreamableResource(resource, StreamableResourceProcessing.FOR_AGGREGATION, null)).andReturn(aggregated);
+
+        replay();
+
+        StreamableResourceSource interceptor = new SRSPrecompiledInterceptor(delegate, assets);
+
+        assertSame(interceptor.getStreamableResource(resource, StreamableResourceProcessing.COMPRESSION_ENABLED, null), precompiled);
+        assertSame(interceptor.getStreamableResource(resource, StreamableResourceProcessing.FOR_AGGREGATION, null), aggregated);
+
+        verify();
+    }
+}
@@ -0,0 +1,127 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.internal.TapestryInternalUtils;
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.services.RegistryShutdownHub;
+import org.apache.tapestry5.services.assets.*;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class SRSCachingInterceptorTest extends InternalBaseTestCase
+{
+    private static final String CONTENT = "body { background: white url(\"images/back.png\"); }\n";
+
+    private static StreamableResourceImpl resource(int spoolThreshold) throws IOException
+    {
+        SpoolingOutputStream stream = new SpoolingOutputStream(spoolThreshold);
+
+        stream.write(CONTENT.getBytes("UTF-8"));
+
+        return new StreamableResourceImpl("test.css", "text/css", CompressionStatus.COMPRESSABLE, 0L,
+                stream.toBytestreamCache(), null);
+    }
+
+    private static void assertReleased(StreamableResource resource) throws IOException
+    {
+        try
+        {
+            resource.openStream();
+            unreachable();
+        } catch (FileNotFoundException ex)
+        {
+            // Expected
+        }
+    }
+
+    private void cache_and_release(boolean shutdown, boolean streaming) throws IOException
+    {
+        StreamableResourceSource delegate = newMock(StreamableResourceSource.class);
+        ResourceChangeTracker tracker = newMock(ResourceChangeTracker.class);
+        RegistryShutdownHub shutdownHub = newMock(RegistryShutdownHub.class);
+        AssetMetrics metrics = newMock(AssetMetrics.class);
+        ResourceDependencies dependencies = newMock(ResourceDependencies.class);
+        Resource baseResource = mockResource();
+
+        StreamableResourceImpl spooled = resource(10);
+
+        Capture<Runnable> invalidation = new Capture<Runnable>();
+        Capture<Runnable> shutdownListener = new Capture<Runnable>();
+
+        tracker.addInvalidationCallback(EasyMock.capture(invalidation));
+        shutdownHub.addRegistryShutdownListener(EasyMock.capture(shutdownListener));
+
+        metrics.recordCacheAccess(EasyMock.<String>anyObject(), EasyMock.eq(false));
+        metrics.recordCacheAccess(EasyMock.<String>anyObject(), EasyMock.eq(true));
+
+        expect(delegate.getStreamableResource(baseResource, StreamableResourceProcessing.COMPRESSION_DISABLED, dependencies)).andReturn(spooled);
+
+        dependencies.addDependency(baseResource);
+
+        replay();
+
+        SRSCachingInterceptor interceptor = new SRSCachingInterceptor(delegate, tracker, metrics, shutdownHub);
+
+        assertSame(interceptor.getStreamableResource(baseResource, StreamableResourceProcessing.COMPRESSION_DISABLED, dependencies), spooled);
+        assertSame(interceptor.getStreamableResource(baseResource, StreamableResourceProcessing.COMPRESSION_DISABLED, dependencies), spooled);
+
+        InputStream is = streaming ? spooled.openStream() : null;
+
+        (shutdown ? shutdownListener : invalidation).getValue().run();
+
+        assertReleased(spooled);
+
+        if (streaming)
+        {
+            // A request already streaming the content is allowed to finish
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+            TapestryInternalUtils.copy(is, bos);
+
+            is.close();
+
+            assertEquals(bos.toString("UTF-8"), CONTENT);
+        }
+
+        verify();
+    }
+
+    @Test
+    public void spooled_resource_is_released_on_invalidation() throws IOException
+    {
+        cache_and_release(false, false);
+    }
+
+    @Test
+    public void spooled_resource_is_released_on_shutdown() throws IOException
+    {
+        cache_and_release(true, false);
+    }
+
+    @Test
+    public void open_stream_survives_invalidation() throws IOException
+    {
+        cache_and_release(false, true);
+    }
+}
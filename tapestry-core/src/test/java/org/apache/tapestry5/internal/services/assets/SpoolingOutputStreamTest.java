@@ -0,0 +1,183 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.internal.TapestryInternalUtils;
+import org.apache.tapestry5.ioc.test.TestBase;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class SpoolingOutputStreamTest extends TestBase
+{
+    private static final String CONTENT = "body { background: white url(\"images/back.png\"); }\n";
+
+    private static String read(BytestreamCache cache) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        cache.writeTo(bos);
+
+        return bos.toString("UTF-8");
+    }
+
+    private static String readStream(BytestreamCache cache) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        InputStream is = cache.openStream();
+
+        TapestryInternalUtils.copy(is, bos);
+
+        is.close();
+
+        return bos.toString("UTF-8");
+    }
+
+    @Test
+    public void content_below_threshold_is_kept_in_memory() throws IOException
+    {
+        SpoolingOutputStream stream = new SpoolingOutputStream(1000);
+
+        stream.write(CONTENT.getBytes("UTF-8"));
+
+        BytestreamCache cache = stream.toBytestreamCache();
+
+        assertFalse(cache.isSpooled());
+        assertEquals(cache.size(), CONTENT.length());
+        assertEquals(read(cache), CONTENT);
+    }
+
+    @Test
+    public void content_beyond_threshold_is_spooled_to_a_file() throws IOException
+    {
+        SpoolingOutputStream stream = new SpoolingOutputStream(100);
+
+        StringBuilder expected = new StringBuilder();
+
+        for (int i = 0; i < 10; i++)
+        {
+            stream.write(CONTENT.getBytes("UTF-8"));
+            stream.write('/');
+
+            expected.append(CONTENT).append('/');
+        }
+
+        BytestreamCache cache = stream.toBytestreamCache();
+
+        assertTrue(cache.isSpooled());
+        assertEquals(cache.size(), expected.length());
+        assertEquals(read(cache), expected.toString());
+        assertEquals(readStream(cache), expected.toString());
+    }
+
+    @Test
+    public void zero_threshold_never_spools() throws IOException
+    {
+        SpoolingOutputStream stream = new SpoolingOutputStream(0);
+
+        for (int i = 0; i < 100; i++)
+        {
+            stream.write(CONTENT.getBytes("UTF-8"));
+        }
+
+        BytestreamCache cache = stream.toBytestreamCache();
+
+        assertFalse(cache.isSpooled());
+        assertEquals(cache.size(), 100 * CONTENT.length());
+    }
+
+    @Test
+    public void delete_removes_spooled_file() throws IOException
+    {
+        SpoolingOutputStream stream = new SpoolingOutputStream(10);
+
+        stream.write(CONTENT.getBytes("UTF-8"));
+
+        BytestreamCache cache = stream.toBytestreamCache();
+
+        assertTrue(cache.isSpooled());
+
+        cache.delete();
+
+        try
+        {
+            cache.openStream();
+            unreachable();
+        } catch (FileNotFoundException ex)
+        {
+            // Expected
+        }
+    }
+
+    @Test
+    public void stream_opened_before_delete_may_be_read_to_the_end() throws IOException
+    {
+        SpoolingOutputStream stream = new SpoolingOutputStream(10);
+
+        stream.write(CONTENT.getBytes("UTF-8"));
+
+        BytestreamCache cache = stream.toBytestreamCache();
+
+        InputStream is = cache.openStream();
+
+        cache.delete();
+
+        try
+        {
+            cache.openStream();
+            unreachable();
+        } catch (FileNotFoundException ex)
+        {
+            // Expected
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        try
+        {
+            TapestryInternalUtils.copy(is, bos);
+        } finally
+        {
+            is.close();
+        }
+
+        assertEquals(bos.toString("UTF-8"), CONTENT);
+
+        // Closing twice does not release the file a second time
+
+        is.close();
+        cache.delete();
+    }
+
+    @Test
+    public void closed_stream_may_not_be_written() throws IOException
+    {
+        SpoolingOutputStream stream = new SpoolingOutputStream(100);
+
+        stream.close();
+
+        try
+        {
+            stream.write('x');
+            unreachable();
+        } catch (IOException ex)
+        {
+            assertEquals(ex.getMessage(), "Stream has been closed.");
+        }
+    }
+}
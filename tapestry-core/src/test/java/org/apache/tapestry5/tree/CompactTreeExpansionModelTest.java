@@ -0,0 +1,142 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.tree;
+
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.test.TapestryTestCase;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+
+public class CompactTreeExpansionModelTest extends TapestryTestCase
+{
+    private TreeNode<Object> node(String id)
+    {
+        TreeNode<Object> node = newMock(TreeNode.class);
+
+        expect(node.getId()).andReturn(id).anyTimes();
+
+        return node;
+    }
+
+    @Test
+    public void only_canonical_numbers_are_stored_as_numbers()
+    {
+        assertEquals(CompactTreeExpansionModel.toNumber("0"), 0);
+        assertEquals(CompactTreeExpansionModel.toNumber("4711"), 4711);
+        assertEquals(CompactTreeExpansionModel.toNumber("2147483647"), Integer.MAX_VALUE);
+
+        assertEquals(CompactTreeExpansionModel.toNumber(""), -1);
+        assertEquals(CompactTreeExpansionModel.toNumber("007"), -1);
+        assertEquals(CompactTreeExpansionModel.toNumber("-1"), -1);
+        assertEquals(CompactTreeExpansionModel.toNumber("abc"), -1);
+        assertEquals(CompactTreeExpansionModel.toNumber("2147483648"), -1);
+        assertEquals(CompactTreeExpansionModel.toNumber("12345678901"), -1);
+    }
+
+    /**
+     * Large, sparse ids take no more space than small ones.
+     */
+    @Test
+    public void sparse_numeric_ids() throws Exception
+    {
+        List<TreeNode<Object>> nodes = CollectionFactory.newList();
+
+        for (int i = 0; i < 100; i++)
+        {
+            // Descending, so that each is inserted at the front.
+
+            nodes.add(node(Integer.toString(2000000000 - i * 1000003)));
+        }
+
+        TreeNode<Object> missing = node("1999999999");
+
+        replay();
+
+        CompactTreeExpansionModel<Object> model = new CompactTreeExpansionModel<Object>();
+
+        for (TreeNode<Object> node : nodes)
+        {
+            model.markExpanded(node);
+        }
+
+        for (TreeNode<Object> node : nodes)
+        {
+            assertTrue(model.isExpanded(node));
+        }
+
+        assertFalse(model.isExpanded(missing));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream stream = new ObjectOutputStream(bytes);
+
+        stream.writeObject(model);
+        stream.close();
+
+        assertTrue(bytes.size() < 2000, "Serialized size was " + bytes.size() + " bytes.");
+
+        for (int i = 0; i < 100; i += 2)
+        {
+            model.markCollapsed(nodes.get(i));
+        }
+
+        for (int i = 0; i < 100; i++)
+        {
+            assertEquals(model.isExpanded(nodes.get(i)), i % 2 == 1);
+        }
+
+        verify();
+    }
+
+    @Test
+    public void expansion_of_numeric_and_string_ids()
+    {
+        TreeNode<Object> numeric = node("42");
+        TreeNode<Object> padded = node("042");
+        TreeNode<Object> named = node("fred");
+
+        replay();
+
+        CompactTreeExpansionModel<Object> model = new CompactTreeExpansionModel<Object>();
+
+        assertFalse(model.isExpanded(numeric));
+
+        model.markExpanded(numeric);
+        model.markExpanded(named);
+
+        assertTrue(model.isExpanded(numeric));
+        assertFalse(model.isExpanded(padded));
+        assertTrue(model.isExpanded(named));
+        assertTrue(model.checkAndResetDirtyMarker());
+
+        model.markExpanded(numeric);
+
+        assertFalse(model.checkAndResetDirtyMarker());
+
+        model.markCollapsed(numeric);
+
+        assertFalse(model.isExpanded(numeric));
+        assertTrue(model.isExpanded(named));
+
+        model.clear();
+
+        assertFalse(model.isExpanded(named));
+        assertTrue(model.checkAndResetDirtyMarker());
+
+        verify();
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright 2007, 2008 The Apache Software Foundation
+// Copyright 2007, 2008, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,6 +14,7 @@
 
 package org.apache.tapestry5.hibernate;
 
+import org.apache.tapestry5.ioc.Invokable;
 import org.hibernate.Session;
 
 /**
@@ -32,7 +33,7 @@ public interface HibernateSessionManager
 {
     /**
      * Gets the active session for this request, creating it as necessary. When the session is first created, a
-     * transaction is started.
+     * transaction is started (unless the session is {@linkplain #makeReadOnly() read-only}).
      *
      * @return the request's session
      * @see HibernateSessionSource
@@ -46,7 +47,50 @@ public interface HibernateSessionManager
     void commit();
 
     /**
-     * Aborts the current transaction, and starts a new transaction to replace it.
+     * Aborts the current transaction, and starts a new transaction to replace it. This cancels any
+     * {@link #commitAtEndOfRequest()}.
      */
     void abort();
+
+    /**
+     * Marks the current transaction to be committed at the end of the request (rather than rolled back). Changes made
+     * until then, including by other code that invokes this method, are committed together.
+     *
+     * @since 5.4
+     */
+    void commitAtEndOfRequest();
+
+    /**
+     * Commits the transaction now if it has been {@linkplain #commitAtEndOfRequest() marked for commit}, then starts a
+     * new transaction to replace it; otherwise does nothing. If the commit fails, the transaction is aborted and the
+     * exception is rethrown. Invoked in a web application just before the response is sent.
+     *
+     * @since 5.4
+     */
+    void commitPendingTransaction();
+
+    /**
+     * Switches the remainder of the request to read-only access. If the session has not yet been created, it will be
+     * {@linkplain HibernateSessionSource#createReadOnly() a read-only session} (possibly connected to a read-only
+     * replica of the database) and no transaction is started, so no database connection is obtained until the first
+     * query. Otherwise, the existing session is marked read-only and is no longer flushed. Either way, {@link #commit()}
+     * and {@link #abort()} no longer write any changes.
+     *
+     * @since 5.4
+     * @see #readOnly(Invokable)
+     */
+    void makeReadOnly();
+
+    /**
+     * Performs an operation with the session read-only, then restores the session's previous flush mode and default
+     * read-only flag (even if the operation throws an exception), so that the rest of the request may still write
+     * changes. Unlike {@link #makeReadOnly()}, this uses the request's ordinary session, creating it if necessary.
+     * Entities loaded by the operation remain read-only. Does nothing extra if the request is already read-only.
+     *
+     * @param operation
+     *         the operation to perform
+     * @return the operation's result
+     * @since 5.4
+     */
+    <T> T readOnly(Invokable<T> operation);
 }
@@ -1,4 +1,4 @@
-// Copyright 2007, 2008 The Apache Software Foundation
+// Copyright 2007, 2008, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -34,6 +34,16 @@ public interface HibernateSessionSource
      */
     Session create();
 
+    /**
+     * Creates a new read-only session: its entities are {@linkplain Session#setDefaultReadOnly(boolean) read-only} and
+     * it is never flushed automatically. When a {@linkplain HibernateSymbols#READ_ONLY_CONFIGURATION read-only
+     * configuration} is provided, the session is created from a second SessionFactory (typically, connected to a
+     * read-only replica of the database); otherwise, from the {@link #getSessionFactory() SessionFactory}.
+     *
+     * @since 5.4
+     */
+    Session createReadOnly();
+
     /**
      * Returns the SessionFactory from which Hibernate sessions are created.
      */
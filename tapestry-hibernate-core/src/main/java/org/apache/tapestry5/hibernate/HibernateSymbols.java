@@ -1,4 +1,4 @@
-// Copyright 2009 The Apache Software Foundation
+// Copyright 2009, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -45,4 +45,46 @@ public class HibernateSymbols
      * @since 5.2.0.0
      */
     public static final String ENTITY_SESSION_STATE_PERSISTENCE_STRATEGY_ENABLED = "tapestry.hibernate.entity-session-state-persistence-strategy-enabled";
+
+    /**
+     * The name of the Hibernate {@link org.hibernate.cache.spi.RegionFactory} implementation used for the
+     * second-level and query caches (for example, <code>org.hibernate.cache.ehcache.EhCacheRegionFactory</code>, from
+     * the hibernate-ehcache library). When set (here, or in <code>hibernate.cfg.xml</code>), both caches are enabled,
+     * and entities marked with {@link org.apache.tapestry5.hibernate.annotations.ReadMostly} are cached. Defaults to
+     * blank, meaning no caching.
+     *
+     * @since 5.4
+     */
+    public static final String CACHE_REGION_FACTORY = "tapestry.hibernate.cache-region-factory";
+
+    /**
+     * If "true", then Hibernate collects statistics (including second-level and query cache hits and misses). In a web
+     * application that also includes tapestry-jmx, these are exposed via JMX using Hibernate's
+     * {@link org.hibernate.jmx.StatisticsServiceMBean}, under a name unique to the application. Defaults to "false".
+     *
+     * @since 5.4
+     */
+    public static final String CACHE_STATISTICS = "tapestry.hibernate.cache-statistics";
+
+    /**
+     * The classpath resource, a properties file, of Hibernate settings used to create a second, read-only,
+     * {@link org.hibernate.SessionFactory} (for example, with a <code>hibernate.connection.url</code> or
+     * <code>hibernate.connection.datasource</code> for a read-only replica of the database). The settings override the
+     * settings of the main configuration; the mappings are the same. Defaults to blank, meaning that read-only sessions
+     * come from the main SessionFactory.
+     *
+     * @see org.apache.tapestry5.hibernate.HibernateSessionSource#createReadOnly()
+     * @since 5.4
+     */
+    public static final String READ_ONLY_CONFIGURATION = "tapestry.hibernate.read-only-configuration";
+
+    /**
+     * Meta-data key used to mark a page as read-only: when rendered, the page uses a
+     * {@linkplain org.apache.tapestry5.hibernate.HibernateSessionManager#makeReadOnly() read-only session}. Usually set
+     * via the {@link org.apache.tapestry5.hibernate.annotations.ReadOnly} annotation; this symbol is the default value,
+     * "false".
+     *
+     * @since 5.4
+     */
+    public static final String READ_ONLY_PAGE = "tapestry.hibernate.read-only-page";
 }
@@ -1,4 +1,4 @@
-// Copyright 2008, 2009 The Apache Software Foundation
+// Copyright 2008, 2009, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,8 +14,10 @@
 
 package org.apache.tapestry5.hibernate.annotations;
 
+import org.apache.tapestry5.hibernate.CommitMode;
 import org.apache.tapestry5.ioc.annotations.UseWith;
 import org.apache.tapestry5.ioc.annotations.AnnotationUseContext;
+import org.hibernate.FlushMode;
 
 import java.lang.annotation.Documented;
 import static java.lang.annotation.ElementType.METHOD;
@@ -39,5 +41,22 @@ import static org.apache.tapestry5.ioc.annotations.AnnotationUseContext.*;
 @UseWith({COMPONENT, MIXIN, PAGE})
 public @interface CommitAfter
 {
+    /**
+     * When the transaction is committed; by default, immediately after the method returns.
+     *
+     * @since 5.4
+     */
+    CommitMode mode() default CommitMode.IMMEDIATE;
 
+    /**
+     * The flush mode of the session while the method (and the commit) executes. For example,
+     * {@link FlushMode#COMMIT} avoids flushing before each query made by a method that changes many entities, so
+     * that the changes are written together (in JDBC batches, when <code>hibernate.jdbc.batch_size</code> is
+     * configured). The default, {@link FlushMode#AUTO}, leaves the flush mode of the session unchanged.
+     * {@link FlushMode#MANUAL} (and {@link FlushMode#NEVER}) are not allowed, as the commit would not flush the
+     * changes made by the method.
+     *
+     * @since 5.4
+     */
+    FlushMode flushMode() default FlushMode.AUTO;
 }
@@ -0,0 +1,42 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.hibernate.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Marks an entity class, found in one of the {@linkplain org.apache.tapestry5.hibernate.HibernateEntityPackageManager
+ * entity packages}, as read far more often than it is changed. When the second-level cache is enabled (see
+ * {@link org.apache.tapestry5.hibernate.HibernateSymbols#CACHE_REGION_FACTORY}), such entities are cached using the
+ * "nonstrict-read-write" concurrency strategy; entities loaded by id (including those restored by Tapestry from
+ * persistent fields, session state and client values) are then usually found in the cache, rather than the database.
+ *
+ * @since 5.4
+ */
+@Target(TYPE)
+@Retention(RUNTIME)
+@Documented
+public @interface ReadMostly
+{
+    /**
+     * The name of the cache region for the entity; by default, the entity's class name.
+     */
+    String region() default "";
+}
@@ -0,0 +1,51 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.hibernate.annotations;
+
+import org.apache.tapestry5.ioc.annotations.UseWith;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import static org.apache.tapestry5.ioc.annotations.AnnotationUseContext.*;
+
+/**
+ * Marks a page, or a method of a component (typically, an event handler method), as only reading from the database.
+ * On a page class, requests that render the page (but not component event requests)
+ * {@linkplain org.apache.tapestry5.hibernate.HibernateSessionManager#makeReadOnly() switch to a read-only session}:
+ * it is created from the read-only SessionFactory, when one is
+ * {@linkplain org.apache.tapestry5.hibernate.HibernateSymbols#READ_ONLY_CONFIGURATION configured}, and no transaction
+ * is started.
+ * <p/>
+ * On a method, the request's session is
+ * {@linkplain org.apache.tapestry5.hibernate.HibernateSessionManager#readOnly(org.apache.tapestry5.ioc.Invokable)
+ * read-only only while the method is invoked}; it stops flushing changes, and its previous flush mode is restored when
+ * the method returns or throws an exception.
+ *
+ * @see org.apache.tapestry5.hibernate.HibernateSymbols#READ_ONLY_PAGE
+ * @since 5.4
+ */
+@Target({TYPE, METHOD})
+@Retention(RUNTIME)
+@Documented
+@UseWith({COMPONENT, MIXIN, PAGE})
+public @interface ReadOnly
+{
+
+}
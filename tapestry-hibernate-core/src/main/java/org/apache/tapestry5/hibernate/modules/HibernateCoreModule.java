@@ -1,4 +1,4 @@
-// Copyright 2008, 2009, 2011 The Apache Software Foundation
+// Copyright 2008, 2009, 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -27,6 +27,7 @@ import org.apache.tapestry5.ioc.annotations.Symbol;
 import org.apache.tapestry5.ioc.services.PerthreadManager;
 import org.apache.tapestry5.ioc.services.PropertyShadowBuilder;
 import org.hibernate.Session;
+import org.slf4j.Logger;
 
 import java.util.Collection;
 
@@ -51,6 +52,9 @@ public class HibernateCoreModule
     {
         configuration.add(HibernateSymbols.DEFAULT_CONFIGURATION, "true");
         configuration.add(HibernateSymbols.EARLY_START_UP, "false");
+        configuration.add(HibernateSymbols.CACHE_REGION_FACTORY, "");
+        configuration.add(HibernateSymbols.CACHE_STATISTICS, "false");
+        configuration.add(HibernateSymbols.READ_ONLY_CONFIGURATION, "");
     }
 
     public static void contributeRegistryStartup(OrderedConfiguration<Runnable> configuration,
@@ -89,9 +93,10 @@ public class HibernateCoreModule
      */
     @Scope(ScopeConstants.PERTHREAD)
     public static HibernateSessionManager buildHibernateSessionManager(HibernateSessionSource sessionSource,
-                                                                       PerthreadManager perthreadManager)
+                                                                       PerthreadManager perthreadManager,
+                                                                       Logger logger)
     {
-        HibernateSessionManagerImpl service = new HibernateSessionManagerImpl(sessionSource);
+        HibernateSessionManagerImpl service = new HibernateSessionManagerImpl(sessionSource, logger);
 
         perthreadManager.addThreadCleanupListener(service);
 
@@ -118,7 +123,8 @@ public class HibernateCoreModule
 
     /**
      * Adds the following configurers: <dl> <dt>Default <dd> performs default hibernate configuration <dt>PackageName
-     * <dd> loads entities by package name</dl>
+     * <dd> loads entities by package name <dt>Cache <dd> enables the second-level and query caches, when configured
+     * (since 5.4)</dl>
      */
     public static void contributeHibernateSessionSource(OrderedConfiguration<HibernateConfigurer> config,
 
@@ -127,5 +133,6 @@ public class HibernateCoreModule
     {
         config.add("Default", defaultHibernateConfigurer);
         config.addInstance("PackageName", PackageNameHibernateConfigurer.class);
+        config.addInstance("Cache", HibernateCacheConfigurer.class, "after:Default");
     }
 }
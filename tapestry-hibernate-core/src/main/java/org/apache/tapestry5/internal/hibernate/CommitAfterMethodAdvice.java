@@ -0,0 +1,121 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.hibernate;
+
+import org.apache.tapestry5.hibernate.CommitMode;
+import org.apache.tapestry5.hibernate.HibernateSessionManager;
+import org.apache.tapestry5.hibernate.annotations.CommitAfter;
+import org.apache.tapestry5.plastic.MethodAdvice;
+import org.apache.tapestry5.plastic.MethodInvocation;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+
+/**
+ * Advice for a method with the {@link CommitAfter} annotation: commits the transaction on success or checked exception,
+ * and aborts it on runtime exception. Applies the {@linkplain CommitAfter#flushMode() flush mode} and
+ * {@linkplain CommitAfter#mode() commit mode} of the annotation.
+ *
+ * @since 5.4
+ */
+public class CommitAfterMethodAdvice implements MethodAdvice
+{
+    private final HibernateSessionManager manager;
+
+    private final boolean atEndOfRequest;
+
+    private final FlushMode flushMode;
+
+    /**
+     * @param manager
+     *         used to commit or abort the transaction
+     * @param annotation
+     *         annotation on the advised method, or null for the defaults
+     * @param methodDescription
+     *         identifies the advised method in exception messages
+     * @throws IllegalArgumentException
+     *         if the annotation's flush mode would never flush the session, so that the commit would silently
+     *         discard the changes made by the method
+     */
+    public CommitAfterMethodAdvice(HibernateSessionManager manager, CommitAfter annotation, String methodDescription)
+    {
+        this.manager = manager;
+
+        atEndOfRequest = annotation != null && annotation.mode() == CommitMode.END_OF_REQUEST;
+        flushMode = annotation == null || annotation.flushMode() == FlushMode.AUTO ? null : annotation.flushMode();
+
+        if (flushMode != null && flushMode.lessThan(FlushMode.COMMIT))
+        {
+            throw new IllegalArgumentException(String.format(
+                    "Method %s is annotated with @CommitAfter(flushMode=%s), but the session is never flushed in that mode, so the changes made by the method would not be committed. Use FlushMode.COMMIT or FlushMode.ALWAYS.",
+                    methodDescription, flushMode.name()));
+        }
+    }
+
+    public void advise(MethodInvocation invocation)
+    {
+        if (flushMode == null)
+        {
+            proceedAndCommit(invocation);
+            return;
+        }
+
+        Session session = manager.getSession();
+        FlushMode previousFlushMode = session.getFlushMode();
+
+        session.setFlushMode(flushMode);
+
+        try
+        {
+            proceedAndCommit(invocation);
+        } finally
+        {
+            session.setFlushMode(previousFlushMode);
+        }
+    }
+
+    private void proceedAndCommit(MethodInvocation invocation)
+    {
+        try
+        {
+            invocation.proceed();
+
+            // For success or checked exception, commit the transaction.
+
+            if (atEndOfRequest)
+            {
+                manager.commitAtEndOfRequest();
+            } else
+            {
+                manager.commit();
+            }
+        } catch (RuntimeException ex)
+        {
+            abort();
+
+            throw ex;
+        }
+    }
+
+    private void abort()
+    {
+        try
+        {
+            manager.abort();
+        } catch (Exception e)
+        {
+            // Ignore.
+        }
+    }
+}
@@ -0,0 +1,107 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.hibernate;
+
+import org.apache.tapestry5.hibernate.HibernateConfigurer;
+import org.apache.tapestry5.hibernate.HibernateEntityPackageManager;
+import org.apache.tapestry5.hibernate.HibernateSymbols;
+import org.apache.tapestry5.hibernate.annotations.ReadMostly;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+import org.apache.tapestry5.ioc.services.ClassNameLocator;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+
+/**
+ * Enables the second-level and query caches when a cache region factory is configured (either via the
+ * {@link HibernateSymbols#CACHE_REGION_FACTORY} symbol, or in <code>hibernate.cfg.xml</code>), and enables caching
+ * of entities marked with {@link ReadMostly}. Optionally, enables the collection of statistics.
+ *
+ * @since 5.4
+ */
+public final class HibernateCacheConfigurer implements HibernateConfigurer
+{
+    private final HibernateEntityPackageManager packageManager;
+
+    private final ClassNameLocator classNameLocator;
+
+    private final String regionFactory;
+
+    private final boolean statistics;
+
+    public HibernateCacheConfigurer(HibernateEntityPackageManager packageManager,
+                                    ClassNameLocator classNameLocator,
+
+                                    @Symbol(HibernateSymbols.CACHE_REGION_FACTORY)
+                                    String regionFactory,
+
+                                    @Symbol(HibernateSymbols.CACHE_STATISTICS)
+                                    boolean statistics)
+    {
+        this.packageManager = packageManager;
+        this.classNameLocator = classNameLocator;
+        this.regionFactory = regionFactory;
+        this.statistics = statistics;
+    }
+
+    public void configure(Configuration configuration)
+    {
+        if (statistics)
+        {
+            configuration.setProperty(AvailableSettings.GENERATE_STATISTICS, "true");
+        }
+
+        if (InternalUtils.isNonBlank(regionFactory))
+        {
+            configuration.setProperty(AvailableSettings.CACHE_REGION_FACTORY, regionFactory);
+        }
+
+        // Without a region factory, Hibernate fails at startup if any entity is to be cached.
+
+        if (InternalUtils.isBlank(configuration.getProperty(AvailableSettings.CACHE_REGION_FACTORY)))
+        {
+            return;
+        }
+
+        configuration.setProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true");
+        configuration.setProperty(AvailableSettings.USE_QUERY_CACHE, "true");
+
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+        for (String packageName : packageManager.getPackageNames())
+        {
+            for (String className : classNameLocator.locateClassNames(packageName))
+            {
+                try
+                {
+                    Class entityClass = contextClassLoader.loadClass(className);
+
+                    ReadMostly annotation = (ReadMostly) entityClass.getAnnotation(ReadMostly.class);
+
+                    if (annotation != null)
+                    {
+                        String region = InternalUtils.isBlank(annotation.region()) ? className : annotation.region();
+
+                        configuration.setCacheConcurrencyStrategy(className, "nonstrict-read-write", region);
+                    }
+                }
+                catch (ClassNotFoundException ex)
+                {
+                    throw new RuntimeException(ex);
+                }
+            }
+        }
+    }
+}
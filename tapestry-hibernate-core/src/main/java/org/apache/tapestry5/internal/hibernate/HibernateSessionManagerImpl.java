@@ -1,4 +1,4 @@
-// Copyright 2007, 2008 The Apache Software Foundation
+// Copyright 2007, 2008, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -16,21 +16,42 @@ package org.apache.tapestry5.internal.hibernate;
 
 import org.apache.tapestry5.hibernate.HibernateSessionManager;
 import org.apache.tapestry5.hibernate.HibernateSessionSource;
+import org.apache.tapestry5.ioc.Invokable;
 import org.apache.tapestry5.ioc.services.ThreadCleanupListener;
+import org.hibernate.FlushMode;
 import org.hibernate.Session;
 import org.hibernate.Transaction;
+import org.slf4j.Logger;
 
 public class HibernateSessionManagerImpl implements HibernateSessionManager, ThreadCleanupListener
 {
-    private final Session session;
+    private final HibernateSessionSource source;
+
+    private final Logger logger;
+
+    private Session session;
 
     private Transaction transaction;
 
-    public HibernateSessionManagerImpl(HibernateSessionSource source)
-    {
-        session = source.create();
+    private boolean readOnly;
+
+    /**
+     * True while a {@link #readOnly(Invokable)} operation is in progress.
+     */
+    private boolean readOnlyOperation;
+
+    private boolean commitAtEndOfRequest;
+
+    // Statistics for the request, logged at debug level at the end of the request:
 
-        startNewTransaction();
+    private int commits, rollbacks;
+
+    private long commitNanos;
+
+    public HibernateSessionManagerImpl(HibernateSessionSource source, Logger logger)
+    {
+        this.source = source;
+        this.logger = logger;
     }
 
     private void startNewTransaction()
@@ -40,30 +61,196 @@ public class HibernateSessionManagerImpl implements HibernateSessionManager, Thr
 
     public void abort()
     {
-        transaction.rollback();
-        startNewTransaction();
+        commitAtEndOfRequest = false;
+
+        if (transaction != null)
+        {
+            rollback();
+            startNewTransaction();
+        }
     }
 
     public void commit()
     {
-        transaction.commit();
-        startNewTransaction();
+        commitAtEndOfRequest = false;
+
+        if (transaction != null)
+        {
+            commitTransaction();
+            startNewTransaction();
+        }
+    }
+
+    public void commitAtEndOfRequest()
+    {
+        commitAtEndOfRequest = true;
+    }
+
+    public void commitPendingTransaction()
+    {
+        if (!commitAtEndOfRequest)
+        {
+            return;
+        }
+
+        try
+        {
+            commit();
+        } catch (RuntimeException ex)
+        {
+            try
+            {
+                abort();
+            } catch (RuntimeException ex2)
+            {
+                // Ignore.
+            }
+
+            throw ex;
+        }
+    }
+
+    private void commitTransaction()
+    {
+        long startNanos = System.nanoTime();
+
+        try
+        {
+            // This is also where the session is flushed.
+
+            transaction.commit();
+        } finally
+        {
+            commits++;
+            commitNanos += System.nanoTime() - startNanos;
+        }
+    }
+
+    private void rollback()
+    {
+        rollbacks++;
+
+        transaction.rollback();
     }
 
     public Session getSession()
     {
+        if (session == null)
+        {
+            if (readOnly)
+            {
+                session = source.createReadOnly();
+            } else
+            {
+                session = source.create();
+
+                startNewTransaction();
+            }
+        }
+
         return session;
     }
 
+    public void makeReadOnly()
+    {
+        if (readOnly)
+        {
+            return;
+        }
+
+        readOnly = true;
+
+        if (session != null)
+        {
+            session.setDefaultReadOnly(true);
+            session.setFlushMode(FlushMode.MANUAL);
+        }
+    }
+
+    public <T> T readOnly(Invokable<T> operation)
+    {
+        if (readOnly || readOnlyOperation)
+        {
+            return operation.invoke();
+        }
+
+        Session session = getSession();
+
+        FlushMode flushMode = session.getFlushMode();
+        boolean defaultReadOnly = session.isDefaultReadOnly();
+
+        session.setDefaultReadOnly(true);
+        session.setFlushMode(FlushMode.MANUAL);
+
+        readOnlyOperation = true;
+
+        try
+        {
+            return operation.invoke();
+        } finally
+        {
+            readOnlyOperation = false;
+
+            // Unless the operation made the rest of the request read-only:
+
+            if (!readOnly)
+            {
+                session.setFlushMode(flushMode);
+                session.setDefaultReadOnly(defaultReadOnly);
+            }
+        }
+    }
+
     /**
-     * Rollsback the transaction at the end of the request, then closes the session. This means that any uncommitted
-     * changes are lost; code should inject the HSM and invoke {@link #commit()} after making any changes, if they
-     * should persist.
+     * Rollsback the transaction at the end of the request (unless {@linkplain #commitAtEndOfRequest() marked for
+     * commit} and not yet {@linkplain #commitPendingTransaction() committed}), then closes the session. This means that any uncommitted changes are lost; code should inject the HSM
+     * and invoke {@link #commit()} after making any changes, if they should persist.
      */
     public void threadDidCleanup()
     {
-        transaction.rollback();
+        if (session == null)
+        {
+            return;
+        }
+
+        if (transaction != null)
+        {
+            endTransaction();
+        }
 
         session.close();
+
+        if (logger.isDebugEnabled() && commits + rollbacks > 0)
+        {
+            logger.debug(String.format("Request completed %,d commits (%,.2f ms, including flushes) and %,d rollbacks.",
+                    commits, commitNanos / 1000000d, rollbacks));
+        }
+    }
+
+    private void endTransaction()
+    {
+        if (!commitAtEndOfRequest)
+        {
+            rollback();
+            return;
+        }
+
+        try
+        {
+            commitTransaction();
+        } catch (RuntimeException ex)
+        {
+            // Outside of a web request, or with the response already sent, this can only be logged.
+
+            logger.error(String.format("Unable to commit the transaction at the end of the request: %s", ex), ex);
+
+            try
+            {
+                rollback();
+            } catch (RuntimeException ex2)
+            {
+                // Ignore.
+            }
+        }
     }
 }
@@ -1,4 +1,4 @@
-// Copyright 2007-2013 The Apache Software Foundation
+// Copyright 2007-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -16,24 +16,52 @@ package org.apache.tapestry5.internal.hibernate;
 
 import org.apache.tapestry5.hibernate.HibernateConfigurer;
 import org.apache.tapestry5.hibernate.HibernateSessionSource;
+import org.apache.tapestry5.hibernate.HibernateSymbols;
+import org.apache.tapestry5.ioc.annotations.Inject;
 import org.apache.tapestry5.ioc.annotations.PostInjection;
+import org.apache.tapestry5.ioc.annotations.Symbol;
 import org.apache.tapestry5.ioc.internal.util.InternalUtils;
 import org.apache.tapestry5.ioc.services.RegistryShutdownHub;
+import org.hibernate.FlushMode;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
 import org.slf4j.Logger;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Properties;
 
 public class HibernateSessionSourceImpl implements HibernateSessionSource
 {
+    private final Logger logger;
+
     private final SessionFactory sessionFactory;
 
     private final Configuration configuration;
 
+    /**
+     * Created from the read-only configuration, or null if there is no read-only configuration.
+     */
+    private final SessionFactory readOnlySessionFactory;
+
     public HibernateSessionSourceImpl(Logger logger, List<HibernateConfigurer> hibernateConfigurers)
     {
+        this(logger, hibernateConfigurers, "");
+    }
+
+    /**
+     * @since 5.4
+     */
+    @Inject
+    public HibernateSessionSourceImpl(Logger logger, List<HibernateConfigurer> hibernateConfigurers,
+
+                                      @Symbol(HibernateSymbols.READ_ONLY_CONFIGURATION)
+                                      String readOnlyConfiguration)
+    {
+        this.logger = logger;
+
         long startTime = System.currentTimeMillis();
 
         configuration = new Configuration();
@@ -50,6 +78,56 @@ public class HibernateSessionSourceImpl implements HibernateSessionSource
         logger.info(String.format("Hibernate startup: %,d ms to configure, %,d ms overall.", configurationComplete - startTime, factoryCreated - startTime));
 
         logger.info(String.format("Configured Hibernate entities: %s", InternalUtils.joinSorted(sessionFactory.getAllClassMetadata().keySet())));
+
+        readOnlySessionFactory = InternalUtils.isBlank(readOnlyConfiguration)
+                ? null
+                : buildReadOnlySessionFactory(hibernateConfigurers, readOnlyConfiguration);
+    }
+
+    /**
+     * Repeats the configuration (so that the mappings are the same), then applies the read-only settings.
+     */
+    private SessionFactory buildReadOnlySessionFactory(List<HibernateConfigurer> hibernateConfigurers,
+                                                       String resourcePath)
+    {
+        Configuration readOnlyConfiguration = new Configuration();
+
+        for (HibernateConfigurer configurer : hibernateConfigurers)
+            configurer.configure(readOnlyConfiguration);
+
+        readOnlyConfiguration.addProperties(readProperties(resourcePath));
+
+        SessionFactory result = readOnlyConfiguration.buildSessionFactory();
+
+        logger.info(String.format("Created read-only Hibernate SessionFactory using %s.", resourcePath));
+
+        return result;
+    }
+
+    private static Properties readProperties(String resourcePath)
+    {
+        InputStream stream = Thread.currentThread().getContextClassLoader().getResourceAsStream(resourcePath);
+
+        if (stream == null)
+        {
+            throw new RuntimeException(String.format("Hibernate read-only configuration '%s' does not exist.", resourcePath));
+        }
+
+        Properties properties = new Properties();
+
+        try
+        {
+            properties.load(stream);
+        } catch (IOException ex)
+        {
+            throw new RuntimeException(String.format("Unable to read Hibernate read-only configuration '%s': %s",
+                    resourcePath, ex), ex);
+        } finally
+        {
+            InternalUtils.close(stream);
+        }
+
+        return properties;
     }
 
     @PostInjection
@@ -60,6 +138,11 @@ public class HibernateSessionSourceImpl implements HibernateSessionSource
             public void run()
             {
                 sessionFactory.close();
+
+                if (readOnlySessionFactory != null)
+                {
+                    readOnlySessionFactory.close();
+                }
             }
         });
     }
@@ -69,6 +152,16 @@ public class HibernateSessionSourceImpl implements HibernateSessionSource
         return sessionFactory.openSession();
     }
 
+    public Session createReadOnly()
+    {
+        Session session = (readOnlySessionFactory == null ? sessionFactory : readOnlySessionFactory).openSession();
+
+        session.setDefaultReadOnly(true);
+        session.setFlushMode(FlushMode.MANUAL);
+
+        return session;
+    }
+
     public SessionFactory getSessionFactory()
     {
         return sessionFactory;
@@ -1,4 +1,4 @@
-// Copyright 2009, 2011 The Apache Software Foundation
+// Copyright 2009, 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -18,8 +18,6 @@ import org.apache.tapestry5.hibernate.HibernateSessionManager;
 import org.apache.tapestry5.hibernate.HibernateTransactionAdvisor;
 import org.apache.tapestry5.hibernate.annotations.CommitAfter;
 import org.apache.tapestry5.ioc.MethodAdviceReceiver;
-import org.apache.tapestry5.plastic.MethodAdvice;
-import org.apache.tapestry5.plastic.MethodInvocation;
 
 import java.lang.reflect.Method;
 
@@ -27,31 +25,6 @@ public class HibernateTransactionAdvisorImpl implements HibernateTransactionAdvi
 {
     private final HibernateSessionManager manager;
 
-    /**
-     * The rules for advice are the same for any method: commit on success or checked exception, abort on thrown
-     * exception ... so we can use a single shared advice object.
-     */
-    private final MethodAdvice advice = new MethodAdvice()
-    {
-        public void advise(MethodInvocation invocation)
-        {
-            try
-            {
-                invocation.proceed();
-            }
-            catch (RuntimeException ex)
-            {
-                manager.abort();
-
-                throw ex;
-            }
-
-            // For success or checked exception, commit the transaction.
-
-            manager.commit();
-        }
-    };
-
     public HibernateTransactionAdvisorImpl(HibernateSessionManager manager)
     {
         this.manager = manager;
@@ -61,9 +34,11 @@ public class HibernateTransactionAdvisorImpl implements HibernateTransactionAdvi
     {
         for (Method m : receiver.getInterface().getMethods())
         {
-            if (m.getAnnotation(CommitAfter.class) != null)
+            CommitAfter annotation = m.getAnnotation(CommitAfter.class);
+
+            if (annotation != null)
             {
-                receiver.adviseMethod(m, advice);
+                receiver.adviseMethod(m, new CommitAfterMethodAdvice(manager, annotation, m.toString()));
             }
         }
     }
@@ -0,0 +1,70 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.hibernate;
+
+import org.apache.tapestry5.hibernate.HibernateEntityPackageManager;
+import org.apache.tapestry5.ioc.services.ClassNameLocator;
+import org.apache.tapestry5.ioc.test.IOCTestCase;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class HibernateCacheConfigurerTest extends IOCTestCase
+{
+    @Test
+    public void caches_are_not_enabled_without_a_region_factory()
+    {
+        HibernateEntityPackageManager packageManager = newMock(HibernateEntityPackageManager.class);
+        ClassNameLocator locator = newMock(ClassNameLocator.class);
+
+        replay();
+
+        Configuration configuration = new Configuration();
+
+        new HibernateCacheConfigurer(packageManager, locator, "", true).configure(configuration);
+
+        assertNull(configuration.getProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE));
+        assertEquals(configuration.getProperty(AvailableSettings.GENERATE_STATISTICS), "true");
+
+        verify();
+    }
+
+    @Test
+    public void caches_are_enabled_with_a_region_factory()
+    {
+        HibernateEntityPackageManager packageManager = newMock(HibernateEntityPackageManager.class);
+        ClassNameLocator locator = newMock(ClassNameLocator.class);
+
+        expect(packageManager.getPackageNames()).andReturn(Arrays.asList("org.example.app0.entities"));
+        expect(locator.locateClassNames("org.example.app0.entities")).andReturn(
+                Collections.singletonList("org.example.app0.entities.User"));
+
+        replay();
+
+        Configuration configuration = new Configuration();
+
+        new HibernateCacheConfigurer(packageManager, locator, "org.example.RegionFactory", false).configure(configuration);
+
+        assertEquals(configuration.getProperty(AvailableSettings.CACHE_REGION_FACTORY), "org.example.RegionFactory");
+        assertEquals(configuration.getProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE), "true");
+        assertEquals(configuration.getProperty(AvailableSettings.USE_QUERY_CACHE), "true");
+        assertNull(configuration.getProperty(AvailableSettings.GENERATE_STATISTICS));
+
+        verify();
+    }
+}
@@ -0,0 +1,347 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.hibernate;
+
+import org.apache.tapestry5.hibernate.HibernateSessionSource;
+import org.apache.tapestry5.ioc.Invokable;
+import org.apache.tapestry5.ioc.test.IOCTestCase;
+import org.easymock.EasyMock;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+public class HibernateSessionManagerImplTest extends IOCTestCase
+{
+    private final Logger logger = LoggerFactory.getLogger(HibernateSessionManagerImplTest.class);
+
+    @Test
+    public void session_is_not_created_until_needed()
+    {
+        HibernateSessionSource source = newMock(HibernateSessionSource.class);
+
+        replay();
+
+        HibernateSessionManagerImpl manager = new HibernateSessionManagerImpl(source, logger);
+
+        manager.commit();
+        manager.abort();
+        manager.threadDidCleanup();
+
+        verify();
+    }
+
+    @Test
+    public void read_write_session_starts_a_transaction()
+    {
+        HibernateSessionSource source = newMock(HibernateSessionSource.class);
+        Session session = newMock(Session.class);
+        Transaction transaction = newMock(Transaction.class);
+
+        expect(source.create()).andReturn(session);
+        expect(session.beginTransaction()).andReturn(transaction).times(2);
+        transaction.commit();
+        transaction.rollback();
+        expect(session.close()).andReturn(null);
+
+        replay();
+
+        HibernateSessionManagerImpl manager = new HibernateSessionManagerImpl(source, logger);
+
+        assertSame(manager.getSession(), session);
+
+        manager.commit();
+        manager.threadDidCleanup();
+
+        verify();
+    }
+
+    @Test
+    public void commit_at_end_of_request()
+    {
+        HibernateSessionSource source = newMock(HibernateSessionSource.class);
+        Session session = newMock(Session.class);
+        Transaction transaction = newMock(Transaction.class);
+
+        expect(source.create()).andReturn(session);
+        expect(session.beginTransaction()).andReturn(transaction);
+        transaction.commit();
+        expect(session.close()).andReturn(null);
+
+        replay();
+
+        HibernateSessionManagerImpl manager = new HibernateSessionManagerImpl(source, logger);
+
+        manager.getSession();
+        manager.commitAtEndOfRequest();
+        manager.commitAtEndOfRequest();
+        manager.threadDidCleanup();
+
+        verify();
+    }
+
+    @Test
+    public void commit_pending_transaction_before_end_of_request()
+    {
+        HibernateSessionSource source = newMock(HibernateSessionSource.class);
+        Session session = newMock(Session.class);
+        Transaction transaction = newMock(Transaction.class);
+
+        expect(source.create()).andReturn(session);
+        expect(session.beginTransaction()).andReturn(transaction).times(2);
+        transaction.commit();
+        transaction.rollback();
+        expect(session.close()).andReturn(null);
+
+        replay();
+
+        HibernateSessionManagerImpl manager = new HibernateSessionManagerImpl(source, logger);
+
+        manager.getSession();
+        manager.commitPendingTransaction();
+        manager.commitAtEndOfRequest();
+        manager.commitPendingTransaction();
+        manager.commitPendingTransaction();
+        manager.threadDidCleanup();
+
+        verify();
+    }
+
+    @Test
+    public void failure_to_commit_pending_transaction_is_rethrown()
+    {
+        HibernateSessionSource source = newMock(HibernateSessionSource.class);
+        Session session = newMock(Session.class);
+        Transaction transaction = newMock(Transaction.class);
+        RuntimeException failure = new RuntimeException("Commit failed.");
+
+        expect(source.create()).andReturn(session);
+        expect(session.beginTransaction()).andReturn(transaction).times(2);
+        transaction.commit();
+        EasyMock.expectLastCall().andThrow(failure);
+        transaction.rollback();
+        EasyMock.expectLastCall().times(2);
+        expect(session.close()).andReturn(null);
+
+        replay();
+
+        HibernateSessionManagerImpl manager = new HibernateSessionManagerImpl(source, logger);
+
+        manager.getSession();
+        manager.commitAtEndOfRequest();
+
+        try
+        {
+            manager.commitPendingTransaction();
+
+            unreachable();
+        } catch (RuntimeException ex)
+        {
+            assertSame(ex, failure);
+        }
+
+        manager.threadDidCleanup();
+
+        verify();
+    }
+
+    @Test
+    public void abort_cancels_commit_at_end_of_request()
+    {
+        HibernateSessionSource source = newMock(HibernateSessionSource.class);
+        Session session = newMock(Session.class);
+        Transaction transaction = newMock(Transaction.class);
+
+        expect(source.create()).andReturn(session);
+        expect(session.beginTransaction()).andReturn(transaction).times(2);
+        transaction.rollback();
+        EasyMock.expectLastCall().times(2);
+        expect(session.close()).andReturn(null);
+
+        replay();
+
+        HibernateSessionManagerImpl manager = new HibernateSessionManagerImpl(source, logger);
+
+        manager.getSession();
+        manager.commitAtEndOfRequest();
+        manager.abort();
+        manager.threadDidCleanup();
+
+        verify();
+    }
+
+    @Test
+    public void read_only_session_has_no_transaction()
+    {
+        HibernateSessionSource source = newMock(HibernateSessionSource.class);
+        Session session = newMock(Session.class);
+
+        expect(source.createReadOnly()).andReturn(session);
+        expect(session.close()).andReturn(null);
+
+        replay();
+
+        HibernateSessionManagerImpl manager = new HibernateSessionManagerImpl(source, logger);
+
+        manager.makeReadOnly();
+
+        assertSame(manager.getSession(), session);
+
+        manager.commit();
+        manager.abort();
+        manager.threadDidCleanup();
+
+        verify();
+    }
+
+    @Test
+    public void existing_session_is_made_read_only()
+    {
+        HibernateSessionSource source = newMock(HibernateSessionSource.class);
+        Session session = newMock(Session.class);
+        Transaction transaction = newMock(Transaction.class);
+
+        expect(source.create()).andReturn(session);
+        expect(session.beginTransaction()).andReturn(transaction);
+        session.setDefaultReadOnly(true);
+        session.setFlushMode(FlushMode.MANUAL);
+
+        replay();
+
+        HibernateSessionManagerImpl manager = new HibernateSessionManagerImpl(source, logger);
+
+        manager.getSession();
+        manager.makeReadOnly();
+        manager.makeReadOnly();
+
+        verify();
+    }
+
+    @Test
+    public void read_only_operation_restores_session_afterwards()
+    {
+        HibernateSessionSource source = newMock(HibernateSessionSource.class);
+        Session session = newMock(Session.class);
+        Transaction transaction = newMock(Transaction.class);
+
+        expect(source.create()).andReturn(session);
+        expect(session.beginTransaction()).andReturn(transaction);
+        expect(session.getFlushMode()).andReturn(FlushMode.AUTO);
+        expect(session.isDefaultReadOnly()).andReturn(false);
+        session.setDefaultReadOnly(true);
+        session.setFlushMode(FlushMode.MANUAL);
+        session.setFlushMode(FlushMode.AUTO);
+        session.setDefaultReadOnly(false);
+
+        replay();
+
+        final HibernateSessionManagerImpl manager = new HibernateSessionManagerImpl(source, logger);
+
+        String result = manager.readOnly(new Invokable<String>()
+        {
+            public String invoke()
+            {
+                // Nested operations have nothing more to do.
+
+                return manager.readOnly(new Invokable<String>()
+                {
+                    public String invoke()
+                    {
+                        return "done";
+                    }
+                });
+            }
+        });
+
+        assertEquals(result, "done");
+
+        verify();
+    }
+
+    @Test
+    public void read_only_operation_restores_session_after_failure()
+    {
+        HibernateSessionSource source = newMock(HibernateSessionSource.class);
+        Session session = newMock(Session.class);
+        Transaction transaction = newMock(Transaction.class);
+        final RuntimeException failure = new RuntimeException("Failure.");
+
+        expect(source.create()).andReturn(session);
+        expect(session.beginTransaction()).andReturn(transaction);
+        expect(session.getFlushMode()).andReturn(FlushMode.COMMIT);
+        expect(session.isDefaultReadOnly()).andReturn(false);
+        session.setDefaultReadOnly(true);
+        session.setFlushMode(FlushMode.MANUAL);
+        session.setFlushMode(FlushMode.COMMIT);
+        session.setDefaultReadOnly(false);
+
+        replay();
+
+        HibernateSessionManagerImpl manager = new HibernateSessionManagerImpl(source, logger);
+
+        try
+        {
+            manager.readOnly(new Invokable<Object>()
+            {
+                public Object invoke()
+                {
+                    throw failure;
+                }
+            });
+
+            unreachable();
+        } catch (RuntimeException ex)
+        {
+            assertSame(ex, failure);
+        }
+
+        verify();
+    }
+
+    @Test
+    public void make_read_only_during_read_only_operation_lasts_for_request()
+    {
+        HibernateSessionSource source = newMock(HibernateSessionSource.class);
+        Session session = newMock(Session.class);
+        Transaction transaction = newMock(Transaction.class);
+
+        expect(source.create()).andReturn(session);
+        expect(session.beginTransaction()).andReturn(transaction);
+        expect(session.getFlushMode()).andReturn(FlushMode.AUTO);
+        expect(session.isDefaultReadOnly()).andReturn(false);
+        session.setDefaultReadOnly(true);
+        EasyMock.expectLastCall().times(2);
+        session.setFlushMode(FlushMode.MANUAL);
+        EasyMock.expectLastCall().times(2);
+
+        replay();
+
+        final HibernateSessionManagerImpl manager = new HibernateSessionManagerImpl(source, logger);
+
+        manager.readOnly(new Invokable<Object>()
+        {
+            public Object invoke()
+            {
+                manager.makeReadOnly();
+
+                return null;
+            }
+        });
+
+        verify();
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright 2008, 2009 The Apache Software Foundation
+// Copyright 2008, 2009, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -22,6 +22,7 @@ import org.apache.tapestry5.ioc.Registry;
 import org.apache.tapestry5.ioc.services.AspectDecorator;
 import org.apache.tapestry5.ioc.test.IOCTestCase;
 import org.apache.tapestry5.ioc.test.TestBase;
+import org.hibernate.FlushMode;
 import org.testng.Assert;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
@@ -203,6 +204,27 @@ public class HibernateTransactionDecoratorImplTest extends IOCTestCase
                 "Baz");
     }
 
+    @Test
+    public void manual_flush_mode_is_rejected()
+    {
+        ManualFlushService delegate = newMock(ManualFlushService.class);
+        HibernateSessionManager manager = newMock(HibernateSessionManager.class);
+        HibernateTransactionDecorator decorator = newHibernateSessionManagerDecorator(manager);
+
+        replay();
+
+        try
+        {
+            decorator.build(ManualFlushService.class, delegate, "foo.Bar");
+            unreachable();
+        } catch (IllegalArgumentException ex)
+        {
+            assertMessageContains(ex, "perform()", "@CommitAfter(flushMode=MANUAL)");
+        }
+
+        verify();
+    }
+
     private HibernateTransactionDecorator newHibernateSessionManagerDecorator(HibernateSessionManager manager)
     {
         return new HibernateTransactionDecoratorImpl(aspectDecorator, new HibernateTransactionAdvisorImpl(manager));
@@ -264,4 +286,10 @@ public class HibernateTransactionDecoratorImplTest extends IOCTestCase
         @CommitAfter
         void perform() throws SQLException;
     }
+
+    public interface ManualFlushService
+    {
+        @CommitAfter(flushMode = FlushMode.MANUAL)
+        void perform();
+    }
 }
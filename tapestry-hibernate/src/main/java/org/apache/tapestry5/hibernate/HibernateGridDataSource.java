@@ -1,4 +1,4 @@
-// Copyright 2008, 2010 The Apache Software Foundation
+// Copyright 2008, 2010, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -17,7 +17,9 @@ package org.apache.tapestry5.hibernate;
 import java.util.List;
 
 import org.apache.tapestry5.grid.GridDataSource;
+import org.apache.tapestry5.grid.RowCountCache;
 import org.apache.tapestry5.grid.SortConstraint;
+import org.apache.tapestry5.ioc.Invokable;
 import org.hibernate.Criteria;
 import org.hibernate.Session;
 import org.hibernate.criterion.Order;
@@ -31,6 +33,11 @@ import org.hibernate.criterion.Projections;
  * This class is <em>not</em> thread-safe; it maintains internal state.
  * <p/>
  * Typically, an instance of this object is created fresh as needed (that is, it is not stored between requests).
+ * <p/>
+ * Counting the rows can be avoided by providing a (shared) {@link RowCountCache}; counts are keyed on the entity type
+ * and the restrictions added by {@link #applyAdditionalConstraints(org.hibernate.Criteria)}.
+ *
+ * @see HibernateKeysetGridDataSource
  */
 public class HibernateGridDataSource implements GridDataSource
 {
@@ -42,12 +49,29 @@ public class HibernateGridDataSource implements GridDataSource
 
     private List preparedResults;
 
+    private final RowCountCache rowCountCache;
+
     public HibernateGridDataSource(Session session, Class entityType)
+    {
+        this(session, entityType, null);
+    }
+
+    /**
+     * @param session
+     *         used to query the entities
+     * @param entityType
+     *         type of entity to query
+     * @param rowCountCache
+     *         cache for the row count, or null to count the rows on each call to {@link #getAvailableRows()}
+     * @since 5.4
+     */
+    public HibernateGridDataSource(Session session, Class entityType, RowCountCache rowCountCache)
     {
         assert session != null;
         assert entityType != null;
         this.session = session;
         this.entityType = entityType;
+        this.rowCountCache = rowCountCache;
     }
 
     /**
@@ -55,15 +79,30 @@ public class HibernateGridDataSource implements GridDataSource
      */
     public int getAvailableRows()
     {
-        Criteria criteria = session.createCriteria(entityType);
+        final Criteria criteria = session.createCriteria(entityType);
 
         applyAdditionalConstraints(criteria);
 
-        criteria.setProjection(Projections.rowCount());
+        Invokable<Integer> counter = new Invokable<Integer>()
+        {
+            public Integer invoke()
+            {
+                criteria.setProjection(Projections.rowCount());
+
+                Number result = (Number) criteria.uniqueResult();
+
+                return result.intValue();
+            }
+        };
+
+        if (rowCountCache == null)
+        {
+            return counter.invoke();
+        }
 
-        Number result = (Number) criteria.uniqueResult();
+        // The criteria's description includes the entity name and each restriction (with its values).
 
-        return result.intValue();
+        return rowCountCache.getRowCount(criteria.toString(), counter);
     }
 
     /**
@@ -0,0 +1,302 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.hibernate;
+
+import org.apache.tapestry5.grid.ColumnSort;
+import org.apache.tapestry5.grid.KeysetGridDataSource;
+import org.apache.tapestry5.grid.RowCountCache;
+import org.apache.tapestry5.grid.SortConstraint;
+import org.apache.tapestry5.grid.UncountedGridDataSource;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.criterion.*;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A {@link org.apache.tapestry5.grid.GridDataSource} that pages using the values of the last row seen (keyset, or
+ * "seek", pagination) rather than skipping over all the prior rows, which gets slower the further into the data the
+ * page is. Rows are ordered by the sort constraints and then by the entity's identifier (so that the order is total);
+ * the next page starts after the last row of the prior page, which the database can find directly using an index on
+ * the sorted properties.
+ * <p/>
+ * The key of the next page is {@linkplain KeysetGridDataSource#getBookmark(int) bookmarked}; the
+ * {@link org.apache.tapestry5.corelib.components.GridPager} carries bookmarks in its links, so that a new instance (in a
+ * later request) can seek directly to the page. When the user jumps ahead, the query seeks to the closest known page and
+ * skips the remaining rows. A bookmark is only used with the sort order and restrictions (those added by
+ * {@link #applyAdditionalConstraints(org.hibernate.Criteria)}, including their values) it was recorded with. The sorted
+ * properties must not be null, as null values can not be compared (rows with a null key are not bookmarked).
+ * <p/>
+ * Optionally, the rows are not counted at all ({@linkplain UncountedGridDataSource}); the Grid then only offers the
+ * pages up to the next one.
+ * <p/>
+ * This class is <em>not</em> thread-safe; it maintains internal state.
+ *
+ * @since 5.4
+ */
+public class HibernateKeysetGridDataSource extends HibernateGridDataSource implements UncountedGridDataSource,
+        KeysetGridDataSource
+{
+    /**
+     * The key values (sort properties, then identifier) of the row before a bookmarked index, along with a description
+     * of the query (sort order and restrictions) the key is for.
+     */
+    private static final class Bookmark implements Serializable
+    {
+        private static final long serialVersionUID = -3375424093454870398L;
+
+        private final String query;
+
+        private final Object[] key;
+
+        private Bookmark(String query, Object[] key)
+        {
+            this.query = query;
+            this.key = key;
+        }
+    }
+
+    private final Session session;
+
+    private final Class entityType;
+
+    private final boolean countRows;
+
+    private final TreeMap<Integer, Bookmark> bookmarks = new TreeMap<Integer, Bookmark>();
+
+    private int startIndex;
+
+    private List preparedResults;
+
+    /**
+     * Creates a data source that does not count its rows.
+     */
+    public HibernateKeysetGridDataSource(Session session, Class entityType)
+    {
+        this(session, entityType, false, null);
+    }
+
+    /**
+     * @param session
+     *         used to query the entities
+     * @param entityType
+     *         type of entity to query
+     * @param countRows
+     *         if true, the rows are counted (and the Grid displays all pages); if false, the rows are not counted
+     * @param rowCountCache
+     *         cache for the row count, or null; only used when counting rows
+     */
+    public HibernateKeysetGridDataSource(Session session, Class entityType, boolean countRows, RowCountCache rowCountCache)
+    {
+        super(session, entityType, rowCountCache);
+
+        this.session = session;
+        this.entityType = entityType;
+        this.countRows = countRows;
+    }
+
+    public boolean isRowCountKnown()
+    {
+        return countRows;
+    }
+
+    /**
+     * Returns the total number of rows or, when the rows are not counted, the number of rows up to the last prepared
+     * row.
+     */
+    @Override
+    public int getAvailableRows()
+    {
+        if (countRows)
+        {
+            return super.getAvailableRows();
+        }
+
+        return preparedResults == null ? 0 : startIndex + preparedResults.size();
+    }
+
+    @Override
+    public void prepare(int startIndex, int endIndex, List<SortConstraint> sortConstraints)
+    {
+        assert sortConstraints != null;
+
+        List<SortConstraint> ordering = CollectionFactory.newList();
+        StringBuilder sortDescription = new StringBuilder();
+
+        for (SortConstraint constraint : sortConstraints)
+        {
+            if (constraint.getColumnSort() != ColumnSort.UNSORTED)
+            {
+                ordering.add(constraint);
+                sortDescription.append(constraint.getPropertyModel().getPropertyName())
+                        .append(' ').append(constraint.getColumnSort()).append(',');
+            }
+        }
+
+        String idPropertyName = session.getSessionFactory().getClassMetadata(entityType).getIdentifierPropertyName();
+
+        Criteria crit = session.createCriteria(entityType);
+
+        for (SortConstraint constraint : ordering)
+        {
+            String propertyName = constraint.getPropertyModel().getPropertyName();
+
+            crit.addOrder(constraint.getColumnSort() == ColumnSort.ASCENDING
+                    ? Order.asc(propertyName)
+                    : Order.desc(propertyName));
+        }
+
+        crit.addOrder(Order.asc(idPropertyName));
+
+        applyAdditionalConstraints(crit);
+
+        // Keys only make sense for the order and restrictions they were recorded with. The criteria's description
+        // includes the entity name and each restriction (with its values), but not the order.
+
+        String query = sortDescription.append(crit).toString();
+
+        discardBookmarksNotFor(query);
+
+        SortedMap<Integer, Bookmark> prior = startIndex == 0 ? null : bookmarks.headMap(startIndex + 1);
+
+        int seekIndex = 0;
+
+        if (prior != null && !prior.isEmpty())
+        {
+            seekIndex = prior.lastKey();
+
+            crit.add(after(ordering, idPropertyName, prior.get(seekIndex).key));
+        }
+
+        crit.setFirstResult(startIndex - seekIndex).setMaxResults(endIndex - startIndex + 1);
+
+        this.startIndex = startIndex;
+
+        preparedResults = crit.list();
+
+        // Remember where the next page starts; the last two rows are kept, as the Grid may have asked for one row
+        // beyond the page.
+
+        for (int i = Math.max(0, preparedResults.size() - 2); i < preparedResults.size(); i++)
+        {
+            Object[] key = toKey(ordering, preparedResults.get(i));
+
+            if (key != null)
+            {
+                bookmarks.put(startIndex + i + 1, new Bookmark(query, key));
+            }
+        }
+    }
+
+    private void discardBookmarksNotFor(String query)
+    {
+        Iterator<Bookmark> iterator = bookmarks.values().iterator();
+
+        while (iterator.hasNext())
+        {
+            if (!iterator.next().query.equals(query))
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    public Serializable getBookmark(int index)
+    {
+        return bookmarks.get(index);
+    }
+
+    /**
+     * Adds a bookmark obtained from {@link #getBookmark(int)}; anything else is ignored.
+     */
+    public void addBookmark(int index, Serializable bookmark)
+    {
+        if (bookmark instanceof Bookmark)
+        {
+            bookmarks.put(index, (Bookmark) bookmark);
+        }
+    }
+
+    private Object[] toKey(List<SortConstraint> ordering, Object row)
+    {
+        Object[] key = new Object[ordering.size() + 1];
+
+        for (int i = 0; i < ordering.size(); i++)
+        {
+            key[i] = ordering.get(i).getPropertyModel().getConduit().get(row);
+
+            if (key[i] == null)
+            {
+                return null;
+            }
+        }
+
+        key[ordering.size()] = session.getIdentifier(row);
+
+        return key;
+    }
+
+    /**
+     * Builds the restriction matching the rows after the key: (a > ?) or (a = ? and b > ?) or ... with the identifier
+     * as the final property.
+     */
+    private Criterion after(List<SortConstraint> ordering, String idPropertyName, Object[] key)
+    {
+        Disjunction disjunction = Restrictions.disjunction();
+
+        for (int i = 0; i <= ordering.size(); i++)
+        {
+            Conjunction conjunction = Restrictions.conjunction();
+
+            for (int j = 0; j < i; j++)
+            {
+                conjunction.add(Restrictions.eq(ordering.get(j).getPropertyModel().getPropertyName(), key[j]));
+            }
+
+            if (i == ordering.size())
+            {
+                conjunction.add(Restrictions.gt(idPropertyName, key[i]));
+            } else
+            {
+                SortConstraint constraint = ordering.get(i);
+                String propertyName = constraint.getPropertyModel().getPropertyName();
+
+                conjunction.add(constraint.getColumnSort() == ColumnSort.ASCENDING
+                        ? Restrictions.gt(propertyName, key[i])
+                        : Restrictions.lt(propertyName, key[i]));
+            }
+
+            disjunction.add(conjunction);
+        }
+
+        return disjunction;
+    }
+
+    /**
+     * Returns the row value at the given index, or null if the index is beyond the prepared rows.
+     */
+    @Override
+    public Object getRowValue(int index)
+    {
+        int offset = index - startIndex;
+
+        return preparedResults == null || offset < 0 || offset >= preparedResults.size() ? null : preparedResults.get(offset);
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright 2007-2013 The Apache Software Foundation
+// Copyright 2007-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,36 +14,55 @@
 
 package org.apache.tapestry5.hibernate.modules;
 
+import org.apache.tapestry5.SymbolConstants;
 import org.apache.tapestry5.ValueEncoder;
 import org.apache.tapestry5.hibernate.HibernateCore;
 import org.apache.tapestry5.hibernate.HibernatePersistenceConstants;
+import org.apache.tapestry5.hibernate.HibernateSessionManager;
 import org.apache.tapestry5.hibernate.HibernateSessionSource;
 import org.apache.tapestry5.hibernate.HibernateSymbols;
 import org.apache.tapestry5.internal.InternalConstants;
+import org.apache.tapestry5.internal.InternalSymbols;
 import org.apache.tapestry5.internal.hibernate.CommitAfterWorker;
+import org.apache.tapestry5.internal.hibernate.CommitPendingTransactionFilter;
 import org.apache.tapestry5.internal.hibernate.EntityApplicationStatePersistenceStrategy;
 import org.apache.tapestry5.internal.hibernate.EntityPersistentFieldStrategy;
 import org.apache.tapestry5.internal.hibernate.HibernateEntityValueEncoder;
+import org.apache.tapestry5.internal.hibernate.ReadOnlyPageFilter;
+import org.apache.tapestry5.internal.hibernate.ReadOnlyWorker;
 import org.apache.tapestry5.ioc.Configuration;
 import org.apache.tapestry5.ioc.LoggerSource;
 import org.apache.tapestry5.ioc.MappedConfiguration;
+import org.apache.tapestry5.ioc.MethodAdviceReceiver;
 import org.apache.tapestry5.ioc.OrderedConfiguration;
 import org.apache.tapestry5.ioc.annotations.Contribute;
+import org.apache.tapestry5.ioc.annotations.Match;
+import org.apache.tapestry5.ioc.annotations.Optional;
 import org.apache.tapestry5.ioc.annotations.Primary;
 import org.apache.tapestry5.ioc.annotations.Symbol;
 import org.apache.tapestry5.ioc.services.PropertyAccess;
 import org.apache.tapestry5.ioc.services.ServiceOverride;
 import org.apache.tapestry5.ioc.services.TypeCoercer;
+import org.apache.tapestry5.plastic.MethodAdvice;
+import org.apache.tapestry5.plastic.MethodInvocation;
 import org.apache.tapestry5.services.ApplicationStateContribution;
 import org.apache.tapestry5.services.ApplicationStatePersistenceStrategy;
+import org.apache.tapestry5.services.ComponentRequestFilter;
+import org.apache.tapestry5.services.ComponentRequestHandler;
+import org.apache.tapestry5.services.MarkupRenderer;
+import org.apache.tapestry5.services.MarkupRendererFilter;
+import org.apache.tapestry5.services.PartialMarkupRenderer;
+import org.apache.tapestry5.services.PartialMarkupRendererFilter;
 import org.apache.tapestry5.services.PersistentFieldStrategy;
 import org.apache.tapestry5.services.ValueEncoderFactory;
 import org.apache.tapestry5.services.dashboard.DashboardManager;
 import org.apache.tapestry5.services.dashboard.DashboardTab;
 import org.apache.tapestry5.services.transform.ComponentClassTransformWorker2;
 import org.hibernate.Session;
+import org.hibernate.jmx.StatisticsService;
 import org.hibernate.mapping.PersistentClass;
 
+import javax.management.ObjectName;
 import java.util.Iterator;
 
 /**
@@ -56,6 +75,7 @@ public class HibernateModule
     {
         configuration.add(HibernateSymbols.PROVIDE_ENTITY_VALUE_ENCODERS, "true");
         configuration.add(HibernateSymbols.ENTITY_SESSION_STATE_PERSISTENCE_STRATEGY_ENABLED, "false");
+        configuration.add(HibernateSymbols.READ_ONLY_PAGE, "false");
     }
 
     /**
@@ -187,9 +207,115 @@ public class HibernateModule
         configuration.addInstance("CommitAfter", CommitAfterWorker.class, "after:Log");
     }
 
+    /**
+     * Adds the ReadOnly annotation worker, to process the
+     * {@link org.apache.tapestry5.hibernate.annotations.ReadOnly} annotation.
+     *
+     * @since 5.4
+     */
+    @Contribute(ComponentClassTransformWorker2.class)
+    @Primary
+    public static void provideReadOnlyAnnotationSupport(
+            OrderedConfiguration<ComponentClassTransformWorker2> configuration)
+    {
+        configuration.addInstance("ReadOnly", ReadOnlyWorker.class, "after:Log");
+    }
+
+    /**
+     * Switches to a read-only session when rendering pages marked with the
+     * {@link org.apache.tapestry5.hibernate.annotations.ReadOnly} annotation.
+     *
+     * @since 5.4
+     */
+    @Contribute(ComponentRequestHandler.class)
+    public static void provideReadOnlyPageFilter(OrderedConfiguration<ComponentRequestFilter> configuration)
+    {
+        configuration.addInstance("HibernateReadOnly", ReadOnlyPageFilter.class, "after:InitializeActivePageName");
+    }
+
+    /**
+     * Commits the transaction marked to be committed at the end of the request (see
+     * {@link org.apache.tapestry5.hibernate.CommitMode#END_OF_REQUEST}) after rendering a page, before the markup is
+     * sent to the client.
+     *
+     * @since 5.4
+     */
+    @Contribute(MarkupRenderer.class)
+    public static void provideCommitPendingTransactionFilter(OrderedConfiguration<MarkupRendererFilter> configuration)
+    {
+        configuration.addInstance("CommitPendingTransaction", CommitPendingTransactionFilter.class, "before:*");
+    }
+
+    /**
+     * As with {@link #provideCommitPendingTransactionFilter(OrderedConfiguration)}, for partial page renders.
+     *
+     * @since 5.4
+     */
+    @Contribute(PartialMarkupRenderer.class)
+    public static void providePartialCommitPendingTransactionFilter(
+            OrderedConfiguration<PartialMarkupRendererFilter> configuration)
+    {
+        configuration.addInstance("CommitPendingTransaction", CommitPendingTransactionFilter.class, "before:*");
+    }
+
+    /**
+     * Commits the transaction marked to be committed at the end of the request before the result of a component event
+     * (including the default redirect back to the page) is processed, since that may send the response.
+     *
+     * @since 5.4
+     */
+    @Match({"ComponentEventResultProcessor", "AjaxComponentEventResultProcessor"})
+    public static void adviseCommitPendingTransaction(MethodAdviceReceiver receiver,
+                                                      final HibernateSessionManager manager)
+    {
+        receiver.adviseAllMethods(new MethodAdvice()
+        {
+            public void advise(MethodInvocation invocation)
+            {
+                manager.commitPendingTransaction();
+
+                invocation.proceed();
+            }
+        });
+    }
+
     @Contribute(DashboardManager.class)
     public static void provideHibernateDashboardTab(OrderedConfiguration<DashboardTab> configuration)
     {
         configuration.add("HibernateStatistics", new DashboardTab("Hibernate", "core/HibernateStatistics"), "after:Services");
     }
+
+    /**
+     * When {@linkplain HibernateSymbols#CACHE_STATISTICS statistics} are enabled, exposes them to JMX via the
+     * MBeanSupport service, if the tapestry-jmx module is present. The object name includes the application's context
+     * path and name, so that several applications in the same container each expose their own statistics.
+     *
+     * @since 5.4
+     */
+    @Optional
+    public static void contributeMBeanSupport(MappedConfiguration<String, Object> configuration,
+
+                                              @Symbol(HibernateSymbols.CACHE_STATISTICS)
+                                              boolean statistics,
+
+                                              @Symbol(SymbolConstants.CONTEXT_PATH)
+                                              String contextPath,
+
+                                              @Symbol(InternalSymbols.APP_NAME)
+                                              String appName,
+
+                                              HibernateSessionSource sessionSource)
+    {
+        if (!statistics)
+        {
+            return;
+        }
+
+        StatisticsService service = new StatisticsService();
+
+        service.setSessionFactory(sessionSource.getSessionFactory());
+
+        configuration.add(String.format("org.apache.tapestry5.hibernate:type=Statistics,context=%s,app=%s",
+                ObjectName.quote(contextPath), ObjectName.quote(appName)), service);
+    }
 }
@@ -1,4 +1,4 @@
-// Copyright 2008, 2011, 2012 The Apache Software Foundation
+// Copyright 2008, 2011, 2012, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -17,8 +17,6 @@ package org.apache.tapestry5.internal.hibernate;
 import org.apache.tapestry5.hibernate.HibernateSessionManager;
 import org.apache.tapestry5.hibernate.annotations.CommitAfter;
 import org.apache.tapestry5.model.MutableComponentModel;
-import org.apache.tapestry5.plastic.MethodAdvice;
-import org.apache.tapestry5.plastic.MethodInvocation;
 import org.apache.tapestry5.plastic.PlasticClass;
 import org.apache.tapestry5.plastic.PlasticMethod;
 import org.apache.tapestry5.services.transform.ComponentClassTransformWorker2;
@@ -27,43 +25,12 @@ import org.apache.tapestry5.services.transform.TransformationSupport;
 /**
  * Searches for methods that have the {@link org.apache.tapestry5.hibernate.annotations.CommitAfter} annotation and adds
  * logic around the method to commit or abort the transaction. The commit/abort logic is the same as for the
- * {@link org.apache.tapestry5.hibernate.HibernateTransactionDecorator} service.
+ * {@link org.apache.tapestry5.hibernate.HibernateTransactionDecorator} service (see {@link CommitAfterMethodAdvice}).
  */
 public class CommitAfterWorker implements ComponentClassTransformWorker2
 {
     private final HibernateSessionManager manager;
 
-    private final MethodAdvice advice = new MethodAdvice()
-    {
-        private void abort()
-        {
-            try
-            {
-                manager.abort();
-            } catch (Exception e)
-            {
-                // Ignore.
-            }
-        }
-
-        public void advise(MethodInvocation invocation)
-        {
-            try
-            {
-                invocation.proceed();
-
-                // Success or checked exception:
-
-                manager.commit();
-            } catch (RuntimeException ex)
-            {
-                abort();
-
-                throw ex;
-            }
-        }
-    };
-
     public CommitAfterWorker(HibernateSessionManager manager)
     {
         this.manager = manager;
@@ -73,7 +40,8 @@ public class CommitAfterWorker implements ComponentClassTransformWorker2
     {
         for (PlasticMethod method : plasticClass.getMethodsWithAnnotation(CommitAfter.class))
         {
-            method.addAdvice(advice);
+            method.addAdvice(new CommitAfterMethodAdvice(manager, method.getAnnotation(CommitAfter.class),
+                    method.getMethodIdentifier()));
         }
     }
 }
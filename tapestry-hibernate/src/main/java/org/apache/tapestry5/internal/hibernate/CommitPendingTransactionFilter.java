@@ -0,0 +1,54 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.hibernate;
+
+import org.apache.tapestry5.MarkupWriter;
+import org.apache.tapestry5.hibernate.HibernateSessionManager;
+import org.apache.tapestry5.json.JSONObject;
+import org.apache.tapestry5.services.MarkupRenderer;
+import org.apache.tapestry5.services.MarkupRendererFilter;
+import org.apache.tapestry5.services.PartialMarkupRenderer;
+import org.apache.tapestry5.services.PartialMarkupRendererFilter;
+
+/**
+ * {@linkplain HibernateSessionManager#commitPendingTransaction() Commits the transaction} marked to be committed at the
+ * end of the request once a page, or part of a page, has been rendered, but before the markup is sent to the client;
+ * a failure to commit is then reported in place of the rendered markup.
+ *
+ * @since 5.4
+ */
+public class CommitPendingTransactionFilter implements MarkupRendererFilter, PartialMarkupRendererFilter
+{
+    private final HibernateSessionManager manager;
+
+    public CommitPendingTransactionFilter(HibernateSessionManager manager)
+    {
+        this.manager = manager;
+    }
+
+    public void renderMarkup(MarkupWriter writer, MarkupRenderer renderer)
+    {
+        renderer.renderMarkup(writer);
+
+        manager.commitPendingTransaction();
+    }
+
+    public void renderMarkup(MarkupWriter writer, JSONObject reply, PartialMarkupRenderer renderer)
+    {
+        renderer.renderMarkup(writer, reply);
+
+        manager.commitPendingTransaction();
+    }
+}
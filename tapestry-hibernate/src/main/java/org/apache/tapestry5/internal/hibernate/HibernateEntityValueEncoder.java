@@ -1,4 +1,4 @@
-// Copyright 2008-2013 The Apache Software Foundation
+// Copyright 2008-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,21 +14,30 @@
 
 package org.apache.tapestry5.internal.hibernate;
 
-import org.apache.tapestry5.ValueEncoder;
+import org.apache.tapestry5.PrefetchingValueEncoder;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.ioc.internal.util.InternalUtils;
 import org.apache.tapestry5.ioc.services.PropertyAccess;
 import org.apache.tapestry5.ioc.services.PropertyAdapter;
 import org.apache.tapestry5.ioc.services.TypeCoercer;
 import org.apache.tapestry5.ioc.util.ExceptionUtils;
 import org.hibernate.Session;
+import org.hibernate.criterion.Restrictions;
 import org.hibernate.mapping.PersistentClass;
 import org.hibernate.mapping.Property;
 import org.slf4j.Logger;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
 
-public final class HibernateEntityValueEncoder<E> implements ValueEncoder<E>
+public final class HibernateEntityValueEncoder<E> implements PrefetchingValueEncoder<E>
 {
+    /**
+     * Limits the number of identifiers in a single query, as some databases limit the size of an IN list.
+     */
+    private static final int PREFETCH_BATCH_SIZE = 500;
+
     private final Class<E> entityClass;
 
     private final Session session;
@@ -67,28 +76,26 @@ public final class HibernateEntityValueEncoder<E> implements ValueEncoder<E>
         return typeCoercer.coerce(id, String.class);
     }
 
-    @SuppressWarnings("unchecked")
-    public E toValue(String clientValue)
+    private Serializable toId(String clientValue)
     {
-        if (InternalUtils.isBlank(clientValue))
-            return null;
-
-        Object id = null;
-
         try
         {
-
-            id = typeCoercer.coerce(clientValue, propertyAdapter.getType());
+            return (Serializable) typeCoercer.coerce(clientValue, propertyAdapter.getType());
         } catch (Exception ex)
         {
             throw new RuntimeException(String.format(
                     "Exception converting '%s' to instance of %s (id type for entity %s): %s", clientValue,
                     propertyAdapter.getType().getName(), entityClass.getName(), ExceptionUtils.toMessage(ex)), ex);
         }
+    }
 
-        Serializable ser = (Serializable) id;
+    @SuppressWarnings("unchecked")
+    public E toValue(String clientValue)
+    {
+        if (InternalUtils.isBlank(clientValue))
+            return null;
 
-        E result = (E) session.get(entityClass, ser);
+        E result = (E) session.get(entityClass, toId(clientValue));
 
         if (result == null)
         {
@@ -100,4 +107,27 @@ public final class HibernateEntityValueEncoder<E> implements ValueEncoder<E>
         return result;
     }
 
+    /**
+     * Loads the entities, in batches, into the session; {@link #toValue(String)} then finds them there without a
+     * further query.
+     */
+    public void prefetch(Collection<String> clientValues)
+    {
+        List<Serializable> ids = CollectionFactory.newList();
+
+        for (String clientValue : clientValues)
+        {
+            if (!InternalUtils.isBlank(clientValue))
+            {
+                ids.add(toId(clientValue));
+            }
+        }
+
+        for (int i = 0; i < ids.size(); i += PREFETCH_BATCH_SIZE)
+        {
+            List<Serializable> batch = ids.subList(i, Math.min(i + PREFETCH_BATCH_SIZE, ids.size()));
+
+            session.createCriteria(entityClass).add(Restrictions.in(propertyAdapter.getName(), batch)).list();
+        }
+    }
 }
@@ -0,0 +1,62 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.hibernate;
+
+import org.apache.tapestry5.hibernate.HibernateSessionManager;
+import org.apache.tapestry5.hibernate.HibernateSymbols;
+import org.apache.tapestry5.services.ComponentEventRequestParameters;
+import org.apache.tapestry5.services.ComponentRequestFilter;
+import org.apache.tapestry5.services.ComponentRequestHandler;
+import org.apache.tapestry5.services.MetaDataLocator;
+import org.apache.tapestry5.services.PageRenderRequestParameters;
+
+import java.io.IOException;
+
+/**
+ * Switches to a {@linkplain HibernateSessionManager#makeReadOnly() read-only session} before rendering a page whose
+ * {@link HibernateSymbols#READ_ONLY_PAGE} meta-data is true; this happens before the page is activated, so that the
+ * session (if needed) is created read-only.
+ *
+ * @since 5.4
+ */
+public class ReadOnlyPageFilter implements ComponentRequestFilter
+{
+    private final MetaDataLocator locator;
+
+    private final HibernateSessionManager manager;
+
+    public ReadOnlyPageFilter(MetaDataLocator locator, HibernateSessionManager manager)
+    {
+        this.locator = locator;
+        this.manager = manager;
+    }
+
+    public void handleComponentEvent(ComponentEventRequestParameters parameters, ComponentRequestHandler handler)
+            throws IOException
+    {
+        handler.handleComponentEvent(parameters);
+    }
+
+    public void handlePageRender(PageRenderRequestParameters parameters, ComponentRequestHandler handler)
+            throws IOException
+    {
+        if (locator.findMeta(HibernateSymbols.READ_ONLY_PAGE, parameters.getLogicalPageName(), Boolean.class))
+        {
+            manager.makeReadOnly();
+        }
+
+        handler.handlePageRender(parameters);
+    }
+}
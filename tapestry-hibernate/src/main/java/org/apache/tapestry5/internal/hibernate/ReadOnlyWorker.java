@@ -0,0 +1,73 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.hibernate;
+
+import org.apache.tapestry5.hibernate.HibernateSessionManager;
+import org.apache.tapestry5.hibernate.HibernateSymbols;
+import org.apache.tapestry5.hibernate.annotations.ReadOnly;
+import org.apache.tapestry5.ioc.Invokable;
+import org.apache.tapestry5.model.MutableComponentModel;
+import org.apache.tapestry5.plastic.MethodAdvice;
+import org.apache.tapestry5.plastic.MethodInvocation;
+import org.apache.tapestry5.plastic.PlasticClass;
+import org.apache.tapestry5.plastic.PlasticMethod;
+import org.apache.tapestry5.services.transform.ComponentClassTransformWorker2;
+import org.apache.tapestry5.services.transform.TransformationSupport;
+
+/**
+ * Handles the {@link ReadOnly} annotation: on a class, it is converted to the
+ * {@link HibernateSymbols#READ_ONLY_PAGE} meta-data (used by {@link ReadOnlyPageFilter}); on a method, advice is added
+ * that keeps the session read-only while the method is invoked.
+ *
+ * @since 5.4
+ */
+public class ReadOnlyWorker implements ComponentClassTransformWorker2
+{
+    private final HibernateSessionManager manager;
+
+    private final MethodAdvice advice = new MethodAdvice()
+    {
+        public void advise(final MethodInvocation invocation)
+        {
+            manager.readOnly(new Invokable<Void>()
+            {
+                public Void invoke()
+                {
+                    invocation.proceed();
+
+                    return null;
+                }
+            });
+        }
+    };
+
+    public ReadOnlyWorker(HibernateSessionManager manager)
+    {
+        this.manager = manager;
+    }
+
+    public void transform(PlasticClass plasticClass, TransformationSupport support, MutableComponentModel model)
+    {
+        if (plasticClass.hasAnnotation(ReadOnly.class))
+        {
+            model.setMeta(HibernateSymbols.READ_ONLY_PAGE, "true");
+        }
+
+        for (PlasticMethod method : plasticClass.getMethodsWithAnnotation(ReadOnly.class))
+        {
+            method.addAdvice(advice);
+        }
+    }
+}
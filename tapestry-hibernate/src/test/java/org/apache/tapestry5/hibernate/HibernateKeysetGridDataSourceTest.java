@@ -0,0 +1,308 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.hibernate;
+
+import org.apache.tapestry5.PropertyConduit;
+import org.apache.tapestry5.beaneditor.PropertyModel;
+import org.apache.tapestry5.grid.ColumnSort;
+import org.apache.tapestry5.grid.SortConstraint;
+import org.apache.tapestry5.test.TapestryTestCase;
+import org.example.app0.entities.User;
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.criterion.Restrictions;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.List;
+
+public class HibernateKeysetGridDataSourceTest extends TapestryTestCase
+{
+    private SessionFactory sessionFactory;
+
+    private Session session;
+
+    private final PropertyConduit firstNameConduit = new PropertyConduit()
+    {
+        public Object get(Object instance)
+        {
+            return ((User) instance).getFirstName();
+        }
+
+        public void set(Object instance, Object value)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public Class getPropertyType()
+        {
+            return String.class;
+        }
+
+        public <T extends Annotation> T getAnnotation(Class<T> annotationClass)
+        {
+            return null;
+        }
+    };
+
+    @BeforeClass
+    public void setup()
+    {
+        sessionFactory = new Configuration()
+                .setProperty("hibernate.connection.driver_class", "org.hsqldb.jdbcDriver")
+                .setProperty("hibernate.connection.url", "jdbc:hsqldb:mem:keyset")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.HSQLDialect")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .addAnnotatedClass(User.class)
+                .buildSessionFactory();
+    }
+
+    @AfterClass
+    public void cleanup()
+    {
+        sessionFactory.close();
+    }
+
+    @BeforeMethod
+    public void createUsers()
+    {
+        session = sessionFactory.openSession();
+
+        session.beginTransaction();
+
+        session.createQuery("delete from User").executeUpdate();
+
+        for (int i = 1; i <= 20; i++)
+        {
+            User user = new User();
+
+            user.setFirstName(String.format("Joe_%02d", i));
+            user.setLastName("User");
+            user.setEmail(String.format("joe%02d@null.com", i));
+            user.setEncodedPassword("####");
+
+            session.persist(user);
+        }
+
+        session.getTransaction().commit();
+
+        session.clear();
+    }
+
+    @AfterMethod
+    public void closeSession()
+    {
+        session.close();
+    }
+
+    private List<SortConstraint> sortByFirstName(ColumnSort sort)
+    {
+        PropertyModel model = mockPropertyModel();
+
+        expect(model.getPropertyName()).andReturn("firstName").anyTimes();
+        expect(model.getConduit()).andReturn(firstNameConduit).anyTimes();
+
+        return Collections.singletonList(new SortConstraint(model, sort));
+    }
+
+    private static String firstNameAt(HibernateKeysetGridDataSource source, int index)
+    {
+        User user = (User) source.getRowValue(index);
+
+        return user == null ? null : user.getFirstName();
+    }
+
+    private void deleteFirstUser()
+    {
+        session.beginTransaction();
+
+        session.createQuery("delete from User where firstName = 'Joe_01'").executeUpdate();
+
+        session.getTransaction().commit();
+
+        session.clear();
+    }
+
+    @Test
+    public void row_value_is_null_before_prepare()
+    {
+        HibernateKeysetGridDataSource source = new HibernateKeysetGridDataSource(session, User.class);
+
+        assertNull(source.getRowValue(0));
+        assertEquals(source.getAvailableRows(), 0);
+    }
+
+    @Test
+    public void rows_are_in_key_order_and_not_counted()
+    {
+        List<SortConstraint> sort = sortByFirstName(ColumnSort.DESCENDING);
+
+        replay();
+
+        HibernateKeysetGridDataSource source = new HibernateKeysetGridDataSource(session, User.class);
+
+        assertFalse(source.isRowCountKnown());
+
+        // As the Grid does for an uncounted source: one row beyond the page.
+
+        source.prepare(0, 5, sort);
+
+        assertEquals(firstNameAt(source, 0), "Joe_20");
+        assertEquals(firstNameAt(source, 5), "Joe_15");
+        assertNull(firstNameAt(source, 6));
+        assertEquals(source.getAvailableRows(), 6);
+
+        source.prepare(15, 20, sort);
+
+        assertEquals(firstNameAt(source, 19), "Joe_01");
+        assertNull(firstNameAt(source, 20));
+        assertEquals(source.getAvailableRows(), 20);
+    }
+
+    @Test
+    public void bookmark_from_earlier_request_seeks_past_last_row_seen()
+    {
+        List<SortConstraint> sort = sortByFirstName(ColumnSort.ASCENDING);
+
+        replay();
+
+        HibernateKeysetGridDataSource first = new HibernateKeysetGridDataSource(session, User.class);
+
+        first.prepare(0, 5, sort);
+
+        Serializable bookmark = first.getBookmark(5);
+
+        assertNotNull(bookmark);
+
+        // A row before the bookmark disappears: seeking past the key still starts with the row after Joe_05, where
+        // skipping five rows would now miss Joe_06.
+
+        deleteFirstUser();
+
+        HibernateKeysetGridDataSource second = new HibernateKeysetGridDataSource(session, User.class);
+
+        second.addBookmark(5, bookmark);
+        second.prepare(5, 10, sort);
+
+        assertEquals(firstNameAt(second, 5), "Joe_06");
+
+        HibernateKeysetGridDataSource unbookmarked = new HibernateKeysetGridDataSource(session, User.class);
+
+        unbookmarked.prepare(5, 10, sort);
+
+        assertEquals(firstNameAt(unbookmarked, 5), "Joe_07");
+    }
+
+    @Test
+    public void bookmark_survives_serialization() throws Exception
+    {
+        List<SortConstraint> sort = sortByFirstName(ColumnSort.ASCENDING);
+
+        replay();
+
+        HibernateKeysetGridDataSource first = new HibernateKeysetGridDataSource(session, User.class);
+
+        first.prepare(0, 5, sort);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+
+        oos.writeObject(first.getBookmark(5));
+        oos.close();
+
+        Serializable bookmark = (Serializable) new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray())).readObject();
+
+        deleteFirstUser();
+
+        HibernateKeysetGridDataSource second = new HibernateKeysetGridDataSource(session, User.class);
+
+        second.addBookmark(5, bookmark);
+        second.prepare(5, 10, sort);
+
+        assertEquals(firstNameAt(second, 5), "Joe_06");
+    }
+
+    @Test
+    public void bookmark_for_different_sort_is_ignored()
+    {
+        List<SortConstraint> ascending = sortByFirstName(ColumnSort.ASCENDING);
+        List<SortConstraint> descending = sortByFirstName(ColumnSort.DESCENDING);
+
+        replay();
+
+        HibernateKeysetGridDataSource first = new HibernateKeysetGridDataSource(session, User.class);
+
+        first.prepare(0, 5, ascending);
+
+        Serializable bookmark = first.getBookmark(5);
+
+        HibernateKeysetGridDataSource second = new HibernateKeysetGridDataSource(session, User.class);
+
+        second.addBookmark(5, bookmark);
+        second.prepare(5, 10, descending);
+
+        assertEquals(firstNameAt(second, 5), "Joe_15");
+        assertNull(second.getBookmark(5));
+    }
+
+    @Test
+    public void bookmark_for_different_restrictions_is_ignored()
+    {
+        List<SortConstraint> sort = sortByFirstName(ColumnSort.ASCENDING);
+
+        replay();
+
+        HibernateKeysetGridDataSource first = new HibernateKeysetGridDataSource(session, User.class);
+
+        first.prepare(0, 5, sort);
+
+        Serializable bookmark = first.getBookmark(5);
+
+        HibernateKeysetGridDataSource restricted = new HibernateKeysetGridDataSource(session, User.class)
+        {
+            @Override
+            protected void applyAdditionalConstraints(Criteria crit)
+            {
+                crit.add(Restrictions.like("firstName", "Joe_1%"));
+            }
+        };
+
+        restricted.addBookmark(5, bookmark);
+        restricted.prepare(5, 10, sort);
+
+        // Joe_10 ... Joe_19, skipping five rows (rather than seeking past Joe_05).
+
+        assertEquals(firstNameAt(restricted, 5), "Joe_15");
+    }
+
+    @Test
+    public void unknown_bookmarks_are_ignored()
+    {
+        HibernateKeysetGridDataSource source = new HibernateKeysetGridDataSource(session, User.class);
+
+        source.addBookmark(5, "not a bookmark");
+
+        assertNull(source.getBookmark(5));
+    }
+}
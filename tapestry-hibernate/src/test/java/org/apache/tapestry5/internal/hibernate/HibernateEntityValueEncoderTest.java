@@ -1,4 +1,4 @@
-// Copyright 2008, 2010, 2011 The Apache Software Foundation
+// Copyright 2008, 2010, 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -15,10 +15,16 @@
 package org.apache.tapestry5.internal.hibernate;
 
 import org.apache.tapestry5.ioc.Registry;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.ioc.services.PropertyAccess;
 import org.apache.tapestry5.ioc.services.TypeCoercer;
 import org.apache.tapestry5.ioc.test.IOCTestCase;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.easymock.EasyMock;
+import org.hibernate.Criteria;
 import org.hibernate.Session;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.mapping.Property;
 import org.hibernate.mapping.RootClass;
 import org.slf4j.Logger;
@@ -26,6 +32,10 @@ import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public class HibernateEntityValueEncoderTest extends IOCTestCase
 {
     private Registry registry;
@@ -131,6 +141,81 @@ public class HibernateEntityValueEncoderTest extends IOCTestCase
         verify();
     }
 
+    @Test
+    public void prefetch_loads_entities_with_a_single_query()
+    {
+        Session session = mockSession();
+        Logger logger = mockLogger();
+        Criteria criteria = newMock(Criteria.class);
+        Capture<Criterion> restriction = new Capture<Criterion>();
+
+        expect(session.createCriteria(SampleEntity.class)).andReturn(criteria);
+        expect(criteria.add(EasyMock.capture(restriction))).andReturn(criteria);
+        expect(criteria.list()).andReturn(Collections.emptyList());
+
+        replay();
+
+        HibernateEntityValueEncoder<SampleEntity> encoder = newEncoder(session, logger);
+
+        encoder.prefetch(Arrays.asList("1", "", "2", null, "3"));
+
+        verify();
+
+        // Blank values are skipped.
+
+        assertEquals(restriction.getValue().toString(), "id in (1, 2, 3)");
+    }
+
+    @Test
+    public void prefetch_loads_many_entities_in_batches()
+    {
+        Session session = mockSession();
+        Logger logger = mockLogger();
+        Criteria criteria = newMock(Criteria.class);
+        Capture<Criterion> restrictions = new Capture<Criterion>(CaptureType.ALL);
+
+        expect(session.createCriteria(SampleEntity.class)).andReturn(criteria).times(3);
+        expect(criteria.add(EasyMock.capture(restrictions))).andReturn(criteria).times(3);
+        expect(criteria.list()).andReturn(Collections.emptyList()).times(3);
+
+        replay();
+
+        HibernateEntityValueEncoder<SampleEntity> encoder = newEncoder(session, logger);
+
+        List<String> clientValues = CollectionFactory.newList();
+
+        for (int i = 1; i <= 1200; i++)
+        {
+            clientValues.add(Integer.toString(i));
+        }
+
+        encoder.prefetch(clientValues);
+
+        verify();
+
+        List<Criterion> batches = restrictions.getValues();
+
+        assertEquals(batches.size(), 3);
+
+        assertTrue(batches.get(0).toString().startsWith("id in (1, 2, "));
+        assertTrue(batches.get(0).toString().endsWith(", 500)"));
+        assertTrue(batches.get(1).toString().startsWith("id in (501, "));
+        assertTrue(batches.get(1).toString().endsWith(", 1000)"));
+        assertTrue(batches.get(2).toString().startsWith("id in (1001, "));
+        assertTrue(batches.get(2).toString().endsWith(", 1200)"));
+    }
+
+    private HibernateEntityValueEncoder<SampleEntity> newEncoder(Session session, Logger logger)
+    {
+        RootClass persistentClass = new RootClass();
+        Property idProperty = new Property();
+        idProperty.setName("id");
+        persistentClass.setIdentifierProperty(idProperty);
+
+        return new HibernateEntityValueEncoder<SampleEntity>(SampleEntity.class, persistentClass, session, access,
+                typeCoercer, logger);
+    }
+
     protected final Session mockSession()
     {
         return newMock(Session.class);
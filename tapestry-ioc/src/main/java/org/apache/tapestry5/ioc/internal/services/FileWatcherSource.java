@@ -0,0 +1,33 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.ioc.internal.services;
+
+import org.apache.tapestry5.ioc.internal.util.FileWatcher;
+
+/**
+ * Provides the {@link FileWatcher} shared by the {@link org.apache.tapestry5.ioc.internal.util.URLChangeTracker}s
+ * within a registry. The watcher is created when first needed, and closed when the registry shuts down, releasing
+ * the operating system's watches along with any listeners (and so, the class loaders they reference).
+ *
+ * @since 5.4
+ */
+public interface FileWatcherSource
+{
+    /**
+     * Returns the registry's watcher, or null if the JDK can't watch for changes (prior to JDK 1.7, or when its
+     * watch service would simply poll), or the registry has shut down.
+     */
+    FileWatcher getFileWatcher();
+}
@@ -0,0 +1,72 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.ioc.internal.services;
+
+import org.apache.tapestry5.ioc.internal.util.FileWatcher;
+import org.apache.tapestry5.ioc.services.RegistryShutdownHub;
+
+public class FileWatcherSourceImpl implements FileWatcherSource
+{
+    private boolean initialized;
+
+    private FileWatcher watcher;
+
+    public FileWatcherSourceImpl(RegistryShutdownHub shutdownHub)
+    {
+        shutdownHub.addRegistryShutdownListener(new Runnable()
+        {
+            public void run()
+            {
+                close();
+            }
+        });
+    }
+
+    public synchronized FileWatcher getFileWatcher()
+    {
+        if (!initialized)
+        {
+            initialized = true;
+
+            watcher = create();
+        }
+
+        return watcher;
+    }
+
+    private static FileWatcher create()
+    {
+        try
+        {
+            return FileWatcher.create();
+        } catch (LinkageError ex)
+        {
+            // The java.nio.file package does not exist prior to JDK 1.7.
+            return null;
+        }
+    }
+
+    private synchronized void close()
+    {
+        initialized = true;
+
+        if (watcher != null)
+        {
+            watcher.close();
+
+            watcher = null;
+        }
+    }
+}
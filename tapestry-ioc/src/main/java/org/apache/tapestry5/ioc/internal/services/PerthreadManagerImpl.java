@@ -1,4 +1,4 @@
-// Copyright 2006-2013 The Apache Software Foundation
+// Copyright 2006-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -167,6 +167,38 @@ public class PerthreadManagerImpl implements PerthreadManager
         }
     }
 
+    public Object detach()
+    {
+        lock.lock();
+
+        try
+        {
+            Map map = holder.get();
+
+            holder.remove();
+
+            return map;
+        } finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public void attach(Object data)
+    {
+        assert data instanceof Map;
+
+        lock.lock();
+
+        try
+        {
+            holder.set((Map) data);
+        } finally
+        {
+            lock.unlock();
+        }
+    }
+
     private static Object NULL_VALUE = new Object();
 
     <T> PerThreadValue<T> createValue(final Object key)
@@ -0,0 +1,290 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.ioc.internal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.*;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Watches folders for changes to the files within them, using a {@link WatchService}. Events are not delivered as they
+ * occur, but only when the watcher is {@linkplain #poll() polled}; each event is delivered to every listener for the
+ * folder. Listeners are weakly referenced, so that a discarded {@link URLChangeTracker} is simply forgotten.
+ * <p/>
+ * A watcher holds operating system resources until it is {@linkplain #close() closed}; within a registry, a single
+ * watcher is shared by all trackers, and is closed when the registry shuts down (see
+ * {@link org.apache.tapestry5.ioc.internal.services.FileWatcherSource}).
+ * <p/>
+ * This class requires JDK 1.7 (or better), and must only be loaded when that is the case; without a watcher,
+ * {@link URLChangeTracker} falls back to checking the timestamp of each file.
+ *
+ * @since 5.4
+ */
+public class FileWatcher
+{
+    /**
+     * Notified (when the watcher is polled) of changes within a watched folder.
+     */
+    public interface Listener
+    {
+        /**
+         * Invoked when a file (or sub-folder) within the folder has been created, modified or deleted.
+         */
+        void fileChanged(File folder, File file);
+
+        /**
+         * Invoked when events for the folder may have been lost, or when the folder can no longer be watched (for
+         * example, because it has been deleted). Any file within the folder may have changed, and the folder is no
+         * longer watched on behalf of the listener.
+         */
+        void watchLost(File folder);
+    }
+
+    private final WatchService watchService;
+
+    private final Map<WatchKey, File> keyToFolder = CollectionFactory.newMap();
+
+    private final Map<File, WatchKey> folderToKey = CollectionFactory.newMap();
+
+    private final Map<File, List<WeakReference<Listener>>> folderToListeners = CollectionFactory.newMap();
+
+    private boolean closed;
+
+    private FileWatcher(WatchService watchService)
+    {
+        this.watchService = watchService;
+    }
+
+    /**
+     * Creates a new watcher. Returns null if the platform's WatchService is not available, or is itself implemented by
+     * periodically scanning each watched folder (as on some platforms), as that is slower to detect changes than simply
+     * checking the timestamps of the files.
+     */
+    public static FileWatcher create()
+    {
+        try
+        {
+            WatchService watchService = FileSystems.getDefault().newWatchService();
+
+            if (watchService.getClass().getName().endsWith("PollingWatchService"))
+            {
+                watchService.close();
+
+                return null;
+            }
+
+            return new FileWatcher(watchService);
+        } catch (IOException ex)
+        {
+            return null;
+        } catch (UnsupportedOperationException ex)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Stops watching all folders, releasing the operating system's resources, and forgets all listeners. Once closed,
+     * no folder can be watched.
+     */
+    public synchronized void close()
+    {
+        if (closed)
+        {
+            return;
+        }
+
+        closed = true;
+
+        keyToFolder.clear();
+        folderToKey.clear();
+        folderToListeners.clear();
+
+        try
+        {
+            watchService.close();
+        } catch (IOException ex)
+        {
+            // Ignore.
+        }
+    }
+
+    /**
+     * Starts watching the folder on behalf of the listener (if not already doing so).
+     *
+     * @return true if the folder is now watched, false if it could not be watched (for example, because the operating
+     *         system's limit on watched folders has been reached, or the watcher has been closed)
+     */
+    public synchronized boolean watch(File folder, Listener listener)
+    {
+        assert folder != null;
+        assert listener != null;
+
+        if (closed)
+        {
+            return false;
+        }
+
+        List<WeakReference<Listener>> listeners = folderToListeners.get(folder);
+
+        if (listeners == null)
+        {
+            try
+            {
+                WatchKey key = folder.toPath().register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+
+                keyToFolder.put(key, folder);
+                folderToKey.put(folder, key);
+            } catch (IOException ex)
+            {
+                return false;
+            } catch (InvalidPathException ex)
+            {
+                return false;
+            }
+
+            listeners = CollectionFactory.newList();
+
+            folderToListeners.put(folder, listeners);
+        }
+
+        for (WeakReference<Listener> ref : listeners)
+        {
+            if (ref.get() == listener)
+            {
+                return true;
+            }
+        }
+
+        listeners.add(new WeakReference<Listener>(listener));
+
+        return true;
+    }
+
+    /**
+     * Delivers all events that have occurred since the prior poll to the listeners, without blocking.
+     */
+    public synchronized void poll()
+    {
+        if (closed)
+        {
+            return;
+        }
+
+        while (true)
+        {
+            WatchKey key = watchService.poll();
+
+            if (key == null)
+            {
+                return;
+            }
+
+            File folder = keyToFolder.get(key);
+
+            if (folder == null)
+            {
+                // Canceled while the event was in flight.
+                continue;
+            }
+
+            List<File> changed = CollectionFactory.newList();
+            boolean lost = false;
+
+            for (WatchEvent<?> event : key.pollEvents())
+            {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                {
+                    lost = true;
+                } else
+                {
+                    changed.add(new File(folder, event.context().toString()));
+                }
+            }
+
+            if (!key.reset())
+            {
+                lost = true;
+            }
+
+            if (lost)
+            {
+                // Listeners will check for themselves from now on.
+                cancel(folder);
+            }
+
+            notifyListeners(folder, changed, lost);
+        }
+    }
+
+    private void notifyListeners(File folder, List<File> changed, boolean lost)
+    {
+        List<WeakReference<Listener>> listeners = lost ? folderToListeners.remove(folder) : folderToListeners.get(folder);
+
+        if (listeners == null)
+        {
+            return;
+        }
+
+        Iterator<WeakReference<Listener>> i = listeners.iterator();
+
+        while (i.hasNext())
+        {
+            Listener listener = i.next().get();
+
+            if (listener == null)
+            {
+                i.remove();
+                continue;
+            }
+
+            for (File file : changed)
+            {
+                listener.fileChanged(folder, file);
+            }
+
+            if (lost)
+            {
+                listener.watchLost(folder);
+            }
+        }
+
+        // No one left who cares about this folder.
+
+        if (!lost && listeners.isEmpty())
+        {
+            cancel(folder);
+            folderToListeners.remove(folder);
+        }
+    }
+
+    private void cancel(File folder)
+    {
+        WatchKey key = folderToKey.remove(folder);
+
+        if (key != null)
+        {
+            keyToFolder.remove(key);
+            key.cancel();
+        }
+    }
+}
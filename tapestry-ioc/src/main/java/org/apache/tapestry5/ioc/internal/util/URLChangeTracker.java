@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2010 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2010, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -19,9 +19,13 @@ import org.apache.tapestry5.ioc.services.ClasspathURLConverter;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Given a (growing) set of URLs, can periodically check to see if any of the underlying resources has changed. This
@@ -29,6 +33,10 @@ import java.util.Map;
  * granularity is used by default. Second-level granularity is provided for compatibility with browsers vis-a-vis
  * resource caching -- that's how granular they get with their "If-Modified-Since", "Last-Modified" and "Expires"
  * headers.
+ * <p/>
+ * Optionally, the tracker can {@linkplain FileWatcher watch} the folders containing the tracked files, in which case
+ * only files within folders that have reported changes are checked, rather than every tracked file. Files that can't be
+ * watched (including all files, when running on a JDK prior to 1.7) are still checked every time.
  */
 public class URLChangeTracker
 {
@@ -42,6 +50,29 @@ public class URLChangeTracker
 
     private final ClasspathURLConverter classpathURLConverter;
 
+    /**
+     * The URLs, as originally added, for each tracked file (but not for tracked folders).
+     */
+    private final Map<File, URL> fileToURL = CollectionFactory.newConcurrentMap();
+
+    /**
+     * Null when not watching for changes.
+     */
+    private final FileWatcher watcher;
+
+    /**
+     * When watching, tracked files (and folders) that can't be watched, and so must be checked every time.
+     */
+    private final Map<File, Boolean> unwatched = CollectionFactory.newConcurrentMap();
+
+    /**
+     * When watching, files (and folders) that have been reported as changed since the prior check; this may include
+     * files that are not tracked.
+     */
+    private final Map<File, Boolean> reported = CollectionFactory.newConcurrentMap();
+
+    private final FileWatcher.Listener listener;
+
     public static final ClasspathURLConverter DEFAULT_CONVERTER = new ClasspathURLConverterImpl();
 
     /**
@@ -95,10 +126,74 @@ public class URLChangeTracker
      */
     public URLChangeTracker(ClasspathURLConverter classpathURLConverter, boolean granularitySeconds,
             boolean trackFolderChanges)
+    {
+        this(classpathURLConverter, granularitySeconds, trackFolderChanges, null);
+    }
+
+    /**
+     * Creates a new URL change tracker, using either millisecond-level granularity or second-level granularity, and
+     * optionally watching for changes.
+     *
+     * @param classpathURLConverter
+     *            used to convert URLs from one protocol to another
+     * @param granularitySeconds
+     *            whether or not to use second granularity (as opposed to millisecond granularity)
+     * @param trackFolderChanges
+     *            if true, then adding a file URL will also track the folder containing the file (this
+     *            is useful when concerned about additions to a folder)
+     * @param watcher
+     *            if not null, then the folders containing tracked files are watched, and only files within folders
+     *            reporting changes are checked; this is much faster when many files are tracked, but changes may be
+     *            detected only after a slight delay. The watcher is not closed by the tracker.
+     * @since 5.4
+     */
+    public URLChangeTracker(ClasspathURLConverter classpathURLConverter, boolean granularitySeconds,
+            boolean trackFolderChanges, FileWatcher watcher)
     {
         this.granularitySeconds = granularitySeconds;
         this.classpathURLConverter = classpathURLConverter;
         this.trackFolderChanges = trackFolderChanges;
+        this.watcher = watcher;
+
+        listener = watcher == null ? null : createListener();
+    }
+
+    private FileWatcher.Listener createListener()
+    {
+        return new FileWatcher.Listener()
+        {
+            public void fileChanged(File folder, File file)
+            {
+                // The folder's timestamp changes when files are created or deleted.
+                reported.put(folder, true);
+                reported.put(file, true);
+            }
+
+            public void watchLost(File folder)
+            {
+                reported.put(folder, true);
+                unwatched.put(folder, true);
+
+                for (File file : fileToTimestamp.keySet())
+                {
+                    if (folder.equals(file.getParentFile()))
+                    {
+                        unwatched.put(file, true);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns true if the tracker watches for changes, rather than checking each file; this will be false if no
+     * watcher was provided.
+     *
+     * @since 5.4
+     */
+    public boolean isWatching()
+    {
+        return watcher != null;
     }
 
     /**
@@ -154,15 +249,30 @@ public class URLChangeTracker
         // is added, add the directory containing the file as well.
 
         fileToTimestamp.put(resourceFile, timestamp);
+        fileToURL.put(resourceFile, url);
 
-        if (trackFolderChanges)
+        File dir = resourceFile.getParentFile();
+
+        boolean watched = watcher != null && watcher.watch(dir, listener);
+
+        if (!watched)
         {
-            File dir = resourceFile.getParentFile();
+            unwatched.put(resourceFile, true);
+        }
 
+        if (trackFolderChanges)
+        {
             if (!fileToTimestamp.containsKey(dir))
             {
                 long dirTimestamp = readTimestamp(dir);
                 fileToTimestamp.put(dir, dirTimestamp);
+
+                // The folder's own changes are reported by watching the folder.
+
+                if (!watched)
+                {
+                    unwatched.put(dir, true);
+                }
             }
         }
 
@@ -191,6 +301,9 @@ public class URLChangeTracker
     public void clear()
     {
         fileToTimestamp.clear();
+        fileToURL.clear();
+        unwatched.clear();
+        reported.clear();
     }
 
     /**
@@ -198,27 +311,81 @@ public class URLChangeTracker
      */
     public boolean containsChanges()
     {
-        boolean result = false;
+        return !findChanges().isEmpty();
+    }
+
+    /**
+     * Re-acquires the last updated timestamp for each URL (or, when watching, for each URL that may have changed) and
+     * returns the URLs that have changed. These are the URLs as originally {@linkplain #add(URL) added}; when tracking
+     * folder changes, the result may also include the "file:" URL of a folder in which a file has been created or
+     * deleted.
+     *
+     * @return the changed URLs, possibly empty
+     * @since 5.4
+     */
+    public List<URL> findChanges()
+    {
+        List<URL> result = CollectionFactory.newList();
 
         // This code would be highly suspect if this method was expected to be invoked
         // concurrently, but CheckForUpdatesFilter ensures that it will be invoked
         // synchronously.
 
-        for (Map.Entry<File, Long> entry : fileToTimestamp.entrySet())
+        for (File file : candidates())
         {
-            long newTimestamp = readTimestamp(entry.getKey());
-            long current = entry.getValue();
+            Long current = fileToTimestamp.get(file);
+
+            if (current == null)
+                continue;
+
+            long newTimestamp = readTimestamp(file);
 
             if (current == newTimestamp)
                 continue;
 
-            result = true;
-            entry.setValue(newTimestamp);
+            fileToTimestamp.put(file, newTimestamp);
+
+            result.add(toURL(file));
         }
 
         return result;
     }
 
+    private Collection<File> candidates()
+    {
+        if (watcher == null)
+            return fileToTimestamp.keySet();
+
+        watcher.poll();
+
+        Set<File> result = CollectionFactory.newSet(unwatched.keySet());
+
+        for (File file : reported.keySet())
+        {
+            reported.remove(file);
+
+            result.add(file);
+        }
+
+        return result;
+    }
+
+    private URL toURL(File file)
+    {
+        URL url = fileToURL.get(file);
+
+        if (url != null)
+            return url;
+
+        try
+        {
+            return file.toURI().toURL();
+        } catch (MalformedURLException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+    }
+
     /**
      * Returns the time that the specified file was last modified, possibly rounded down to the nearest second.
      */
@@ -251,6 +418,8 @@ public class URLChangeTracker
         for (Map.Entry<File, Long> e : fileToTimestamp.entrySet())
         {
             e.setValue(0l);
+
+            reported.put(e.getKey(), true);
         }
     }
 
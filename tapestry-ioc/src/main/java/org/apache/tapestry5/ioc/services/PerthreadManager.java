@@ -1,4 +1,4 @@
-// Copyright 2006-2013 The Apache Software Foundation
+// Copyright 2006-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -50,6 +50,26 @@ public interface PerthreadManager
      */
     void cleanup();
 
+    /**
+     * Detaches all the per-thread data of the current thread (including the cleanup callbacks), leaving the thread as
+     * if just {@linkplain #cleanup() cleaned up}. The returned object is opaque; it is passed to {@link #attach(Object)}
+     * to continue the same work (for example, a suspended request) in another thread.
+     *
+     * @return the detached per-thread data
+     * @since 5.4
+     */
+    Object detach();
+
+    /**
+     * Attaches per-thread data previously {@linkplain #detach() detached}, replacing any per-thread data of the
+     * current thread (which should first be detached itself, if it is to be kept).
+     *
+     * @param data
+     *         returned from {@link #detach()}
+     * @since 5.4
+     */
+    void attach(Object data);
+
     /**
      * Creates a value using a unique internal key.
      *
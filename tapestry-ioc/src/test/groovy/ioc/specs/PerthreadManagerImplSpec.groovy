@@ -179,5 +179,40 @@ class PerthreadManagerImplSpec extends Specification {
 
   }
 
+  def "detached per-thread data may be attached to another thread"() {
+    Logger logger = Mock()
+    ThreadCleanupListener listener = Mock()
+
+    def manager = new PerthreadManagerImpl(logger)
+    def value = manager.createValue()
+
+    value.set "fred"
+    manager.addThreadCleanupListener listener
+
+    when:
+
+    def data = manager.detach()
+
+    then:
 
+    !value.exists()
+
+    when:
+
+    def seen = null
+    def thread = new Thread({
+      manager.attach data
+      seen = value.get()
+      manager.cleanup()
+    } as Runnable)
+
+    thread.start()
+    thread.join()
+
+    then:
+
+    seen == "fred"
+    1 * listener.threadDidCleanup()
+    !value.exists()
+  }
 }
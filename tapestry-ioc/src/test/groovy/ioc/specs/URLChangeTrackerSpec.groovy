@@ -1,6 +1,7 @@
 package ioc.specs
 
 import org.apache.tapestry5.ioc.internal.services.ClasspathURLConverterImpl
+import org.apache.tapestry5.ioc.internal.util.FileWatcher
 import org.apache.tapestry5.ioc.internal.util.URLChangeTracker
 import org.apache.tapestry5.ioc.services.ClasspathURLConverter
 import spock.lang.Shared
@@ -184,4 +185,76 @@ class URLChangeTrackerSpec extends Specification {
     updated % 1000 == 0
     updated != initial
   }
+
+  def "the changed URLs are identified"() {
+    tracker = new URLChangeTracker(converter, false, false)
+
+    def changed = newFile()
+    def unchanged = newFile()
+
+    when:
+
+    tracker.add(changed.toURL())
+    tracker.add(unchanged.toURL())
+
+    touch(changed)
+
+    then:
+
+    tracker.findChanges() == [changed.toURL()]
+    tracker.findChanges().empty
+  }
+
+  def "when watching, changes reported by the file watcher are detected"() {
+    def watcher = FileWatcher.create()
+
+    tracker = new URLChangeTracker(converter, false, true, watcher)
+
+    def file = newFile()
+
+    when:
+
+    tracker.add(file.toURL())
+
+    then:
+
+    !tracker.containsChanges()
+
+    when:
+
+    touch(file)
+
+    // The watcher reports the change asynchronously.
+
+    def changes = []
+
+    for (int i = 0; i < 50 && changes.empty; i++) {
+      Thread.sleep 100
+      changes = tracker.findChanges()
+    }
+
+    then:
+
+    changes == [file.toURL()]
+    !tracker.containsChanges()
+
+    cleanup:
+
+    watcher?.close()
+  }
+
+  def "a closed file watcher no longer watches folders"() {
+    // Null on platforms whose watch service would simply poll.
+    def watcher = FileWatcher.create()
+
+    def listener = Mock(FileWatcher.Listener)
+
+    when:
+
+    watcher?.close()
+
+    then:
+
+    watcher == null || !watcher.watch(newFile().parentFile, listener)
+  }
 }
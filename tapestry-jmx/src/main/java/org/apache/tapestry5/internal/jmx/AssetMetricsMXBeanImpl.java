@@ -0,0 +1,81 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.jmx;
+
+import org.apache.tapestry5.jmx.AssetMetricsMXBean;
+import org.apache.tapestry5.services.assets.AssetMetrics;
+import org.apache.tapestry5.services.assets.AssetStatistics;
+
+import java.util.List;
+
+public class AssetMetricsMXBeanImpl implements AssetMetricsMXBean
+{
+    private final AssetMetrics metrics;
+
+    public AssetMetricsMXBeanImpl(AssetMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    public List<AssetStatistics> getStatistics()
+    {
+        return metrics.getStatistics();
+    }
+
+    public long getRequests()
+    {
+        return metrics.getTotals().getRequests();
+    }
+
+    public long getNotModified()
+    {
+        return metrics.getTotals().getNotModified();
+    }
+
+    public long getCacheHits()
+    {
+        return metrics.getTotals().getCacheHits();
+    }
+
+    public long getCacheMisses()
+    {
+        return metrics.getTotals().getCacheMisses();
+    }
+
+    public int getCacheHitRate()
+    {
+        return metrics.getTotals().getCacheHitRate();
+    }
+
+    public long getCompressedBytes()
+    {
+        return metrics.getTotals().getCompressedBytes();
+    }
+
+    public long getUncompressedBytes()
+    {
+        return metrics.getTotals().getUncompressedBytes();
+    }
+
+    public long getTotalTime()
+    {
+        return metrics.getTotals().getTotalTime();
+    }
+
+    public void reset()
+    {
+        metrics.reset();
+    }
+}
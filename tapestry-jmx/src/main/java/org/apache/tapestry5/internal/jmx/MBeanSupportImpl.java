@@ -1,4 +1,4 @@
-// Copyright 2010, 2011 The Apache Software Foundation
+// Copyright 2010, 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -25,7 +25,9 @@ import javax.management.MBeanServer;
 import javax.management.MBeanServerFactory;
 import javax.management.ObjectName;
 import java.lang.management.ManagementFactory;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static java.lang.String.format;
@@ -41,6 +43,16 @@ public class MBeanSupportImpl implements MBeanSupport
     private final Set<ObjectName> registeredBeans = CollectionFactory.newSet();
 
     public MBeanSupportImpl(Logger logger)
+    {
+        this(logger, Collections.<String, Object>emptyMap());
+    }
+
+    /**
+     * @param beans
+     *         contributed MBeans, keyed on object name; registered immediately
+     * @since 5.4
+     */
+    public MBeanSupportImpl(Logger logger, Map<String, Object> beans)
     {
         this.logger = logger;
 
@@ -54,12 +66,17 @@ public class MBeanSupportImpl implements MBeanSupport
             server = servers.get(0);
         }
 
-        if (this.server == null)
+        if (server == null)
         {
             server = ManagementFactory.getPlatformMBeanServer();
         }
 
         this.server = server;
+
+        for (Map.Entry<String, Object> entry : beans.entrySet())
+        {
+            register(entry.getValue(), entry.getKey());
+        }
     }
 
     @PostInjection
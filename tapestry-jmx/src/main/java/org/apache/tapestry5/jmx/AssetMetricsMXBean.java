@@ -0,0 +1,63 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.jmx;
+
+import org.apache.tapestry5.services.assets.AssetStatistics;
+
+import java.util.List;
+
+/**
+ * Exposes the {@link org.apache.tapestry5.services.assets.AssetMetrics} service via JMX, with the name
+ * {@link #OBJECT_NAME} qualified by the application's context path and name. The attributes other than {@linkplain #getStatistics() statistics} are the totals for all
+ * assets and stacks.
+ *
+ * @since 5.4
+ */
+public interface AssetMetricsMXBean
+{
+    /**
+     * The base object name; the registered name adds <code>context</code> and <code>app</code> keys.
+     */
+    String OBJECT_NAME = "org.apache.tapestry5:service=AssetMetrics";
+
+    /**
+     * Statistics for each asset and JavaScript stack.
+     */
+    List<AssetStatistics> getStatistics();
+
+    long getRequests();
+
+    long getNotModified();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    int getCacheHitRate();
+
+    long getCompressedBytes();
+
+    long getUncompressedBytes();
+
+    /**
+     * Total processing time, in milliseconds.
+     */
+    long getTotalTime();
+
+    /**
+     * Discards all collected metrics.
+     */
+    void reset();
+}
@@ -1,4 +1,4 @@
-// Copyright 2010, 2011 The Apache Software Foundation
+// Copyright 2010, 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,14 +14,20 @@
 
 package org.apache.tapestry5.jmx;
 
+import org.apache.tapestry5.ioc.annotations.UsesMappedConfiguration;
+
 import javax.management.ObjectName;
 
 /**
  * Creates an MBean server and registers MBeans with the created server. The registered MBeans are unregistered when
  * Registry is shut down.
+ * <p/>
+ * The configuration maps object names to MBeans, which are registered as soon as the service is realized (at
+ * startup); this allows other modules to expose MBeans without a dependency on this module.
  * 
  * @since 5.2.0
  */
+@UsesMappedConfiguration(key = String.class, value = Object.class)
 public interface MBeanSupport
 {
 
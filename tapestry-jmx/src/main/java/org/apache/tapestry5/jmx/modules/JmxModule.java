@@ -1,4 +1,4 @@
-// Copyright 2010-2013 The Apache Software Foundation
+// Copyright 2010-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,9 +14,18 @@
 
 package org.apache.tapestry5.jmx.modules;
 
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.internal.InternalSymbols;
+import org.apache.tapestry5.internal.jmx.AssetMetricsMXBeanImpl;
 import org.apache.tapestry5.internal.jmx.MBeanSupportImpl;
 import org.apache.tapestry5.ioc.ServiceBinder;
+import org.apache.tapestry5.ioc.annotations.Startup;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.jmx.AssetMetricsMXBean;
 import org.apache.tapestry5.jmx.MBeanSupport;
+import org.apache.tapestry5.services.assets.AssetMetrics;
+
+import javax.management.ObjectName;
 
 /**
  * Module for JMX services.
@@ -27,4 +36,24 @@ public class JmxModule
     {
         binder.bind(MBeanSupport.class, MBeanSupportImpl.class);
     }
+
+    /**
+     * Registers the {@link AssetMetricsMXBean}. The object name includes the application's context path and name, so
+     * that several applications in the same container each expose their own metrics. This also realizes
+     * {@link MBeanSupport} at startup, registering the MBeans contributed to it.
+     *
+     * @since 5.4
+     */
+    @Startup
+    public static void registerAssetMetrics(MBeanSupport support, AssetMetrics metrics,
+
+                                            @Symbol(SymbolConstants.CONTEXT_PATH)
+                                            String contextPath,
+
+                                            @Symbol(InternalSymbols.APP_NAME)
+                                            String appName)
+    {
+        support.register(new AssetMetricsMXBeanImpl(metrics), String.format("%s,context=%s,app=%s",
+                AssetMetricsMXBean.OBJECT_NAME, ObjectName.quote(contextPath), ObjectName.quote(appName)));
+    }
 }
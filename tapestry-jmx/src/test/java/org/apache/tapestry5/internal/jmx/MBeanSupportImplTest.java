@@ -0,0 +1,48 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.jmx;
+
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.test.TestBase;
+import org.example.testapp.services.SampleImpl;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+public class MBeanSupportImplTest extends TestBase
+{
+    @Test
+    public void contributed_beans_are_registered() throws Exception
+    {
+        ObjectName name = new ObjectName("org.example.testapp.services:service=Contributed,app=\"first\"");
+        Map<String, Object> beans = CollectionFactory.newMap();
+
+        beans.put(name.toString(), new SampleImpl());
+
+        MBeanSupportImpl support = new MBeanSupportImpl(LoggerFactory.getLogger(MBeanSupportImpl.class), beans);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        assertTrue(server.isRegistered(name));
+
+        support.unregister(name);
+
+        assertFalse(server.isRegistered(name));
+    }
+}
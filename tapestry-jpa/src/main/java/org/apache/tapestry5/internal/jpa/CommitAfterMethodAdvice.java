@@ -1,4 +1,4 @@
-// Copyright 2011, 2012 The Apache Software Foundation
+// Copyright 2011, 2012, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,12 +14,15 @@
 
 package org.apache.tapestry5.internal.jpa;
 
+import org.apache.tapestry5.jpa.CommitMode;
 import org.apache.tapestry5.jpa.EntityManagerManager;
+import org.apache.tapestry5.jpa.annotations.CommitAfter;
 import org.apache.tapestry5.plastic.MethodAdvice;
 import org.apache.tapestry5.plastic.MethodInvocation;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
+import javax.persistence.FlushModeType;
 import javax.persistence.PersistenceContext;
 
 public class CommitAfterMethodAdvice implements MethodAdvice
@@ -28,15 +31,54 @@ public class CommitAfterMethodAdvice implements MethodAdvice
 
     private final PersistenceContext annotation;
 
+    private final boolean atEndOfRequest;
+
+    private final FlushModeType flushMode;
+
     public CommitAfterMethodAdvice(final EntityManagerManager manager, PersistenceContext annotation)
+    {
+        this(manager, annotation, null);
+    }
+
+    /**
+     * @since 5.4
+     */
+    public CommitAfterMethodAdvice(final EntityManagerManager manager, PersistenceContext annotation,
+                                   CommitAfter commitAfter)
     {
         this.manager = manager;
         this.annotation = annotation;
+
+        atEndOfRequest = commitAfter != null && commitAfter.mode() == CommitMode.END_OF_REQUEST;
+        flushMode = commitAfter == null || commitAfter.flushMode() == FlushModeType.AUTO ? null : commitAfter.flushMode();
     }
 
     public void advise(final MethodInvocation invocation)
     {
-        final EntityTransaction transaction = getTransaction();
+        final EntityManager em = JpaInternalUtils.getEntityManager(manager, annotation);
+
+        if (em == null || flushMode == null)
+        {
+            proceedAndCommit(em, invocation);
+            return;
+        }
+
+        final FlushModeType previousFlushMode = em.getFlushMode();
+
+        em.setFlushMode(flushMode);
+
+        try
+        {
+            proceedAndCommit(em, invocation);
+        } finally
+        {
+            em.setFlushMode(previousFlushMode);
+        }
+    }
+
+    private void proceedAndCommit(final EntityManager em, final MethodInvocation invocation)
+    {
+        final EntityTransaction transaction = em == null ? null : em.getTransaction();
 
         if (transaction != null && !transaction.isActive())
         {
@@ -60,7 +102,13 @@ public class CommitAfterMethodAdvice implements MethodAdvice
 
         if (transaction != null && transaction.isActive())
         {
-            transaction.commit();
+            if (atEndOfRequest)
+            {
+                manager.commitAtEndOfRequest(em);
+            } else
+            {
+                transaction.commit();
+            }
         }
 
     }
@@ -74,15 +122,4 @@ public class CommitAfterMethodAdvice implements MethodAdvice
         { // Ignore
         }
     }
-
-    private EntityTransaction getTransaction()
-    {
-        EntityManager em = JpaInternalUtils.getEntityManager(manager, annotation);
-
-        if (em == null)
-            return null;
-
-        return em.getTransaction();
-    }
-
 }
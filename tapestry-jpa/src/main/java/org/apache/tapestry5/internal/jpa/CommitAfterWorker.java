@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -17,7 +17,6 @@ package org.apache.tapestry5.internal.jpa;
 import org.apache.tapestry5.jpa.EntityManagerManager;
 import org.apache.tapestry5.jpa.annotations.CommitAfter;
 import org.apache.tapestry5.model.MutableComponentModel;
-import org.apache.tapestry5.plastic.MethodAdvice;
 import org.apache.tapestry5.plastic.PlasticClass;
 import org.apache.tapestry5.plastic.PlasticMethod;
 import org.apache.tapestry5.services.transform.ComponentClassTransformWorker2;
@@ -27,16 +26,11 @@ import javax.persistence.PersistenceContext;
 
 public class CommitAfterWorker implements ComponentClassTransformWorker2
 {
-
-    private final MethodAdvice shared;
-
     private final EntityManagerManager manager;
 
     public CommitAfterWorker(EntityManagerManager manager)
     {
         this.manager = manager;
-
-        shared = new CommitAfterMethodAdvice(manager, null);
     }
 
     public void transform(PlasticClass plasticClass, TransformationSupport support, MutableComponentModel model)
@@ -46,9 +40,7 @@ public class CommitAfterWorker implements ComponentClassTransformWorker2
         {
             PersistenceContext annotation = method.getAnnotation(PersistenceContext.class);
 
-            MethodAdvice advice = annotation == null ? shared : new CommitAfterMethodAdvice(manager, annotation);
-
-            method.addAdvice(advice);
+            method.addAdvice(new CommitAfterMethodAdvice(manager, annotation, method.getAnnotation(CommitAfter.class)));
         }
     }
 }
@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -15,8 +15,10 @@
 package org.apache.tapestry5.internal.jpa;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import javax.persistence.EntityManager;
 import javax.persistence.spi.PersistenceUnitInfo;
@@ -35,6 +37,8 @@ public class EntityManagerManagerImpl implements EntityManagerManager, ThreadCle
 
     private final Map<String, EntityManager> entityManagers = CollectionFactory.newMap();
 
+    private final Set<EntityManager> commitAtEndOfRequest = CollectionFactory.newSet();
+
     public EntityManagerManagerImpl(final EntityManagerSource entityManagerSource,
             final Logger logger)
     {
@@ -83,8 +87,87 @@ public class EntityManagerManagerImpl implements EntityManagerManager, ThreadCle
         return em;
     }
 
+    public void commitAtEndOfRequest(final EntityManager entityManager)
+    {
+        assert entityManager != null;
+
+        commitAtEndOfRequest.add(entityManager);
+    }
+
+    public void commitPendingTransactions()
+    {
+        if (commitAtEndOfRequest.isEmpty())
+        {
+            return;
+        }
+
+        final long startNanos = System.nanoTime();
+
+        int commits = 0;
+
+        // No longer pending, even if a commit fails.
+
+        final List<EntityManager> pending = CollectionFactory.newList(commitAtEndOfRequest);
+
+        commitAtEndOfRequest.clear();
+
+        try
+        {
+            for (final EntityManager em : pending)
+            {
+                if (em.isOpen() && em.getTransaction().isActive())
+                {
+                    em.getTransaction().commit();
+
+                    commits++;
+                }
+            }
+        }
+        catch (final RuntimeException ex)
+        {
+            rollbackTransactions(pending);
+
+            throw ex;
+        }
+
+        if (logger.isDebugEnabled() && commits > 0)
+        {
+            logger.debug(String.format("Committed %,d transactions at the end of the request (%,.2f ms, including flushes).",
+                    commits, (System.nanoTime() - startNanos) / 1000000d));
+        }
+    }
+
+    private void rollbackTransactions(final List<EntityManager> entityManagers)
+    {
+        for (final EntityManager em : entityManagers)
+        {
+            try
+            {
+                if (em.isOpen() && em.getTransaction().isActive())
+                {
+                    em.getTransaction().rollback();
+                }
+            }
+            catch (final RuntimeException ex)
+            {
+                // Ignore.
+            }
+        }
+    }
+
     public void threadDidCleanup()
     {
+        try
+        {
+            commitPendingTransactions();
+        }
+        catch (final RuntimeException ex)
+        {
+            // Outside of a web request, or with the response already sent, this can only be logged.
+
+            logger.error(String.format("Unable to commit the transaction at the end of the request: %s", ex), ex);
+        }
+
         for (final Entry<String, EntityManager> next : entityManagers.entrySet())
         {
             try
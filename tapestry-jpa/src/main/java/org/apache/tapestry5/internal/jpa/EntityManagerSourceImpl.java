@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -38,12 +38,20 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 public class EntityManagerSourceImpl implements EntityManagerSource
 {
-    private final Map<String, EntityManagerFactory> entityManagerFactories = CollectionFactory
-            .newMap();
+    /**
+     * Each factory is created by the first thread to need it; other threads needing the same factory wait for it,
+     * while factories for other persistence units may be created at the same time.
+     */
+    private final ConcurrentMap<String, Future<EntityManagerFactory>> entityManagerFactories = CollectionFactory
+            .newConcurrentMap();
 
     private final Logger logger;
 
@@ -178,16 +186,47 @@ public class EntityManagerSourceImpl implements EntityManagerSource
      */
     public EntityManagerFactory getEntityManagerFactory(final String persistenceUnitName)
     {
-        EntityManagerFactory emf = entityManagerFactories.get(persistenceUnitName);
+        Future<EntityManagerFactory> future = entityManagerFactories.get(persistenceUnitName);
 
-        if (emf == null)
+        if (future == null)
         {
-            emf = createEntityManagerFactory(persistenceUnitName);
+            FutureTask<EntityManagerFactory> task = new FutureTask<EntityManagerFactory>(new Callable<EntityManagerFactory>()
+            {
+                public EntityManagerFactory call()
+                {
+                    return createEntityManagerFactory(persistenceUnitName);
+                }
+            });
 
-            entityManagerFactories.put(persistenceUnitName, emf);
+            future = entityManagerFactories.putIfAbsent(persistenceUnitName, task);
+
+            if (future == null)
+            {
+                future = task;
+
+                task.run();
+            }
         }
 
-        return emf;
+        try
+        {
+            return future.get();
+        } catch (InterruptedException e)
+        {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e)
+        {
+            // Allow a later attempt to create the factory.
+
+            entityManagerFactories.remove(persistenceUnitName, future);
+
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+
+            throw new RuntimeException(cause);
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -276,14 +315,13 @@ public class EntityManagerSourceImpl implements EntityManagerSource
 
     private void registryDidShutdown()
     {
-        final Set<Entry<String, EntityManagerFactory>> entrySet = entityManagerFactories.entrySet();
-
-        for (final Entry<String, EntityManagerFactory> entry : entrySet)
+        for (final Entry<String, Future<EntityManagerFactory>> entry : entityManagerFactories.entrySet())
         {
-            final EntityManagerFactory emf = entry.getValue();
             try
             {
-                emf.close();
+                // Factories that failed to be created have already been removed.
+
+                entry.getValue().get().close();
             } catch (final Exception e)
             {
                 logger.error(String.format(
@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -18,7 +18,6 @@ import org.apache.tapestry5.ioc.MethodAdviceReceiver;
 import org.apache.tapestry5.jpa.EntityManagerManager;
 import org.apache.tapestry5.jpa.JpaTransactionAdvisor;
 import org.apache.tapestry5.jpa.annotations.CommitAfter;
-import org.apache.tapestry5.plastic.MethodAdvice;
 
 import javax.persistence.PersistenceContext;
 import java.lang.reflect.Method;
@@ -27,28 +26,22 @@ public class JpaTransactionAdvisorImpl implements JpaTransactionAdvisor
 {
     private final EntityManagerManager manager;
 
-    private final MethodAdvice shared;
-
-
     public JpaTransactionAdvisorImpl(EntityManagerManager manager)
     {
         this.manager = manager;
-
-        shared = new CommitAfterMethodAdvice(manager, null);
     }
 
     public void addTransactionCommitAdvice(final MethodAdviceReceiver receiver)
     {
         for (final Method m : receiver.getInterface().getMethods())
         {
-            if (m.getAnnotation(CommitAfter.class) != null)
+            CommitAfter commitAfter = m.getAnnotation(CommitAfter.class);
+
+            if (commitAfter != null)
             {
                 PersistenceContext annotation = receiver.getMethodAnnotation(m, PersistenceContext.class);
 
-                MethodAdvice advice =
-                        annotation == null ? shared : new CommitAfterMethodAdvice(manager, annotation);
-
-                receiver.adviseMethod(m, advice);
+                receiver.adviseMethod(m, new CommitAfterMethodAdvice(manager, annotation, commitAfter));
             }
         }
 
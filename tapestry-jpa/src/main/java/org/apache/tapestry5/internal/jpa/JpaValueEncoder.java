@@ -1,4 +1,4 @@
-// Copyright 2011-2013 The Apache Software Foundation
+// Copyright 2011-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,7 +14,8 @@
 
 package org.apache.tapestry5.internal.jpa;
 
-import org.apache.tapestry5.ValueEncoder;
+import org.apache.tapestry5.PrefetchingValueEncoder;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.ioc.internal.util.InternalUtils;
 import org.apache.tapestry5.ioc.services.PropertyAccess;
 import org.apache.tapestry5.ioc.services.PropertyAdapter;
@@ -24,12 +25,21 @@ import org.apache.tapestry5.jpa.EntityManagerManager;
 import org.slf4j.Logger;
 
 import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
 import javax.persistence.metamodel.EntityType;
 import javax.persistence.metamodel.SingularAttribute;
 import javax.persistence.metamodel.Type;
+import java.util.Collection;
+import java.util.List;
 
-public class JpaValueEncoder<E> implements ValueEncoder<E>
+public class JpaValueEncoder<E> implements PrefetchingValueEncoder<E>
 {
+    /**
+     * Limits the number of identifiers in a single query, as some databases limit the size of an IN list.
+     */
+    private static final int PREFETCH_BATCH_SIZE = 500;
+
     private final EntityType<E> entity;
     private final EntityManagerManager entityManagerManager;
     private final String persistenceUnitName;
@@ -78,33 +88,34 @@ public class JpaValueEncoder<E> implements ValueEncoder<E>
         return typeCoercer.coerce(id, String.class);
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    public E toValue(final String clientValue)
+    private Object toId(final String clientValue)
     {
-        if (InternalUtils.isBlank(clientValue))
-            return null;
-
-        Object id = null;
-        final Class<E> entityClass = entity.getJavaType();
-
         try
         {
-
-            id = typeCoercer.coerce(clientValue, propertyAdapter.getType());
+            return typeCoercer.coerce(clientValue, propertyAdapter.getType());
         }
         catch (final Exception ex)
         {
             throw new RuntimeException(String.format(
                     "Exception converting '%s' to instance of %s (id type for entity %s): %s",
-                    clientValue, propertyAdapter.getType().getName(), entityClass.getName(),
+                    clientValue, propertyAdapter.getType().getName(), entity.getJavaType().getName(),
                     ExceptionUtils.toMessage(ex)), ex);
         }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public E toValue(final String clientValue)
+    {
+        if (InternalUtils.isBlank(clientValue))
+            return null;
+
+        final Object id = toId(clientValue);
 
         final EntityManager em = entityManagerManager.getEntityManager(persistenceUnitName);
 
-        final E result = em.find(entityClass, id);
+        final E result = em.find(entity.getJavaType(), id);
 
         if (result == null)
         {
@@ -116,4 +127,38 @@ public class JpaValueEncoder<E> implements ValueEncoder<E>
 
         return result;
     }
+
+    /**
+     * Loads the entities, in batches, into the persistence context; {@link #toValue(String)} then finds them there
+     * without a further query.
+     */
+    public void prefetch(final Collection<String> clientValues)
+    {
+        final List<Object> ids = CollectionFactory.newList();
+
+        for (final String clientValue : clientValues)
+        {
+            if (!InternalUtils.isBlank(clientValue))
+            {
+                ids.add(toId(clientValue));
+            }
+        }
+
+        if (ids.isEmpty())
+            return;
+
+        final EntityManager em = entityManagerManager.getEntityManager(persistenceUnitName);
+
+        for (int i = 0; i < ids.size(); i += PREFETCH_BATCH_SIZE)
+        {
+            final List<Object> batch = ids.subList(i, Math.min(i + PREFETCH_BATCH_SIZE, ids.size()));
+
+            final CriteriaQuery<E> query = em.getCriteriaBuilder().createQuery(entity.getJavaType());
+            final Root<E> root = query.from(entity);
+
+            query.select(root).where(root.get(idPropertyName).in(batch));
+
+            em.createQuery(query).getResultList();
+        }
+    }
 }
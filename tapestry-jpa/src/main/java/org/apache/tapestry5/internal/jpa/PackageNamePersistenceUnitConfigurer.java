@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,22 +14,67 @@
 
 package org.apache.tapestry5.internal.jpa;
 
+import org.apache.tapestry5.ioc.annotations.Inject;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
 import org.apache.tapestry5.ioc.services.ClassNameLocator;
+import org.apache.tapestry5.ioc.services.ClasspathURLConverter;
 import org.apache.tapestry5.jpa.JpaEntityPackageManager;
+import org.apache.tapestry5.jpa.JpaSymbols;
 import org.apache.tapestry5.jpa.PersistenceUnitConfigurer;
 import org.apache.tapestry5.jpa.TapestryPersistenceUnitInfo;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
 
 public class PackageNamePersistenceUnitConfigurer implements PersistenceUnitConfigurer
 {
+    private static final String PACKAGES_PREFIX = "# packages: ";
+
+    private static final String CLASSPATH_PREFIX = "# classpath: ";
+
+    private final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
     private final JpaEntityPackageManager packageManager;
 
     private final ClassNameLocator classNameLocator;
 
+    private final Logger logger;
+
+    private final ClasspathURLConverter converter;
+
+    private final File cacheFile;
+
     public PackageNamePersistenceUnitConfigurer(JpaEntityPackageManager packageManager,
             ClassNameLocator classNameLocator)
+    {
+        this(packageManager, classNameLocator, null, null, "");
+    }
+
+    /**
+     * @param cacheFile
+     *         path of the file caching the scanned class names, or blank for no caching
+     * @since 5.4
+     */
+    @Inject
+    public PackageNamePersistenceUnitConfigurer(JpaEntityPackageManager packageManager,
+            ClassNameLocator classNameLocator, Logger logger, ClasspathURLConverter converter,
+            @Symbol(JpaSymbols.ENTITY_SCAN_CACHE)
+            String cacheFile)
     {
         this.packageManager = packageManager;
         this.classNameLocator = classNameLocator;
+        this.logger = logger;
+        this.converter = converter;
+        this.cacheFile = InternalUtils.isBlank(cacheFile) ? null : new File(cacheFile);
     }
     
     /**
@@ -37,14 +82,237 @@ public class PackageNamePersistenceUnitConfigurer implements PersistenceUnitConf
      */
     public void configure(TapestryPersistenceUnitInfo unitInfo)
     {
+        for (String className : getClassNames())
+        {
+            unitInfo.addManagedClassName(className);
+        }
+
+    }
+
+    private List<String> getClassNames()
+    {
+        String packages = describePackages();
+
+        String classpath = cacheFile == null ? null : describeClasspath();
+
+        List<String> classNames = classpath == null ? null : readCache(packages, classpath);
+
+        if (classNames != null)
+        {
+            return classNames;
+        }
+
+        classNames = CollectionFactory.newList();
+
         for (String packageName : packageManager.getPackageNames())
         {
-            for (String className : classNameLocator.locateClassNames(packageName))
+            classNames.addAll(classNameLocator.locateClassNames(packageName));
+        }
+
+        if (classpath != null)
+        {
+            writeCache(packages, classpath, classNames);
+        }
+
+        return classNames;
+    }
+
+    private String describePackages()
+    {
+        List<String> packageNames = CollectionFactory.newList(packageManager.getPackageNames());
+
+        Collections.sort(packageNames);
+
+        return InternalUtils.join(packageNames, ",");
+    }
+
+    /**
+     * Describes the locations of the entity packages on the classpath: the modification time and size of each JAR.
+     * Any change to the entity classes changes the description, which invalidates the cache. Returns null (and so, no
+     * caching) if a location is not a JAR file; checking a directory for changes would cost about as much as scanning
+     * it.
+     */
+    private String describeClasspath()
+    {
+        List<String> packageNames = CollectionFactory.newList(packageManager.getPackageNames());
+
+        Collections.sort(packageNames);
+
+        List<String> locations = CollectionFactory.newList();
+
+        try
+        {
+            for (String packageName : packageNames)
+            {
+                Enumeration<URL> urls = contextClassLoader.getResources(packageName.replace('.', '/'));
+
+                while (urls.hasMoreElements())
+                {
+                    URL url = urls.nextElement();
+
+                    String location = describeLocation(converter == null ? url : converter.convert(url));
+
+                    if (location == null)
+                    {
+                        logger.warn(String.format(
+                                "Entity classes at %s are not in a JAR file; the entity scan cache is not used.",
+                                url));
+
+                        return null;
+                    }
+
+                    locations.add(location);
+                }
+            }
+        } catch (IOException ex)
+        {
+            logger.warn(String.format("Unable to locate the entity packages; the entity scan cache is not used: %s",
+                    InternalUtils.toMessage(ex)));
+
+            return null;
+        }
+
+        return InternalUtils.join(locations, " ");
+    }
+
+    private static String describeLocation(URL url) throws IOException
+    {
+        if (!url.getProtocol().equals("jar"))
+        {
+            return null;
+        }
+
+        URLConnection connection = url.openConnection();
+
+        if (!(connection instanceof JarURLConnection))
+        {
+            return null;
+        }
+
+        URL jarFileURL = ((JarURLConnection) connection).getJarFileURL();
+
+        File jarFile = jarFileURL.getProtocol().equals("file") ? toFile(jarFileURL) : null;
+
+        if (jarFile == null || !jarFile.isFile())
+        {
+            return null;
+        }
+
+        return String.format("%s@%d/%d", jarFileURL, jarFile.lastModified(), jarFile.length());
+    }
+
+    private static File toFile(URL url)
+    {
+        try
+        {
+            return new File(url.toURI());
+        } catch (URISyntaxException ex)
+        {
+            return null;
+        } catch (IllegalArgumentException ex)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the cached class names, or null if there are none for the packages and their classpath locations.
+     */
+    private List<String> readCache(String packages, String classpath)
+    {
+        if (!cacheFile.isFile())
+        {
+            return null;
+        }
+
+        BufferedReader reader = null;
+
+        try
+        {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), "UTF-8"));
+
+            if (!(PACKAGES_PREFIX + packages).equals(reader.readLine())
+                    || !(CLASSPATH_PREFIX + classpath).equals(reader.readLine()))
             {
-                unitInfo.addManagedClassName(className);
+                return null;
             }
+
+            List<String> classNames = CollectionFactory.newList();
+
+            while (true)
+            {
+                String line = reader.readLine();
+
+                if (line == null)
+                {
+                    return classNames;
+                }
+
+                if (line.length() > 0)
+                {
+                    classNames.add(line);
+                }
+            }
+        } catch (IOException ex)
+        {
+            logger.warn(String.format("Unable to read entity class names from %s: %s", cacheFile,
+                    InternalUtils.toMessage(ex)));
+
+            return null;
+        } finally
+        {
+            InternalUtils.close(reader);
         }
+    }
+
+    /**
+     * Writes the cache to a temporary file that then replaces the cache file, so that an incomplete cache file is
+     * never read back.
+     */
+    private void writeCache(String packages, String classpath, List<String> classNames)
+    {
+        File temporaryFile = null;
+        Writer writer = null;
+
+        try
+        {
+            temporaryFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getAbsoluteFile().getParentFile());
+
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporaryFile), "UTF-8"));
+
+            writer.write(PACKAGES_PREFIX + packages + "\n");
+            writer.write(CLASSPATH_PREFIX + classpath + "\n");
 
+            for (String className : classNames)
+            {
+                writer.write(className + "\n");
+            }
+
+            writer.close();
+
+            writer = null;
+
+            // On some platforms, a file can't be renamed over an existing file.
+
+            if (!temporaryFile.renameTo(cacheFile) && !(cacheFile.delete() && temporaryFile.renameTo(cacheFile)))
+            {
+                throw new IOException(String.format("Unable to rename %s to %s.", temporaryFile, cacheFile));
+            }
+
+            temporaryFile = null;
+        } catch (IOException ex)
+        {
+            logger.warn(String.format("Unable to write entity class names to %s: %s", cacheFile,
+                    InternalUtils.toMessage(ex)));
+        } finally
+        {
+            InternalUtils.close(writer);
+
+            if (temporaryFile != null)
+            {
+                temporaryFile.delete();
+            }
+        }
     }
 
 }
@@ -0,0 +1,41 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.jpa;
+
+/**
+ * When a method marked with {@link org.apache.tapestry5.jpa.annotations.CommitAfter} commits the transaction.
+ *
+ * @since 5.4
+ */
+public enum CommitMode
+{
+    /**
+     * Commit as soon as the method returns (the default).
+     */
+    IMMEDIATE,
+
+    /**
+     * Commit once, at the end of the request, via {@link EntityManagerManager#commitAtEndOfRequest(javax.persistence.EntityManager)}.
+     * Any number of such methods may be invoked during the request, with a single commit (and flush) of all their
+     * changes. An exception thrown from any such method rolls back the transaction, including the changes of methods
+     * invoked before it.
+     * <p/>
+     * In a web application, the transaction is {@linkplain EntityManagerManager#commitPendingTransactions() committed}
+     * before the response is sent: before the result of a component event is processed, and after a page (or part of a
+     * page) has been rendered but before its markup is sent. A failure to commit is reported like any other exception.
+     * Otherwise, it is committed when the thread is cleaned up, and a failure can only be logged.
+     */
+    END_OF_REQUEST
+}
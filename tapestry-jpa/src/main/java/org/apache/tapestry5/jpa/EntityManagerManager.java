@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -44,4 +44,23 @@ public interface EntityManagerManager
      * @return Map in which persistence unit names are associated with EntityManagers
      */
     Map<String, EntityManager> getEntityManagers();
+
+    /**
+     * Marks the active transaction of an <code>EntityManager</code> (obtained from this service) to be committed at
+     * the end of the request, rather than discarded. Changes made until then, including by other code that invokes
+     * this method, are committed together.
+     *
+     * @param entityManager the entity manager whose transaction should be committed
+     * @since 5.4
+     */
+    void commitAtEndOfRequest(EntityManager entityManager);
+
+    /**
+     * Commits the transactions {@linkplain #commitAtEndOfRequest(EntityManager) marked for commit} now. If a commit
+     * fails, the remaining transactions are rolled back and the exception is rethrown. Invoked in a web application
+     * just before the response is sent.
+     *
+     * @since 5.4
+     */
+    void commitPendingTransactions();
 }
@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -24,7 +24,9 @@ import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
 
 import org.apache.tapestry5.grid.GridDataSource;
+import org.apache.tapestry5.grid.RowCountCache;
 import org.apache.tapestry5.grid.SortConstraint;
+import org.apache.tapestry5.ioc.Invokable;
 
 /**
  * A simple implementation of {@link org.apache.tapestry5.grid.GridDataSource} based on a
@@ -37,7 +39,11 @@ import org.apache.tapestry5.grid.SortConstraint;
  * <p/>
  * Typically, an instance of this object is created fresh as needed (that is, it is not stored
  * between requests).
+ * <p/>
+ * Counting the rows can be avoided by providing a (shared) {@link RowCountCache}; counts are keyed on
+ * {@link #getRowCountCacheKey()}.
  *
+ * @see JpaKeysetGridDataSource
  * @since 5.3
  */
 public class JpaGridDataSource<E> implements GridDataSource
@@ -51,11 +57,29 @@ public class JpaGridDataSource<E> implements GridDataSource
 
     private List<E> preparedResults;
 
+    private final RowCountCache rowCountCache;
+
     public JpaGridDataSource(final EntityManager entityManager, final Class<E> entityType)
+    {
+        this(entityManager, entityType, null);
+    }
+
+    /**
+     * @param entityManager
+     *         used to query the entities
+     * @param entityType
+     *         type of entity to query
+     * @param rowCountCache
+     *         cache for the row count, or null to count the rows on each call to {@link #getAvailableRows()}
+     * @since 5.4
+     */
+    public JpaGridDataSource(final EntityManager entityManager, final Class<E> entityType,
+            final RowCountCache rowCountCache)
     {
         super();
         this.entityManager = entityManager;
         this.entityType = entityType;
+        this.rowCountCache = rowCountCache;
     }
 
     /**
@@ -63,17 +87,39 @@ public class JpaGridDataSource<E> implements GridDataSource
      */
     public int getAvailableRows()
     {
-        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        final Invokable<Integer> counter = new Invokable<Integer>()
+        {
+            public Integer invoke()
+            {
+                final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
 
-        CriteriaQuery<Long> criteria = builder.createQuery(Long.class);
+                CriteriaQuery<Long> criteria = builder.createQuery(Long.class);
 
-        final Root<E> root = criteria.from(entityType);
+                final Root<E> root = criteria.from(entityType);
+
+                criteria = criteria.select(builder.count(root));
 
-        criteria = criteria.select(builder.count(root));
+                applyAdditionalConstraints(criteria, root, builder);
 
-        applyAdditionalConstraints(criteria, root, builder);
+                return entityManager.createQuery(criteria).getSingleResult().intValue();
+            }
+        };
+
+        return rowCountCache == null ? counter.invoke() : rowCountCache.getRowCount(getRowCountCacheKey(), counter);
+    }
 
-        return entityManager.createQuery(criteria).getSingleResult().intValue();
+    /**
+     * Returns the key under which the row count is cached. This implementation returns the entity type; subclasses that
+     * {@linkplain #applyAdditionalConstraints(CriteriaQuery, Root, CriteriaBuilder) apply additional constraints}
+     * must override this to also identify the constraints (and their values), or row counts for different queries
+     * will be mixed up. The string form of the key also identifies the query that a
+     * {@linkplain JpaKeysetGridDataSource keyset} bookmark was recorded for.
+     *
+     * @since 5.4
+     */
+    protected Object getRowCountCacheKey()
+    {
+        return entityType;
     }
 
     /**
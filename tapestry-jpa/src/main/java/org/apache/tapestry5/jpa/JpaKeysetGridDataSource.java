@@ -0,0 +1,360 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.jpa;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.EntityType;
+
+import org.apache.tapestry5.grid.ColumnSort;
+import org.apache.tapestry5.grid.KeysetGridDataSource;
+import org.apache.tapestry5.grid.RowCountCache;
+import org.apache.tapestry5.grid.SortConstraint;
+import org.apache.tapestry5.grid.UncountedGridDataSource;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+
+/**
+ * A {@link org.apache.tapestry5.grid.GridDataSource} that pages using the values of the last row
+ * seen (keyset, or "seek", pagination) rather than skipping over all the prior rows, which gets
+ * slower the further into the data the page is. Rows are ordered by the sort constraints and then
+ * by the entity's identifier (so that the order is total); the next page starts after the last
+ * row of the prior page, which the database can find directly using an index on the sorted
+ * properties.
+ * <p/>
+ * The key of the next page is {@linkplain KeysetGridDataSource#getBookmark(int) bookmarked}; the
+ * {@link org.apache.tapestry5.corelib.components.GridPager} carries bookmarks in its links, so
+ * that a new instance (in a later request) can seek directly to the page. When the user jumps
+ * ahead, the query seeks to the closest known page and skips the remaining rows. A bookmark is
+ * only used with the sort order it was recorded with, and the same
+ * {@linkplain #getRowCountCacheKey() query key}; subclasses that
+ * {@linkplain #applyAdditionalConstraints(CriteriaQuery, Root, CriteriaBuilder) apply additional
+ * constraints} must override that method. The sorted properties must not be null, as null values
+ * can not be compared (rows with a null key are not bookmarked). The entity must have a single
+ * identifier attribute.
+ * <p/>
+ * Optionally, the rows are not counted at all ({@linkplain UncountedGridDataSource}); the Grid
+ * then only offers the pages up to the next one.
+ * <p/>
+ * This class is <em>not</em> thread-safe; it maintains internal state.
+ *
+ * @since 5.4
+ */
+public class JpaKeysetGridDataSource<E> extends JpaGridDataSource<E> implements
+        UncountedGridDataSource, KeysetGridDataSource
+{
+    /**
+     * The key values (sort properties, then identifier) of the row before a bookmarked index,
+     * along with a description of the query (sort order and query key) the key is for.
+     */
+    private static final class Bookmark implements Serializable
+    {
+        private static final long serialVersionUID = 5043418212440392279L;
+
+        private final String query;
+
+        private final Object[] key;
+
+        private Bookmark(final String query, final Object[] key)
+        {
+            this.query = query;
+            this.key = key;
+        }
+    }
+
+    private final EntityManager entityManager;
+
+    private final Class<E> entityType;
+
+    private final boolean countRows;
+
+    private final TreeMap<Integer, Bookmark> bookmarks = new TreeMap<Integer, Bookmark>();
+
+    private int startIndex;
+
+    private List<E> preparedResults;
+
+    /**
+     * Creates a data source that does not count its rows.
+     */
+    public JpaKeysetGridDataSource(final EntityManager entityManager, final Class<E> entityType)
+    {
+        this(entityManager, entityType, false, null);
+    }
+
+    /**
+     * @param entityManager
+     *         used to query the entities
+     * @param entityType
+     *         type of entity to query
+     * @param countRows
+     *         if true, the rows are counted (and the Grid displays all pages); if false, the rows
+     *         are not counted
+     * @param rowCountCache
+     *         cache for the row count, or null; only used when counting rows
+     */
+    public JpaKeysetGridDataSource(final EntityManager entityManager, final Class<E> entityType,
+            final boolean countRows, final RowCountCache rowCountCache)
+    {
+        super(entityManager, entityType, rowCountCache);
+
+        this.entityManager = entityManager;
+        this.entityType = entityType;
+        this.countRows = countRows;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isRowCountKnown()
+    {
+        return countRows;
+    }
+
+    /**
+     * Returns the total number of rows or, when the rows are not counted, the number of rows up to
+     * the last prepared row.
+     */
+    @Override
+    public int getAvailableRows()
+    {
+        if (countRows)
+        {
+            return super.getAvailableRows();
+        }
+
+        return preparedResults == null ? 0 : startIndex + preparedResults.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void prepare(final int startIndex, final int endIndex,
+            final List<SortConstraint> sortConstraints)
+    {
+        final List<SortConstraint> ordering = CollectionFactory.newList();
+        final StringBuilder sortDescription = new StringBuilder();
+
+        for (final SortConstraint constraint : sortConstraints)
+        {
+            if (constraint.getColumnSort() != ColumnSort.UNSORTED)
+            {
+                ordering.add(constraint);
+                sortDescription.append(constraint.getPropertyModel().getPropertyName())
+                        .append(' ').append(constraint.getColumnSort()).append(',');
+            }
+        }
+
+        // Keys only make sense for the order and query they were recorded with.
+
+        final String queryDescription = sortDescription.append(getRowCountCacheKey()).toString();
+
+        discardBookmarksNotFor(queryDescription);
+
+        final EntityType<E> metamodel = entityManager.getMetamodel().entity(entityType);
+
+        final String idAttributeName = metamodel.getId(metamodel.getIdType().getJavaType()).getName();
+
+        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+
+        final CriteriaQuery<E> criteria = builder.createQuery(entityType);
+
+        final Root<E> root = criteria.from(entityType);
+
+        applyAdditionalConstraints(criteria.select(root), root, builder);
+
+        final List<Order> orders = CollectionFactory.newList();
+
+        for (final SortConstraint constraint : ordering)
+        {
+            final Path<Object> propertyPath = root.get(constraint.getPropertyModel().getPropertyName());
+
+            orders.add(constraint.getColumnSort() == ColumnSort.ASCENDING
+                    ? builder.asc(propertyPath)
+                    : builder.desc(propertyPath));
+        }
+
+        orders.add(builder.asc(root.get(idAttributeName)));
+
+        criteria.orderBy(orders);
+
+        final SortedMap<Integer, Bookmark> prior = startIndex == 0 ? null : bookmarks
+                .headMap(startIndex + 1);
+
+        int seekIndex = 0;
+
+        if (prior != null && !prior.isEmpty())
+        {
+            seekIndex = prior.lastKey();
+
+            final Predicate after = after(builder, root, ordering, idAttributeName,
+                    prior.get(seekIndex).key);
+
+            // Keep any restriction added by applyAdditionalConstraints().
+
+            final Predicate restriction = criteria.getRestriction();
+
+            criteria.where(restriction == null ? after : builder.and(restriction, after));
+        }
+
+        final TypedQuery<E> query = entityManager.createQuery(criteria);
+
+        query.setFirstResult(startIndex - seekIndex);
+        query.setMaxResults(endIndex - startIndex + 1);
+
+        this.startIndex = startIndex;
+
+        preparedResults = query.getResultList();
+
+        // Remember where the next page starts; the last two rows are kept, as the Grid may have
+        // asked for one row beyond the page.
+
+        for (int i = Math.max(0, preparedResults.size() - 2); i < preparedResults.size(); i++)
+        {
+            final Object[] key = toKey(ordering, preparedResults.get(i));
+
+            if (key != null)
+            {
+                bookmarks.put(startIndex + i + 1, new Bookmark(queryDescription, key));
+            }
+        }
+    }
+
+    private void discardBookmarksNotFor(final String query)
+    {
+        final Iterator<Bookmark> iterator = bookmarks.values().iterator();
+
+        while (iterator.hasNext())
+        {
+            if (!iterator.next().query.equals(query))
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Serializable getBookmark(final int index)
+    {
+        return bookmarks.get(index);
+    }
+
+    /**
+     * Adds a bookmark obtained from {@link #getBookmark(int)}; anything else is ignored.
+     */
+    public void addBookmark(final int index, final Serializable bookmark)
+    {
+        if (bookmark instanceof Bookmark)
+        {
+            bookmarks.put(index, (Bookmark) bookmark);
+        }
+    }
+
+    private Object[] toKey(final List<SortConstraint> ordering, final E row)
+    {
+        final Object[] key = new Object[ordering.size() + 1];
+
+        for (int i = 0; i < ordering.size(); i++)
+        {
+            key[i] = ordering.get(i).getPropertyModel().getConduit().get(row);
+
+            if (key[i] == null)
+            {
+                return null;
+            }
+        }
+
+        key[ordering.size()] = entityManager.getEntityManagerFactory().getPersistenceUnitUtil()
+                .getIdentifier(row);
+
+        return key;
+    }
+
+    /**
+     * Builds the predicate matching the rows after the key: (a > ?) or (a = ? and b > ?) or ...
+     * with the identifier as the final attribute.
+     */
+    private Predicate after(final CriteriaBuilder builder, final Root<E> root,
+            final List<SortConstraint> ordering, final String idAttributeName, final Object[] key)
+    {
+        final List<Predicate> alternatives = CollectionFactory.newList();
+
+        for (int i = 0; i <= ordering.size(); i++)
+        {
+            final List<Predicate> conjuncts = CollectionFactory.newList();
+
+            for (int j = 0; j < i; j++)
+            {
+                conjuncts.add(builder.equal(
+                        root.get(ordering.get(j).getPropertyModel().getPropertyName()), key[j]));
+            }
+
+            if (i == ordering.size())
+            {
+                conjuncts.add(compare(builder, root.get(idAttributeName), key[i], true));
+            }
+            else
+            {
+                final SortConstraint constraint = ordering.get(i);
+
+                conjuncts.add(compare(builder,
+                        root.get(constraint.getPropertyModel().getPropertyName()), key[i],
+                        constraint.getColumnSort() == ColumnSort.ASCENDING));
+            }
+
+            alternatives.add(builder.and(conjuncts.toArray(new Predicate[conjuncts.size()])));
+        }
+
+        return builder.or(alternatives.toArray(new Predicate[alternatives.size()]));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Predicate compare(final CriteriaBuilder builder, final Path<?> path,
+            final Object value, final boolean greater)
+    {
+        final Expression<Comparable> expression = (Expression<Comparable>) path;
+        final Comparable comparable = (Comparable) value;
+
+        return greater ? builder.greaterThan(expression, comparable) : builder.lessThan(
+                expression, comparable);
+    }
+
+    /**
+     * Returns the row value at the given index, or null if the index is beyond the prepared rows.
+     */
+    @Override
+    public Object getRowValue(final int index)
+    {
+        final int offset = index - startIndex;
+
+        return preparedResults == null || offset < 0 || offset >= preparedResults.size() ? null
+                : preparedResults.get(offset);
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -45,4 +45,17 @@ public class JpaSymbols
      * @since 5.3
      */
     public static final String PERSISTENCE_DESCRIPTOR = "tapestry.jpa.persistence-descriptor";
+
+    /**
+     * Path of a file used to cache the names of the entity classes found in the
+     * {@linkplain JpaEntityPackageManager entity packages}, so that the packages are not scanned on each start up.
+     * The file is written after a scan, and read back on later start ups as long as the entity packages are the same
+     * and their JARs on the classpath are unchanged (by modification time and size); otherwise, the packages are
+     * scanned again. The cache only applies when every entity package is in a JAR file: checking a directory for
+     * changes would cost about as much as scanning it, so packages in directories (as in development) are always
+     * scanned. Defaults to blank, meaning no cache is used.
+     *
+     * @since 5.4
+     */
+    public static final String ENTITY_SCAN_CACHE = "tapestry.jpa.entity-scan-cache";
 }
@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -24,7 +24,10 @@ import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 
+import javax.persistence.FlushModeType;
+
 import org.apache.tapestry5.ioc.annotations.UseWith;
+import org.apache.tapestry5.jpa.CommitMode;
 
 @Target(METHOD)
 @Retention(RUNTIME)
@@ -33,5 +36,20 @@ import org.apache.tapestry5.ioc.annotations.UseWith;
 { COMPONENT, MIXIN, PAGE })
 public @interface CommitAfter
 {
+    /**
+     * When the transaction is committed; by default, immediately after the method returns.
+     *
+     * @since 5.4
+     */
+    CommitMode mode() default CommitMode.IMMEDIATE;
 
+    /**
+     * The flush mode of the entity manager while the method (and the commit) executes. For example,
+     * {@link FlushModeType#COMMIT} avoids flushing before each query made by a method that changes many entities, so
+     * that the changes are written together. The default, {@link FlushModeType#AUTO}, leaves the flush mode of the
+     * entity manager unchanged.
+     *
+     * @since 5.4
+     */
+    FlushModeType flushMode() default FlushModeType.AUTO;
 }
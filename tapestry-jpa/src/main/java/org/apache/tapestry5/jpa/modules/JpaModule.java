@@ -1,4 +1,4 @@
-// Copyright 2011-2013 The Apache Software Foundation
+// Copyright 2011-2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -20,8 +20,11 @@ import org.apache.tapestry5.internal.jpa.*;
 import org.apache.tapestry5.internal.services.PersistentFieldManager;
 import org.apache.tapestry5.ioc.*;
 import org.apache.tapestry5.ioc.annotations.*;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.ioc.services.*;
 import org.apache.tapestry5.jpa.*;
+import org.apache.tapestry5.plastic.MethodAdvice;
+import org.apache.tapestry5.plastic.MethodInvocation;
 import org.apache.tapestry5.services.*;
 import org.apache.tapestry5.services.transform.ComponentClassTransformWorker2;
 import org.slf4j.Logger;
@@ -31,6 +34,9 @@ import javax.persistence.metamodel.EntityType;
 import javax.persistence.metamodel.Metamodel;
 import javax.persistence.spi.PersistenceUnitInfo;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Defines core services for JPA support.
@@ -99,6 +105,52 @@ public class JpaModule
         configuration.addInstance("JPACommitAfter", CommitAfterWorker.class, "after:Log");
     }
 
+    /**
+     * Commits the transactions marked to be committed at the end of the request (see
+     * {@link org.apache.tapestry5.jpa.CommitMode#END_OF_REQUEST}) after rendering a page, before the markup is sent to
+     * the client.
+     *
+     * @since 5.4
+     */
+    @Contribute(MarkupRenderer.class)
+    public static void provideCommitPendingTransactionFilter(final OrderedConfiguration<MarkupRendererFilter> configuration)
+    {
+        configuration.addInstance("JPACommitPendingTransactions", CommitPendingTransactionFilter.class, "before:*");
+    }
+
+    /**
+     * As with {@link #provideCommitPendingTransactionFilter(OrderedConfiguration)}, for partial page renders.
+     *
+     * @since 5.4
+     */
+    @Contribute(PartialMarkupRenderer.class)
+    public static void providePartialCommitPendingTransactionFilter(
+            final OrderedConfiguration<PartialMarkupRendererFilter> configuration)
+    {
+        configuration.addInstance("JPACommitPendingTransactions", CommitPendingTransactionFilter.class, "before:*");
+    }
+
+    /**
+     * Commits the transactions marked to be committed at the end of the request before the result of a component event
+     * (including the default redirect back to the page) is processed, since that may send the response.
+     *
+     * @since 5.4
+     */
+    @Match({"ComponentEventResultProcessor", "AjaxComponentEventResultProcessor"})
+    public static void adviseCommitPendingTransactions(final MethodAdviceReceiver receiver,
+                                                       final EntityManagerManager manager)
+    {
+        receiver.adviseAllMethods(new MethodAdvice()
+        {
+            public void advise(final MethodInvocation invocation)
+            {
+                manager.commitPendingTransactions();
+
+                invocation.proceed();
+            }
+        });
+    }
+
     @Contribute(MasterObjectProvider.class)
     public static void provideObjectProviders(final OrderedConfiguration<ObjectProvider> configuration)
     {
@@ -114,6 +166,7 @@ public class JpaModule
         configuration.add(JpaSymbols.EARLY_START_UP, "true");
         configuration.add(JpaSymbols.ENTITY_SESSION_STATE_PERSISTENCE_STRATEGY_ENABLED, "true");
         configuration.add(JpaSymbols.PERSISTENCE_DESCRIPTOR, "/META-INF/persistence.xml");
+        configuration.add(JpaSymbols.ENTITY_SCAN_CACHE, "");
     }
 
     @Contribute(ValueEncoderSource.class)
@@ -176,13 +229,44 @@ public class JpaModule
         }
     }
 
+    /**
+     * When starting up early, the EntityManagerFactory for each persistence unit is created in parallel (using the
+     * {@link ParallelExecutor}), rather than one after another.
+     */
     @Startup
     public static void startupEarly(final EntityManagerManager entityManagerManager, @Symbol(JpaSymbols.EARLY_START_UP)
-    final boolean earlyStartup)
+    final boolean earlyStartup, final EntityManagerSource entityManagerSource, final ParallelExecutor parallelExecutor)
     {
         if (!earlyStartup)
             return;
 
+        List<Future<EntityManagerFactory>> futures = CollectionFactory.newList();
+
+        for (final PersistenceUnitInfo info : entityManagerSource.getPersistenceUnitInfos())
+        {
+            futures.add(parallelExecutor.invoke(new Invokable<EntityManagerFactory>()
+            {
+                public EntityManagerFactory invoke()
+                {
+                    return entityManagerSource.getEntityManagerFactory(info.getPersistenceUnitName());
+                }
+            }));
+        }
+
+        for (Future<EntityManagerFactory> future : futures)
+        {
+            try
+            {
+                future.get();
+            } catch (InterruptedException e)
+            {
+                throw new RuntimeException(e);
+            } catch (ExecutionException e)
+            {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
         entityManagerManager.getEntityManagers();
 
     }
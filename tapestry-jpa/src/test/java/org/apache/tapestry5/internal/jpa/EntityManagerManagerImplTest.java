@@ -0,0 +1,101 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.jpa;
+
+import org.apache.tapestry5.ioc.test.IOCTestCase;
+import org.apache.tapestry5.jpa.EntityManagerSource;
+import org.easymock.EasyMock;
+import org.slf4j.Logger;
+import org.testng.annotations.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.RollbackException;
+
+public class EntityManagerManagerImplTest extends IOCTestCase
+{
+    private static final String UNIT_NAME = "FooUnit";
+
+    @Test
+    public void pending_transactions_are_committed_once()
+    {
+        EntityManagerSource source = newMock(EntityManagerSource.class);
+        Logger logger = mockLogger();
+        EntityManager em = newMock(EntityManager.class);
+        EntityTransaction transaction = newMock(EntityTransaction.class);
+
+        expect(source.create(UNIT_NAME)).andReturn(em);
+        expect(em.isOpen()).andReturn(true).times(2);
+        expect(em.getTransaction()).andReturn(transaction).anyTimes();
+        expect(transaction.isActive()).andReturn(true);
+        transaction.commit();
+        expect(logger.isDebugEnabled()).andReturn(false);
+        em.close();
+
+        replay();
+
+        EntityManagerManagerImpl manager = new EntityManagerManagerImpl(source, logger);
+
+        manager.commitAtEndOfRequest(manager.getEntityManager(UNIT_NAME));
+        manager.commitPendingTransactions();
+        manager.commitPendingTransactions();
+        manager.threadDidCleanup();
+
+        verify();
+    }
+
+    @Test
+    public void failure_to_commit_pending_transactions_is_rethrown()
+    {
+        EntityManagerSource source = newMock(EntityManagerSource.class);
+        Logger logger = mockLogger();
+        EntityManager em = newMock(EntityManager.class);
+        EntityTransaction transaction = newMock(EntityTransaction.class);
+        RuntimeException failure = new RollbackException("Commit failed.");
+
+        expect(source.create(UNIT_NAME)).andReturn(em);
+        expect(em.getTransaction()).andReturn(transaction).anyTimes();
+        expect(em.isOpen()).andReturn(true).anyTimes();
+        expect(transaction.isActive()).andReturn(true);
+        transaction.commit();
+        EasyMock.expectLastCall().andThrow(failure);
+        // Already rolled back by the failed commit:
+        expect(transaction.isActive()).andReturn(false);
+        em.close();
+
+        replay();
+
+        EntityManagerManagerImpl manager = new EntityManagerManagerImpl(source, logger);
+
+        manager.commitAtEndOfRequest(manager.getEntityManager(UNIT_NAME));
+
+        try
+        {
+            manager.commitPendingTransactions();
+
+            unreachable();
+        }
+        catch (RuntimeException ex)
+        {
+            assertSame(ex, failure);
+        }
+
+        // No longer pending:
+
+        manager.threadDidCleanup();
+
+        verify();
+    }
+}
@@ -0,0 +1,200 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.jpa;
+
+import org.apache.tapestry5.ioc.IOCUtilities;
+import org.apache.tapestry5.ioc.Registry;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.services.PropertyAccess;
+import org.apache.tapestry5.ioc.services.TypeCoercer;
+import org.apache.tapestry5.ioc.test.IOCTestCase;
+import org.apache.tapestry5.jpa.EntityManagerManager;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.easymock.EasyMock;
+import org.example.app1.entities.User;
+import org.slf4j.Logger;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+import javax.persistence.metamodel.Type;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+@SuppressWarnings("unchecked")
+public class JpaValueEncoderTest extends IOCTestCase
+{
+    private static final String UNIT_NAME = "FooUnit";
+
+    private Registry registry;
+
+    private PropertyAccess access;
+
+    private TypeCoercer typeCoercer;
+
+    @BeforeClass
+    public void setup()
+    {
+        registry = IOCUtilities.buildDefaultRegistry();
+
+        access = registry.getService(PropertyAccess.class);
+        typeCoercer = registry.getService(TypeCoercer.class);
+    }
+
+    @AfterClass
+    public void cleanup()
+    {
+        registry.shutdown();
+
+        registry = null;
+        access = null;
+        typeCoercer = null;
+    }
+
+    private EntityType<User> mockUserEntityType()
+    {
+        EntityType<User> entity = newMock(EntityType.class);
+        Type idType = newMock(Type.class);
+        SingularAttribute idAttribute = newMock(SingularAttribute.class);
+
+        expect(entity.getJavaType()).andReturn(User.class).anyTimes();
+        expect(entity.getIdType()).andReturn(idType);
+        expect(idType.getJavaType()).andReturn(Long.class);
+        expect(entity.getId(Long.class)).andReturn(idAttribute);
+        expect(idAttribute.getName()).andReturn("id");
+
+        return entity;
+    }
+
+    /**
+     * Expects a query for entities by id; the ids are captured.
+     */
+    private void train_query(EntityManager em, EntityType<User> entity, Capture<Collection> ids)
+    {
+        CriteriaBuilder builder = newMock(CriteriaBuilder.class);
+        CriteriaQuery<User> query = newMock(CriteriaQuery.class);
+        Root<User> root = newMock(Root.class);
+        Path<Object> path = newMock(Path.class);
+        Predicate predicate = newMock(Predicate.class);
+        TypedQuery<User> typedQuery = newMock(TypedQuery.class);
+
+        expect(em.getCriteriaBuilder()).andReturn(builder);
+        expect(builder.createQuery(User.class)).andReturn(query);
+        expect(query.from(entity)).andReturn(root);
+        expect(root.get("id")).andReturn(path);
+        expect(path.in(EasyMock.capture(ids))).andReturn(predicate);
+        expect(query.select(root)).andReturn(query);
+        expect(query.where(predicate)).andReturn(query);
+        expect(em.createQuery(query)).andReturn(typedQuery);
+        expect(typedQuery.getResultList()).andReturn(Collections.<User>emptyList());
+    }
+
+    @Test
+    public void prefetch_loads_entities_with_a_single_query()
+    {
+        EntityType<User> entity = mockUserEntityType();
+        EntityManagerManager manager = newMock(EntityManagerManager.class);
+        EntityManager em = newMock(EntityManager.class);
+        Logger logger = mockLogger();
+        Capture<Collection> ids = new Capture<Collection>();
+
+        expect(manager.getEntityManager(UNIT_NAME)).andReturn(em);
+
+        train_query(em, entity, ids);
+
+        replay();
+
+        JpaValueEncoder<User> encoder = new JpaValueEncoder<User>(entity, manager, UNIT_NAME, access, typeCoercer,
+                logger);
+
+        encoder.prefetch(Arrays.asList("1", "", "2", null, "3"));
+
+        verify();
+
+        // Blank values are skipped.
+
+        assertEquals(ids.getValue(), Arrays.asList(1L, 2L, 3L));
+    }
+
+    @Test
+    public void prefetch_loads_many_entities_in_batches()
+    {
+        EntityType<User> entity = mockUserEntityType();
+        EntityManagerManager manager = newMock(EntityManagerManager.class);
+        EntityManager em = newMock(EntityManager.class);
+        Logger logger = mockLogger();
+        Capture<Collection> ids = new Capture<Collection>(CaptureType.ALL);
+
+        expect(manager.getEntityManager(UNIT_NAME)).andReturn(em);
+
+        train_query(em, entity, ids);
+        train_query(em, entity, ids);
+        train_query(em, entity, ids);
+
+        replay();
+
+        JpaValueEncoder<User> encoder = new JpaValueEncoder<User>(entity, manager, UNIT_NAME, access, typeCoercer,
+                logger);
+
+        List<String> clientValues = CollectionFactory.newList();
+        List<Long> expected = CollectionFactory.newList();
+
+        for (long i = 1; i <= 1200; i++)
+        {
+            clientValues.add(Long.toString(i));
+            expected.add(i);
+        }
+
+        encoder.prefetch(clientValues);
+
+        verify();
+
+        List<Collection> batches = ids.getValues();
+
+        assertEquals(batches.size(), 3);
+        assertEquals(batches.get(0), expected.subList(0, 500));
+        assertEquals(batches.get(1), expected.subList(500, 1000));
+        assertEquals(batches.get(2), expected.subList(1000, 1200));
+    }
+
+    @Test
+    public void prefetch_of_blank_values_does_not_query()
+    {
+        EntityType<User> entity = mockUserEntityType();
+        EntityManagerManager manager = newMock(EntityManagerManager.class);
+        Logger logger = mockLogger();
+
+        replay();
+
+        JpaValueEncoder<User> encoder = new JpaValueEncoder<User>(entity, manager, UNIT_NAME, access, typeCoercer,
+                logger);
+
+        encoder.prefetch(Arrays.asList("", null));
+
+        verify();
+    }
+}
@@ -0,0 +1,251 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.jpa;
+
+import org.apache.tapestry5.ioc.services.ClassNameLocator;
+import org.apache.tapestry5.jpa.JpaEntityPackageManager;
+import org.apache.tapestry5.jpa.TapestryPersistenceUnitInfo;
+import org.apache.tapestry5.test.TapestryTestCase;
+import org.easymock.EasyMock;
+import org.slf4j.Logger;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+public class PackageNamePersistenceUnitConfigurerTest extends TapestryTestCase
+{
+    private JpaEntityPackageManager packages(final String... packageNames)
+    {
+        return new JpaEntityPackageManager()
+        {
+            public Collection<String> getPackageNames()
+            {
+                return Arrays.asList(packageNames);
+            }
+        };
+    }
+
+    /**
+     * Writes a JAR containing the named (empty) classes of the org.example.scanned package; the JAR is written
+     * elsewhere and then renamed, as a class loader may still have the previous JAR open.
+     */
+    private static void writeJar(File jar, String... classNames) throws IOException
+    {
+        File temporary = new File(jar.getPath() + ".new");
+
+        JarOutputStream stream = new JarOutputStream(new FileOutputStream(temporary));
+
+        for (String entry : Arrays.asList("org/", "org/example/", "org/example/scanned/"))
+        {
+            stream.putNextEntry(new JarEntry(entry));
+            stream.closeEntry();
+        }
+
+        for (String className : classNames)
+        {
+            stream.putNextEntry(new JarEntry("org/example/scanned/" + className + ".class"));
+            stream.closeEntry();
+        }
+
+        stream.close();
+
+        jar.delete();
+        temporary.renameTo(jar);
+    }
+
+    @Test
+    public void scanned_class_names_are_cached() throws Exception
+    {
+        File cache = File.createTempFile("entities", ".txt");
+
+        cache.delete();
+
+        ClassNameLocator locator = newMock(ClassNameLocator.class);
+        Logger logger = mockLogger();
+        TapestryPersistenceUnitInfo first = newMock(TapestryPersistenceUnitInfo.class);
+        TapestryPersistenceUnitInfo second = newMock(TapestryPersistenceUnitInfo.class);
+
+        // Only scanned once.
+
+        expect(locator.locateClassNames("org.example.entities")).andReturn(Arrays.asList("org.example.entities.Foo",
+                "org.example.entities.Bar"));
+
+        expect(first.addManagedClassName("org.example.entities.Foo")).andReturn(first);
+        expect(first.addManagedClassName("org.example.entities.Bar")).andReturn(first);
+        expect(second.addManagedClassName("org.example.entities.Foo")).andReturn(second);
+        expect(second.addManagedClassName("org.example.entities.Bar")).andReturn(second);
+
+        replay();
+
+        new PackageNamePersistenceUnitConfigurer(packages("org.example.entities"), locator, logger, null,
+                cache.getPath()).configure(first);
+
+        assertTrue(cache.isFile());
+
+        new PackageNamePersistenceUnitConfigurer(packages("org.example.entities"), locator, logger, null,
+                cache.getPath()).configure(second);
+
+        verify();
+
+        cache.delete();
+    }
+
+    @Test
+    public void cache_is_ignored_when_packages_change() throws Exception
+    {
+        File cache = File.createTempFile("entities", ".txt");
+
+        cache.delete();
+
+        ClassNameLocator locator = newMock(ClassNameLocator.class);
+        Logger logger = mockLogger();
+        TapestryPersistenceUnitInfo info = newMock(TapestryPersistenceUnitInfo.class);
+
+        // Scanned again, as the cached names are for different packages.
+
+        expect(locator.locateClassNames("org.example.entities")).andReturn(Arrays.asList("org.example.entities.Foo"))
+                .times(2);
+        expect(locator.locateClassNames("org.example.more")).andReturn(Arrays.asList("org.example.more.Baz"));
+
+        expect(info.addManagedClassName("org.example.entities.Foo")).andReturn(info).times(2);
+        expect(info.addManagedClassName("org.example.more.Baz")).andReturn(info);
+
+        replay();
+
+        new PackageNamePersistenceUnitConfigurer(packages("org.example.entities"), locator, logger, null,
+                cache.getPath()).configure(info);
+
+        new PackageNamePersistenceUnitConfigurer(packages("org.example.entities", "org.example.more"), locator, logger, null,
+                cache.getPath()).configure(info);
+
+        verify();
+
+        cache.delete();
+    }
+
+    @Test
+    public void cache_is_ignored_when_package_contents_change() throws Exception
+    {
+        File root = File.createTempFile("classes", "");
+
+        root.delete();
+        root.mkdirs();
+
+        File jar = new File(root, "entities.jar");
+        File cache = new File(root, "entities.txt");
+
+        writeJar(jar, "Foo");
+
+        ClassNameLocator locator = newMock(ClassNameLocator.class);
+        Logger logger = mockLogger();
+        TapestryPersistenceUnitInfo info = newMock(TapestryPersistenceUnitInfo.class);
+
+        // Scanned again, as a class has been added.
+
+        expect(locator.locateClassNames("org.example.scanned")).andReturn(Arrays.asList("org.example.scanned.Foo"));
+        expect(locator.locateClassNames("org.example.scanned")).andReturn(Arrays.asList("org.example.scanned.Foo",
+                "org.example.scanned.Bar"));
+
+        expect(info.addManagedClassName("org.example.scanned.Foo")).andReturn(info).times(3);
+        expect(info.addManagedClassName("org.example.scanned.Bar")).andReturn(info);
+
+        replay();
+
+        Thread thread = Thread.currentThread();
+        ClassLoader threadLoader = thread.getContextClassLoader();
+
+        thread.setContextClassLoader(new URLClassLoader(new URL[]{jar.toURI().toURL()}, null));
+
+        try
+        {
+            new PackageNamePersistenceUnitConfigurer(packages("org.example.scanned"), locator, logger, null,
+                    cache.getPath()).configure(info);
+
+            // Read from the cache.
+
+            new PackageNamePersistenceUnitConfigurer(packages("org.example.scanned"), locator, logger, null,
+                    cache.getPath()).configure(info);
+
+            writeJar(jar, "Foo", "Bar");
+
+            new PackageNamePersistenceUnitConfigurer(packages("org.example.scanned"), locator, logger, null,
+                    cache.getPath()).configure(info);
+        } finally
+        {
+            thread.setContextClassLoader(threadLoader);
+        }
+
+        verify();
+
+        // Only the JAR and the cache; no temporary files are left behind.
+
+        assertEquals(root.list().length, 2);
+
+        jar.delete();
+        cache.delete();
+        root.delete();
+    }
+
+    @Test
+    public void packages_in_directories_are_not_cached() throws Exception
+    {
+        File root = File.createTempFile("classes", "");
+
+        root.delete();
+
+        File packageDir = new File(root, "org/example/scanned");
+
+        packageDir.mkdirs();
+
+        File cache = new File(root, "entities.txt");
+
+        ClassNameLocator locator = newMock(ClassNameLocator.class);
+        Logger logger = mockLogger();
+        TapestryPersistenceUnitInfo info = newMock(TapestryPersistenceUnitInfo.class);
+
+        expect(locator.locateClassNames("org.example.scanned")).andReturn(Arrays.asList("org.example.scanned.Foo"));
+        expect(info.addManagedClassName("org.example.scanned.Foo")).andReturn(info);
+
+        logger.warn(EasyMock.contains("not in a JAR file"));
+
+        replay();
+
+        Thread thread = Thread.currentThread();
+        ClassLoader threadLoader = thread.getContextClassLoader();
+
+        thread.setContextClassLoader(new URLClassLoader(new URL[]{root.toURI().toURL()}, null));
+
+        try
+        {
+            new PackageNamePersistenceUnitConfigurer(packages("org.example.scanned"), locator, logger, null,
+                    cache.getPath()).configure(info);
+        } finally
+        {
+            thread.setContextClassLoader(threadLoader);
+        }
+
+        verify();
+
+        assertFalse(cache.exists());
+    }
+}
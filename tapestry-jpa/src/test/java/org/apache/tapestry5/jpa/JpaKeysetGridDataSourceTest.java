@@ -0,0 +1,297 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.jpa;
+
+import java.io.Serializable;
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.persistence.spi.PersistenceUnitTransactionType;
+
+import org.apache.tapestry5.PropertyConduit;
+import org.apache.tapestry5.beaneditor.PropertyModel;
+import org.apache.tapestry5.grid.ColumnSort;
+import org.apache.tapestry5.grid.SortConstraint;
+import org.apache.tapestry5.internal.jpa.EntityManagerSourceImpl;
+import org.apache.tapestry5.ioc.internal.util.ClasspathResource;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.test.TapestryTestCase;
+import org.example.app1.entities.User;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class JpaKeysetGridDataSourceTest extends TapestryTestCase
+{
+    private EntityManagerFactory entityManagerFactory;
+
+    private EntityManager entityManager;
+
+    private final PropertyConduit firstNameConduit = new PropertyConduit()
+    {
+        public Object get(final Object instance)
+        {
+            return ((User) instance).getFirstName();
+        }
+
+        public void set(final Object instance, final Object value)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public Class getPropertyType()
+        {
+            return String.class;
+        }
+
+        public <T extends Annotation> T getAnnotation(final Class<T> annotationClass)
+        {
+            return null;
+        }
+    };
+
+    @BeforeClass
+    public void setup()
+    {
+        final PersistenceUnitConfigurer configurer = new PersistenceUnitConfigurer()
+        {
+            public void configure(final TapestryPersistenceUnitInfo unitInfo)
+            {
+                unitInfo.transactionType(PersistenceUnitTransactionType.RESOURCE_LOCAL)
+                        .persistenceProviderClassName(
+                                "org.eclipse.persistence.jpa.PersistenceProvider")
+                        .excludeUnlistedClasses(true)
+                        .addManagedClass(User.class)
+                        .addProperty("javax.persistence.jdbc.user", "sa")
+                        .addProperty("javax.persistence.jdbc.driver", "org.h2.Driver")
+                        .addProperty("javax.persistence.jdbc.url", "jdbc:h2:mem:keyset")
+                        .addProperty("eclipselink.ddl-generation", "drop-and-create-tables")
+                        .addProperty("eclipselink.ddl-generation.output-mode", "database");
+            }
+        };
+
+        final Map<String, PersistenceUnitConfigurer> configuration = CollectionFactory
+                .<String, PersistenceUnitConfigurer> newMap();
+
+        configuration.put("keyset", configurer);
+
+        final EntityManagerSourceImpl source = new EntityManagerSourceImpl(
+                LoggerFactory.getLogger(JpaKeysetGridDataSourceTest.class), new ClasspathResource(
+                        "single-persistence-unit.xml"), null, configuration);
+
+        entityManagerFactory = source.getEntityManagerFactory("keyset");
+    }
+
+    @AfterClass
+    public void cleanup()
+    {
+        entityManagerFactory.close();
+    }
+
+    @BeforeMethod
+    public void createUsers()
+    {
+        entityManager = entityManagerFactory.createEntityManager();
+
+        entityManager.getTransaction().begin();
+
+        entityManager.createQuery("delete from User").executeUpdate();
+
+        for (int i = 1; i <= 20; i++)
+        {
+            final User user = new User();
+
+            user.setFirstName(String.format("Joe_%02d", i));
+            user.setLastName("User");
+            user.setEmail(String.format("joe%02d@null.com", i));
+            user.setEncodedPassword("####");
+
+            entityManager.persist(user);
+        }
+
+        entityManager.getTransaction().commit();
+
+        entityManager.clear();
+    }
+
+    @AfterMethod
+    public void closeEntityManager()
+    {
+        entityManager.close();
+    }
+
+    private List<SortConstraint> sortByFirstName(final ColumnSort sort)
+    {
+        final PropertyModel model = mockPropertyModel();
+
+        expect(model.getPropertyName()).andReturn("firstName").anyTimes();
+        expect(model.getConduit()).andReturn(firstNameConduit).anyTimes();
+
+        return Collections.singletonList(new SortConstraint(model, sort));
+    }
+
+    private static String firstNameAt(final JpaKeysetGridDataSource<User> source, final int index)
+    {
+        final User user = (User) source.getRowValue(index);
+
+        return user == null ? null : user.getFirstName();
+    }
+
+    private void deleteFirstUser()
+    {
+        entityManager.getTransaction().begin();
+
+        entityManager.createQuery("delete from User u where u.firstName = 'Joe_01'").executeUpdate();
+
+        entityManager.getTransaction().commit();
+
+        entityManager.clear();
+    }
+
+    private JpaKeysetGridDataSource<User> newSource()
+    {
+        return new JpaKeysetGridDataSource<User>(entityManager, User.class);
+    }
+
+    @Test
+    public void row_value_is_null_before_prepare()
+    {
+        final JpaKeysetGridDataSource<User> source = newSource();
+
+        assertNull(source.getRowValue(0));
+        assertEquals(source.getAvailableRows(), 0);
+    }
+
+    @Test
+    public void rows_are_in_key_order_and_not_counted()
+    {
+        final List<SortConstraint> sort = sortByFirstName(ColumnSort.DESCENDING);
+
+        replay();
+
+        final JpaKeysetGridDataSource<User> source = newSource();
+
+        assertFalse(source.isRowCountKnown());
+
+        // As the Grid does for an uncounted source: one row beyond the page.
+
+        source.prepare(0, 5, sort);
+
+        assertEquals(firstNameAt(source, 0), "Joe_20");
+        assertEquals(firstNameAt(source, 5), "Joe_15");
+        assertNull(firstNameAt(source, 6));
+        assertEquals(source.getAvailableRows(), 6);
+    }
+
+    @Test
+    public void bookmark_from_earlier_request_seeks_past_last_row_seen()
+    {
+        final List<SortConstraint> sort = sortByFirstName(ColumnSort.ASCENDING);
+
+        replay();
+
+        final JpaKeysetGridDataSource<User> first = newSource();
+
+        first.prepare(0, 5, sort);
+
+        final Serializable bookmark = first.getBookmark(5);
+
+        assertNotNull(bookmark);
+
+        // A row before the bookmark disappears: seeking past the key still starts with the row
+        // after Joe_05, where skipping five rows would now miss Joe_06.
+
+        deleteFirstUser();
+
+        final JpaKeysetGridDataSource<User> second = newSource();
+
+        second.addBookmark(5, bookmark);
+        second.prepare(5, 10, sort);
+
+        assertEquals(firstNameAt(second, 5), "Joe_06");
+
+        final JpaKeysetGridDataSource<User> unbookmarked = newSource();
+
+        unbookmarked.prepare(5, 10, sort);
+
+        assertEquals(firstNameAt(unbookmarked, 5), "Joe_07");
+    }
+
+    @Test
+    public void bookmark_for_different_sort_is_ignored()
+    {
+        final List<SortConstraint> ascending = sortByFirstName(ColumnSort.ASCENDING);
+        final List<SortConstraint> descending = sortByFirstName(ColumnSort.DESCENDING);
+
+        replay();
+
+        final JpaKeysetGridDataSource<User> first = newSource();
+
+        first.prepare(0, 5, ascending);
+
+        final JpaKeysetGridDataSource<User> second = newSource();
+
+        second.addBookmark(5, first.getBookmark(5));
+        second.prepare(5, 10, descending);
+
+        assertEquals(firstNameAt(second, 5), "Joe_15");
+    }
+
+    @Test
+    public void bookmark_for_different_query_is_ignored()
+    {
+        final List<SortConstraint> sort = sortByFirstName(ColumnSort.ASCENDING);
+
+        replay();
+
+        final JpaKeysetGridDataSource<User> first = newSource();
+
+        first.prepare(0, 5, sort);
+
+        final JpaKeysetGridDataSource<User> restricted = new JpaKeysetGridDataSource<User>(
+                entityManager, User.class)
+        {
+            @Override
+            protected void applyAdditionalConstraints(final CriteriaQuery<?> criteria,
+                    final Root<User> root, final CriteriaBuilder builder)
+            {
+                criteria.where(builder.like(root.<String> get("firstName"), "Joe_1%"));
+            }
+
+            @Override
+            protected Object getRowCountCacheKey()
+            {
+                return "firstName like Joe_1%";
+            }
+        };
+
+        restricted.addBookmark(5, first.getBookmark(5));
+        restricted.prepare(5, 10, sort);
+
+        // Joe_10 ... Joe_19, skipping five rows (rather than seeking past Joe_05).
+
+        assertEquals(firstNameAt(restricted, 5), "Joe_15");
+    }
+}
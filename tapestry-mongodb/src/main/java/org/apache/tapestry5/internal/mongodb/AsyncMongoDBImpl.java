@@ -0,0 +1,65 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.mongodb;
+
+import org.apache.tapestry5.ioc.Invokable;
+import org.apache.tapestry5.ioc.services.ParallelExecutor;
+import org.apache.tapestry5.mongodb.AsyncMongoDB;
+import org.apache.tapestry5.mongodb.MongoDB;
+import org.apache.tapestry5.mongodb.MongoDBOperation;
+
+import java.util.concurrent.Future;
+
+public class AsyncMongoDBImpl implements AsyncMongoDB
+{
+    private final ParallelExecutor parallelExecutor;
+
+    private final MongoDB mongoDB;
+
+    private final MongoDBInstrumentation instrumentation;
+
+    public AsyncMongoDBImpl(ParallelExecutor parallelExecutor, MongoDB mongoDB,
+                            MongoDBInstrumentation instrumentation)
+    {
+        this.parallelExecutor = parallelExecutor;
+        this.mongoDB = mongoDB;
+        this.instrumentation = instrumentation;
+    }
+
+    public <T> Future<T> invoke(MongoDBOperation<T> operation)
+    {
+        return invoke(null, operation);
+    }
+
+    public <T> Future<T> invoke(final String dbname, final MongoDBOperation<T> operation)
+    {
+        assert operation != null;
+
+        final MongoDBStatistics statistics = instrumentation.getRequestStatistics();
+
+        return parallelExecutor.invoke(new Invokable<T>()
+        {
+            public T invoke()
+            {
+                // The MongoDB service is per-thread, so this is the pooled thread's own instance; the work is
+                // counted against the request that invoked the operation.
+
+                instrumentation.setRequestStatistics(statistics);
+
+                return dbname == null ? mongoDB.execute(operation) : mongoDB.execute(dbname, operation);
+            }
+        });
+    }
+}
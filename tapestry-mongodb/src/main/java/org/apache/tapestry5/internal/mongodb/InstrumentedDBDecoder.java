@@ -0,0 +1,71 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.mongodb;
+
+import com.mongodb.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes documents as the {@link DefaultDBDecoder} does, recording the number and size of the documents returned.
+ */
+public class InstrumentedDBDecoder extends DefaultDBDecoder
+{
+    private final MongoDBInstrumentation instrumentation;
+
+    public InstrumentedDBDecoder(MongoDBInstrumentation instrumentation)
+    {
+        this.instrumentation = instrumentation;
+    }
+
+    /**
+     * Returns a factory for instrumented decoders, for use with {@link MongoClientOptions}.
+     */
+    public static DBDecoderFactory createFactory(final MongoDBInstrumentation instrumentation)
+    {
+        return new DBDecoderFactory()
+        {
+            public DBDecoder create()
+            {
+                return new InstrumentedDBDecoder(instrumentation);
+            }
+        };
+    }
+
+    @Override
+    public DBObject decode(byte[] bytes, DBCollection collection)
+    {
+        DBCallback callback = getDBCallback(collection);
+
+        callback.reset();
+
+        instrumentation.recordDocument(decode(bytes, callback));
+
+        return (DBObject) callback.get();
+    }
+
+    @Override
+    public DBObject decode(InputStream in, DBCollection collection) throws IOException
+    {
+        DBCallback callback = getDBCallback(collection);
+
+        callback.reset();
+
+        instrumentation.recordDocument(decode(in, callback));
+
+        return (DBObject) callback.get();
+    }
+}
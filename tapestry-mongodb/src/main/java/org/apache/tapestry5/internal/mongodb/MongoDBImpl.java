@@ -1,4 +1,4 @@
-// Copyright 2013 The Apache Software Foundation
+// Copyright 2013, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ import com.mongodb.DB;
 import com.mongodb.Mongo;
 import org.apache.tapestry5.ioc.services.ThreadCleanupListener;
 import org.apache.tapestry5.mongodb.MongoDB;
+import org.apache.tapestry5.mongodb.MongoDBOperation;
 import org.apache.tapestry5.mongodb.MongoDBSource;
 import org.slf4j.Logger;
 
@@ -37,14 +38,18 @@ public class MongoDBImpl implements MongoDB, ThreadCleanupListener
 	private final String dbUsername;
 	private final String dbPassword;
 
+    private final MongoDBInstrumentation instrumentation;
+
     private DB db;
 
     public MongoDBImpl(Logger logger,
 		   MongoDBSource mongoDBSource,
            String defaultDbName, boolean consistentRequest,
-		   boolean secureMode, String dbUsername, String dbPassword)
+		   boolean secureMode, String dbUsername, String dbPassword,
+           MongoDBInstrumentation instrumentation)
     {
         this.logger = logger;
+        this.instrumentation = instrumentation;
 
         this.mongo = mongoDBSource.getMongo();
 
@@ -66,6 +71,28 @@ public class MongoDBImpl implements MongoDB, ThreadCleanupListener
 		return buildDbSession(dbname);
     }
 
+    public <T> T execute(MongoDBOperation<T> operation)
+    {
+        return execute(defaultDbName, operation);
+    }
+
+    public <T> T execute(String dbname, MongoDBOperation<T> operation)
+    {
+        assert operation != null;
+
+        DB database = buildDbSession(dbname);
+
+        long startNanos = System.nanoTime();
+
+        try
+        {
+            return operation.perform(database);
+        } finally
+        {
+            instrumentation.recordOperation(System.nanoTime() - startNanos);
+        }
+    }
+
     public void threadDidCleanup()
     {
         if (consistentRequest)
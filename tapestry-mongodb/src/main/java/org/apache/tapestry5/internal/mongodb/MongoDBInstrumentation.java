@@ -0,0 +1,40 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.mongodb;
+
+/**
+ * Records the use of MongoDB, both for the current request and in total (the totals are exposed through JMX).
+ */
+public interface MongoDBInstrumentation
+{
+    /**
+     * Returns the statistics for the current request (or thread), creating them as necessary.
+     */
+    MongoDBStatistics getRequestStatistics();
+
+    /**
+     * Sets the statistics for the current thread; used when a pooled thread does work on behalf of a request.
+     */
+    void setRequestStatistics(MongoDBStatistics statistics);
+
+    /**
+     * Returns the statistics across all requests.
+     */
+    MongoDBStatistics getTotalStatistics();
+
+    void recordOperation(long elapsedNanos);
+
+    void recordDocument(int size);
+}
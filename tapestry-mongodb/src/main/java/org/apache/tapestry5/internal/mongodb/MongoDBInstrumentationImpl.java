@@ -0,0 +1,88 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.mongodb;
+
+import org.apache.tapestry5.ioc.services.PerThreadValue;
+import org.apache.tapestry5.ioc.services.PerthreadManager;
+import org.apache.tapestry5.ioc.services.ThreadCleanupListener;
+import org.slf4j.Logger;
+
+public class MongoDBInstrumentationImpl implements MongoDBInstrumentation
+{
+    private final Logger logger;
+
+    private final PerthreadManager perthreadManager;
+
+    private final PerThreadValue<MongoDBStatistics> requestStatistics;
+
+    private final MongoDBStatistics totalStatistics = new MongoDBStatistics();
+
+    public MongoDBInstrumentationImpl(Logger logger, PerthreadManager perthreadManager)
+    {
+        this.logger = logger;
+        this.perthreadManager = perthreadManager;
+
+        requestStatistics = perthreadManager.createValue();
+    }
+
+    public MongoDBStatistics getRequestStatistics()
+    {
+        MongoDBStatistics statistics = requestStatistics.get();
+
+        if (statistics == null)
+        {
+            final MongoDBStatistics created = new MongoDBStatistics();
+
+            requestStatistics.set(created);
+
+            perthreadManager.addThreadCleanupListener(new ThreadCleanupListener()
+            {
+                public void threadDidCleanup()
+                {
+                    if (logger.isDebugEnabled())
+                    {
+                        logger.debug(String.format("MongoDB: %s.", created));
+                    }
+                }
+            });
+
+            statistics = created;
+        }
+
+        return statistics;
+    }
+
+    public void setRequestStatistics(MongoDBStatistics statistics)
+    {
+        requestStatistics.set(statistics);
+    }
+
+    public MongoDBStatistics getTotalStatistics()
+    {
+        return totalStatistics;
+    }
+
+    public void recordOperation(long elapsedNanos)
+    {
+        getRequestStatistics().recordOperation(elapsedNanos);
+        totalStatistics.recordOperation(elapsedNanos);
+    }
+
+    public void recordDocument(int size)
+    {
+        getRequestStatistics().recordDocument(size);
+        totalStatistics.recordDocument(size);
+    }
+}
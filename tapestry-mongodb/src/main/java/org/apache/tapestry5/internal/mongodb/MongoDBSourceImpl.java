@@ -1,4 +1,4 @@
-// Copyright 2013 The Apache Software Foundation
+// Copyright 2013, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -37,6 +37,7 @@ public class MongoDBSourceImpl implements MongoDBSource
             @Symbol(MongoDBSymbols.CONNECTIONS_PER_HOSTS) int connectionPerHost,
             @Symbol(MongoDBSymbols.READ_PREFERENCE) ReadPreference readPreference,
             @Symbol(MongoDBSymbols.WRITE_CONCERN) WriteConcern writeConcern,
+            MongoDBInstrumentation instrumentation,
             List<ServerAddress> serverAddresses)
     {
         this.logger = logger;
@@ -44,6 +45,7 @@ public class MongoDBSourceImpl implements MongoDBSource
 		MongoClientOptions options = new MongoClientOptions.Builder()
 				.connectionsPerHost(connectionPerHost)
 				.writeConcern(writeConcern).readPreference(readPreference)
+				.dbDecoderFactory(InstrumentedDBDecoder.createFactory(instrumentation))
 				.build();
 
         if (serverAddresses.isEmpty())
@@ -0,0 +1,119 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.mongodb;
+
+import org.apache.tapestry5.mongodb.MongoDBStatisticsMBean;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe counters, used for both the statistics of a single request and the totals across all requests.
+ */
+public class MongoDBStatistics implements MongoDBStatisticsMBean
+{
+    private static final long[] LATENCY_LIMITS = {1, 5, 10, 50, 100, 500, 1000};
+
+    private final AtomicLong operations = new AtomicLong();
+
+    private final AtomicLong operationNanos = new AtomicLong();
+
+    private final AtomicLong documents = new AtomicLong();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_LIMITS.length + 1);
+
+    public void recordOperation(long elapsedNanos)
+    {
+        operations.incrementAndGet();
+        operationNanos.addAndGet(elapsedNanos);
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+
+        int bucket = 0;
+
+        while (bucket < LATENCY_LIMITS.length && millis > LATENCY_LIMITS[bucket])
+        {
+            bucket++;
+        }
+
+        latencies.incrementAndGet(bucket);
+    }
+
+    public void recordDocument(int size)
+    {
+        documents.incrementAndGet();
+        bytes.addAndGet(size);
+    }
+
+    public long getOperationCount()
+    {
+        return operations.get();
+    }
+
+    public long getOperationTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(operationNanos.get());
+    }
+
+    public long getDocumentsReturned()
+    {
+        return documents.get();
+    }
+
+    public long getBytesReturned()
+    {
+        return bytes.get();
+    }
+
+    public long[] getLatencyLimits()
+    {
+        return LATENCY_LIMITS.clone();
+    }
+
+    public long[] getLatencyHistogram()
+    {
+        long[] result = new long[latencies.length()];
+
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = latencies.get(i);
+        }
+
+        return result;
+    }
+
+    public void reset()
+    {
+        operations.set(0);
+        operationNanos.set(0);
+        documents.set(0);
+        bytes.set(0);
+
+        for (int i = 0; i < latencies.length(); i++)
+        {
+            latencies.set(i, 0);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d operations in %d ms, %d documents (%d bytes) returned",
+                getOperationCount(), getOperationTime(), getDocumentsReturned(), getBytesReturned());
+    }
+}
@@ -0,0 +1,48 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.mongodb;
+
+import java.util.concurrent.Future;
+
+/**
+ * Performs {@linkplain MongoDBOperation operations} in parallel, using the
+ * {@link org.apache.tapestry5.ioc.services.ParallelExecutor}'s thread pool, so that a page can fan out
+ * independent queries rather than issuing them one after another. Each operation is performed using the
+ * {@link MongoDB} service of the pooled thread, and is counted in the statistics of the request that invoked it.
+ *
+ * @since 5.4
+ */
+public interface AsyncMongoDB
+{
+    /**
+     * Performs the operation against the default database.
+     *
+     * @param operation
+     *         to perform
+     * @return the eventual result of the operation
+     */
+    <T> Future<T> invoke(MongoDBOperation<T> operation);
+
+    /**
+     * Performs the operation against the named database.
+     *
+     * @param dbname
+     *         the database name
+     * @param operation
+     *         to perform
+     * @return the eventual result of the operation
+     */
+    <T> Future<T> invoke(String dbname, MongoDBOperation<T> operation);
+}
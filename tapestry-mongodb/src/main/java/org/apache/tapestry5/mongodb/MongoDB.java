@@ -1,4 +1,4 @@
-// Copyright 2013 The Apache Software Foundation
+// Copyright 2013, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -37,4 +37,26 @@ public interface MongoDB
      * @return the {@link DB} connection object
      */
     public DB getMongoDb(String dbname);
+
+    /**
+     * Performs the operation against the default database, recording its latency in the MongoDB statistics.
+     *
+     * @param operation
+     *         to perform
+     * @return the result of the operation
+     * @since 5.4
+     */
+    public <T> T execute(MongoDBOperation<T> operation);
+
+    /**
+     * Performs the operation against the specific database, recording its latency in the MongoDB statistics.
+     *
+     * @param dbname
+     *         the database name
+     * @param operation
+     *         to perform
+     * @return the result of the operation
+     * @since 5.4
+     */
+    public <T> T execute(String dbname, MongoDBOperation<T> operation);
 }
@@ -0,0 +1,325 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.mongodb;
+
+import com.mongodb.*;
+import org.apache.tapestry5.grid.ColumnSort;
+import org.apache.tapestry5.grid.KeysetGridDataSource;
+import org.apache.tapestry5.grid.SortConstraint;
+import org.apache.tapestry5.grid.UncountedGridDataSource;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A {@link org.apache.tapestry5.grid.GridDataSource} over the documents of a MongoDB collection, that pages using the
+ * values of the last document seen (a range query) rather than skipping over all the prior documents, which gets
+ * slower the further into the collection the page is. Documents are ordered by the sort constraints and then by
+ * <code>_id</code> (so that the order is total); the next page starts after the last document of the prior page,
+ * which the database can find directly using an index on the sorted fields. Each page is read from a cursor that is
+ * closed once the page's documents have been read.
+ * <p/>
+ * The property name of each sort constraint is used as the name of the sorted field. The key of the next page is
+ * {@linkplain KeysetGridDataSource#getBookmark(int) bookmarked}; the
+ * {@link org.apache.tapestry5.corelib.components.GridPager} carries bookmarks in its links, so that a new instance (in a
+ * later request) can seek directly to the page. When the user jumps ahead, the query seeks to the closest known page and
+ * skips the remaining documents. A bookmark is only used with the sort order and query it was recorded with. Documents
+ * missing a sorted field (or with a null value) are not bookmarked; MongoDB sorts them first in ascending order and
+ * last in descending order, so the range query for a descending field also matches them.
+ * <p/>
+ * Optionally, the documents are not counted at all ({@linkplain UncountedGridDataSource}); the Grid then only offers
+ * the pages up to the next one.
+ * <p/>
+ * This class is <em>not</em> thread-safe; it maintains internal state.
+ *
+ * @since 5.4
+ */
+public class MongoDBGridDataSource implements UncountedGridDataSource, KeysetGridDataSource
+{
+    private static final String ID_FIELD = "_id";
+
+    /**
+     * The key values (sorted fields, then _id) of the document before a bookmarked index, along with a description of
+     * the query (sort order and selection) the key is for.
+     */
+    private static final class Bookmark implements Serializable
+    {
+        private static final long serialVersionUID = 4601386046513815217L;
+
+        private final String query;
+
+        private final Object[] key;
+
+        private Bookmark(String query, Object[] key)
+        {
+            this.query = query;
+            this.key = key;
+        }
+    }
+
+    private final DBCollection collection;
+
+    private final DBObject query;
+
+    private final boolean countRows;
+
+    private final TreeMap<Integer, Bookmark> bookmarks = new TreeMap<Integer, Bookmark>();
+
+    private int startIndex;
+
+    private List<DBObject> preparedResults;
+
+    /**
+     * Creates a data source over all the documents of the collection, that does not count them.
+     */
+    public MongoDBGridDataSource(DBCollection collection)
+    {
+        this(collection, new BasicDBObject(), false);
+    }
+
+    /**
+     * @param collection
+     *         the collection to query
+     * @param query
+     *         selects the documents of the collection to display
+     * @param countRows
+     *         if true, the documents are counted (and the Grid displays all pages); if false, the documents are not
+     *         counted
+     */
+    public MongoDBGridDataSource(DBCollection collection, DBObject query, boolean countRows)
+    {
+        assert collection != null;
+        assert query != null;
+
+        this.collection = collection;
+        this.query = query;
+        this.countRows = countRows;
+    }
+
+    public boolean isRowCountKnown()
+    {
+        return countRows;
+    }
+
+    /**
+     * Returns the number of documents matching the query or, when the documents are not counted, the number of
+     * documents up to the last prepared document.
+     */
+    public int getAvailableRows()
+    {
+        if (countRows)
+        {
+            return (int) collection.count(query);
+        }
+
+        return preparedResults == null ? 0 : startIndex + preparedResults.size();
+    }
+
+    public void prepare(int startIndex, int endIndex, List<SortConstraint> sortConstraints)
+    {
+        assert sortConstraints != null;
+
+        List<SortConstraint> ordering = CollectionFactory.newList();
+        StringBuilder sortDescription = new StringBuilder();
+
+        BasicDBObject sort = new BasicDBObject();
+
+        for (SortConstraint constraint : sortConstraints)
+        {
+            if (constraint.getColumnSort() != ColumnSort.UNSORTED)
+            {
+                String fieldName = constraint.getPropertyModel().getPropertyName();
+
+                ordering.add(constraint);
+                sort.append(fieldName, constraint.getColumnSort() == ColumnSort.ASCENDING ? 1 : -1);
+                sortDescription.append(fieldName).append(' ').append(constraint.getColumnSort()).append(',');
+            }
+        }
+
+        sort.append(ID_FIELD, 1);
+
+        // Keys only make sense for the order and selection they were recorded with.
+
+        String queryDescription = sortDescription.append(query).toString();
+
+        discardBookmarksNotFor(queryDescription);
+
+        SortedMap<Integer, Bookmark> prior = startIndex == 0 ? null : bookmarks.headMap(startIndex + 1);
+
+        int seekIndex = 0;
+
+        DBObject pageQuery = query;
+
+        if (prior != null && !prior.isEmpty())
+        {
+            seekIndex = prior.lastKey();
+
+            BasicDBList conditions = new BasicDBList();
+
+            conditions.add(query);
+            conditions.add(after(ordering, prior.get(seekIndex).key));
+
+            pageQuery = new BasicDBObject("$and", conditions);
+        }
+
+        DBCursor cursor = collection.find(pageQuery).sort(sort).skip(startIndex - seekIndex)
+                .limit(endIndex - startIndex + 1);
+
+        this.startIndex = startIndex;
+
+        preparedResults = CollectionFactory.newList();
+
+        try
+        {
+            while (cursor.hasNext())
+            {
+                preparedResults.add(cursor.next());
+            }
+        } finally
+        {
+            cursor.close();
+        }
+
+        // Remember where the next page starts; the last two documents are kept, as the Grid may have asked for one
+        // document beyond the page.
+
+        for (int i = Math.max(0, preparedResults.size() - 2); i < preparedResults.size(); i++)
+        {
+            Object[] key = toKey(ordering, preparedResults.get(i));
+
+            if (key != null)
+            {
+                bookmarks.put(startIndex + i + 1, new Bookmark(queryDescription, key));
+            }
+        }
+    }
+
+    private void discardBookmarksNotFor(String queryDescription)
+    {
+        Iterator<Bookmark> iterator = bookmarks.values().iterator();
+
+        while (iterator.hasNext())
+        {
+            if (!iterator.next().query.equals(queryDescription))
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    public Serializable getBookmark(int index)
+    {
+        return bookmarks.get(index);
+    }
+
+    /**
+     * Adds a bookmark obtained from {@link #getBookmark(int)}; anything else is ignored.
+     */
+    public void addBookmark(int index, Serializable bookmark)
+    {
+        if (bookmark instanceof Bookmark)
+        {
+            bookmarks.put(index, (Bookmark) bookmark);
+        }
+    }
+
+    private static Object[] toKey(List<SortConstraint> ordering, DBObject document)
+    {
+        Object[] key = new Object[ordering.size() + 1];
+
+        for (int i = 0; i < ordering.size(); i++)
+        {
+            key[i] = document.get(ordering.get(i).getPropertyModel().getPropertyName());
+
+            if (key[i] == null)
+            {
+                return null;
+            }
+        }
+
+        key[ordering.size()] = document.get(ID_FIELD);
+
+        return key;
+    }
+
+    /**
+     * Builds the query matching the documents after the key: { $or: [ { a: { $gt: ? } }, { a: ?, b: { $gt: ? } },
+     * ... ] } with _id as the final field. For a descending field, { $lt: ? } is used instead and the documents
+     * where the field is null or missing are matched as well, as they sort after any value (the key itself never
+     * contains null).
+     */
+    private static DBObject after(List<SortConstraint> ordering, Object[] key)
+    {
+        BasicDBList alternatives = new BasicDBList();
+
+        for (int i = 0; i <= ordering.size(); i++)
+        {
+            BasicDBObject alternative = new BasicDBObject();
+
+            for (int j = 0; j < i; j++)
+            {
+                alternative.append(ordering.get(j).getPropertyModel().getPropertyName(), key[j]);
+            }
+
+            if (i == ordering.size())
+            {
+                alternative.append(ID_FIELD, new BasicDBObject("$gt", key[i]));
+            } else
+            {
+                SortConstraint constraint = ordering.get(i);
+                String fieldName = constraint.getPropertyModel().getPropertyName();
+
+                if (constraint.getColumnSort() == ColumnSort.DESCENDING)
+                {
+                    BasicDBObject missing = new BasicDBObject(alternative);
+
+                    missing.append(fieldName, null);
+
+                    alternatives.add(missing);
+                }
+
+                alternative.append(fieldName,
+                        new BasicDBObject(constraint.getColumnSort() == ColumnSort.ASCENDING ? "$gt" : "$lt", key[i]));
+            }
+
+            alternatives.add(alternative);
+        }
+
+        return new BasicDBObject("$or", alternatives);
+    }
+
+    /**
+     * Returns the document at the given index, or null if the index is beyond the prepared documents (or nothing has
+     * been prepared).
+     */
+    public Object getRowValue(int index)
+    {
+        int offset = index - startIndex;
+
+        return preparedResults == null || offset < 0 || offset >= preparedResults.size() ? null : preparedResults.get(offset);
+    }
+
+    /**
+     * Returns {@link DBObject}.
+     */
+    public Class getRowType()
+    {
+        return DBObject.class;
+    }
+}
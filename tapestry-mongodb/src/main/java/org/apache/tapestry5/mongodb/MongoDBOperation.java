@@ -0,0 +1,37 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.mongodb;
+
+import com.mongodb.DB;
+
+/**
+ * An operation against a MongoDB database, performed by {@link MongoDB#execute(MongoDBOperation)} or
+ * {@link AsyncMongoDB}, which record the number of operations and their latency.
+ *
+ * @param <T>
+ *         type of result of the operation
+ * @since 5.4
+ */
+public interface MongoDBOperation<T>
+{
+    /**
+     * Performs the operation.
+     *
+     * @param db
+     *         the database to operate on
+     * @return the result of the operation
+     */
+    T perform(DB db);
+}
@@ -0,0 +1,68 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.mongodb;
+
+/**
+ * Statistics on the use of MongoDB. Documents and bytes are counted for all queries; operations (and their latency)
+ * are counted for each {@link MongoDBOperation}. In a web application that also includes tapestry-jmx, the statistics
+ * are exposed through JMX, under a name unique to the application: {@value #OBJECT_NAME}, with the application's
+ * context path and name added as the <code>context</code> and <code>app</code> keys.
+ *
+ * @since 5.4
+ */
+public interface MongoDBStatisticsMBean
+{
+    /**
+     * The name under which the statistics are exposed, before the keys identifying the application are added.
+     */
+    String OBJECT_NAME = "org.apache.tapestry5.mongodb:type=Statistics";
+
+    /**
+     * The number of {@linkplain MongoDBOperation operations} performed.
+     */
+    long getOperationCount();
+
+    /**
+     * The total time spent performing operations, in milliseconds.
+     */
+    long getOperationTime();
+
+    /**
+     * The number of documents returned by the database.
+     */
+    long getDocumentsReturned();
+
+    /**
+     * The total size of the documents returned by the database, in bytes.
+     */
+    long getBytesReturned();
+
+    /**
+     * The upper limits, in milliseconds, of each bucket of the {@linkplain #getLatencyHistogram() latency histogram}
+     * but the last.
+     */
+    long[] getLatencyLimits();
+
+    /**
+     * The number of operations that took up to each {@linkplain #getLatencyLimits() limit}, with a final bucket for
+     * the operations that took longer.
+     */
+    long[] getLatencyHistogram();
+
+    /**
+     * Resets all the statistics to zero.
+     */
+    void reset();
+}
@@ -1,4 +1,4 @@
-// Copyright 2013 The Apache Software Foundation
+// Copyright 2013, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -16,22 +16,28 @@ package org.apache.tapestry5.mongodb.modules;
 
 import com.mongodb.ReadPreference;
 import com.mongodb.WriteConcern;
-import org.apache.tapestry5.internal.mongodb.MongoDBImpl;
-import org.apache.tapestry5.internal.mongodb.MongoDBSourceImpl;
+import org.apache.tapestry5.internal.mongodb.*;
 import org.apache.tapestry5.ioc.Configuration;
 import org.apache.tapestry5.ioc.MappedConfiguration;
 import org.apache.tapestry5.ioc.ScopeConstants;
 import org.apache.tapestry5.ioc.ServiceBinder;
+import org.apache.tapestry5.ioc.annotations.Optional;
 import org.apache.tapestry5.ioc.annotations.Scope;
 import org.apache.tapestry5.ioc.annotations.Symbol;
 import org.apache.tapestry5.ioc.services.Coercion;
 import org.apache.tapestry5.ioc.services.CoercionTuple;
 import org.apache.tapestry5.ioc.services.PerthreadManager;
+import org.apache.tapestry5.mongodb.AsyncMongoDB;
 import org.apache.tapestry5.mongodb.MongoDB;
 import org.apache.tapestry5.mongodb.MongoDBSource;
+import org.apache.tapestry5.mongodb.MongoDBStatisticsMBean;
 import org.apache.tapestry5.mongodb.MongoDBSymbols;
 import org.slf4j.Logger;
 
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
 /**
  * Defines services which are responsible for MongoDB initializations and connections.
  */
@@ -40,6 +46,8 @@ public class MongodbModule
     public static void bind(ServiceBinder binder)
     {
         binder.bind(MongoDBSource.class, MongoDBSourceImpl.class);
+        binder.bind(MongoDBInstrumentation.class, MongoDBInstrumentationImpl.class);
+        binder.bind(AsyncMongoDB.class, AsyncMongoDBImpl.class);
     }
 
     public static void contributeFactoryDefaults(MappedConfiguration<String, String> configuration)
@@ -63,10 +71,11 @@ public class MongodbModule
                      @Symbol(MongoDBSymbols.CONSISTENT_REQUEST) boolean consistentRequest,
 					 @Symbol(MongoDBSymbols.SECURE_MODE) boolean secureMode,
 					 @Symbol(MongoDBSymbols.DB_USERNAME) String dbUsername,
-					 @Symbol(MongoDBSymbols.DB_PASSWORD) String dbPassword)
+					 @Symbol(MongoDBSymbols.DB_PASSWORD) String dbPassword,
+                     MongoDBInstrumentation instrumentation)
     {
         final MongoDBImpl mongoDB = new MongoDBImpl(logger, mongoDBSource,
-                defaultDbName, consistentRequest, secureMode, dbUsername, dbPassword);
+                defaultDbName, consistentRequest, secureMode, dbUsername, dbPassword, instrumentation);
 
 		perthreadManager.addThreadCleanupListener(mongoDB);
 
@@ -135,4 +144,34 @@ public class MongodbModule
             }
         }));
     }
+
+    /**
+     * Exposes the {@linkplain MongoDBStatisticsMBean statistics} to JMX via the MBeanSupport service, if the
+     * tapestry-jmx module is present (and so, in a web application). The object name includes the application's
+     * context path and name, so that several applications in the same container each expose their own statistics.
+     *
+     * @since 5.4
+     */
+    @Optional
+    public static void contributeMBeanSupport(MappedConfiguration<String, Object> configuration,
+
+                                              // tapestry-core's SymbolConstants.CONTEXT_PATH and the application name
+                                              @Symbol("tapestry.context-path")
+                                              String contextPath,
+
+                                              @Symbol("tapestry.app-name")
+                                              String appName,
+
+                                              MongoDBInstrumentation instrumentation)
+    {
+        try
+        {
+            configuration.add(String.format("%s,context=%s,app=%s", MongoDBStatisticsMBean.OBJECT_NAME,
+                    ObjectName.quote(contextPath), ObjectName.quote(appName)),
+                    new StandardMBean(instrumentation.getTotalStatistics(), MongoDBStatisticsMBean.class));
+        } catch (NotCompliantMBeanException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+    }
 }
@@ -3,13 +3,24 @@ import de.flapdoodle.embed.mongo.MongodProcess
 import de.flapdoodle.embed.mongo.MongodStarter
 import de.flapdoodle.embed.mongo.config.MongodConfig
 import de.flapdoodle.embed.mongo.distribution.Version
+import com.mongodb.BasicDBObject
+import com.mongodb.DB
+import com.mongodb.DBCollection
 import de.flapdoodle.embed.process.runtime.Network
+import org.apache.tapestry5.beaneditor.PropertyModel
+import org.apache.tapestry5.grid.ColumnSort
+import org.apache.tapestry5.grid.SortConstraint
+import org.apache.tapestry5.internal.mongodb.MongoDBInstrumentation
+import org.apache.tapestry5.internal.mongodb.MongoDBStatistics
 import org.apache.tapestry5.internal.mongodb.MongoDBTestModule
 import org.apache.tapestry5.internal.mongodb.People
 import org.apache.tapestry5.ioc.Registry
 import org.apache.tapestry5.ioc.RegistryBuilder
 import org.apache.tapestry5.ioc.modules.TapestryIOCModule
+import org.apache.tapestry5.mongodb.AsyncMongoDB
 import org.apache.tapestry5.mongodb.MongoDB
+import org.apache.tapestry5.mongodb.MongoDBGridDataSource
+import org.apache.tapestry5.mongodb.MongoDBOperation
 import org.apache.tapestry5.mongodb.MongoDBSource
 import org.apache.tapestry5.mongodb.modules.MongodbModule
 import org.jongo.Jongo
@@ -90,4 +101,168 @@ class MongoDBSpec extends Specification
         cleanup:
         peoples.remove("{}")
     }
-}
\ No newline at end of file
+
+    def "Operations performed asynchronously are counted against the invoking request"()
+    {
+        setup:
+        AsyncMongoDB asyncMongoDB = registry.getService(AsyncMongoDB)
+        MongoDBInstrumentation instrumentation = registry.getService(MongoDBInstrumentation)
+
+        peoples.save(new People(name: "Name-0", surname: "Surname-0"))
+
+        // Start a new request
+
+        registry.cleanupThread()
+
+        when:
+        def futures = (1..3).collect {
+            asyncMongoDB.invoke({ DB db -> db.getCollection("peoples").findOne() } as MongoDBOperation)
+        }
+
+        futures*.get()
+
+        MongoDBStatistics statistics = instrumentation.requestStatistics
+
+        then:
+        statistics.operationCount == 3
+        statistics.documentsReturned >= 3
+        statistics.latencyHistogram.toList().sum() == 3
+
+        instrumentation.totalStatistics.operationCount >= 3
+
+        cleanup:
+        peoples.remove("{}")
+        registry.cleanupThread()
+    }
+
+    def "Grid data source pages through the documents using range queries"()
+    {
+        setup:
+        for (int i = 0; i < 25; i++)
+        {
+            peoples.save(new People(name: String.format("Name-%02d", i), surname: "Surname"))
+        }
+
+        DBCollection collection = mongoDB.getDefaultMongoDb().getCollection("peoples")
+
+        PropertyModel nameModel = Mock()
+        nameModel.getPropertyName() >> "name"
+
+        def sort = [new SortConstraint(nameModel, ColumnSort.DESCENDING)]
+
+        MongoDBGridDataSource source = new MongoDBGridDataSource(collection)
+
+        when:
+        source.prepare(0, 10, sort)
+
+        then:
+        !source.rowCountKnown
+        source.availableRows == 11
+        source.getRowValue(0).get("name") == "Name-24"
+        source.getRowValue(10).get("name") == "Name-14"
+
+        when:
+        source.prepare(10, 20, sort)
+
+        then:
+        source.getRowValue(10).get("name") == "Name-14"
+        source.getRowValue(20).get("name") == "Name-04"
+
+        when:
+        source.prepare(20, 30, sort)
+
+        then:
+        source.availableRows == 25
+        source.getRowValue(24).get("name") == "Name-00"
+        source.getRowValue(25) == null
+
+        cleanup:
+        peoples.remove("{}")
+    }
+
+    def "Grid data source resumes from a bookmark carried over from an earlier request"()
+    {
+        setup:
+        for (int i = 0; i < 25; i++)
+        {
+            peoples.save(new People(name: String.format("Name-%02d", i), surname: "Surname"))
+        }
+
+        DBCollection collection = mongoDB.getDefaultMongoDb().getCollection("peoples")
+
+        PropertyModel nameModel = Mock()
+        nameModel.getPropertyName() >> "name"
+
+        def sort = [new SortConstraint(nameModel, ColumnSort.DESCENDING)]
+
+        MongoDBGridDataSource first = new MongoDBGridDataSource(collection)
+        MongoDBGridDataSource second = new MongoDBGridDataSource(collection)
+
+        when:
+        first.prepare(0, 10, sort)
+
+        def bookmark = first.getBookmark(10)
+
+        then:
+        bookmark != null
+        first.getBookmark(20) == null
+        second.getRowValue(0) == null
+
+        when:
+        second.addBookmark(10, bookmark)
+        second.prepare(10, 20, sort)
+
+        then:
+        second.getBookmark(10) == bookmark
+        second.getRowValue(10).get("name") == "Name-14"
+        second.getRowValue(20).get("name") == "Name-04"
+
+        when: "a bookmark for another sort is ignored"
+        MongoDBGridDataSource third = new MongoDBGridDataSource(collection)
+        third.addBookmark(10, bookmark)
+        third.prepare(10, 20, [new SortConstraint(nameModel, ColumnSort.ASCENDING)])
+
+        then:
+        third.getRowValue(10).get("name") == "Name-10"
+
+        cleanup:
+        peoples.remove("{}")
+    }
+
+    def "Grid data source keeps documents missing the sorted field in a descending sort"()
+    {
+        setup:
+        for (int i = 0; i < 25; i++)
+        {
+            peoples.save(new People(name: String.format("Name-%02d", i), surname: "Surname"))
+        }
+
+        DBCollection collection = mongoDB.getDefaultMongoDb().getCollection("peoples")
+
+        for (int i = 0; i < 5; i++)
+        {
+            collection.insert(new BasicDBObject("surname", "Nameless"))
+        }
+
+        PropertyModel nameModel = Mock()
+        nameModel.getPropertyName() >> "name"
+
+        def sort = [new SortConstraint(nameModel, ColumnSort.DESCENDING)]
+
+        MongoDBGridDataSource source = new MongoDBGridDataSource(collection)
+
+        when: "each page seeks after the last key of the prior page"
+        source.prepare(0, 10, sort)
+        source.prepare(10, 20, sort)
+        source.prepare(20, 30, sort)
+
+        then: "the documents without a name sort last, and are not lost"
+        source.getRowValue(24).get("name") == "Name-00"
+        (25..29).every { source.getRowValue(it).get("name") == null && source.getRowValue(it).get("surname") == "Nameless" }
+        source.getRowValue(30) == null
+        source.availableRows == 30
+
+        cleanup:
+        collection.remove(new BasicDBObject())
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright 2013 The Apache Software Foundation
+// Copyright 2013, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -15,21 +15,22 @@
 package org.apache.tapestry5.internal.webresources;
 
 /**
- * Controls caching for {@link ResourceTransformerFactory} in <em>development mode</em>. In production mode, caching at this
- * level is not needed, because artifacts are also cached later in the pipeline. This caching is all about avoid unwanted
+ * Controls caching for {@link ResourceTransformerFactory}. In production mode, only the file system cache is used (to avoid
+ * compiling again after a restart); in-memory caching at this level is not needed, because artifacts are also cached later
+ * in the pipeline. This caching is all about avoiding unwanted (and slow) recompilation.
  */
 public enum CacheMode
 {
     /**
      * Cache the content on the file system, in the directory defined by {@link org.apache.tapestry5.webresources.WebResourcesSymbols#CACHE_DIR}.
-     * This allows compilation to be avoided even after a restart, as long as the source file has not changed. This only works
-     * for compilations that operate on a single file (such as CoffeeScript, but not Less, which has an {@code @import} statement).
+     * This allows compilation to be avoided even after a restart, as long as the source file has not changed. Appropriate
+     * for compilations that operate on a single file (such as CoffeeScript).
      */
     SINGLE_FILE,
 
     /**
-     * The source may be multiple files (e.g., Less). Cache in memory, and invalidate the cache if any of the multiple
-     * file's content changes.
+     * The source may be multiple files (e.g., Less). Cache on the file system (as with {@link #SINGLE_FILE}), and in
+     * development mode also in memory; either cache is invalidated if any of the multiple file's content changes.
      */
     MULTIPLE_FILE,
 
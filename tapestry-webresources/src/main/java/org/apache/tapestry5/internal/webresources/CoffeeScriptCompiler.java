@@ -15,14 +15,21 @@
 package org.apache.tapestry5.internal.webresources;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.tapestry5.SymbolConstants;
 import org.apache.tapestry5.annotations.Path;
+import org.apache.tapestry5.ioc.Invokable;
 import org.apache.tapestry5.ioc.OperationTracker;
 import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.annotations.PostInjection;
+import org.apache.tapestry5.ioc.annotations.Symbol;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+import org.apache.tapestry5.ioc.services.ParallelExecutor;
 import org.apache.tapestry5.services.assets.ResourceDependencies;
 import org.apache.tapestry5.services.assets.ResourceTransformer;
+import org.apache.tapestry5.webresources.WebResourcesSymbols;
 import org.mozilla.javascript.NativeObject;
+import org.slf4j.Logger;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -33,8 +40,12 @@ public class CoffeeScriptCompiler implements ResourceTransformer
 {
     private final static Charset UTF8 = Charset.forName("utf-8");
 
+    private final Logger logger;
+
     private final RhinoExecutorPool executorPool;
 
+    private final String version;
+
     public String getTransformedContentType()
     {
         return "text/javascript";
@@ -44,10 +55,45 @@ public class CoffeeScriptCompiler implements ResourceTransformer
                                 Resource mainCompiler,
                                 @Path("classpath:org/apache/tapestry5/webresources/internal/invoke-coffeescript.js")
                                 Resource shim,
-                                OperationTracker tracker)
+                                OperationTracker tracker, Logger logger,
+                                @Symbol(WebResourcesSymbols.COMPILER_POOL_SIZE)
+                                int poolSize)
+    {
+        this.logger = logger;
+
+        executorPool = new RhinoExecutorPool(tracker, toList(mainCompiler, shim), poolSize);
+
+        version = String.format("%x-%x", ResourceTransformUtils.toChecksum(mainCompiler),
+                ResourceTransformUtils.toChecksum(shim));
+    }
+
+    /**
+     * Identifies the version of the compiler by the checksums of the CoffeeScript compiler and the shim that invokes it.
+     */
+    public String getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * In production mode, the compilers are initialized in the background, rather than by the first
+     * requests after a deployment.
+     */
+    @PostInjection
+    public void warmUpExecutors(@Symbol(SymbolConstants.PRODUCTION_MODE) boolean productionMode, ParallelExecutor parallelExecutor)
     {
+        if (productionMode)
+        {
+            parallelExecutor.invoke(new Invokable<Void>()
+            {
+                public Void invoke()
+                {
+                    executorPool.warmUp();
 
-        executorPool = new RhinoExecutorPool(tracker, toList(mainCompiler, shim));
+                    return null;
+                }
+            });
+        }
     }
 
     private List<Resource> toList(Resource... resources)
@@ -83,13 +129,24 @@ public class CoffeeScriptCompiler implements ResourceTransformer
             InternalUtils.close(is);
         }
 
+        long startTime = System.nanoTime();
+
         RhinoExecutor executor = executorPool.get();
 
+        long compileStartTime = System.nanoTime();
+
         try
         {
 
             NativeObject result = (NativeObject) executor.invokeFunction("compileCoffeeScriptSource", content, source.toString());
 
+            if (logger.isDebugEnabled())
+            {
+                logger.debug(String.format("Compiled %s in %.2f ms, after waiting %.2f ms for a compiler.", source,
+                        ResourceTransformUtils.nanosToMillis(System.nanoTime() - compileStartTime),
+                        ResourceTransformUtils.nanosToMillis(compileStartTime - startTime)));
+            }
+
             if (result.containsKey("exception"))
             {
                 throw new RuntimeException(getString(result, "exception"));
@@ -0,0 +1,308 @@
+// Copyright 2014 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.webresources;
+
+import org.apache.tapestry5.internal.TapestryInternalUtils;
+import org.apache.tapestry5.internal.services.assets.BytestreamCache;
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.services.assets.ResourceDependencies;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores compiled content on the file system, so that compilation can be avoided even after a restart. Each file
+ * starts with a header identifying every resource the compilation read (the source itself, plus any imported
+ * resources), with a checksum of each; the cached content is only used if every checksum still matches. Dependencies
+ * are stored relative to the source, so that they can be turned back into {@link Resource}s (and reported as
+ * dependencies) without recompiling. The header also identifies the compiler (including its version), since content
+ * compiled by a different compiler, or an earlier version of the same one, must not be reused.
+ * <p/>
+ * The cache is bounded in size: {@link #evict()}, invoked periodically, deletes the least recently used files once the
+ * total size of the cache exceeds the maximum.
+ *
+ * @since 5.4
+ */
+public class CompiledAssetDiskCache
+{
+    private static final int VERSION = 2;
+
+    private static final String SUFFIX = ".compiled";
+
+    private final Logger logger;
+
+    private final File directory;
+
+    private final long maxSize;
+
+    public CompiledAssetDiskCache(Logger logger, File directory, long maxSize)
+    {
+        this.logger = logger;
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    private File toFile(Resource source, String compiler)
+    {
+        long checksum = ResourceTransformUtils.toChecksum(source);
+
+        // The same file name, with the same content, may appear in different folders (and import different files).
+        return new File(directory, String.format("%x-%x-%x-%s%s", checksum, source.toString().hashCode(),
+                compiler.hashCode(), source.getFile(), SUFFIX));
+    }
+
+    /**
+     * Reads previously compiled content for the source, if present and up-to-date.
+     *
+     * @param source
+     *         the resource to be compiled
+     * @param compiler
+     *         identifies the compiler and its version
+     * @param dependencies
+     *         informed of each dependency (other than the source itself) of the cached content
+     * @return the compiled content, or null if not in the cache (or out of date)
+     */
+    public InputStream read(Resource source, String compiler, ResourceDependencies dependencies) throws IOException
+    {
+        File file = toFile(source, compiler);
+
+        if (!file.exists())
+        {
+            return null;
+        }
+
+        List<Resource> resources = CollectionFactory.newList();
+
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+        try
+        {
+            if (input.readInt() != VERSION || !input.readUTF().equals(compiler))
+            {
+                return null;
+            }
+
+            int count = input.readInt();
+
+            for (int i = 0; i < count; i++)
+            {
+                Resource dependency = source.forFile(input.readUTF());
+                long checksum = input.readLong();
+
+                if (!dependency.exists() || ResourceTransformUtils.toChecksum(dependency) != checksum)
+                {
+                    return null;
+                }
+
+                // The first is the source itself.
+                if (i > 0)
+                {
+                    resources.add(dependency);
+                }
+            }
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+            TapestryInternalUtils.copy(input, bos);
+
+            for (Resource dependency : resources)
+            {
+                dependencies.addDependency(dependency);
+            }
+
+            // The file's modification time tracks use, for eviction.
+            file.setLastModified(System.currentTimeMillis());
+
+            return new BytestreamCache(bos).openStream();
+        } catch (EOFException ex)
+        {
+            // Truncated, perhaps by a crash while it was written. It will be replaced.
+            return null;
+        } finally
+        {
+            input.close();
+        }
+    }
+
+    /**
+     * Writes compiled content to the cache. Nothing is written if a dependency can not be expressed relative to the
+     * source.
+     *
+     * @param source
+     *         the resource that was compiled
+     * @param compiler
+     *         identifies the compiler and its version
+     * @param tracker
+     *         tracks every resource read by the compilation, other than the source itself
+     * @param compiled
+     *         the compiled content
+     */
+    public void write(Resource source, String compiler, ContentChangeTracker tracker, BytestreamCache compiled) throws IOException
+    {
+        File file = toFile(source, compiler);
+
+        Map<String, Long> relative = CollectionFactory.newMap();
+
+        for (Map.Entry<Resource, Long> e : tracker.getChecksums().entrySet())
+        {
+            String path = relativize(source, e.getKey());
+
+            if (path == null)
+            {
+                logger.debug(String.format("Not caching compiled %s, as dependency %s can not be located relative to it.", source, e.getKey()));
+
+                return;
+            }
+
+            relative.put(path, e.getValue());
+        }
+
+        // Written to a temporary file, then renamed, so that other threads (and processes) never see a partial file.
+
+        File temp = File.createTempFile("compiling-", ".tmp", directory);
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+
+        try
+        {
+            output.writeInt(VERSION);
+
+            output.writeUTF(compiler);
+
+            output.writeInt(relative.size() + 1);
+
+            output.writeUTF(source.getFile());
+            output.writeLong(ResourceTransformUtils.toChecksum(source));
+
+            for (Map.Entry<String, Long> e : relative.entrySet())
+            {
+                output.writeUTF(e.getKey());
+                output.writeLong(e.getValue());
+            }
+
+            TapestryInternalUtils.copy(compiled.openStream(), output);
+        } finally
+        {
+            output.close();
+        }
+
+        // On some platforms, rename does not replace an existing file.
+        file.delete();
+
+        if (!temp.renameTo(file))
+        {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Returns the path of the dependency relative to the source's folder (as used with {@link Resource#forFile(String)}),
+     * or null if that is not possible.
+     */
+    static String relativize(Resource source, Resource dependency)
+    {
+        String folder = source.getFolder();
+        String path = dependency.getPath();
+
+        StringBuilder prefix = new StringBuilder();
+
+        while (folder.length() > 0 && !path.startsWith(folder + "/"))
+        {
+            int slashx = folder.lastIndexOf('/');
+
+            folder = slashx < 0 ? "" : folder.substring(0, slashx);
+
+            prefix.append("../");
+        }
+
+        String result = prefix + (folder.length() == 0 ? path : path.substring(folder.length() + 1));
+
+        // Resources of a different type (classpath vs. context) or that otherwise don't resolve back to the
+        // dependency, can't be cached.
+
+        return source.forFile(result).equals(dependency) ? result : null;
+    }
+
+    /**
+     * Deletes the least recently used files, until the total size of the cache is within the maximum.
+     */
+    public void evict()
+    {
+        File[] files = directory.listFiles(new FileFilter()
+        {
+            public boolean accept(File file)
+            {
+                return file.isFile() && file.getName().endsWith(SUFFIX);
+            }
+        });
+
+        if (files == null)
+        {
+            return;
+        }
+
+        long totalSize = 0;
+
+        for (File file : files)
+        {
+            totalSize += file.length();
+        }
+
+        if (totalSize <= maxSize)
+        {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>()
+        {
+            public int compare(File o1, File o2)
+            {
+                long delta = o1.lastModified() - o2.lastModified();
+
+                return delta < 0 ? -1 : delta > 0 ? 1 : 0;
+            }
+        });
+
+        int count = 0;
+
+        for (File file : files)
+        {
+            if (totalSize <= maxSize)
+            {
+                break;
+            }
+
+            long length = file.length();
+
+            if (file.delete())
+            {
+                totalSize -= length;
+                count++;
+            }
+        }
+
+        logger.info(String.format("Evicted %,d compiled assets from %s.", count, directory));
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright 2013 The Apache Software Foundation
+// Copyright 2013, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -57,5 +57,15 @@ public class ContentChangeTracker implements ResourceDependencies
         return false;
     }
 
+    /**
+     * Returns the tracked resources, and the checksum of each (at the time it was added).
+     *
+     * @since 5.4
+     */
+    Map<Resource, Long> getChecksums()
+    {
+        return checksums;
+    }
+
 
 }
@@ -40,6 +40,14 @@ public class LessResourceTransformer implements ResourceTransformer
         return "text/css";
     }
 
+    /**
+     * The version of the Less4j library.
+     */
+    public String getVersion()
+    {
+        return ResourceTransformUtils.toLibraryVersion(LessCompiler.class);
+    }
+
     class ResourceLessSource extends LessSource
     {
         private final Resource resource;
@@ -1,4 +1,4 @@
-// Copyright 2013 The Apache Software Foundation
+// Copyright 2013, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ import org.apache.tapestry5.ioc.Resource;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.CodeSource;
 import java.util.zip.Adler32;
 
 /**
@@ -65,4 +66,34 @@ public class ResourceTransformUtils
             throw new RuntimeException(ex);
         }
     }
+
+    /**
+     * Identifies the version of the library containing a class: the implementation version from the JAR manifest, if
+     * present, or else the name of the JAR (which, for Maven artifacts, includes the version).
+     */
+    public static String toLibraryVersion(Class clazz)
+    {
+        Package pkg = clazz.getPackage();
+
+        if (pkg != null && pkg.getImplementationVersion() != null)
+        {
+            return pkg.getImplementationVersion();
+        }
+
+        CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+
+        if (codeSource == null || codeSource.getLocation() == null)
+        {
+            return "unknown";
+        }
+
+        String path = codeSource.getLocation().getPath();
+
+        if (path.endsWith("/"))
+        {
+            path = path.substring(0, path.length() - 1);
+        }
+
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
 }
@@ -1,4 +1,4 @@
-// Copyright 2013 The Apache Software Foundation
+// Copyright 2013, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -35,11 +35,14 @@ public interface ResourceTransformerFactory
      *         for debugging: target name, e.g., "CSS"
      * @param transformer
      *         performs the actual work
+     * @param compilerVersion
+     *         identifies the version of the underlying compiler; compiled content cached on the file system is only
+     *         reused by the same version
      * @param cacheMode
      *         Indicates if and how the compiled content should be cached (in development mode only)
      * @return transformer
      * @see org.apache.tapestry5.webresources.services.ResourceProcessorSource
      */
-    ResourceTransformer createCompiler(String contentType, String sourceName, String targetName, ResourceTransformer transformer, CacheMode cacheMode);
+    ResourceTransformer createCompiler(String contentType, String sourceName, String targetName, ResourceTransformer transformer, String compilerVersion, CacheMode cacheMode);
 
 }
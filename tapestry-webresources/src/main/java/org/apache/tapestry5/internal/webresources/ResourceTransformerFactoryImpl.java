@@ -1,4 +1,4 @@
-// Copyright 2013 The Apache Software Foundation
+// Copyright 2013, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -23,6 +23,8 @@ import org.apache.tapestry5.ioc.Resource;
 import org.apache.tapestry5.ioc.annotations.PostInjection;
 import org.apache.tapestry5.ioc.annotations.Symbol;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.services.cron.IntervalSchedule;
+import org.apache.tapestry5.ioc.services.cron.PeriodicExecutor;
 import org.apache.tapestry5.services.assets.ResourceDependencies;
 import org.apache.tapestry5.services.assets.ResourceTransformer;
 import org.apache.tapestry5.webresources.WebResourcesSymbols;
@@ -33,36 +35,51 @@ import java.util.Map;
 
 public class ResourceTransformerFactoryImpl implements ResourceTransformerFactory
 {
+    /**
+     * Folder, within the {@linkplain WebResourcesSymbols#CACHE_DIR cache directory}, for the compiled assets; this
+     * keeps eviction from touching anything else (the cache directory defaults to the temporary directory).
+     */
+    static final String CACHE_SUBDIR = "tapestry-compiled-assets";
+
+    private static final long EVICTION_INTERVAL = 5 * 60 * 1000;
+
     private final Logger logger;
 
     private final OperationTracker tracker;
 
     private final boolean productionMode;
 
-    private final File cacheDir;
+    private final CompiledAssetDiskCache diskCache;
 
     public ResourceTransformerFactoryImpl(Logger logger, OperationTracker tracker,
                                           @Symbol(SymbolConstants.PRODUCTION_MODE)
                                           boolean productionMode,
                                           @Symbol(WebResourcesSymbols.CACHE_DIR)
-                                          String cacheDir)
+                                          String cacheDir,
+                                          @Symbol(WebResourcesSymbols.CACHE_MAX_SIZE)
+                                          long cacheMaxSize)
     {
         this.logger = logger;
         this.tracker = tracker;
         this.productionMode = productionMode;
 
-        this.cacheDir = new File(cacheDir);
+        diskCache = new CompiledAssetDiskCache(logger, new File(cacheDir, CACHE_SUBDIR), cacheMaxSize);
 
-        if (!productionMode)
-        {
-            logger.info(String.format("Using %s to store compiled assets (development mode only).", cacheDir));
-        }
+        logger.info(String.format("Using %s to store compiled assets.", diskCache.getDirectory()));
     }
 
     @PostInjection
-    public void createCacheDir()
+    public void createCacheDir(PeriodicExecutor periodicExecutor)
     {
-        cacheDir.mkdirs();
+        diskCache.getDirectory().mkdirs();
+
+        periodicExecutor.addJob(new IntervalSchedule(EVICTION_INTERVAL), "Compiled asset cache eviction", new Runnable()
+        {
+            public void run()
+            {
+                diskCache.evict();
+            }
+        });
     }
 
     static class Compiled extends ContentChangeTracker
@@ -86,42 +103,38 @@ public class ResourceTransformerFactoryImpl implements ResourceTransformerFactor
             this.bytestreamCache = new BytestreamCache(bos);
         }
 
-        InputStream openStream()
+        InputStream openStream() throws IOException
         {
             return bytestreamCache.openStream();
         }
     }
 
 
-    public ResourceTransformer createCompiler(String contentType, String sourceName, String targetName, ResourceTransformer transformer, CacheMode cacheMode)
+    public ResourceTransformer createCompiler(String contentType, String sourceName, String targetName, ResourceTransformer transformer, String compilerVersion, CacheMode cacheMode)
     {
         ResourceTransformer trackingCompiler = wrapWithTracking(sourceName, targetName, transformer);
 
-        if (productionMode)
-        {
-            return trackingCompiler;
-        }
-
-        ResourceTransformer timingCompiler = wrapWithTiming(targetName, trackingCompiler);
+        ResourceTransformer compiler = productionMode
+                ? trackingCompiler
+                : wrapWithTiming(targetName, trackingCompiler);
 
-        switch (cacheMode)
+        if (cacheMode == CacheMode.NONE)
         {
-            case NONE:
-
-                return timingCompiler;
-
-            case SINGLE_FILE:
-
-                return wrapWithFileSystemCaching(timingCompiler, targetName);
-
-            case MULTIPLE_FILE:
+            return compiler;
+        }
 
-                return wrapWithInMemoryCaching(timingCompiler, targetName);
+        // The file system cache is shared by development and production mode: it is keyed on the checksums of the
+        // source and its dependencies (and on the compiler), so a restart (in either mode) can use what was compiled before.
 
-            default:
+        ResourceTransformer fileSystemCaching = wrapWithFileSystemCaching(compiler,
+                String.format("%s>%s %s", sourceName, targetName, compilerVersion), targetName);
 
-                throw new IllegalStateException();
+        if (productionMode || cacheMode == CacheMode.SINGLE_FILE)
+        {
+            return fileSystemCaching;
         }
+
+        return wrapWithInMemoryCaching(fileSystemCaching, targetName);
     }
 
     private ResourceTransformer wrapWithTracking(final String sourceName, final String targetName, final ResourceTransformer core)
@@ -219,7 +232,7 @@ public class ResourceTransformerFactoryImpl implements ResourceTransformerFactor
         };
     }
 
-    private ResourceTransformer wrapWithFileSystemCaching(final ResourceTransformer core, final String targetName)
+    private ResourceTransformer wrapWithFileSystemCaching(final ResourceTransformer core, final String compilerId, final String targetName)
     {
         return new ResourceTransformer()
         {
@@ -230,20 +243,18 @@ public class ResourceTransformerFactoryImpl implements ResourceTransformerFactor
 
             public InputStream transform(Resource source, ResourceDependencies dependencies) throws IOException
             {
-                long checksum = ResourceTransformUtils.toChecksum(source);
-
-                String fileName = Long.toHexString(checksum) + "-" + source.getFile();
+                InputStream cached = diskCache.read(source, compilerId, dependencies);
 
-                File cacheFile = new File(cacheDir, fileName);
-
-                if (cacheFile.exists())
+                if (cached != null)
                 {
                     logger.debug(String.format("Serving up compiled %s content for %s from file system cache", targetName, source));
 
-                    return new BufferedInputStream(new FileInputStream(cacheFile));
+                    return cached;
                 }
 
-                InputStream compiled = core.transform(source, dependencies);
+                ContentChangeTracker compiledDependencies = new ContentChangeTracker();
+
+                InputStream compiled = core.transform(source, new ResourceDependenciesSplitter(dependencies, compiledDependencies));
 
                 // We need the InputStream twice; once to return, and once to write out to the cache file for later.
 
@@ -255,19 +266,10 @@ public class ResourceTransformerFactoryImpl implements ResourceTransformerFactor
 
                 BytestreamCache cache = new BytestreamCache(bos);
 
-                writeToCacheFile(cacheFile, cache.openStream());
+                diskCache.write(source, compilerId, compiledDependencies, cache);
 
                 return cache.openStream();
             }
         };
     }
-
-    private void writeToCacheFile(File file, InputStream stream) throws IOException
-    {
-        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
-
-        TapestryInternalUtils.copy(stream, outputStream);
-
-        outputStream.close();
-    }
 }
@@ -20,10 +20,10 @@ import org.apache.tapestry5.ioc.Resource;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.ioc.internal.util.InternalUtils;
 import org.apache.tapestry5.ioc.util.ExceptionUtils;
-import org.apache.tapestry5.ioc.util.Stack;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ContextFactory;
 import org.mozilla.javascript.NativeFunction;
+import org.mozilla.javascript.Script;
 import org.mozilla.javascript.ScriptableObject;
 
 import java.io.IOException;
@@ -31,9 +31,19 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
 
 /**
  * Manages a pool of initialized {@link RhinoExecutor} instances.  The instances are initialized for a particular
+ * set of scripts.
+ * <p/>
+ * The pool is sized: at most that many executors are in use at once; additional threads wait (fairly) for an executor
+ * to be returned to the pool. Idle executors are kept in a non-blocking queue. The scripts are parsed and compiled
+ * just once, and shared by all executors; each executor evaluates the compiled scripts into its own scope, so that the
+ * mutable state of the scripts (and of the standard objects, which scripts such as the CoffeeScript compiler modify)
+ * is never shared between threads.
  */
 public class RhinoExecutorPool
 {
@@ -41,40 +51,145 @@ public class RhinoExecutorPool
 
     private final List<Resource> scripts;
 
-    private final Stack<RhinoExecutor> executors = CollectionFactory.newStack();
+    private final int size;
+
+    private final Semaphore available;
+
+    private final Queue<RhinoExecutor> executors = new ConcurrentLinkedQueue<RhinoExecutor>();
 
     private final ContextFactory contextFactory = new ContextFactory();
 
+    private volatile List<Script> compiledScripts;
+
     public RhinoExecutorPool(OperationTracker tracker, List<Resource> scripts)
     {
+        this(tracker, scripts, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param tracker
+     *         used to track the creation of executors
+     * @param scripts
+     *         scripts loaded into each executor
+     * @param size
+     *         maximum number of executors in use at any one time
+     * @since 5.4
+     */
+    public RhinoExecutorPool(OperationTracker tracker, List<Resource> scripts, int size)
+    {
+        assert size > 0;
+
         this.tracker = tracker;
         this.scripts = scripts;
+        this.size = size;
+
+        available = new Semaphore(size, true);
     }
 
     /**
-     * Gets or creates an available executor. It is expected that {@link #put(RhinoExecutor)} will
-     * be invoked after the executor completes.
+     * Gets or creates an available executor, waiting for one to be returned to the pool if the pool is exhausted.
+     * It is expected that {@link RhinoExecutor#discard()} will be invoked after the executor completes.
      *
      * @return executor
      */
-    public synchronized RhinoExecutor get()
+    public RhinoExecutor get()
     {
+        available.acquireUninterruptibly();
+
+        RhinoExecutor executor = executors.poll();
 
-        if (executors.isEmpty())
+        if (executor != null)
+        {
+            return executor;
+        }
+
+        try
         {
             return createExecutor();
+        } catch (RuntimeException ex)
+        {
+            available.release();
+
+            throw ex;
+        }
+    }
+
+    private void put(RhinoExecutor executor)
+    {
+        executors.offer(executor);
+
+        available.release();
+    }
+
+    /**
+     * Creates executors, up to the size of the pool, so that the first compilations (for instance, of all the
+     * resources of a page or stack, just after a deployment) do not each pay to initialize an executor.
+     *
+     * @since 5.4
+     */
+    public void warmUp()
+    {
+        while (executors.size() < size && available.tryAcquire())
+        {
+            try
+            {
+                executors.offer(createExecutor());
+            } finally
+            {
+                available.release();
+            }
         }
+    }
+
+    private List<Script> getCompiledScripts()
+    {
+        List<Script> result = compiledScripts;
+
+        if (result == null)
+        {
+            // Only ever compiled once; a thread that loses the race simply waits for the winner.
+
+            synchronized (this)
+            {
+                if (compiledScripts == null)
+                {
+                    compiledScripts = compileScripts();
+                }
 
-        return executors.pop();
+                result = compiledScripts;
+            }
+        }
+
+        return result;
     }
 
-    private synchronized void put(RhinoExecutor executor)
+    private List<Script> compileScripts()
     {
-        executors.push(executor);
+        Context context = contextFactory.enterContext();
+
+        try
+        {
+            // Interpreted: the scripts may be too large to compile to bytecode.
+            context.setOptimizationLevel(-1);
+
+            List<Script> result = CollectionFactory.newList();
+
+            for (Resource script : scripts)
+            {
+                result.add(compileScript(context, script));
+            }
+
+            return result;
+        } finally
+        {
+            Context.exit();
+        }
     }
 
     private RhinoExecutor createExecutor()
     {
+        final List<Script> compiled = getCompiledScripts();
+
         return tracker.invoke(String.format("Creating Rhino executor for source(s) %s.",
                 InternalUtils.join(scripts)),
                 new Invokable<RhinoExecutor>()
@@ -89,11 +204,10 @@ public class RhinoExecutorPool
                         {
                             context.setOptimizationLevel(-1);
 
-                            for (Resource script : scripts)
+                            for (Script script : compiled)
                             {
-                                loadScript(context, scope, script);
+                                script.exec(context, scope);
                             }
-
                         } finally
                         {
                             Context.exit();
@@ -125,12 +239,12 @@ public class RhinoExecutorPool
                 });
     }
 
-    private void loadScript(final Context context, final ScriptableObject scope, final Resource script)
+    private Script compileScript(final Context context, final Resource script)
     {
-        tracker.run(String.format("Loading script %s.", script),
-                new Runnable()
+        return tracker.invoke(String.format("Compiling script %s.", script),
+                new Invokable<Script>()
                 {
-                    public void run()
+                    public Script invoke()
                     {
                         InputStream in = null;
                         Reader r = null;
@@ -140,7 +254,7 @@ public class RhinoExecutorPool
                             in = script.openStream();
                             r = new InputStreamReader(in);
 
-                            context.evaluateReader(scope, r, script.toString(), 1, null);
+                            return context.compileReader(r, script.toString(), 1, null);
                         } catch (IOException ex)
                         {
                             throw new RuntimeException(String.format("Unable to read script %s: %s",
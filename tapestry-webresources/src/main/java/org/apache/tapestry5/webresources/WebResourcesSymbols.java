@@ -1,4 +1,4 @@
-// Copyright 2013 The Apache Software Foundation
+// Copyright 2013, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -17,9 +17,26 @@ package org.apache.tapestry5.webresources;
 public class WebResourcesSymbols
 {
     /**
-     * Directory that stores cached copies of compiled CoffeeScript files. The directory will be created
-     * as necessary. This allows compilation (e.g., CoffeeScript to JavaScript) to be avoided after a restart.
+     * Directory that stores cached copies of compiled CoffeeScript and Less files (in a sub-directory). The directory will
+     * be created as necessary. This allows compilation (e.g., CoffeeScript to JavaScript) to be avoided after a restart.
      * The default is from the {@code java.io.tmpdir} system property (which is not necessarily stable between executions).
      */
     public static final String CACHE_DIR = "tapestry.compiled-asset-cache-dir";
+
+    /**
+     * Maximum size, in bytes, of the compiled asset cache (in the {@link #CACHE_DIR}); when exceeded, the least recently
+     * used compiled assets are periodically deleted. Defaults to 100 MB.
+     *
+     * @since 5.4
+     */
+    public static final String CACHE_MAX_SIZE = "tapestry.compiled-asset-cache-max-size";
+
+    /**
+     * Maximum number of resources that may be compiled by a Rhino-based compiler (such as the CoffeeScript compiler)
+     * at once; each requires its own initialized copy of the compiler. In production mode, the compilers are
+     * initialized in the background at startup. Defaults to the number of available processors.
+     *
+     * @since 5.4
+     */
+    public static final String COMPILER_POOL_SIZE = "tapestry.compiler-pool-size";
 }
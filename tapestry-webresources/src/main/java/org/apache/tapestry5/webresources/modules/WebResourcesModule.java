@@ -1,4 +1,4 @@
-// Copyright 2013 The Apache Software Foundation
+// Copyright 2013, 2014 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -58,6 +58,8 @@ public class WebResourcesModule
     public static void setupDefaultCacheDirectory(MappedConfiguration<String, Object> configuration)
     {
         configuration.add(WebResourcesSymbols.CACHE_DIR, "${java.io.tmpdir}");
+        configuration.add(WebResourcesSymbols.CACHE_MAX_SIZE, 100 * 1024 * 1024);
+        configuration.add(WebResourcesSymbols.COMPILER_POOL_SIZE, Runtime.getRuntime().availableProcessors());
     }
 
 
@@ -69,11 +71,13 @@ public class WebResourcesModule
 
         configuration.add("coffee",
                 factory.createCompiler("text/javascript", "CoffeeScript", "JavaScript",
-                        coffeeScriptCompiler,
+                        coffeeScriptCompiler, coffeeScriptCompiler.getVersion(),
                         CacheMode.SINGLE_FILE));
 
+        LessResourceTransformer lessTransformer = new LessResourceTransformer();
+
         configuration.add("less",
-                factory.createCompiler("text/css", "Less", "CSS", new LessResourceTransformer(),
+                factory.createCompiler("text/css", "Less", "CSS", lessTransformer, lessTransformer.getVersion(),
                         CacheMode.MULTIPLE_FILE));
     }
 
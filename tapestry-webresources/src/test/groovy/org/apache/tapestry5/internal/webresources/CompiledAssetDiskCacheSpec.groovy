@@ -0,0 +1,125 @@
+package org.apache.tapestry5.internal.webresources
+
+import org.apache.tapestry5.internal.services.assets.BytestreamCache
+import org.apache.tapestry5.ioc.Resource
+import org.apache.tapestry5.ioc.internal.util.ClasspathResource
+import org.apache.tapestry5.services.assets.ResourceDependencies
+import org.slf4j.Logger
+import spock.lang.Specification
+
+class CompiledAssetDiskCacheSpec extends Specification {
+
+    File root
+
+    File cacheDir
+
+    CompiledAssetDiskCache cache
+
+    ClassLoader loader
+
+    def setup() {
+        root = File.createTempFile("assets", "")
+        root.delete()
+
+        new File(root, "assets").mkdirs()
+
+        cacheDir = new File(root, "cache")
+        cacheDir.mkdirs()
+
+        loader = new URLClassLoader([root.toURI().toURL()] as URL[], (ClassLoader) null)
+
+        cache = new CompiledAssetDiskCache(Mock(Logger), cacheDir, 1024 * 1024)
+    }
+
+    def cleanup() {
+        root.deleteDir()
+    }
+
+    private Resource source(String path, String content) {
+        new File(root, path).text = content
+
+        new ClasspathResource(loader, path)
+    }
+
+    private void store(Resource source, String compiler, String compiled, Resource... dependencies) {
+        def tracker = new ContentChangeTracker()
+
+        dependencies.each { tracker.addDependency(it) }
+
+        def bos = new ByteArrayOutputStream()
+        bos.write(compiled.getBytes("UTF-8"))
+
+        cache.write(source, compiler, tracker, new BytestreamCache(bos))
+    }
+
+    def "compiled content is read back, with its dependencies"() {
+        def main = source("assets/main.less", "@import 'colors.less';")
+        def colors = source("assets/colors.less", "@red: #f00;")
+        def dependencies = Mock(ResourceDependencies)
+
+        store(main, "Less>CSS 1.0", "compiled", colors)
+
+        when:
+
+        def stream = cache.read(main, "Less>CSS 1.0", dependencies)
+
+        then:
+
+        stream.text == "compiled"
+
+        1 * dependencies.addDependency(colors)
+    }
+
+    def "content never written is a miss"() {
+        def main = source("assets/main.less", "body {}")
+
+        expect:
+
+        cache.read(main, "Less>CSS 1.0", Mock(ResourceDependencies)) == null
+    }
+
+    def "content from a different compiler version is a miss"() {
+        def main = source("assets/main.less", "body {}")
+
+        store(main, "Less>CSS 1.0", "compiled")
+
+        expect:
+
+        cache.read(main, "Less>CSS 1.1", Mock(ResourceDependencies)) == null
+        cache.read(main, "Less>CSS 1.0", Mock(ResourceDependencies)).text == "compiled"
+    }
+
+    def "a change to the source invalidates the content"() {
+        def main = source("assets/main.less", "body {}")
+
+        store(main, "Less>CSS 1.0", "compiled")
+
+        when:
+
+        main = source("assets/main.less", "body { color: red; }")
+
+        then:
+
+        cache.read(main, "Less>CSS 1.0", Mock(ResourceDependencies)) == null
+    }
+
+    def "a change to a dependency invalidates the content"() {
+        def main = source("assets/main.less", "@import 'colors.less';")
+        def colors = source("assets/colors.less", "@red: #f00;")
+        def dependencies = Mock(ResourceDependencies)
+
+        store(main, "Less>CSS 1.0", "compiled", colors)
+
+        when:
+
+        source("assets/colors.less", "@red: #e00;")
+
+        def stream = cache.read(main, "Less>CSS 1.0", dependencies)
+
+        then:
+
+        stream == null
+
+        0 * dependencies.addDependency(_)
+    }
+}